@@ -2,6 +2,16 @@ package com.love.model;
 
 public class AppSettings {
     private String logBasePath; // 日志基础路径
+    // 启动准入（见 StartQueue），各项为0时不检查该项
+    // 默认：启动中的实例不超过核数的一半（至少1个），每核负载低于1.5，可用内存不少于512MB，CPU压力低于40%，间隔200ms，最多排队2分钟
+    private int startMaxStarting = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private double startMaxLoadPerCpu = 1.5;
+    private long startMinAvailableMemoryMb = 512;
+    private double startMaxCpuPressure = 40;
+    private long startMinIntervalMs = 200;
+    private long startMaxWaitMs = 120_000;
+    // 拉起后端口超过该时长仍未就绪则判定启动失败（退避重启，连续失败后隔离），0 表示一直等待
+    private long startReadyTimeoutMs = 300_000;
 
     public AppSettings() {
         // 默认日志路径为程序运行目录下的logs
@@ -12,6 +22,20 @@ public class AppSettings {
         this.logBasePath = logBasePath;
     }
 
+    /**
+     * 复制一份设置
+     */
+    public AppSettings(AppSettings other) {
+        this.logBasePath = other.logBasePath;
+        this.startMaxStarting = other.startMaxStarting;
+        this.startMaxLoadPerCpu = other.startMaxLoadPerCpu;
+        this.startMinAvailableMemoryMb = other.startMinAvailableMemoryMb;
+        this.startMaxCpuPressure = other.startMaxCpuPressure;
+        this.startMinIntervalMs = other.startMinIntervalMs;
+        this.startMaxWaitMs = other.startMaxWaitMs;
+        this.startReadyTimeoutMs = other.startReadyTimeoutMs;
+    }
+
     public String getLogBasePath() {
         return logBasePath;
     }
@@ -19,5 +43,60 @@ public class AppSettings {
     public void setLogBasePath(String logBasePath) {
         this.logBasePath = logBasePath;
     }
-}
 
+    public int getStartMaxStarting() {
+        return startMaxStarting;
+    }
+
+    public void setStartMaxStarting(int startMaxStarting) {
+        this.startMaxStarting = startMaxStarting;
+    }
+
+    public double getStartMaxLoadPerCpu() {
+        return startMaxLoadPerCpu;
+    }
+
+    public void setStartMaxLoadPerCpu(double startMaxLoadPerCpu) {
+        this.startMaxLoadPerCpu = startMaxLoadPerCpu;
+    }
+
+    public long getStartMinAvailableMemoryMb() {
+        return startMinAvailableMemoryMb;
+    }
+
+    public void setStartMinAvailableMemoryMb(long startMinAvailableMemoryMb) {
+        this.startMinAvailableMemoryMb = startMinAvailableMemoryMb;
+    }
+
+    public double getStartMaxCpuPressure() {
+        return startMaxCpuPressure;
+    }
+
+    public void setStartMaxCpuPressure(double startMaxCpuPressure) {
+        this.startMaxCpuPressure = startMaxCpuPressure;
+    }
+
+    public long getStartMinIntervalMs() {
+        return startMinIntervalMs;
+    }
+
+    public void setStartMinIntervalMs(long startMinIntervalMs) {
+        this.startMinIntervalMs = startMinIntervalMs;
+    }
+
+    public long getStartMaxWaitMs() {
+        return startMaxWaitMs;
+    }
+
+    public void setStartMaxWaitMs(long startMaxWaitMs) {
+        this.startMaxWaitMs = startMaxWaitMs;
+    }
+
+    public long getStartReadyTimeoutMs() {
+        return startReadyTimeoutMs;
+    }
+
+    public void setStartReadyTimeoutMs(long startReadyTimeoutMs) {
+        this.startReadyTimeoutMs = startReadyTimeoutMs;
+    }
+}
@@ -1,16 +1,58 @@
 package com.love.model;
 
 public class ServiceConfig {
+    public static final String PORT_PLACEHOLDER = "${port}";
+    public static final String INSTANCE_PLACEHOLDER = "${instance}";
+
+    private String id;    // 稳定的服务ID，删除其他服务时不变
     private String name;
     private String javaExe;
     private String workDir;
-    private String args;  // 用换行符分隔的参数
+    private String args;  // 用换行符分隔的参数，可包含 ${port}、${instance} 占位符
+    private int replicas = 1; // 实例数
+    private int basePort = 0; // ${port} 的起始端口，第 i 个实例优先使用 basePort + i；0 表示自动分配
+    private int publicPort = 0; // 内置负载均衡监听的对外端口，转发到各实例的 ${port}；0 表示不启用
+    private int idleTimeout = 0; // 按需启动：>0 时收到连接才启动，连续这么多秒没有连接后自动停止；需要 publicPort
+    private boolean appCds = false; // 自动生成并使用 AppCDS 归档，加快启动
+    private int sizingWeight = 0; // >0 时按权重分配主机内存和CPU，注入 -Xmx、GC线程数等选项；0 表示不自动分配
+    // 内存泄漏防护：满足任一规则时先生成堆直方图再平滑重启；0 表示不启用该规则
+    private int rssLimitMb = 0;          // 实例常驻内存上限（MB）
+    private int rssLimitMinutes = 10;    // 持续超过上限多少分钟才触发
+    private int heapGrowthPercent = 0;   // GC后堆占用每小时增长的百分比上限
+    private String restartBlackout = ""; // 禁止自动重启的时段，逗号分隔的 HH:mm-HH:mm
+    private boolean gcLog = false;       // 注入 -Xlog:gc* 写GC日志到实例日志目录，并分析停顿
+    private int gcPauseWarnMs = 200;     // 最近GC停顿的 p99 达到该值时告警；0 表示不告警
     private String outLog;
     private String errLog;
 
     public ServiceConfig() {
     }
 
+    /**
+     * 复制一份配置
+     */
+    public ServiceConfig(ServiceConfig other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.javaExe = other.javaExe;
+        this.workDir = other.workDir;
+        this.args = other.args;
+        this.replicas = other.replicas;
+        this.basePort = other.basePort;
+        this.publicPort = other.publicPort;
+        this.idleTimeout = other.idleTimeout;
+        this.appCds = other.appCds;
+        this.sizingWeight = other.sizingWeight;
+        this.rssLimitMb = other.rssLimitMb;
+        this.rssLimitMinutes = other.rssLimitMinutes;
+        this.heapGrowthPercent = other.heapGrowthPercent;
+        this.restartBlackout = other.restartBlackout;
+        this.gcLog = other.gcLog;
+        this.gcPauseWarnMs = other.gcPauseWarnMs;
+        this.outLog = other.outLog;
+        this.errLog = other.errLog;
+    }
+
     public ServiceConfig(String name, String javaExe, String workDir, String args, String outLog, String errLog) {
         this.name = name;
         this.javaExe = javaExe;
@@ -20,6 +62,14 @@ public class ServiceConfig {
         this.errLog = errLog;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -68,8 +118,130 @@ public class ServiceConfig {
         this.errLog = errLog;
     }
 
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+
+    public int getBasePort() {
+        return basePort;
+    }
+
+    public void setBasePort(int basePort) {
+        this.basePort = basePort;
+    }
+
+    public int getPublicPort() {
+        return publicPort;
+    }
+
+    public void setPublicPort(int publicPort) {
+        this.publicPort = publicPort;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    public void setAppCds(boolean appCds) {
+        this.appCds = appCds;
+    }
+
+    public int getSizingWeight() {
+        return sizingWeight;
+    }
+
+    public void setSizingWeight(int sizingWeight) {
+        this.sizingWeight = sizingWeight;
+    }
+
+    public int getRssLimitMb() {
+        return rssLimitMb;
+    }
+
+    public void setRssLimitMb(int rssLimitMb) {
+        this.rssLimitMb = rssLimitMb;
+    }
+
+    public int getRssLimitMinutes() {
+        return rssLimitMinutes;
+    }
+
+    public void setRssLimitMinutes(int rssLimitMinutes) {
+        this.rssLimitMinutes = rssLimitMinutes;
+    }
+
+    public int getHeapGrowthPercent() {
+        return heapGrowthPercent;
+    }
+
+    public void setHeapGrowthPercent(int heapGrowthPercent) {
+        this.heapGrowthPercent = heapGrowthPercent;
+    }
+
+    public String getRestartBlackout() {
+        return restartBlackout;
+    }
+
+    public void setRestartBlackout(String restartBlackout) {
+        this.restartBlackout = restartBlackout != null ? restartBlackout : "";
+    }
+
+    public boolean isGcLog() {
+        return gcLog;
+    }
+
+    public void setGcLog(boolean gcLog) {
+        this.gcLog = gcLog;
+    }
+
+    public int getGcPauseWarnMs() {
+        return gcPauseWarnMs;
+    }
+
+    public void setGcPauseWarnMs(int gcPauseWarnMs) {
+        this.gcPauseWarnMs = gcPauseWarnMs;
+    }
+
+    /**
+     * 是否配置了内存泄漏防护规则
+     */
+    public boolean hasLeakRules() {
+        return rssLimitMb > 0 || heapGrowthPercent > 0;
+    }
+
     public String[] getArgsArray() {
         return args != null ? args.split("\\n") : new String[0];
     }
+
+    /**
+     * 参数中是否使用了 ${port}（需要为每个实例分配端口）
+     */
+    public boolean usesPortTemplate() {
+        return args != null && args.contains(PORT_PLACEHOLDER);
+    }
+
+    /**
+     * 替换占位符后的参数：${instance} 为实例编号（从0开始），${port} 为分配给该实例的端口
+     */
+    public String[] resolveArgs(int instance, int port) {
+        String[] array = getArgsArray();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = array[i].replace(INSTANCE_PLACEHOLDER, String.valueOf(instance))
+                               .replace(PORT_PLACEHOLDER, String.valueOf(port));
+        }
+        return array;
+    }
 }
 
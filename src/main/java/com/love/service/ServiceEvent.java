@@ -0,0 +1,54 @@
+package com.love.service;
+
+/**
+ * 服务事件 - 由 ServiceEventBus 分发给各订阅者（如Web端推送）
+ */
+public class ServiceEvent {
+    public static final String TYPE_STATE = "STATE";     // 状态变化
+    public static final String TYPE_PID = "PID";         // 进程号变化（如自动重启）
+    public static final String TYPE_METRIC = "METRIC";   // 资源占用采样
+    public static final String TYPE_CONFIG = "CONFIG";   // 服务列表或配置变化，订阅方需重新获取快照
+    public static final String TYPE_LEAK = "LEAK";       // 内存泄漏防护触发或推迟，说明见 cause
+    public static final String TYPE_GC = "GC";           // GC停顿告警出现或解除，说明见 cause
+
+    private final String type;
+    private final long seq;
+    private final long time;
+    private final String id;
+    private final int index;
+    private final String name;
+    private String status;
+    private String state;        // WatcherState 名称，见 ServiceManager.ServiceStatus
+    private String cause;        // 进入当前状态的原因
+    private long pid = -1;
+    private double cpu = -1;     // CPU占用百分比（可超过100，多核）
+    private long rssBytes = -1;  // 常驻内存
+
+    public ServiceEvent(String type, long seq, String id, int index, String name) {
+        this.type = type;
+        this.seq = seq;
+        this.time = System.currentTimeMillis();
+        this.id = id;
+        this.index = index;
+        this.name = name;
+    }
+
+    public String getType() { return type; }
+    public long getSeq() { return seq; }
+    public long getTime() { return time; }
+    public String getId() { return id; }
+    public int getIndex() { return index; }
+    public String getName() { return name; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+    public String getCause() { return cause; }
+    public void setCause(String cause) { this.cause = cause; }
+    public long getPid() { return pid; }
+    public void setPid(long pid) { this.pid = pid; }
+    public double getCpu() { return cpu; }
+    public void setCpu(double cpu) { this.cpu = cpu; }
+    public long getRssBytes() { return rssBytes; }
+    public void setRssBytes(long rssBytes) { this.rssBytes = rssBytes; }
+}
@@ -0,0 +1,45 @@
+package com.love.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 进程内服务事件总线
+ * 发布方只调用一次 publish，由总线扇出给所有订阅者；订阅者必须快速返回（自行排队），
+ * 某个订阅者抛出异常不影响其他订阅者。
+ */
+public class ServiceEventBus {
+    private final List<Consumer<ServiceEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public void subscribe(Consumer<ServiceEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<ServiceEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * 分配事件序号（单调递增，订阅方可据此发现丢失的事件）
+     */
+    public long nextSeq() {
+        return sequence.incrementAndGet();
+    }
+
+    public void publish(ServiceEvent event) {
+        for (Consumer<ServiceEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("事件订阅者处理失败: " + e.getMessage());
+            }
+        }
+    }
+}
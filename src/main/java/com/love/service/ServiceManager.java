@@ -2,221 +2,3159 @@ package com.love.service;
 
 import com.love.model.AppSettings;
 import com.love.model.ServiceConfig;
+import com.love.util.AppCdsArchive;
+import com.love.util.ConfigDiff;
 import com.love.util.ConfigManager;
+import com.love.util.ConfigWatcher;
+import com.love.util.DesiredStateStore;
+import com.love.util.GcLogAnalyzer;
+import com.love.util.JvmSizing;
+import com.love.util.LeakGuard;
+import com.love.util.LogLineIndex;
+import com.love.util.PortAllocator;
+import com.love.util.ProcessMetrics;
+import com.love.util.ProcessStateStore;
 import com.love.util.SettingsManager;
 import com.love.util.SimpleProcessWatcher;
+import com.love.util.StartQueue;
+import com.love.util.StateTransition;
+import com.love.util.TcpBalancer;
+import com.love.util.WatcherState;
 
 import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * 服务管理器 - 统一管理服务监控逻辑（供桌面端和Web端共享）
+ * 服务以稳定ID注册，每个服务有自己的锁：不同服务的操作完全并行，同一服务的操作按到达顺序串行。
+ * 按索引访问的方法保留用于兼容，内部先把索引转换为ID。
  */
 public class ServiceManager {
     private static ServiceManager instance;
     
-    private List<ServiceConfig> configs;
-    private Map<Integer, SimpleProcessWatcher> watchers;
-    private Map<Integer, ScheduledExecutorService> statusUpdateServices;
-    private AppSettings appSettings;
+    // 服务注册表：ID -> 服务；order 保存显示顺序（索引即在 order 中的位置）
+    private final Map<String, ServiceEntry> services = new ConcurrentHashMap<>();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+    private final Object registryLock = new Object(); // 增删服务、保存配置文件时持有
+    private volatile AppSettings appSettings;
+    private final StartQueue startQueue; // 拉起进程前的准入排队
+    
+    private static final int MAX_LOG_INDEXES = 32; // 最多缓存的日志行索引数
+    // 日志行索引缓存（按文件路径，LRU淘汰）
+    private final Map<String, LogLineIndex> logIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LogLineIndex> eldest) {
+            return size() > MAX_LOG_INDEXES;
+        }
+    };
+    
+    // 状态快照：只在状态或配置变化时由写方整体替换，读取方直接拿引用，不加锁也不分配对象
+    private final long snapshotEpoch = System.currentTimeMillis();
+    private volatile StatusBoard statusBoard = new StatusBoard(0, new ArrayList<>(), new long[0]);
+    private final Object statusPublishLock = new Object();
+    private final Object processStateLock = new Object(); // 写进程记录文件时持有
+    private final ProcessStateStore processStateStore = new ProcessStateStore(ProcessStateStore.SERVICE_MANAGER_FILE);
+    private final DesiredStateStore desiredStateStore = new DesiredStateStore(DesiredStateStore.SERVICE_MANAGER_FILE);
+    
+    private static final long STATUS_POLL_INTERVAL_MS = 1000; // 状态校对/资源采样间隔
+    private static final int MAX_TRANSITION_HISTORY = 50;     // 每个服务保留的状态转换记录数
+    private static final int MAX_EVENT_HISTORY = 100;         // 每个服务保留的事件记录数
+    // 服务事件：状态变化随快照发布，资源采样只在有订阅者时进行
+    private final ServiceEventBus eventBus = new ServiceEventBus();
+    private final ProcessMetrics processMetrics = new ProcessMetrics();
+    private final ScheduledExecutorService statusPoller;
+    
+    // 期望状态调和：定期比较期望状态与实际状态，限速地执行启停使两者一致
+    private static final long RECONCILE_INTERVAL_MS = 2000;
+    private static final int RECONCILE_BURST = 3;                  // 令牌桶容量（一轮最多的动作数）
+    private static final long RECONCILE_TOKEN_INTERVAL_MS = 2000;  // 每补充一个令牌的间隔
+    private static final long RECONCILE_RETRY_BASE_MS = 5000;      // 动作失败后的重试间隔（逐次翻倍）
+    private static final long RECONCILE_RETRY_MAX_MS = 300_000;
+    private static final int MAX_REPLICAS = 64;                    // 每个服务最多的实例数
+    private static final int MAX_SIZING_WEIGHT = 100;              // 资源分配权重上限
+    private static final long DRAIN_TIMEOUT_MS = 10000;            // 停止实例前等待负载均衡上的连接结束的最长时间
+    private static final long BALANCER_RETRY_MS = 10000;           // 对外端口监听失败后调和线程重试的间隔
+    private static final long ROLLOUT_READY_TIMEOUT_MS = 120_000;  // 滚动重启时等待新实例就绪的最长时间
+    private static final long STOP_LOCK_POLL_MS = 200;             // 停止/删除等锁期间重新取消排队的间隔
+    private static final long PORT_RELEASE_TIMEOUT_MS = 2000;      // 重启时等待旧进程的端口释放的最长时间
+    private static final String ALT_LOG_DIR = "alt";               // 并存替换实例交替使用的日志子目录
+    private static final long LEAK_CHECK_INTERVAL_MS = 5000;       // 内存泄漏防护规则的检查间隔
+    private final ScheduledExecutorService leakChecker;            // jstat 采样较慢，不占用状态线程
+    private static final long GC_LOG_POLL_INTERVAL_MS = 2000;      // 读取新增GC日志的间隔
+    private final ScheduledExecutorService gcLogParser;
+    private final Object desiredStateLock = new Object();          // 写期望状态文件时持有
+    private final Object reloadLock = new Object();                // 重新加载配置时持有
+    
+    // 批量导入：路径检查并行执行
+    public static final int MAX_IMPORT_ENTRIES = 10000;
+    private static final long PATH_CHECK_TIMEOUT_MS = 10000;
+    private final ExecutorService pathCheckers;
+    private ConfigWatcher configWatcher;                           // 监视配置文件的外部修改
+    private final ExecutorService reconcileWorkers;
+    private final ExecutorService replicaWorkers;                  // 多实例并行启停
+    private double reconcileTokens = RECONCILE_BURST;              // 只由调和线程访问
+    private long lastTokenRefill = System.currentTimeMillis();
+    private volatile long reconcileThrottled = 0;                  // 因限速推迟的动作次数
     
     private ServiceManager() {
-        configs = new ArrayList<>();
-        watchers = new HashMap<>();
-        statusUpdateServices = new HashMap<>();
         appSettings = SettingsManager.loadSettings();
+        startQueue = new StartQueue(this::countStarting, startLimits(appSettings));
+        startQueue.setChangeListener(this::refreshStatus);
         loadConfigs();
+        adoptSurvivors();
+        loadDesiredState();
+        for (ServiceEntry entry : services.values()) {
+            applyBalancer(entry);
+        }
+        refreshStatus();
+        // 监控线程的状态回调是主要触发源，定时校对兜底（如进程被外部杀死）
+        statusPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ServiceStatusPoller");
+            t.setDaemon(true);
+            return t;
+        });
+        statusPoller.scheduleWithFixedDelay(this::pollStatus, STATUS_POLL_INTERVAL_MS,
+            STATUS_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // 启停动作会阻塞数秒（启动确认），放到独立线程执行，调和线程只负责比较和派发
+        reconcileWorkers = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "ServiceReconcileWorker");
+            t.setDaemon(true);
+            return t;
+        });
+        replicaWorkers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ReplicaWorker");
+            t.setDaemon(true);
+            return t;
+        });
+        statusPoller.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL_MS,
+            RECONCILE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        leakChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LeakGuardChecker");
+            t.setDaemon(true);
+            return t;
+        });
+        leakChecker.scheduleWithFixedDelay(this::checkLeaks, LEAK_CHECK_INTERVAL_MS,
+            LEAK_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        gcLogParser = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "GcLogParser");
+            t.setDaemon(true);
+            return t;
+        });
+        gcLogParser.scheduleWithFixedDelay(this::pollGcLogs, GC_LOG_POLL_INTERVAL_MS,
+            GC_LOG_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        pathCheckers = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "ConfigPathChecker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            configWatcher = ConfigManager.watchExternalChanges(this::reloadConfigs);
+        } catch (Exception e) {
+            System.err.println("无法监视配置文件，修改后需手动重新加载: " + e.getMessage());
+        }
+    }
+    
+    public static synchronized ServiceManager getInstance() {
+        if (instance == null) {
+            instance = new ServiceManager();
+        }
+        return instance;
+    }
+    
+    // ==================== 服务ID ====================
+    
+    /**
+     * 索引对应的服务ID，索引无效时返回null
+     */
+    public String getServiceId(int index) {
+        try {
+            return order.get(index);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 解析路径中的服务标识：服务ID（svc-开头）或数字索引（兼容旧接口）
+     * @return 服务ID，不存在时返回null
+     */
+    public String resolveServiceId(String key) {
+        if (ConfigManager.isServiceId(key)) {
+            return services.containsKey(key) ? key : null;
+        }
+        try {
+            return getServiceId(Integer.parseInt(key));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    // ==================== 配置 ====================
+    
+    public List<ServiceConfig> getConfigs() {
+        List<ServiceConfig> list = new ArrayList<>(order.size());
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            if (entry != null) {
+                list.add(entry.config);
+            }
+        }
+        return list;
+    }
+    
+    public ServiceConfig getConfig(int index) {
+        String id = getServiceId(index);
+        return id != null ? getConfig(id) : null;
+    }
+    
+    public ServiceConfig getConfig(String id) {
+        ServiceEntry entry = services.get(id);
+        return entry != null ? entry.config : null;
+    }
+    
+    /**
+     * 添加服务，返回分配的服务ID
+     */
+    public String addConfig(ServiceConfig config) throws Exception {
+        checkReplicas(config);
+        String id;
+        synchronized (registryLock) {
+            id = config.getId();
+            if (!ConfigManager.isServiceId(id) || services.containsKey(id)) {
+                id = ConfigManager.generateId();
+                config.setId(id);
+            }
+            services.put(id, new ServiceEntry(id, config));
+            order.add(id);
+            try {
+                ConfigManager.putConfig(config);
+            } catch (Exception e) {
+                // 保存失败时撤销，内存与文件保持一致
+                order.remove(id);
+                services.remove(id);
+                throw e;
+            }
+        }
+        applyBalancer(services.get(id));
+        refreshStatus();
+        publishConfigChanged(id);
+        return id;
+    }
+    
+    public void updateConfig(int index, ServiceConfig config) throws Exception {
+        String id = getServiceId(index);
+        if (id != null) {
+            updateConfig(id, config);
+        }
+    }
+    
+    public void updateConfig(String id, ServiceConfig config) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        entry.lock.lock();
+        try {
+            ensureNotDeleted(entry);
+            checkReplicas(config);
+            config.setId(id);
+            // 先写文件再替换内存中的配置：重新加载时读到的文件总是不旧于内存
+            synchronized (registryLock) {
+                ConfigManager.putConfig(config);
+            }
+            entry.config = config;
+        } finally {
+            entry.lock.unlock();
+        }
+        applyBalancer(entry);
+        refreshStatus();
+        publishConfigChanged(id);
+    }
+    
+    public void deleteConfig(int index) throws Exception {
+        String id = getServiceId(index);
+        if (id != null) {
+            deleteConfig(id);
+        }
+    }
+    
+    public void deleteConfig(String id) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        lockForStop(entry);
+        try {
+            ensureNotDeleted(entry);
+            synchronized (registryLock) {
+                ConfigManager.removeConfig(id);
+            }
+            removeLocked(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+        refreshStatus();
+        publishConfigChanged(id);
+    }
+    
+    /**
+     * 停止并从注册表移除服务（调用方持有服务锁，配置文件已更新）
+     */
+    private void removeLocked(ServiceEntry entry) throws Exception {
+        stopLocked(entry);
+        entry.deleted = true;
+        closeBalancer(entry);
+        synchronized (registryLock) {
+            order.remove(entry.id);
+            services.remove(entry.id);
+        }
+        saveDesiredState();
+        new AppCdsArchive(entry.id).delete();
+    }
+    
+    // ==================== 批量导入 ====================
+    
+    /**
+     * 批量导入服务配置：带已有ID的条目修改该服务，其余条目新增
+     * 先并行检查所有条目的Java路径和工作目录（相同路径只检查一次），再用一次日志写入保存全部变更。
+     * @param partial false 时只要有一条无效就全部不导入；true 时导入有效的条目
+     * @param dryRun 只检查不保存
+     */
+    public ImportReport importConfigs(List<ServiceConfig> entries, boolean partial, boolean dryRun) throws Exception {
+        if (entries.size() > MAX_IMPORT_ENTRIES) {
+            throw new IllegalArgumentException("一次最多导入 " + MAX_IMPORT_ENTRIES + " 个服务");
+        }
+        Set<String> javaPaths = new HashSet<>();
+        Set<String> workDirs = new HashSet<>();
+        for (ServiceConfig config : entries) {
+            if (config != null) {
+                javaPaths.add(config.getJavaExe().trim());
+                workDirs.add(config.getWorkDir().trim());
+            }
+        }
+        Map<String, String> pathErrors = new HashMap<>();
+        pathErrors.putAll(checkPaths(javaPaths, ServiceManager::checkJavaExe));
+        Map<String, String> dirErrors = checkPaths(workDirs, ServiceManager::checkWorkDir);
+        
+        List<ImportResult> results = new ArrayList<>(entries.size());
+        List<ServiceConfig> changed = new ArrayList<>();
+        List<ServiceConfig> added = new ArrayList<>();
+        List<ServiceConfig> updated = new ArrayList<>();
+        boolean apply;
+        synchronized (registryLock) {
+            Map<String, Integer> seenIds = new HashMap<>();
+            int failed = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                ServiceConfig config = entries.get(i);
+                String error = validateImport(config, i, seenIds, pathErrors, dirErrors);
+                if (error != null) {
+                    failed++;
+                    results.add(new ImportResult(i, config != null ? config.getId() : null,
+                        config != null ? config.getName() : null, ImportResult.INVALID, error));
+                    continue;
+                }
+                ServiceEntry existing = config.getId() != null ? services.get(config.getId()) : null;
+                if (existing == null) {
+                    if (!ConfigManager.isServiceId(config.getId())) {
+                        config.setId(ConfigManager.generateId());
+                        seenIds.put(config.getId(), i);
+                    }
+                    added.add(config);
+                    changed.add(config);
+                    results.add(new ImportResult(i, config.getId(), config.getName(), ImportResult.ADDED, null));
+                } else if (ConfigDiff.compute(List.of(existing.config), List.of(config)).isEmpty()) {
+                    results.add(new ImportResult(i, config.getId(), config.getName(), ImportResult.UNCHANGED, null));
+                } else {
+                    updated.add(config);
+                    changed.add(config);
+                    results.add(new ImportResult(i, config.getId(), config.getName(), ImportResult.UPDATED, null));
+                }
+            }
+            apply = !dryRun && (partial || failed == 0);
+            if (apply) {
+                // 一条日志写入全部变更，失败时什么都不改
+                ConfigManager.putConfigs(changed);
+                for (ServiceConfig config : added) {
+                    services.put(config.getId(), new ServiceEntry(config.getId(), config));
+                    order.add(config.getId());
+                }
+            }
+        }
+        if (!apply) {
+            return new ImportReport(false, dryRun, results);
+        }
+        // 与逐个修改一样：只替换配置，运行中的服务不自动重启
+        for (ServiceConfig config : updated) {
+            ServiceEntry entry = services.get(config.getId());
+            if (entry == null) {
+                continue;
+            }
+            entry.lock.lock();
+            try {
+                if (!entry.deleted) {
+                    entry.config = config;
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        for (ServiceConfig config : changed) {
+            ServiceEntry entry = services.get(config.getId());
+            if (entry != null) {
+                applyBalancer(entry);
+            }
+        }
+        refreshStatus();
+        for (ServiceConfig config : changed) {
+            publishConfigChanged(config.getId());
+        }
+        return new ImportReport(true, false, results);
+    }
+    
+    private static String validateImport(ServiceConfig config, int index, Map<String, Integer> seenIds,
+                                         Map<String, String> pathErrors, Map<String, String> dirErrors) {
+        if (config == null) {
+            return "条目不是JSON对象";
+        }
+        if (config.getName().trim().isEmpty()) {
+            return "服务名称为空";
+        }
+        String javaError = pathErrors.get(config.getJavaExe().trim());
+        if (javaError != null) {
+            return javaError;
+        }
+        String dirError = dirErrors.get(config.getWorkDir().trim());
+        if (dirError != null) {
+            return dirError;
+        }
+        try {
+            checkReplicas(config);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (config.getId() != null && !config.getId().isEmpty()) {
+            Integer previous = seenIds.putIfAbsent(config.getId(), index);
+            if (previous != null) {
+                return "服务ID与第 " + (previous + 1) + " 条重复";
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 并行检查一组路径（网络盘上的路径可能很慢），超时的视为无效
+     * @return 路径 -> 错误信息，只包含有问题的路径
+     */
+    private Map<String, String> checkPaths(Set<String> paths, Function<String, String> check)
+            throws InterruptedException {
+        List<String> list = new ArrayList<>(paths);
+        List<Callable<String>> tasks = new ArrayList<>(list.size());
+        for (String path : list) {
+            tasks.add(() -> check.apply(path));
+        }
+        List<Future<String>> futures = pathCheckers.invokeAll(tasks, PATH_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        Map<String, String> errors = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            String error;
+            try {
+                error = futures.get(i).get();
+            } catch (CancellationException e) {
+                error = "检查路径超时: " + list.get(i);
+            } catch (ExecutionException e) {
+                error = "检查路径失败: " + e.getCause().getMessage();
+            }
+            if (error != null) {
+                errors.put(list.get(i), error);
+            }
+        }
+        return errors;
+    }
+    
+    /**
+     * Java路径可以是文件路径，也可以是PATH中的命令名（如 java）
+     */
+    private static String checkJavaExe(String path) {
+        if (path.isEmpty()) {
+            return "Java路径为空";
+        }
+        if (path.contains("/") || path.contains("\\")) {
+            File file = new File(path);
+            return file.isFile() ? null : "Java路径不存在: " + path;
+        }
+        String pathEnv = System.getenv("PATH");
+        if (pathEnv != null) {
+            for (String dir : pathEnv.split(File.pathSeparator)) {
+                if (new File(dir, path).isFile() || new File(dir, path + ".exe").isFile()) {
+                    return null;
+                }
+            }
+        }
+        return "在PATH中找不到: " + path;
+    }
+    
+    private static String checkWorkDir(String path) {
+        if (path.isEmpty()) {
+            return "工作目录为空";
+        }
+        return new File(path).isDirectory() ? null : "工作目录不存在: " + path;
+    }
+    
+    // ==================== 配置重新加载 ====================
+    
+    /**
+     * 从磁盘重新加载配置（文件被外部修改后由监视线程调用，也可手动调用），按服务逐个应用差异：
+     * 新增的注册，删除的停止并移除，启动参数变化的更新配置并重启正在运行的实例，只改名称的只更新配置。
+     * 没有变化的服务不受任何影响。
+     */
+    public ConfigDiff reloadConfigs() {
+        synchronized (reloadLock) {
+            ConfigDiff diff;
+            List<ServiceConfig> loaded;
+            // 读文件和取内存配置在同一把锁内，不会与增删改交错
+            synchronized (registryLock) {
+                loaded = ConfigManager.loadConfigs();
+                diff = ConfigDiff.compute(getConfigs(), loaded);
+            }
+            if (diff.isEmpty()) {
+                return diff;
+            }
+            
+            List<ServiceEntry> toRestart = new ArrayList<>();
+            List<ServiceEntry> toScale = new ArrayList<>();
+            for (ConfigDiff.Change change : diff.getChanges()) {
+                try {
+                    applyChange(change, toRestart, toScale);
+                } catch (Exception e) {
+                    System.err.println("应用配置变化失败 [" + change.getName() + "]: " + e.getMessage());
+                }
+            }
+            synchronized (registryLock) {
+                // 按文件中的顺序排列；期间通过接口新增的服务排在最后
+                List<String> newOrder = new ArrayList<>();
+                for (ServiceConfig config : loaded) {
+                    if (services.containsKey(config.getId())) {
+                        newOrder.add(config.getId());
+                    }
+                }
+                for (String id : order) {
+                    if (!newOrder.contains(id)) {
+                        newOrder.add(id);
+                    }
+                }
+                if (!newOrder.equals(new ArrayList<>(order))) {
+                    order.clear();
+                    order.addAll(newOrder);
+                }
+            }
+            for (ConfigDiff.Change change : diff.getChanges()) {
+                ServiceEntry entry = services.get(change.getId());
+                if (entry != null) {
+                    applyBalancer(entry);
+                }
+            }
+            refreshStatus();
+            for (ConfigDiff.Change change : diff.getChanges()) {
+                publishConfigChanged(change.getId());
+            }
+            // 重启会阻塞到启动确认完成，放到工作线程并行执行
+            for (ServiceEntry entry : toRestart) {
+                reconcileWorkers.submit(() -> restartForReload(entry));
+            }
+            for (ServiceEntry entry : toScale) {
+                reconcileWorkers.submit(() -> scaleForReload(entry));
+            }
+            System.out.println("配置已重新加载：" + diff.summary());
+            return diff;
+        }
+    }
+    
+    private void applyChange(ConfigDiff.Change change, List<ServiceEntry> toRestart, List<ServiceEntry> toScale)
+            throws Exception {
+        if (change.getType() == ConfigDiff.ChangeType.ADDED) {
+            synchronized (registryLock) {
+                if (!services.containsKey(change.getId())) {
+                    services.put(change.getId(), new ServiceEntry(change.getId(), change.getNewConfig()));
+                    order.add(change.getId());
+                }
+            }
+            return;
+        }
+        ServiceEntry entry = services.get(change.getId());
+        if (entry == null) {
+            return;
+        }
+        entry.lock.lock();
+        try {
+            if (entry.deleted) {
+                return;
+            }
+            if (change.getType() == ConfigDiff.ChangeType.REMOVED) {
+                removeLocked(entry);
+                return;
+            }
+            entry.config = change.getNewConfig();
+            if (change.getType() == ConfigDiff.ChangeType.SCALED) {
+                // 只增减实例，已有实例不动
+                if (entry.desiredRunning || !entry.activeInstances(0).isEmpty()) {
+                    toScale.add(entry);
+                }
+            } else if (change.getType() == ConfigDiff.ChangeType.RESTART_REQUIRED) {
+                // 被隔离的服务也重启一次：新的参数可能已经修复了问题
+                if (!entry.activeInstances(0).isEmpty()
+                        || (WatcherState.QUARANTINED.name().equals(observedState(entry)) && entry.desiredRunning)) {
+                    toRestart.add(entry);
+                }
+                // 之前的启动失败不再影响新配置
+                entry.nextAttemptAt = 0;
+                entry.failedAttempts = 0;
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    /**
+     * 按新的实例数启动缺少的实例、停止多出的实例，不改变期望状态
+     */
+    private void scaleForReload(ServiceEntry entry) {
+        entry.lock.lock();
+        try {
+            if (entry.deleted) {
+                return;
+            }
+            trimLocked(entry, entry.config.getReplicas());
+            if (entry.config.getReplicas() > 0) {
+                startMissingLocked(entry);
+            }
+        } catch (Exception e) {
+            entry.lastError = e.getMessage();
+            System.err.println("调整服务 " + entry.config.getName() + " 的实例数失败: " + e.getMessage());
+        } finally {
+            entry.lock.unlock();
+        }
+        refreshStatus();
+    }
+    
+    /**
+     * 用新配置重启服务，不改变期望状态
+     */
+    private void restartForReload(ServiceEntry entry) {
+        entry.lock.lock();
+        try {
+            if (entry.deleted) {
+                return;
+            }
+            System.out.println("配置已变化，重启服务: " + entry.config.getName());
+            if (entry.config.getReplicas() > 1 && !entry.activeInstances(0).isEmpty()) {
+                // 多实例服务滚动替换为新配置；中止时未替换的实例继续按旧配置运行
+                rollingRestartLocked(entry, 0, 1);
+                return;
+            }
+            stopLocked(entry);
+            startLocked(entry);
+        } catch (Exception e) {
+            entry.lastError = e.getMessage();
+            System.err.println("重启服务 " + entry.config.getName() + " 失败: " + e.getMessage());
+        } finally {
+            entry.lock.unlock();
+        }
+        refreshStatus();
+    }
+    
+    // ==================== 启停 ====================
+    
+    public void startService(int index) throws Exception {
+        String id = getServiceId(index);
+        if (id == null) {
+            throw new IllegalArgumentException("无效的服务索引: " + index);
+        }
+        startService(id);
+    }
+    
+    public void startService(String id) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        entry.lock.lock();
+        try {
+            ensureNotDeleted(entry);
+            updateDesiredLocked(entry, true);
+            startLocked(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    public void stopService(int index) {
+        String id = getServiceId(index);
+        if (id != null) {
+            stopService(id);
+        }
+    }
+    
+    public void stopService(String id) {
+        ServiceEntry entry = services.get(id);
+        if (entry == null) {
+            return;
+        }
+        lockForStop(entry);
+        try {
+            if (!entry.deleted) {
+                updateDesiredLocked(entry, false);
+            }
+            stopLocked(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    public void restartService(int index) throws Exception {
+        String id = getServiceId(index);
+        if (id == null) {
+            throw new IllegalArgumentException("无效的服务索引: " + index);
+        }
+        restartService(id);
+    }
+    
+    /**
+     * 重启服务：停止和启动在同一次加锁内完成，期间其他对该服务的操作排队等待
+     * 多实例服务逐个滚动重启（先启动替换实例，就绪后再停止旧实例），不中断服务；新实例未就绪时中止并抛出异常
+     */
+    public void restartService(String id) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        entry.lock.lock();
+        try {
+            ensureNotDeleted(entry);
+            updateDesiredLocked(entry, true);
+            restartLocked(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    private void restartLocked(ServiceEntry entry) throws Exception {
+        if (entry.config.getReplicas() > 1) {
+            RolloutReport report = rollingRestartLocked(entry, 0, 1);
+            if (!report.isSuccess()) {
+                throw new IllegalStateException(report.getMessage());
+            }
+            return;
+        }
+        List<Integer> ports = new ArrayList<>();
+        for (Replica replica : entry.activeInstances(0)) {
+            if (replica.watcher.getReadinessPort() > 0) {
+                ports.add(replica.watcher.getReadinessPort());
+            }
+        }
+        // stop() 返回时进程已退出，只需等它监听的端口可以重新绑定，不在持锁期间固定睡眠
+        stopLocked(entry);
+        for (int port : ports) {
+            if (!PortAllocator.awaitFree(port, PORT_RELEASE_TIMEOUT_MS)) {
+                System.err.println("[" + entry.config.getName() + "] 端口 " + port + " 在停止后仍被占用，继续启动");
+            }
+        }
+        startLocked(entry);
+    }
+    
+    /**
+     * 滚动重启：按批替换服务的实例，每批最多 maxUnavailable + maxSurge 个
+     * 每批中前 maxUnavailable 个实例先停止再原地启动；其余实例先以新端口启动替换实例，
+     * 就绪并接入负载均衡后再排空、停止旧实例。任一新实例启动失败或未在时限内就绪时停止该实例并中止，
+     * 已替换的实例保留，未处理的实例继续按原样运行。
+     * @param maxUnavailable 同一时间允许停止的旧实例数（不等替换实例就绪）
+     * @param maxSurge 同一时间允许多出的替换实例数
+     */
+    public RolloutReport rollingRestart(String id, int maxUnavailable, int maxSurge) throws Exception {
+        if (maxUnavailable < 0 || maxSurge < 0 || maxUnavailable + maxSurge == 0) {
+            throw new IllegalArgumentException("maxUnavailable 和 maxSurge 不能为负数，也不能同时为0");
+        }
+        ServiceEntry entry = requireEntry(id);
+        if (maxSurge > 0 && !entry.config.usesPortTemplate()) {
+            throw new IllegalArgumentException("启动参数未使用 " + ServiceConfig.PORT_PLACEHOLDER
+                + "，替换实例无法与旧实例同时监听，只能使用 maxSurge=0 原地替换");
+        }
+        entry.lock.lock();
+        try {
+            ensureNotDeleted(entry);
+            updateDesiredLocked(entry, true);
+            return rollingRestartLocked(entry, maxUnavailable, maxSurge);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    private RolloutReport rollingRestartLocked(ServiceEntry entry, int maxUnavailable, int maxSurge) {
+        long started = System.currentTimeMillis();
+        if (maxSurge > 0 && !entry.config.usesPortTemplate()) {
+            // 固定端口时替换实例会与旧实例争用同一端口，就绪检查连到的是旧进程，不能并存替换
+            System.out.println("[" + entry.config.getName() + "] 启动参数未使用 " + ServiceConfig.PORT_PLACEHOLDER
+                + "，改为逐个原地重启（停止期间该实例不可用）");
+            maxUnavailable += maxSurge;
+            maxSurge = 0;
+        }
+        int replicas = entry.config.getReplicas();
+        trimLocked(entry, replicas);
+        int batchSize = maxUnavailable + maxSurge;
+        int replaced = 0;
+        for (int from = 0; from < replicas; from += batchSize) {
+            int to = Math.min(from + batchSize, replicas);
+            List<Replica> inPlace = new ArrayList<>();  // 原地替换（旧实例先停止或本就未运行）
+            List<Replica> surged = new ArrayList<>();   // 与旧实例并存的替换实例
+            List<Replica> toStop = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Replica old = entry.instance(i);
+                if (old != null && old.watcher.isRunning() && i - from >= maxUnavailable) {
+                    continue; // 下面作为并存替换处理
+                }
+                if (old != null && old.watcher.isRunning()) {
+                    toStop.add(old);
+                }
+            }
+            stopReplicas(entry, toStop);
+            String error = null;
+            for (int i = from; i < to && error == null; i++) {
+                Replica old = entry.instance(i);
+                boolean surge = old != null && old.watcher.isRunning();
+                try {
+                    Replica replica = createReplica(entry, i);
+                    if (surge) {
+                        entry.addSurge(replica);
+                        surged.add(replica);
+                    } else {
+                        entry.setInstance(replica);
+                        inPlace.add(replica);
+                    }
+                } catch (IOException e) {
+                    error = "实例 " + i + ": " + e.getMessage();
+                }
+            }
+            refreshStatus();
+            
+            List<Replica> fresh = new ArrayList<>(inPlace);
+            fresh.addAll(surged);
+            Map<Replica, String> failures = startAndAwaitReady(entry, fresh);
+            refreshStatus(); // 新实例接入负载均衡后再停止旧实例
+            
+            // 已就绪的并存实例取代旧实例：先排空并停止旧实例，再放入实例槽位
+            List<Replica> promoted = new ArrayList<>();
+            List<Replica> retired = new ArrayList<>();
+            for (Replica replica : surged) {
+                if (!failures.containsKey(replica)) {
+                    promoted.add(replica);
+                    Replica old = entry.instance(replica.instance);
+                    if (old != null) {
+                        retired.add(old);
+                    }
+                }
+            }
+            stopReplicas(entry, retired);
+            for (Replica replica : promoted) {
+                entry.setInstance(replica);
+                entry.removeSurge(replica);
+            }
+            replaced += fresh.size() - failures.size();
+            
+            if (!failures.isEmpty() || error != null) {
+                // 中止：未就绪的新实例停止；并存实例的旧实例未受影响
+                List<Replica> failed = new ArrayList<>(failures.keySet());
+                stopReplicas(entry, failed);
+                for (Replica replica : failed) {
+                    entry.removeSurge(replica);
+                }
+                List<String> messages = new ArrayList<>();
+                for (Replica replica : fresh) {
+                    if (failures.containsKey(replica)) {
+                        messages.add("实例 " + replica.instance + ": " + failures.get(replica));
+                    }
+                }
+                if (error != null) {
+                    messages.add(error);
+                }
+                String message = "滚动重启已中止，" + String.join("；", messages);
+                entry.lastError = message;
+                System.err.println("[" + entry.config.getName() + "] " + message);
+                refreshStatus();
+                return new RolloutReport(false, message, replicas, replaced,
+                    System.currentTimeMillis() - started);
+            }
+            refreshStatus();
+        }
+        String message = "已滚动重启 " + replaced + " 个实例";
+        System.out.println("[" + entry.config.getName() + "] " + message);
+        return new RolloutReport(true, message, replicas, replaced, System.currentTimeMillis() - started);
+    }
+    
+    /**
+     * 并行启动一组替换实例并等待就绪
+     * @return 失败的实例及原因（启动失败、退出或超时未就绪）
+     */
+    private Map<Replica, String> startAndAwaitReady(ServiceEntry entry, List<Replica> replicas) {
+        List<Future<?>> futures = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            futures.add(replicaWorkers.submit(() -> {
+                startAdmitted(entry, replica);
+                awaitReady(replica.watcher, ROLLOUT_READY_TIMEOUT_MS);
+                return null;
+            }));
+        }
+        Map<Replica, String> failures = new HashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                failures.put(replicas.get(i), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.put(replicas.get(i), "等待被中断");
+            }
+        }
+        return failures;
+    }
+    
+    /**
+     * 为停止/删除获取服务锁
+     * 持锁的线程可能正在启动准入队列中排队（最长 startMaxWaitMs），等锁期间反复取消该服务的排队，
+     * 排队中的启动以失败返回并释放锁，停止操作不必等到放行后再把刚拉起的进程停掉
+     */
+    private void lockForStop(ServiceEntry entry) {
+        startQueue.cancel(entry.id);
+        try {
+            while (!entry.lock.tryLock(STOP_LOCK_POLL_MS, TimeUnit.MILLISECONDS)) {
+                startQueue.cancel(entry.id);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.lock.lock();
+        }
+    }
+    
+    /**
+     * 经启动准入队列放行后启动实例；排队期间服务被停止或删除时抛出 CancellationException
+     */
+    private void startAdmitted(ServiceEntry entry, Replica replica) throws Exception {
+        long waited = startQueue.acquire(entry.id, entry.config.getName(), replica.instance);
+        if (waited >= 1000) {
+            System.out.println("[" + entry.config.getName() + "] 排队 " + waited + " ms 后启动实例 " + replica.instance);
+        }
+        replica.watcher.start();
+    }
+    
+    /**
+     * 当前处于启动中的实例数（所有服务），供启动准入判断
+     */
+    private int countStarting() {
+        int starting = 0;
+        for (ServiceEntry entry : services.values()) {
+            for (Replica replica : entry.allReplicas()) {
+                if (replica.watcher.getState() == WatcherState.STARTING) {
+                    starting++;
+                }
+            }
+        }
+        return starting;
+    }
+    
+    private static StartQueue.Limits startLimits(AppSettings settings) {
+        return new StartQueue.Limits(settings.getStartMaxStarting(), settings.getStartMaxLoadPerCpu(),
+            settings.getStartMinAvailableMemoryMb(), settings.getStartMaxCpuPressure(),
+            settings.getStartMinIntervalMs(), settings.getStartMaxWaitMs());
+    }
+    
+    /**
+     * 启动准入队列：放行条件、主机状况、排队中的实例和等待时间
+     */
+    public StartQueue.Report getStartQueueReport() {
+        return startQueue.getReport();
+    }
+    
+    /**
+     * 启动所有未运行的服务：并行提交，由启动准入队列根据主机状况错开实际拉起
+     * @return 服务名称 -> 失败原因
+     */
+    public Map<String, String> startAll() throws InterruptedException {
+        List<String> ids = new ArrayList<>(order);
+        List<Future<?>> futures = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            futures.add(replicaWorkers.submit(() -> {
+                startService(id);
+                return null;
+            }));
+        }
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                ServiceConfig config = getConfig(ids.get(i));
+                failures.put(config != null ? config.getName() : ids.get(i), e.getCause().getMessage());
+            }
+        }
+        return failures;
+    }
+    
+    /**
+     * 等待实例就绪（就绪探测通过）
+     * @throws IOException 实例退出、被隔离或超时
+     */
+    private static void awaitReady(SimpleProcessWatcher watcher, long timeoutMs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            WatcherState state = watcher.getState();
+            if (state == WatcherState.READY) {
+                return;
+            }
+            if (state != WatcherState.STARTING) {
+                throw new IOException("新实例未就绪（" + state.getLabel() + "）: " + watcher.getLastTransition().getCause());
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IOException("新实例在 " + timeoutMs / 1000 + " 秒内未就绪");
+            }
+            Thread.sleep(200);
+        }
+    }
+    
+    /**
+     * 启动服务的全部实例（已在运行的实例不动），多余的实例先停止
+     * 被隔离或启动失败的实例也会重新启动
+     */
+    private void startLocked(ServiceEntry entry) throws Exception {
+        ensureNotDeleted(entry);
+        ServiceConfig config = entry.config;
+        if (config.getReplicas() <= 0) {
+            throw new IllegalStateException("服务 " + config.getName() + " 的实例数为0");
+        }
+        // 对外端口之前监听失败时，启动前再试一次
+        applyBalancer(entry);
+        trimLocked(entry, config.getReplicas());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < config.getReplicas(); i++) {
+            Replica replica = entry.instance(i);
+            if (replica == null || !replica.watcher.isRunning()) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            throw new IllegalStateException("服务 " + config.getName() + " 已在运行中");
+        }
+        startInstancesLocked(entry, missing);
+    }
+    
+    /**
+     * 只启动缺少的实例：从未启动或已停止的；被隔离的实例等待人工处理
+     * @return 启动的实例数
+     */
+    private int startMissingLocked(ServiceEntry entry) throws Exception {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < entry.config.getReplicas(); i++) {
+            Replica replica = entry.instance(i);
+            if (replica == null || replica.watcher.getState() == WatcherState.STOPPED) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            startInstancesLocked(entry, missing);
+        }
+        return missing.size();
+    }
+    
+    /**
+     * 为指定的实例分配端口、创建监控器并启动；多个实例并行启动，全部完成（或失败）后返回
+     */
+    private void startInstancesLocked(ServiceEntry entry, List<Integer> instances) throws Exception {
+        List<Replica> created = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (int instance : instances) {
+            try {
+                Replica replica = createReplica(entry, instance);
+                // 先登记再启动，确认期间显示"启动中"；失败后保留监控器，状态中带有失败原因
+                entry.setInstance(replica);
+                created.add(replica);
+            } catch (IOException e) {
+                errors.add("实例 " + instance + ": " + e.getMessage());
+            }
+        }
+        if (created.size() == 1 && errors.isEmpty()) {
+            // 单实例在当前线程启动，异常原样抛出
+            Replica replica = created.get(0);
+            try {
+                // start() 方法会等待并确认进程真正启动成功
+                // 如果进程在5秒内退出（如端口占用），会抛出IOException
+                startAdmitted(entry, replica);
+            } catch (Exception e) {
+                PortAllocator.release(replica.port);
+                throw e;
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(created.size());
+        for (Replica replica : created) {
+            futures.add(replicaWorkers.submit(() -> {
+                startAdmitted(entry, replica);
+                return null;
+            }));
+        }
+        for (int i = 0; i < created.size(); i++) {
+            Replica replica = created.get(i);
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                PortAllocator.release(replica.port);
+                errors.add("实例 " + replica.instance + ": " + e.getCause().getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException(String.join("；", errors));
+        }
+    }
+    
+    private Replica createReplica(ServiceEntry entry, int instance) throws IOException {
+        ServiceConfig config = entry.config;
+        int port = -1;
+        if (config.usesPortTemplate()) {
+            // 优先 basePort + 实例编号，其次沿用该实例上次的端口，否则由系统分配
+            Replica previous = entry.instance(instance);
+            int preferred = config.getBasePort() > 0 ? config.getBasePort() + instance
+                : previous != null ? previous.port : 0;
+            port = PortAllocator.allocate(preferred);
+        }
+        return newReplica(entry, instance, port);
+    }
+    
+    private Replica newReplica(ServiceEntry entry, int instance, int port) {
+        ServiceConfig config = entry.config;
+        // 自动生成日志路径；旧实例仍在运行（并存替换）时换用另一代的目录，两个进程不写同一组日志
+        File logDir = instanceLogDir(config, instance);
+        Replica current = entry.instance(instance);
+        if (current != null && current.watcher.isRunning() && current.logDir.equals(logDir)) {
+            logDir = new File(logDir, ALT_LOG_DIR);
+        }
+        logDir.mkdirs();
+        
+        File outLog = new File(logDir, "output.log");
+        File errLog = new File(logDir, "error.log");
+        
+        SimpleProcessWatcher watcher = new SimpleProcessWatcher(
+            config.getJavaExe(),
+            config.getWorkDir(),
+            config.resolveArgs(instance, port),
+            outLog,
+            errLog
+        );
+        String tag = instance > 0 ? config.getName() + "#" + instance : config.getName();
+        watcher.setLogCallback(msg -> System.out.println("[" + tag + "] " + LocalDateTime.now() + " | " + msg));
+        watcher.setReadinessTimeoutMs(appSettings.getStartReadyTimeoutMs());
+        if (config.isAppCds()) {
+            watcher.setAppCds(new AppCdsArchive(config.getId()));
+        }
+        List<String> jvmOptions = new ArrayList<>();
+        if (config.getSizingWeight() > 0) {
+            // 按当前所有服务的权重计算，服务增减或权重变化后在下次启动时生效
+            JvmSizing.Allocation allocation = JvmSizing.planFor(getConfigs(), config.getId());
+            if (allocation != null) {
+                jvmOptions.addAll(allocation.getInjected());
+            }
+        }
+        if (config.isGcLog()) {
+            jvmOptions.addAll(GcLogAnalyzer.jvmOptions(logDir));
+        }
+        watcher.setJvmOptions(jvmOptions);
+        watcher.addTransitionListener(transition -> {
+            entry.recordTransition(transition);
+            saveProcessState();
+            refreshStatus();
+        });
+        return new Replica(instance, watcher, port, logDir);
+    }
+    
+    /**
+     * 实例的日志目录：实例0为 logBasePath/服务名称（与单实例时相同），其余为 logBasePath/服务名称/实例编号
+     * 并存替换的新实例使用其下的 ALT_LOG_DIR 子目录，再下一次替换时换回来，两代交替
+     */
+    private File instanceLogDir(ServiceConfig config, int instance) {
+        File serviceDir = new File(appSettings.getLogBasePath(), config.getName());
+        return instance == 0 ? serviceDir : new File(serviceDir, String.valueOf(instance));
+    }
+    
+    /**
+     * 停止服务的全部实例
+     */
+    private void stopLocked(ServiceEntry entry) {
+        // 停止后保留监控器，状态为"已停止"并带有停止原因
+        stopReplicas(entry, entry.activeInstances(0));
+        refreshStatus();
+    }
+    
+    /**
+     * 停止并移除编号不小于 count 的实例（缩容）
+     */
+    private void trimLocked(ServiceEntry entry, int count) {
+        if (entry.instances.size() <= count) {
+            return;
+        }
+        stopReplicas(entry, entry.activeInstances(count));
+        entry.trimInstances(count);
+        refreshStatus();
+    }
+    
+    /**
+     * 停止一组实例（多个时并行）并释放端口
+     */
+    private void stopReplicas(ServiceEntry entry, List<Replica> replicas) {
+        if (replicas.size() == 1) {
+            stopReplica(entry, replicas.get(0));
+        } else if (!replicas.isEmpty()) {
+            List<Future<?>> futures = new ArrayList<>(replicas.size());
+            for (Replica replica : replicas) {
+                futures.add(replicaWorkers.submit(() -> stopReplica(entry, replica)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("停止实例失败: " + e.getCause().getMessage());
+                }
+            }
+        }
+        for (Replica replica : replicas) {
+            PortAllocator.release(replica.port);
+        }
+    }
+    
+    /**
+     * 停止一个实例；服务启用了负载均衡时先排空该实例上的连接
+     */
+    private void stopReplica(ServiceEntry entry, Replica replica) {
+        TcpBalancer balancer = entry.balancer;
+        if (balancer != null && replica.watcher.getState() == WatcherState.READY) {
+            try {
+                int remaining = balancer.drain(replica.port, DRAIN_TIMEOUT_MS);
+                if (remaining > 0) {
+                    System.out.println("[" + entry.config.getName() + "] 实例 " + replica.instance
+                        + " 排空超时，仍有 " + remaining + " 个连接");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        replica.watcher.stop();
+        if (balancer != null) {
+            balancer.removeBackend(replica.port);
+        }
+    }
+    
+    private ServiceEntry requireEntry(String id) {
+        ServiceEntry entry = id != null ? services.get(id) : null;
+        if (entry == null) {
+            throw new IllegalArgumentException("服务不存在: " + id);
+        }
+        return entry;
+    }
+    
+    private void ensureNotDeleted(ServiceEntry entry) {
+        // 等锁期间服务可能已被删除
+        if (entry.deleted) {
+            throw new IllegalStateException("服务已被删除: " + entry.config.getName());
+        }
+    }
+    
+    // ==================== 负载均衡 ====================
+    
+    /**
+     * 负载均衡的运行统计，服务未启用负载均衡时返回null
+     * @throws IllegalStateException 启用了但无法监听对外端口
+     */
+    public TcpBalancer.Stats getBalancerStats(String id) {
+        ServiceEntry entry = requireEntry(id);
+        TcpBalancer balancer = entry.balancer;
+        if (balancer != null) {
+            return balancer.getStats();
+        }
+        if (entry.config.getPublicPort() > 0 && entry.balancerError != null) {
+            throw new IllegalStateException(entry.balancerError);
+        }
+        return null;
+    }
+    
+    /**
+     * 按权重分配的内存和CPU，以及各服务启动时注入的JVM选项
+     */
+    public JvmSizing.Plan getSizingPlan() {
+        return JvmSizing.plan(getConfigs());
+    }
+    
+    /**
+     * AppCDS 归档和启动耗时统计；未启用时返回null
+     */
+    public AppCdsArchive.Stats getAppCdsStats(String id) {
+        ServiceEntry entry = requireEntry(id);
+        return entry.config.isAppCds() ? new AppCdsArchive(id).getStats() : null;
+    }
+    
+    /**
+     * 使负载均衡与配置一致：按对外端口创建/关闭（端口变化时换端口），然后同步后端
+     * 在配置变化、启动和调和时调用；刷新状态只同步后端，不在发布快照的锁内监听或关闭端口
+     */
+    private void applyBalancer(ServiceEntry entry) {
+        synchronized (entry.balancerLock) {
+            int publicPort = entry.deleted ? 0 : entry.config.getPublicPort();
+            TcpBalancer balancer = entry.balancer;
+            if (balancer != null && balancer.getPort() != publicPort) {
+                closeBalancer(entry);
+                balancer = null;
+            }
+            if (publicPort <= 0) {
+                entry.balancerError = null;
+                return;
+            }
+            if (balancer == null) {
+                try {
+                    balancer = new TcpBalancer(entry.config.getName(), publicPort);
+                } catch (IOException e) {
+                    // 端口被占用等：由调和线程按间隔重试，只在原因变化时输出
+                    if (!e.getMessage().equals(entry.balancerError)) {
+                        System.err.println(e.getMessage());
+                    }
+                    entry.balancerError = e.getMessage();
+                    entry.balancerRetryAt = System.currentTimeMillis() + BALANCER_RETRY_MS;
+                    return;
+                }
+                // 对外端口不再分配给实例
+                PortAllocator.reserve(publicPort);
+                entry.balancer = balancer;
+                entry.balancerError = null;
+                System.out.println("[" + entry.config.getName() + "] 负载均衡已监听端口 " + publicPort);
+            }
+            balancer.setDemandListener(entry.config.getIdleTimeout() > 0 ? () -> demandStart(entry) : null);
+        }
+        updateBalancerBackends(entry);
+    }
+    
+    /**
+     * 已就绪的实例为健康后端；负载均衡未创建时什么都不做（每次刷新状态时调用）
+     */
+    private void updateBalancerBackends(ServiceEntry entry) {
+        TcpBalancer balancer = entry.balancer;
+        if (balancer == null) {
+            return;
+        }
+        List<TcpBalancer.Target> targets = new ArrayList<>();
+        for (Replica replica : entry.allReplicas()) {
+            if (replica.port > 0) {
+                targets.add(new TcpBalancer.Target(replica.instance, replica.port,
+                    replica.watcher.getState() == WatcherState.READY));
+            }
+        }
+        balancer.updateBackends(targets);
+    }
+    
+    private void closeBalancer(ServiceEntry entry) {
+        synchronized (entry.balancerLock) {
+            TcpBalancer balancer = entry.balancer;
+            if (balancer == null) {
+                return;
+            }
+            entry.balancer = null;
+            try {
+                balancer.close();
+            } catch (IOException e) {
+                System.err.println("关闭负载均衡失败: " + e.getMessage());
+            }
+            PortAllocator.release(balancer.getPort());
+        }
+    }
+    
+    // ==================== 按需启动 ====================
+    
+    /**
+     * 按需启动服务的统计：冷启动次数和耗时、空闲停止次数和回收的内存
+     */
+    public OnDemandReport getOnDemandReport() {
+        List<OnDemandStatus> list = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            if (entry == null || entry.config.getIdleTimeout() <= 0) {
+                continue;
+            }
+            boolean running = !entry.activeInstances(0).isEmpty();
+            long idleMs = running ? now - idleSince(entry) : -1;
+            list.add(new OnDemandStatus(id, entry.config.getName(), entry.config.getIdleTimeout(), running,
+                idleMs, entry.coldStarts, entry.lastColdStartMs,
+                entry.coldStarts > 0 ? entry.totalColdStartMs / entry.coldStarts : -1,
+                entry.idleStops, entry.lastReclaimedBytes, entry.totalReclaimedBytes));
+        }
+        return new OnDemandReport(list);
+    }
+    
+    /**
+     * 负载均衡收到连接但没有可用实例（在选择器线程上调用，不能阻塞）：在后台启动服务
+     * 冷启动耗时从收到连接算到第一个实例就绪
+     */
+    private void demandStart(ServiceEntry entry) {
+        if (!entry.demandStarting.compareAndSet(false, true)) {
+            return;
+        }
+        long requestedAt = System.currentTimeMillis();
+        replicaWorkers.execute(() -> {
+            try {
+                entry.lock.lock();
+                try {
+                    if (entry.deleted || entry.config.getIdleTimeout() <= 0) {
+                        return;
+                    }
+                    if (entry.activeInstances(0).isEmpty()) {
+                        System.out.println("[" + entry.config.getName() + "] 收到连接，按需启动");
+                        updateDesiredLocked(entry, true);
+                        startLocked(entry);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+                if (awaitAnyReady(entry, ROLLOUT_READY_TIMEOUT_MS)) {
+                    long elapsed = System.currentTimeMillis() - requestedAt;
+                    entry.coldStarts++;
+                    entry.lastColdStartMs = elapsed;
+                    entry.totalColdStartMs += elapsed;
+                    System.out.println("[" + entry.config.getName() + "] 冷启动完成，耗时 " + elapsed + " ms");
+                } else {
+                    throw new IOException("实例未在 " + ROLLOUT_READY_TIMEOUT_MS / 1000 + " 秒内就绪");
+                }
+            } catch (Exception e) {
+                entry.lastError = e.getMessage();
+                System.err.println("[" + entry.config.getName() + "] 按需启动失败: " + e.getMessage());
+                TcpBalancer balancer = entry.balancer;
+                if (balancer != null) {
+                    balancer.rejectPending();
+                }
+            } finally {
+                entry.demandStarting.set(false);
+                refreshStatus();
+            }
+        });
+    }
+    
+    private static boolean awaitAnyReady(ServiceEntry entry, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            List<Replica> active = entry.activeInstances(0);
+            if (active.isEmpty()) {
+                return false;
+            }
+            for (Replica replica : active) {
+                if (replica.watcher.getState() == WatcherState.READY) {
+                    return true;
+                }
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+    
+    /**
+     * 最近一次活动的时间：负载均衡接受或关闭连接、实例状态变化（刚启动的服务从就绪时算起）
+     */
+    private static long idleSince(ServiceEntry entry) {
+        TcpBalancer balancer = entry.balancer;
+        long since = balancer != null ? balancer.getLastActivity() : 0;
+        for (Replica replica : entry.activeInstances(0)) {
+            since = Math.max(since, replica.watcher.getLastTransition().getTime());
+        }
+        return since;
+    }
+    
+    /**
+     * 按需启动的服务是否已空闲超时：正在运行、没有连接（包括排队中的）且持续 idleTimeout 秒
+     */
+    private static boolean idleExpired(ServiceEntry entry, long now) {
+        TcpBalancer balancer = entry.balancer;
+        return entry.config.getIdleTimeout() > 0 && balancer != null && !entry.demandStarting.get()
+            && balancer.getActiveConnections() == 0 && balancer.getPendingConnections() == 0
+            && !entry.activeInstances(0).isEmpty()
+            && now - idleSince(entry) >= entry.config.getIdleTimeout() * 1000L;
+    }
+    
+    /**
+     * 停止空闲的按需启动服务（期望状态改为停止），记录回收的内存（各实例停止前的RSS之和）
+     */
+    private void idleStop(ServiceEntry entry) {
+        entry.lock.lock();
+        try {
+            if (entry.deleted || !idleExpired(entry, System.currentTimeMillis())) {
+                return;
+            }
+            long rss = 0;
+            for (Replica replica : entry.activeInstances(0)) {
+                if (replica.watcher.isProcessAlive()) {
+                    rss += Math.max(0, ProcessMetrics.readRss(replica.watcher.getProcessId()));
+                }
+            }
+            System.out.println("[" + entry.config.getName() + "] 空闲 " + entry.config.getIdleTimeout()
+                + " 秒，自动停止，回收内存 " + rss / (1024 * 1024) + " MB");
+            updateDesiredLocked(entry, false);
+            stopLocked(entry);
+            entry.idleStops++;
+            entry.lastReclaimedBytes = rss;
+            entry.totalReclaimedBytes += rss;
+        } finally {
+            entry.lock.unlock();
+            entry.reconciling.set(false);
+        }
+    }
+    
+    // ==================== 内存泄漏防护 ====================
+    
+    /**
+     * 配置了内存泄漏防护规则的服务：规则、当前采样情况和触发记录
+     */
+    public List<LeakGuardStatus> getLeakGuardReport() {
+        long now = System.currentTimeMillis();
+        LocalTime time = LocalTime.now();
+        List<LeakGuardStatus> list = new ArrayList<>();
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            if (entry == null || !entry.config.hasLeakRules()) {
+                continue;
+            }
+            ServiceConfig config = entry.config;
+            list.add(new LeakGuardStatus(id, config.getName(), config.getRssLimitMb(), config.getRssLimitMinutes(),
+                config.getHeapGrowthPercent(), config.getRestartBlackout(),
+                LeakGuard.activeBlackout(config.getRestartBlackout(), time), entry.leakDeferredBy,
+                entry.leakGuard.getSnapshot(now), entry.leakRestarts, entry.lastLeakRestartAt, entry.lastLeakReason));
+        }
+        return list;
+    }
+    
+    /**
+     * 定时任务：采样配置了内存泄漏防护规则的服务的就绪实例，满足规则时平滑重启；
+     * 处于禁止重启时段时推迟（记录一次事件），时段结束后规则仍满足再重启
+     */
+    private void checkLeaks() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry == null || entry.deleted) {
+                    continue;
+                }
+                ServiceConfig config = entry.config;
+                if (!config.hasLeakRules() || !entry.desiredRunning) {
+                    entry.leakGuard.reset();
+                    entry.leakDeferredBy = null;
+                    continue;
+                }
+                if (entry.reconciling.get()) {
+                    continue; // 正在启停，采样不代表稳定运行的进程
+                }
+                Map<Integer, Long> pids = new LinkedHashMap<>();
+                for (Replica replica : entry.activeInstances(0)) {
+                    if (replica.watcher.getState() == WatcherState.READY && replica.watcher.isProcessAlive()) {
+                        pids.put(replica.instance, replica.watcher.getProcessId());
+                    }
+                }
+                List<LeakGuard.Trigger> triggers = entry.leakGuard.check(config, pids, now);
+                if (triggers.isEmpty()) {
+                    entry.leakDeferredBy = null;
+                    continue;
+                }
+                String blackout = LeakGuard.activeBlackout(config.getRestartBlackout(), LocalTime.now());
+                if (blackout != null) {
+                    if (entry.leakDeferredBy == null) {
+                        recordEvent(entry, ServiceEvent.TYPE_LEAK, "内存泄漏防护规则已满足，处于禁止重启时段 " + blackout + "，推迟重启: "
+                            + triggers.get(0).getReason());
+                    }
+                    entry.leakDeferredBy = blackout;
+                    continue;
+                }
+                entry.leakDeferredBy = null;
+                if (entry.reconciling.compareAndSet(false, true)) {
+                    reconcileWorkers.execute(() -> leakRestart(entry, triggers));
+                }
+            }
+        } catch (RuntimeException e) {
+            // 定时任务不能因异常中断
+            System.err.println("内存泄漏防护检查失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 为满足规则的实例生成堆直方图（保存在实例日志目录），然后平滑重启服务（多实例时滚动重启）
+     */
+    private void leakRestart(ServiceEntry entry, List<LeakGuard.Trigger> triggers) {
+        entry.lock.lock();
+        try {
+            if (entry.deleted || !entry.desiredRunning) {
+                return;
+            }
+            List<String> reasons = new ArrayList<>();
+            for (LeakGuard.Trigger trigger : triggers) {
+                Replica replica = entry.instance(trigger.getInstance());
+                if (replica == null || replica.watcher.getProcessId() != trigger.getPid()) {
+                    continue; // 等锁期间实例已被替换
+                }
+                String histogram;
+                try {
+                    histogram = "，堆直方图: " + LeakGuard.heapHistogram(entry.config.getJavaExe(), trigger.getPid(),
+                        replica.logDir).getPath();
+                } catch (IOException e) {
+                    histogram = "，未能生成堆直方图: " + e.getMessage();
+                }
+                reasons.add(trigger.getReason() + histogram);
+            }
+            if (reasons.isEmpty()) {
+                return;
+            }
+            String reason = String.join("；", reasons);
+            entry.leakRestarts++;
+            entry.lastLeakRestartAt = System.currentTimeMillis();
+            entry.lastLeakReason = reason;
+            // 多实例或端口可模板化时用并存替换：新实例就绪后再停止旧实例；端口固定的单实例只能先停后启
+            boolean graceful = entry.config.getReplicas() > 1 || entry.config.usesPortTemplate();
+            recordEvent(entry, ServiceEvent.TYPE_LEAK, graceful ? "内存泄漏防护触发，平滑重启: " + reason
+                : "内存泄漏防护触发，停止后重启（单实例且启动参数未使用 " + ServiceConfig.PORT_PLACEHOLDER
+                    + "，重启期间服务不可用）: " + reason);
+            try {
+                if (graceful) {
+                    RolloutReport report = rollingRestartLocked(entry, 0, 1);
+                    if (!report.isSuccess()) {
+                        throw new IllegalStateException(report.getMessage());
+                    }
+                } else {
+                    restartLocked(entry);
+                }
+                recordEvent(entry, ServiceEvent.TYPE_LEAK, "内存泄漏防护重启完成");
+            } catch (Exception e) {
+                entry.lastError = e.getMessage();
+                recordEvent(entry, ServiceEvent.TYPE_LEAK, "内存泄漏防护重启失败: " + e.getMessage());
+            }
+        } finally {
+            entry.leakGuard.reset();
+            entry.lock.unlock();
+            entry.reconciling.set(false);
+            refreshStatus();
+        }
+    }
+    
+    /**
+     * 记录服务事件并推送给订阅者
+     */
+    private void recordEvent(ServiceEntry entry, String type, String cause) {
+        ServiceEvent event = new ServiceEvent(type, eventBus.nextSeq(), entry.id,
+            order.indexOf(entry.id), entry.config.getName());
+        event.setCause(cause);
+        entry.recordEvent(event);
+        System.out.println("[" + entry.config.getName() + "] " + cause);
+        eventBus.publish(event);
+    }
+    
+    // ==================== GC日志分析 ====================
+    
+    /**
+     * 启用了GC日志的服务的停顿统计、分配和晋升速率
+     */
+    public List<GcStatus> getGcReport() {
+        List<GcStatus> list = new ArrayList<>();
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            if (entry != null && entry.config.isGcLog()) {
+                list.add(gcStatus(entry));
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * 一个服务的GC统计，未启用GC日志时返回null
+     */
+    public GcStatus getGcStatus(String id) {
+        ServiceEntry entry = requireEntry(id);
+        return entry.config.isGcLog() ? gcStatus(entry) : null;
+    }
+    
+    private static GcStatus gcStatus(ServiceEntry entry) {
+        return new GcStatus(entry.id, entry.config.getName(), entry.config.getGcPauseWarnMs(),
+            GcLogAnalyzer.summarize(new ArrayList<>(entry.gcAnalyzers.values()), entry.config.getGcPauseWarnMs()));
+    }
+    
+    /**
+     * 定时任务：读取各实例新增的GC日志；p99 停顿越过告警阈值（或恢复）时更新服务状态并记录事件
+     */
+    private void pollGcLogs() {
+        try {
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry == null || entry.deleted) {
+                    continue;
+                }
+                ServiceConfig config = entry.config;
+                if (!config.isGcLog()) {
+                    entry.gcAnalyzers.clear();
+                    updateGcWarning(entry, null);
+                    continue;
+                }
+                for (Replica replica : entry.instances) {
+                    if (replica != null) {
+                        // 替换实例换了日志目录时改为分析新目录的日志
+                        GcLogAnalyzer analyzer = entry.gcAnalyzers.get(replica.instance);
+                        if (analyzer == null || !analyzer.getLogDir().equals(replica.logDir)) {
+                            entry.gcAnalyzers.put(replica.instance, new GcLogAnalyzer(replica.logDir));
+                        }
+                    }
+                }
+                entry.gcAnalyzers.keySet().removeIf(instance -> instance >= config.getReplicas());
+                for (GcLogAnalyzer analyzer : entry.gcAnalyzers.values()) {
+                    analyzer.poll();
+                }
+                updateGcWarning(entry, GcLogAnalyzer.summarize(new ArrayList<>(entry.gcAnalyzers.values()),
+                    config.getGcPauseWarnMs()).getWarning());
+            }
+        } catch (RuntimeException e) {
+            // 定时任务不能因异常中断
+            System.err.println("GC日志分析失败: " + e.getMessage());
+        }
+    }
+    
+    private void updateGcWarning(ServiceEntry entry, String warning) {
+        String old = entry.gcWarning;
+        if (Objects.equals(old, warning)) {
+            return;
+        }
+        entry.gcWarning = warning;
+        if (warning != null && old == null) {
+            recordEvent(entry, ServiceEvent.TYPE_GC, warning);
+        } else if (warning == null) {
+            recordEvent(entry, ServiceEvent.TYPE_GC, "GC停顿已恢复正常（" + old + "）");
+        }
+        refreshStatus();
+    }
+    
+    // ==================== 期望状态 ====================
+    
+    /**
+     * 调整实例数：保存到服务配置，运行中（或期望运行）的服务立即启动新增的实例、停止多出的实例，
+     * 其余实例不受影响
+     */
+    public void scaleService(String id, int replicas) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        entry.lock.lock();
+        try {
+            ensureNotDeleted(entry);
+            boolean running = entry.desiredRunning || !entry.activeInstances(0).isEmpty();
+            updateReplicasLocked(entry, replicas);
+            trimLocked(entry, replicas);
+            if (running && replicas > 0) {
+                startMissingLocked(entry);
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        refreshStatus();
+        publishConfigChanged(id);
+    }
+    
+    /**
+     * 检查实例数和端口的取值；多个实例同时监听同一个固定端口必然冲突，要求改用 ${port}
+     */
+    private static void checkReplicas(ServiceConfig config) {
+        if (config.getReplicas() < 0 || config.getReplicas() > MAX_REPLICAS) {
+            throw new IllegalArgumentException("实例数必须在 0 到 " + MAX_REPLICAS + " 之间");
+        }
+        if (config.getBasePort() < 0 || config.getBasePort() > 65535) {
+            throw new IllegalArgumentException("起始端口必须在 0 到 65535 之间");
+        }
+        if (config.getReplicas() > 1 && !config.usesPortTemplate() && config.getArgs() != null
+                && config.getArgs().contains("server.port=")) {
+            throw new IllegalArgumentException("多个实例不能使用固定端口，请在启动参数中用 "
+                + ServiceConfig.PORT_PLACEHOLDER + " 代替端口号");
+        }
+        if (config.getPublicPort() < 0 || config.getPublicPort() > 65535) {
+            throw new IllegalArgumentException("对外端口必须在 0 到 65535 之间");
+        }
+        if (config.getPublicPort() > 0 && !config.usesPortTemplate()) {
+            throw new IllegalArgumentException("启用负载均衡时启动参数必须使用 "
+                + ServiceConfig.PORT_PLACEHOLDER + "，负载均衡按分配的端口转发到各实例");
+        }
+        if (config.getIdleTimeout() < 0) {
+            throw new IllegalArgumentException("空闲超时不能为负数");
+        }
+        if (config.getIdleTimeout() > 0 && config.getPublicPort() <= 0) {
+            throw new IllegalArgumentException("按需启动需要设置对外端口，由监控器代为监听");
+        }
+        if (config.getSizingWeight() < 0 || config.getSizingWeight() > MAX_SIZING_WEIGHT) {
+            throw new IllegalArgumentException("资源分配权重必须在 0 到 " + MAX_SIZING_WEIGHT + " 之间");
+        }
+        if (config.getRssLimitMb() < 0 || config.getHeapGrowthPercent() < 0) {
+            throw new IllegalArgumentException("内存上限和堆增长率不能为负数");
+        }
+        if (config.getRssLimitMb() > 0 && config.getRssLimitMinutes() < 1) {
+            throw new IllegalArgumentException("内存超限的持续时间至少为 1 分钟");
+        }
+        LeakGuard.validateBlackout(config.getRestartBlackout());
+        if (config.getGcPauseWarnMs() < 0) {
+            throw new IllegalArgumentException("GC停顿告警阈值不能为负数");
+        }
+    }
+    
+    /**
+     * 修改并保存服务配置中的实例数（调用方持有服务锁）
+     */
+    private void updateReplicasLocked(ServiceEntry entry, int replicas) throws Exception {
+        ServiceConfig config = new ServiceConfig(entry.config);
+        if (config.getReplicas() == replicas) {
+            return;
+        }
+        config.setReplicas(replicas);
+        checkReplicas(config);
+        synchronized (registryLock) {
+            ConfigManager.putConfig(config);
+        }
+        entry.config = config;
+    }
+    
+    /**
+     * 设置服务的期望状态，由调和循环负责收敛（不等待启停完成）
+     * @param running 期望运行还是停止
+     * @param replicas 实例数（保存到服务配置），为null时保持不变；0 等同于期望停止
+     */
+    public void setDesiredState(String id, boolean running, Integer replicas) throws Exception {
+        ServiceEntry entry = requireEntry(id);
+        if (running) {
+            entry.lock.lock();
+        } else {
+            lockForStop(entry);
+        }
+        try {
+            ensureNotDeleted(entry);
+            if (replicas != null) {
+                updateReplicasLocked(entry, replicas);
+            }
+            boolean oldRunning = entry.desiredRunning;
+            entry.desiredRunning = running;
+            try {
+                saveDesiredState();
+            } catch (Exception e) {
+                entry.desiredRunning = oldRunning;
+                throw e;
+            }
+            // 新的期望立即可以被处理，不受之前失败的退避影响
+            entry.nextAttemptAt = 0;
+            entry.failedAttempts = 0;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+    
+    /**
+     * 所有服务的期望状态与实际状态对比
+     */
+    public ReconcileReport getReconcileReport() {
+        long now = System.currentTimeMillis();
+        List<ReconcileStatus> list = new ArrayList<>(order.size());
+        int drifting = 0;
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            if (entry == null) {
+                continue;
+            }
+            String observed = observedState(entry);
+            String drift = driftOf(entry);
+            if (drift != null) {
+                drifting++;
+            }
+            long driftSince = entry.driftSince;
+            list.add(new ReconcileStatus(id, entry.config.getName(),
+                entry.desiredRunning ? DesiredStateStore.RUNNING : DesiredStateStore.STOPPED,
+                entry.config.getReplicas(), entry.readyCount(entry.config.getReplicas()),
+                observed, drift, driftSince > 0 ? now - driftSince : 0, entry.lastConvergeMs,
+                entry.lastError, entry.nextAttemptAt > now ? entry.nextAttemptAt - now : 0));
+        }
+        return new ReconcileReport(list.size() - drifting, drifting, reconcileThrottled, list);
+    }
+    
+    /**
+     * 用户直接启停时同步更新期望状态（调用方持有服务锁）
+     */
+    private void updateDesiredLocked(ServiceEntry entry, boolean running) {
+        if (entry.desiredRunning == running) {
+            return;
+        }
+        entry.desiredRunning = running;
+        entry.nextAttemptAt = 0;
+        entry.failedAttempts = 0;
+        try {
+            saveDesiredState();
+        } catch (Exception e) {
+            System.err.println("保存期望状态失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 加载期望状态（在接管进程之后调用）
+     * 没有记录的服务（新版本首次启动）以是否接管到运行中进程作为期望，避免把正在运行的服务停掉
+     */
+    private void loadDesiredState() {
+        Map<String, DesiredStateStore.DesiredState> states = desiredStateStore.load();
+        boolean inferred = false;
+        for (String id : order) {
+            ServiceEntry entry = services.get(id);
+            DesiredStateStore.DesiredState state = states.get(id);
+            if (state != null) {
+                entry.desiredRunning = state.isRunning();
+            } else {
+                entry.desiredRunning = !entry.activeInstances(0).isEmpty();
+                inferred = true;
+            }
+        }
+        if (inferred) {
+            try {
+                saveDesiredState();
+            } catch (Exception e) {
+                System.err.println("保存期望状态失败: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void saveDesiredState() throws Exception {
+        synchronized (desiredStateLock) {
+            List<DesiredStateStore.DesiredState> states = new ArrayList<>(order.size());
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry != null) {
+                    states.add(new DesiredStateStore.DesiredState(id, entry.desiredRunning));
+                }
+            }
+            desiredStateStore.save(states);
+        }
+    }
+    
+    private String observedState(ServiceEntry entry) {
+        return computeStatus(entry, 0).getState();
+    }
+    
+    /**
+     * 期望与实际的差异描述，一致时返回null
+     */
+    private static String driftOf(ServiceEntry entry) {
+        int target = targetReplicas(entry);
+        if (target > 0) {
+            int ready = entry.readyCount(target);
+            if (ready < target) {
+                boolean quarantined = false;
+                for (int i = 0; i < target; i++) {
+                    Replica replica = entry.instance(i);
+                    quarantined |= replica != null && replica.watcher.getState() == WatcherState.QUARANTINED;
+                }
+                String current = target == 1 ? "当前" : "就绪 " + ready + "/" + target + "，";
+                return "期望运行，" + current + (quarantined ? "已隔离，需要人工处理" : "未就绪");
+            }
+        }
+        if (!entry.activeInstances(target).isEmpty()) {
+            return target > 0 ? "实例数多于期望的 " + target + " 个" : "期望停止，当前仍在运行";
+        }
+        return null;
+    }
+    
+    /**
+     * 期望运行的实例数：期望停止时为0
+     */
+    private static int targetReplicas(ServiceEntry entry) {
+        return entry.desiredRunning ? entry.config.getReplicas() : 0;
+    }
+    
+    /**
+     * 期望运行但有实例未在运行（从未启动、已停止或启动失败）；已隔离的不算，等待人工处理
+     */
+    private static boolean needsStart(ServiceEntry entry) {
+        for (int i = 0; i < targetReplicas(entry); i++) {
+            Replica replica = entry.instance(i);
+            if (replica == null || replica.watcher.getState() == WatcherState.STOPPED) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 有超出期望实例数的实例仍在运行（期望停止时为全部实例）
+     */
+    private static boolean needsStop(ServiceEntry entry) {
+        return !entry.activeInstances(targetReplicas(entry)).isEmpty();
+    }
+    
+    /**
+     * 调和一轮：记录漂移与收敛耗时，对需要动作的服务按令牌桶限速派发启停
+     * 正在启动/退避/停止中的服务由监控器自身推进，不重复干预；已隔离的服务不自动启动
+     */
+    private void reconcile() {
+        try {
+            long now = System.currentTimeMillis();
+            reconcileTokens = Math.min(RECONCILE_BURST,
+                reconcileTokens + (double) (now - lastTokenRefill) / RECONCILE_TOKEN_INTERVAL_MS);
+            lastTokenRefill = now;
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry == null || entry.deleted) {
+                    continue;
+                }
+                if (entry.balancer == null && entry.config.getPublicPort() > 0 && now >= entry.balancerRetryAt) {
+                    applyBalancer(entry);
+                }
+                if (idleExpired(entry, now) && entry.reconciling.compareAndSet(false, true)) {
+                    reconcileWorkers.execute(() -> idleStop(entry));
+                    continue;
+                }
+                if (driftOf(entry) == null) {
+                    if (entry.driftSince > 0) {
+                        entry.lastConvergeMs = now - entry.driftSince;
+                        entry.driftSince = 0;
+                        entry.lastError = null;
+                    }
+                    continue;
+                }
+                if (entry.driftSince == 0) {
+                    entry.driftSince = now;
+                }
+                if ((!needsStart(entry) && !needsStop(entry))
+                        || now < entry.nextAttemptAt || entry.reconciling.get()) {
+                    continue;
+                }
+                if (reconcileTokens < 1) {
+                    reconcileThrottled++;
+                    continue;
+                }
+                if (entry.reconciling.compareAndSet(false, true)) {
+                    reconcileTokens--;
+                    reconcileWorkers.execute(() -> reconcileEntry(entry));
+                }
+            }
+        } catch (RuntimeException e) {
+            // 定时任务不能因异常中断
+            System.err.println("期望状态调和失败: " + e.getMessage());
+        }
+    }
+    
+    private void reconcileEntry(ServiceEntry entry) {
+        entry.lock.lock();
+        try {
+            if (entry.deleted) {
+                return;
+            }
+            // 等锁期间用户可能已经操作过，重新判断
+            if (needsStop(entry)) {
+                if (entry.desiredRunning) {
+                    System.out.println("[调和] 停止服务 " + entry.config.getName() + " 多余的实例");
+                    trimLocked(entry, entry.config.getReplicas());
+                } else {
+                    System.out.println("[调和] 停止服务 " + entry.config.getName());
+                    stopLocked(entry);
+                }
+            }
+            if (needsStart(entry)) {
+                System.out.println("[调和] 启动服务 " + entry.config.getName());
+                startMissingLocked(entry);
+            }
+            entry.failedAttempts = 0;
+            entry.nextAttemptAt = 0;
+        } catch (Exception e) {
+            int attempts = ++entry.failedAttempts;
+            long delay = Math.min(RECONCILE_RETRY_MAX_MS, RECONCILE_RETRY_BASE_MS << Math.min(attempts - 1, 16));
+            entry.nextAttemptAt = System.currentTimeMillis() + delay;
+            entry.lastError = e.getMessage();
+            System.err.println("[调和] 服务 " + entry.config.getName() + " 第" + attempts + "次收敛失败，"
+                + (delay / 1000) + " 秒后重试: " + e.getMessage());
+        } finally {
+            entry.lock.unlock();
+            entry.reconciling.set(false);
+        }
+    }
+    
+    // ==================== 状态 ====================
+    
+    /**
+     * 获取服务状态（读取最近发布的快照）
+     */
+    public ServiceStatus getServiceStatus(int index) {
+        List<ServiceStatus> statuses = statusBoard.statuses;
+        return index >= 0 && index < statuses.size() ? statuses.get(index) : null;
+    }
+    
+    public ServiceStatus getServiceStatus(String id) {
+        StatusBoard board = statusBoard;
+        Integer index = board.indexById.get(id);
+        return index != null ? board.statuses.get(index) : null;
+    }
+    
+    /**
+     * 服务是否已就绪：全部实例的监控器都处于 READY（启动确认已通过，配置了端口时端口可连接）
+     */
+    public boolean isServiceReady(String id) {
+        ServiceEntry entry = services.get(id);
+        if (entry == null) {
+            return false;
+        }
+        int replicas = entry.config.getReplicas();
+        return replicas > 0 && entry.readyCount(replicas) == replicas;
+    }
+    
+    /**
+     * 获取服务最近的状态转换记录（按时间先后）
+     */
+    public List<StateTransition> getTransitions(String id) {
+        return requireEntry(id).getTransitions();
+    }
+    
+    /**
+     * 获取服务最近的事件记录（按时间先后）
+     */
+    public List<ServiceEvent> getEvents(String id) {
+        return requireEntry(id).getEvents();
+    }
+    
+    /**
+     * 获取所有服务状态（不可修改的快照列表）
+     */
+    public List<ServiceStatus> getAllServiceStatus() {
+        return statusBoard.statuses;
+    }
+    
+    /**
+     * 获取所有服务的配置和状态快照
+     * 版本号只在本次运行内有意义：监控器重启后从头计数，旧客户端的 since 可能恰好不大于新的版本号，
+     * 所以客户端同时带上它持有的 epoch，不一致时返回全量
+     * @param since 客户端已有的版本号；为null或已失效时返回全量，否则只返回之后变化的服务
+     * @param epoch 客户端的版本号所属的 epoch，为null时不检查
+     */
+    public StatusSnapshot getSnapshot(Long since, Long epoch) {
+        StatusBoard board = statusBoard;
+        if (since == null || since > board.version || (epoch != null && epoch != snapshotEpoch)) {
+            return board.full;
+        }
+        List<SnapshotEntry> result = new ArrayList<>();
+        for (int i = 0; i < board.entries.size(); i++) {
+            if (board.changedVersions[i] > since) {
+                result.add(board.entries.get(i));
+            }
+        }
+        return new StatusSnapshot(snapshotEpoch, board.version, false, board.entries.size(), result);
+    }
+    
+    // ==================== 日志 ====================
+    
+    /**
+     * 获取服务的日志目录（日志基础路径/服务名称）
+     */
+    public File getLogDir(int index) {
+        String id = getServiceId(index);
+        return id != null ? getLogDir(id) : null;
     }
     
-    public static synchronized ServiceManager getInstance() {
-        if (instance == null) {
-            instance = new ServiceManager();
+    public File getLogDir(String id) {
+        return getLogDir(id, 0);
+    }
+    
+    /**
+     * 实例的日志目录；实例正在（或曾经）运行时以其监控器实际使用的目录为准
+     */
+    public File getLogDir(String id, int instance) {
+        ServiceEntry entry = services.get(id);
+        if (entry == null || instance < 0) {
+            return null;
         }
-        return instance;
+        Replica replica = entry.instance(instance);
+        return replica != null ? replica.logDir : instanceLogDir(entry.config, instance);
     }
     
-    public List<ServiceConfig> getConfigs() {
-        return new ArrayList<>(configs);
+    /**
+     * 获取服务的日志文件
+     * @param stream stdout 或 stderr
+     * @param fileName 轮转后的文件名（如 output.log.1），为空时返回当前日志文件
+     * @return 日志文件；参数无效或文件不存在时返回null
+     */
+    public File getLogFile(String id, String stream, String fileName) {
+        return getLogFile(id, 0, stream, fileName);
     }
     
-    public ServiceConfig getConfig(int index) {
-        if (index >= 0 && index < configs.size()) {
-            return configs.get(index);
+    public File getLogFile(String id, int instance, String stream, String fileName) {
+        File logDir = getLogDir(id, instance);
+        if (logDir == null) {
+            return null;
         }
-        return null;
+        String baseName;
+        if ("stdout".equals(stream)) {
+            baseName = "output.log";
+        } else if ("stderr".equals(stream)) {
+            baseName = "error.log";
+        } else {
+            return null;
+        }
+        String name = baseName;
+        if (fileName != null && !fileName.isEmpty()) {
+            // 只允许访问同一日志的轮转文件，防止路径穿越
+            if (!fileName.startsWith(baseName) || fileName.contains("/") || fileName.contains("\\")
+                    || fileName.contains("..")) {
+                return null;
+            }
+            name = fileName;
+        }
+        File file = new File(logDir, name);
+        return file.isFile() ? file : null;
     }
     
-    public void addConfig(ServiceConfig config) throws Exception {
-        configs.add(config);
-        saveConfigs();
+    /**
+     * 获取日志文件的行索引（复用已建立的索引，只增量扫描新增内容）
+     */
+    public LogLineIndex getLogIndex(File logFile) {
+        synchronized (logIndexes) {
+            return logIndexes.computeIfAbsent(logFile.getAbsolutePath(), path -> new LogLineIndex(logFile));
+        }
     }
     
-    public void updateConfig(int index, ServiceConfig config) throws Exception {
-        if (index >= 0 && index < configs.size()) {
-            configs.set(index, config);
-            saveConfigs();
+    /**
+     * 订阅服务事件（状态变化、PID变化、资源采样、配置变化）
+     */
+    public void subscribeEvents(Consumer<ServiceEvent> subscriber) {
+        eventBus.subscribe(subscriber);
+    }
+    
+    public void unsubscribeEvents(Consumer<ServiceEvent> subscriber) {
+        eventBus.unsubscribe(subscriber);
+    }
+    
+    public AppSettings getAppSettings() {
+        return appSettings;
+    }
+    
+    public void updateAppSettings(AppSettings settings) throws Exception {
+        if (settings.getStartMaxStarting() < 0 || settings.getStartMaxLoadPerCpu() < 0
+                || settings.getStartMinAvailableMemoryMb() < 0 || settings.getStartMaxCpuPressure() < 0
+                || settings.getStartMinIntervalMs() < 0 || settings.getStartMaxWaitMs() < 0
+                || settings.getStartReadyTimeoutMs() < 0) {
+            throw new IllegalArgumentException("启动准入条件不能为负数");
+        }
+        this.appSettings = settings;
+        startQueue.setLimits(startLimits(settings));
+        for (ServiceEntry entry : services.values()) {
+            for (Replica replica : entry.allReplicas()) {
+                replica.watcher.setReadinessTimeoutMs(settings.getStartReadyTimeoutMs());
+            }
         }
+        SettingsManager.saveSettings(settings);
     }
     
-    public void deleteConfig(int index) throws Exception {
-        if (index >= 0 && index < configs.size()) {
-            stopService(index);
-            configs.remove(index);
-            saveConfigs();
+    private void loadConfigs() {
+        List<ServiceConfig> loaded = ConfigManager.loadConfigs();
+        for (ServiceConfig config : loaded) {
+            services.put(config.getId(), new ServiceEntry(config.getId(), config));
+            order.add(config.getId());
         }
     }
     
-    public void startService(int index) throws Exception {
-        if (index < 0 || index >= configs.size()) {
-            throw new IllegalArgumentException("无效的服务索引: " + index);
+    /**
+     * 接管上次运行留下的服务进程（监控器升级/崩溃重启后），不重新拉起
+     * 进程已退出、启动时间不符（PID被复用）或服务已删除的记录直接丢弃
+     */
+    private void adoptSurvivors() {
+        for (ProcessStateStore.ProcessRecord record : processStateStore.load()) {
+            ServiceEntry entry = services.get(record.getServiceId());
+            if (entry == null || record.getInstance() < 0 || record.getInstance() >= MAX_REPLICAS) {
+                continue;
+            }
+            PortAllocator.reserve(record.getPort());
+            Replica replica = newReplica(entry, record.getInstance(), record.getPort());
+            if (replica.watcher.adopt(record.getPid(), record.getStartTime())) {
+                Replica existing = entry.instance(record.getInstance());
+                if (existing != null) {
+                    // 滚动重启中途退出留下的同编号新旧两个进程：保留先记录的，停止另一个
+                    System.out.println("服务 " + entry.config.getName() + " 实例 " + record.getInstance()
+                        + " 有多余的进程，停止 PID = " + record.getPid());
+                    replica.watcher.stop();
+                    PortAllocator.release(record.getPort());
+                    continue;
+                }
+                entry.setInstance(replica);
+                System.out.println("已接管服务 " + entry.config.getName() + " 实例 " + record.getInstance()
+                    + "，PID = " + record.getPid());
+            } else {
+                PortAllocator.release(record.getPort());
+            }
+        }
+        saveProcessState();
+    }
+    
+    /**
+     * 把所有运行中进程的PID和启动时间写入进程记录文件（内容未变化时不写）
+     */
+    private void saveProcessState() {
+        // 收集和写入在同一把锁内完成，避免较旧的记录覆盖较新的
+        synchronized (processStateLock) {
+            List<ProcessStateStore.ProcessRecord> records = new ArrayList<>();
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry == null) {
+                    continue;
+                }
+                for (Replica replica : entry.allReplicas()) {
+                    SimpleProcessWatcher watcher = replica.watcher;
+                    if (watcher.isRunning() && watcher.isProcessAlive()) {
+                        records.add(new ProcessStateStore.ProcessRecord(id, watcher.getProcessId(),
+                            watcher.getProcessStartTime(), replica.instance, replica.port));
+                    }
+                }
+            }
+            try {
+                processStateStore.save(records);
+            } catch (Exception e) {
+                System.err.println("保存进程记录失败: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void publishConfigChanged(String id) {
+        if (eventBus.hasSubscribers()) {
+            ServiceConfig config = getConfig(id);
+            eventBus.publish(new ServiceEvent(ServiceEvent.TYPE_CONFIG, eventBus.nextSeq(), id,
+                order.indexOf(id), config != null ? config.getName() : null));
+        }
+    }
+    
+    /**
+     * 重新计算所有服务状态，有变化时发布新的不可变快照，并为变化的服务发布STATE/PID事件
+     * 写方之间互斥；读取方不受影响
+     */
+    private void refreshStatus() {
+        synchronized (statusPublishLock) {
+            StatusBoard old = statusBoard;
+            List<SnapshotEntry> entries = new ArrayList<>(order.size());
+            for (String id : order) {
+                ServiceEntry entry = services.get(id);
+                if (entry != null) {
+                    updateBalancerBackends(entry);
+                    entries.add(new SnapshotEntry(entry.config, computeStatus(entry, entries.size())));
+                }
+            }
+            
+            // 按服务ID与上次快照比较，有变化则推进版本
+            long version = old.version + 1;
+            long[] changedVersions = new long[entries.size()];
+            boolean changed = entries.size() != old.entries.size();
+            List<ServiceStatus> changedStatuses = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                SnapshotEntry entry = entries.get(i);
+                Integer lastIndex = old.indexById.get(entry.status.getId());
+                SnapshotEntry last = lastIndex != null ? old.entries.get(lastIndex) : null;
+                if (last != null && last.signature.equals(entry.signature)) {
+                    changedVersions[i] = old.changedVersions[lastIndex];
+                    // 未变化的服务沿用旧对象
+                    entries.set(i, last);
+                } else {
+                    changedVersions[i] = version;
+                    changed = true;
+                    if (last != null) {
+                        changedStatuses.add(entry.status);
+                        changedStatuses.add(last.status);
+                    }
+                }
+            }
+            if (!changed) {
+                return;
+            }
+            statusBoard = new StatusBoard(version, entries, changedVersions);
+            
+            for (int k = 0; k < changedStatuses.size(); k += 2) {
+                ServiceStatus status = changedStatuses.get(k);
+                ServiceStatus last = changedStatuses.get(k + 1);
+                if (!last.getState().equals(status.getState()) || last.getSince() != status.getSince()) {
+                    publishStatusEvent(ServiceEvent.TYPE_STATE, status);
+                } else if (last.getPid() != status.getPid()) {
+                    publishStatusEvent(ServiceEvent.TYPE_PID, status);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 服务状态：单实例时即该实例的状态；多实例时汇总——全部就绪为 READY，
+     * 否则依次取 启动中、等待重启、（部分就绪时）READY、已隔离、停止中、已停止
+     */
+    private ServiceStatus computeStatus(ServiceEntry entry, int index) {
+        String name = entry.config.getName();
+        int replicas = entry.config.getReplicas();
+        List<InstanceStatus> instances = new ArrayList<>();
+        for (Replica replica : entry.allReplicas()) {
+            SimpleProcessWatcher watcher = replica.watcher;
+            StateTransition last = watcher.getLastTransition();
+            long pid = watcher.isProcessAlive() ? watcher.getProcessId() : -1;
+            int position = startQueue.positionOf(entry.id, replica.instance);
+            if (position > 0 && last.getTo() == WatcherState.STOPPED) {
+                // 等待启动准入：状态仍为已停止，显示排队位置和开始排队的时间
+                instances.add(new InstanceStatus(replica.instance, "排队中", last.getTo().name(),
+                    "等待启动，排队第 " + position + " 位", startQueue.queuedSince(entry.id, replica.instance),
+                    pid, replica.port, position));
+                continue;
+            }
+            instances.add(new InstanceStatus(replica.instance, last.getTo().getLabel(), last.getTo().name(),
+                last.getCause(), last.getTime(), pid, replica.port, 0));
+        }
+        if (instances.isEmpty()) {
+            return new ServiceStatus(entry.id, name, index, "未启动", ServiceStatus.NOT_STARTED, null, 0, -1,
+                replicas, 0, instances, entry.gcWarning);
+        }
+        int ready = 0;
+        InstanceStatus latest = instances.get(0);
+        long pid = -1;
+        for (InstanceStatus instance : instances) {
+            if (WatcherState.READY.name().equals(instance.getState())) {
+                ready++;
+            }
+            if (instance.getSince() > latest.getSince()) {
+                latest = instance;
+            }
+            if (pid <= 0) {
+                pid = instance.getPid();
+            }
+        }
+        if (instances.size() == 1) {
+            InstanceStatus only = instances.get(0);
+            return new ServiceStatus(entry.id, name, index, only.getStatus(), only.getState(), only.getCause(),
+                only.getSince(), pid, replicas, ready, instances, entry.gcWarning);
+        }
+        WatcherState state = WatcherState.STOPPED;
+        if (ready == instances.size() && ready >= replicas) {
+            state = WatcherState.READY;
+        } else {
+            for (WatcherState candidate : new WatcherState[] {WatcherState.STARTING, WatcherState.BACKOFF,
+                    WatcherState.READY, WatcherState.QUARANTINED, WatcherState.STOPPING}) {
+                if (hasInstanceIn(instances, candidate)) {
+                    state = candidate;
+                    break;
+                }
+            }
+        }
+        String cause = "就绪 " + ready + "/" + replicas + "；实例 " + latest.getInstance() + ": " + latest.getCause();
+        return new ServiceStatus(entry.id, name, index, state.getLabel(), state.name(), cause, latest.getSince(),
+            pid, replicas, ready, instances, entry.gcWarning);
+    }
+    
+    private static boolean hasInstanceIn(List<InstanceStatus> instances, WatcherState state) {
+        for (InstanceStatus instance : instances) {
+            if (state.name().equals(instance.getState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 定时任务：校对状态，有订阅者时采样运行中服务的资源占用并发布METRIC
+     */
+    private void pollStatus() {
+        try {
+            refreshStatus();
+            if (!eventBus.hasSubscribers()) {
+                return;
+            }
+            List<Long> sampledPids = new ArrayList<>();
+            for (ServiceStatus status : statusBoard.statuses) {
+                if (status.getPid() <= 0) {
+                    continue;
+                }
+                sampledPids.add(status.getPid());
+                double[] sample = processMetrics.sample(status.getPid());
+                ServiceEvent metric = new ServiceEvent(ServiceEvent.TYPE_METRIC, eventBus.nextSeq(),
+                    status.getId(), status.getIndex(), status.getName());
+                metric.setStatus(status.getStatus());
+                metric.setPid(status.getPid());
+                metric.setCpu(sample[0]);
+                metric.setRssBytes((long) sample[1]);
+                eventBus.publish(metric);
+            }
+            processMetrics.retain(sampledPids);
+        } catch (RuntimeException e) {
+            // 定时任务不能因异常中断
+            System.err.println("服务状态采样失败: " + e.getMessage());
+        }
+    }
+    
+    private void publishStatusEvent(String type, ServiceStatus status) {
+        if (!eventBus.hasSubscribers()) {
+            return;
         }
+        ServiceEvent event = new ServiceEvent(type, eventBus.nextSeq(), status.getId(), status.getIndex(),
+            status.getName());
+        event.setStatus(status.getStatus());
+        event.setState(status.getState());
+        event.setCause(status.getCause());
+        event.setPid(status.getPid());
+        eventBus.publish(event);
+    }
+    
+    /**
+     * 服务状态DTO（不可变，发布后可被任意线程共享）
+     * status 为显示文字；state 为 WatcherState 名称，从未启动过的服务为 NOT_STARTED；
+     * cause/since 为进入当前状态的原因和时间
+     */
+    public static class ServiceStatus {
+        public static final String NOT_STARTED = "NOT_STARTED";
         
-        ServiceConfig config = configs.get(index);
-        if (watchers.containsKey(index) && watchers.get(index).isRunning()) {
-            throw new IllegalStateException("服务 " + config.getName() + " 已在运行中");
+        private final String id;
+        private final String name;
+        private final int index;
+        private final String status;
+        private final String state;
+        private final String cause;
+        private final long since;
+        private final long pid;            // 第一个存活实例的PID
+        private final int replicas;        // 配置的实例数
+        private final int readyReplicas;
+        private final List<InstanceStatus> instances;
+        private final String warning;      // 需要关注的问题（如GC停顿过长），没有时为null
+        
+        public ServiceStatus(String id, String name, int index, String status, String state,
+                             String cause, long since, long pid, int replicas, int readyReplicas,
+                             List<InstanceStatus> instances, String warning) {
+            this.id = id;
+            this.name = name;
+            this.index = index;
+            this.status = status;
+            this.state = state;
+            this.cause = cause;
+            this.since = since;
+            this.pid = pid;
+            this.replicas = replicas;
+            this.readyReplicas = readyReplicas;
+            this.instances = Collections.unmodifiableList(instances);
+            this.warning = warning;
         }
         
-        String[] args = config.getArgsArray();
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public int getIndex() { return index; }
+        public String getStatus() { return status; }
+        public String getState() { return state; }
+        public String getCause() { return cause; }
+        public long getSince() { return since; }
+        public long getPid() { return pid; }
+        public int getReplicas() { return replicas; }
+        public int getReadyReplicas() { return readyReplicas; }
+        public List<InstanceStatus> getInstances() { return instances; }
+        public String getWarning() { return warning; }
+    }
+    
+    /**
+     * 单个实例的状态；port 为分配给 ${port} 的端口，未使用时为-1
+     * queuePosition 为在启动准入队列中的位置（从1开始），未排队为0；排队期间 since 为开始排队的时间
+     */
+    public static class InstanceStatus {
+        private final int instance;
+        private final String status;
+        private final String state;
+        private final String cause;
+        private final long since;
+        private final long pid;
+        private final int port;
+        private final int queuePosition;
         
-        // 自动生成日志路径
-        String logBasePath = appSettings.getLogBasePath();
-        File logDir = new File(logBasePath, config.getName());
-        logDir.mkdirs();
+        public InstanceStatus(int instance, String status, String state, String cause, long since, long pid, int port,
+                              int queuePosition) {
+            this.instance = instance;
+            this.status = status;
+            this.state = state;
+            this.cause = cause;
+            this.since = since;
+            this.pid = pid;
+            this.port = port;
+            this.queuePosition = queuePosition;
+        }
         
-        File outLog = new File(logDir, "output.log");
-        File errLog = new File(logDir, "error.log");
+        public int getInstance() { return instance; }
+        public String getStatus() { return status; }
+        public String getState() { return state; }
+        public String getCause() { return cause; }
+        public long getSince() { return since; }
+        public long getPid() { return pid; }
+        public int getPort() { return port; }
+        public int getQueuePosition() { return queuePosition; }
+    }
+    
+    /**
+     * 快照中的单个服务：配置和状态
+     */
+    public static class SnapshotEntry {
+        private final ServiceConfig config;
+        private final ServiceStatus status;
+        private final String signature; // 创建时的内容签名，用于判断是否变化
         
-        SimpleProcessWatcher watcher = new SimpleProcessWatcher(
-            config.getJavaExe(),
-            config.getWorkDir(),
-            args,
-            outLog,
-            errLog
-        );
-        watcher.setLogCallback(msg -> System.out.println("[" + config.getName() + "] " + msg));
+        public SnapshotEntry(ServiceConfig config, ServiceStatus status) {
+            this.config = config;
+            this.status = status;
+            StringBuilder sb = new StringBuilder();
+            sb.append(status.getIndex()).append('|').append(config.getName()).append('|').append(config.getJavaExe())
+              .append('|').append(config.getWorkDir()).append('|').append(config.getArgs())
+              .append('|').append(config.getReplicas()).append('|').append(config.getBasePort())
+              .append('|').append(config.getPublicPort()).append('|').append(config.getIdleTimeout())
+              .append('|').append(config.isAppCds()).append('|').append(config.getSizingWeight())
+              .append('|').append(config.getRssLimitMb()).append('|').append(config.getRssLimitMinutes())
+              .append('|').append(config.getHeapGrowthPercent()).append('|').append(config.getRestartBlackout())
+              .append('|').append(config.isGcLog()).append('|').append(config.getGcPauseWarnMs())
+              .append('|').append(status.getWarning())
+              .append('|').append(status.getState()).append('|').append(status.getSince()).append('|').append(status.getPid());
+            for (InstanceStatus instance : status.getInstances()) {
+                sb.append('|').append(instance.getInstance()).append(':').append(instance.getState())
+                  .append(':').append(instance.getSince()).append(':').append(instance.getPid())
+                  .append(':').append(instance.getQueuePosition());
+            }
+            this.signature = sb.toString();
+        }
+        
+        public String getId() { return status.getId(); }
+        public int getIndex() { return status.getIndex(); }
+        public ServiceConfig getConfig() { return config; }
+        public ServiceStatus getStatus() { return status; }
+    }
+    
+    /**
+     * 单个服务的期望状态与实际状态
+     * drift 为差异描述（一致时为null），driftMs 为本次漂移已持续的时间，
+     * lastConvergeMs 为上一次从出现漂移到恢复一致的耗时（从未漂移过为-1）
+     */
+    public static class ReconcileStatus {
+        private final String id;
+        private final String name;
+        private final String desired;
+        private final int replicas;
+        private final int readyReplicas;
+        private final String observed;
+        private final String drift;
+        private final long driftMs;
+        private final long lastConvergeMs;
+        private final String lastError;
+        private final long nextRetryMs;
         
-        // start() 方法现在会等待并确认进程真正启动成功
-        // 如果进程在3秒内退出（如端口占用），会抛出IOException
-        watcher.start();
+        public ReconcileStatus(String id, String name, String desired, int replicas, int readyReplicas,
+                               String observed, String drift, long driftMs, long lastConvergeMs,
+                               String lastError, long nextRetryMs) {
+            this.id = id;
+            this.name = name;
+            this.desired = desired;
+            this.replicas = replicas;
+            this.readyReplicas = readyReplicas;
+            this.observed = observed;
+            this.drift = drift;
+            this.driftMs = driftMs;
+            this.lastConvergeMs = lastConvergeMs;
+            this.lastError = lastError;
+            this.nextRetryMs = nextRetryMs;
+        }
         
-        watchers.put(index, watcher);
-        startStatusUpdate(index);
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public String getDesired() { return desired; }
+        public int getReplicas() { return replicas; }
+        public int getReadyReplicas() { return readyReplicas; }
+        public String getObserved() { return observed; }
+        public boolean isInSync() { return drift == null; }
+        public String getDrift() { return drift; }
+        public long getDriftMs() { return driftMs; }
+        public long getLastConvergeMs() { return lastConvergeMs; }
+        public String getLastError() { return lastError; }
+        public long getNextRetryMs() { return nextRetryMs; }
     }
     
-    public void stopService(int index) {
-        if (index < 0 || index >= configs.size()) {
-            return;
+    /**
+     * 批量导入的结果：是否已保存，以及每个条目的处理结果
+     */
+    public static class ImportReport {
+        private final boolean applied;
+        private final boolean dryRun;
+        private final List<ImportResult> results;
+        
+        public ImportReport(boolean applied, boolean dryRun, List<ImportResult> results) {
+            this.applied = applied;
+            this.dryRun = dryRun;
+            this.results = results;
         }
         
-        SimpleProcessWatcher watcher = watchers.remove(index);
-        if (watcher != null) {
-            watcher.stop();
+        public boolean isApplied() { return applied; }
+        public boolean isDryRun() { return dryRun; }
+        public int getTotal() { return results.size(); }
+        public int getAdded() { return count(ImportResult.ADDED); }
+        public int getUpdated() { return count(ImportResult.UPDATED); }
+        public int getUnchanged() { return count(ImportResult.UNCHANGED); }
+        public int getInvalid() { return count(ImportResult.INVALID); }
+        public List<ImportResult> getResults() { return results; }
+        
+        private int count(String status) {
+            int count = 0;
+            for (ImportResult result : results) {
+                if (result.getStatus().equals(status)) {
+                    count++;
+                }
+            }
+            return count;
         }
+    }
+    
+    /**
+     * 一个导入条目的结果；index 为条目在导入数据中的位置（从0开始）
+     */
+    public static class ImportResult {
+        public static final String ADDED = "ADDED";
+        public static final String UPDATED = "UPDATED";
+        public static final String UNCHANGED = "UNCHANGED";
+        public static final String INVALID = "INVALID";
         
-        ScheduledExecutorService service = statusUpdateServices.remove(index);
-        if (service != null) {
-            service.shutdown();
+        private final int index;
+        private final String id;
+        private final String name;
+        private final String status;
+        private final String message;
+        
+        public ImportResult(int index, String id, String name, String status, String message) {
+            this.index = index;
+            this.id = id;
+            this.name = name;
+            this.status = status;
+            this.message = message;
         }
+        
+        public int getIndex() { return index; }
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public String getStatus() { return status; }
+        public String getMessage() { return message; }
     }
     
-    public void restartService(int index) throws Exception {
-        stopService(index);
-        Thread.sleep(1000);
-        startService(index);
+    /**
+     * 一个按需启动服务的统计；idleMs 为当前已空闲的时间，未运行时为-1；冷启动耗时没有记录时为-1
+     */
+    public static class OnDemandStatus {
+        private final String id;
+        private final String name;
+        private final int idleTimeout;
+        private final boolean running;
+        private final long idleMs;
+        private final int coldStarts;
+        private final long lastColdStartMs;
+        private final long avgColdStartMs;
+        private final int idleStops;
+        private final long lastReclaimedBytes;
+        private final long totalReclaimedBytes;
+        
+        public OnDemandStatus(String id, String name, int idleTimeout, boolean running, long idleMs,
+                              int coldStarts, long lastColdStartMs, long avgColdStartMs,
+                              int idleStops, long lastReclaimedBytes, long totalReclaimedBytes) {
+            this.id = id;
+            this.name = name;
+            this.idleTimeout = idleTimeout;
+            this.running = running;
+            this.idleMs = idleMs;
+            this.coldStarts = coldStarts;
+            this.lastColdStartMs = lastColdStartMs;
+            this.avgColdStartMs = avgColdStartMs;
+            this.idleStops = idleStops;
+            this.lastReclaimedBytes = lastReclaimedBytes;
+            this.totalReclaimedBytes = totalReclaimedBytes;
+        }
+        
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public int getIdleTimeout() { return idleTimeout; }
+        public boolean isRunning() { return running; }
+        public long getIdleMs() { return idleMs; }
+        public int getColdStarts() { return coldStarts; }
+        public long getLastColdStartMs() { return lastColdStartMs; }
+        public long getAvgColdStartMs() { return avgColdStartMs; }
+        public int getIdleStops() { return idleStops; }
+        public long getLastReclaimedBytes() { return lastReclaimedBytes; }
+        public long getTotalReclaimedBytes() { return totalReclaimedBytes; }
     }
     
-    public ServiceStatus getServiceStatus(int index) {
-        if (index < 0 || index >= configs.size()) {
-            return null;
+    /**
+     * 按需启动总览：各服务统计、当前停止着的服务数和累计回收的内存
+     */
+    public static class OnDemandReport {
+        private final List<OnDemandStatus> services;
+        
+        public OnDemandReport(List<OnDemandStatus> services) {
+            this.services = services;
         }
         
-        ServiceConfig config = configs.get(index);
-        SimpleProcessWatcher watcher = watchers.get(index);
+        public List<OnDemandStatus> getServices() { return services; }
         
-        ServiceStatus status = new ServiceStatus();
-        status.setName(config.getName());
-        status.setIndex(index);
+        public int getStopped() {
+            int stopped = 0;
+            for (OnDemandStatus status : services) {
+                if (!status.isRunning()) {
+                    stopped++;
+                }
+            }
+            return stopped;
+        }
         
-        if (watcher != null) {
-            if (watcher.isProcessAlive()) {
-                status.setStatus("运行中");
-                status.setPid(watcher.getProcessId());
-            } else if (watcher.isRunning()) {
-                status.setStatus("进程已退出");
-                status.setPid(-1);
-            } else {
-                status.setStatus("已停止");
-                status.setPid(-1);
+        public long getTotalReclaimedBytes() {
+            long total = 0;
+            for (OnDemandStatus status : services) {
+                total += status.getTotalReclaimedBytes();
             }
-        } else {
-            status.setStatus("未启动");
-            status.setPid(-1);
+            return total;
+        }
+    }
+    
+    /**
+     * 一个服务的GC统计（各实例汇总）
+     */
+    public static class GcStatus {
+        private final String id;
+        private final String name;
+        private final int pauseWarnMs;
+        private final GcLogAnalyzer.Summary summary;
+        
+        public GcStatus(String id, String name, int pauseWarnMs, GcLogAnalyzer.Summary summary) {
+            this.id = id;
+            this.name = name;
+            this.pauseWarnMs = pauseWarnMs;
+            this.summary = summary;
         }
         
-        return status;
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public int getPauseWarnMs() { return pauseWarnMs; }
+        public GcLogAnalyzer.Summary getSummary() { return summary; }
     }
     
-    public List<ServiceStatus> getAllServiceStatus() {
-        List<ServiceStatus> statusList = new ArrayList<>();
-        for (int i = 0; i < configs.size(); i++) {
-            statusList.add(getServiceStatus(i));
+    /**
+     * 一个服务的内存泄漏防护状态；activeBlackout 为当前所在的禁止重启时段，deferred 表示规则已满足但被推迟
+     */
+    public static class LeakGuardStatus {
+        private final String id;
+        private final String name;
+        private final int rssLimitMb;
+        private final int rssLimitMinutes;
+        private final int heapGrowthPercent;
+        private final String restartBlackout;
+        private final String activeBlackout;
+        private final String deferredBy;
+        private final LeakGuard.Snapshot sample;
+        private final int restarts;
+        private final long lastRestartAt;
+        private final String lastReason;
+        
+        public LeakGuardStatus(String id, String name, int rssLimitMb, int rssLimitMinutes, int heapGrowthPercent,
+                               String restartBlackout, String activeBlackout, String deferredBy,
+                               LeakGuard.Snapshot sample, int restarts, long lastRestartAt, String lastReason) {
+            this.id = id;
+            this.name = name;
+            this.rssLimitMb = rssLimitMb;
+            this.rssLimitMinutes = rssLimitMinutes;
+            this.heapGrowthPercent = heapGrowthPercent;
+            this.restartBlackout = restartBlackout;
+            this.activeBlackout = activeBlackout;
+            this.deferredBy = deferredBy;
+            this.sample = sample;
+            this.restarts = restarts;
+            this.lastRestartAt = lastRestartAt;
+            this.lastReason = lastReason;
         }
-        return statusList;
+        
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public int getRssLimitMb() { return rssLimitMb; }
+        public int getRssLimitMinutes() { return rssLimitMinutes; }
+        public int getHeapGrowthPercent() { return heapGrowthPercent; }
+        public String getRestartBlackout() { return restartBlackout; }
+        public String getActiveBlackout() { return activeBlackout; }
+        public boolean isDeferred() { return deferredBy != null; }
+        public LeakGuard.Snapshot getSample() { return sample; }
+        public int getRestarts() { return restarts; }
+        public long getLastRestartAt() { return lastRestartAt; }
+        public String getLastReason() { return lastReason; }
     }
     
-    public AppSettings getAppSettings() {
-        return appSettings;
+    /**
+     * 滚动重启结果：是否全部完成、替换的实例数和耗时；中止时 message 为失败原因
+     */
+    public static class RolloutReport {
+        private final boolean success;
+        private final String message;
+        private final int total;
+        private final int replaced;
+        private final long durationMs;
+        
+        public RolloutReport(boolean success, String message, int total, int replaced, long durationMs) {
+            this.success = success;
+            this.message = message;
+            this.total = total;
+            this.replaced = replaced;
+            this.durationMs = durationMs;
+        }
+        
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public int getTotal() { return total; }
+        public int getReplaced() { return replaced; }
+        public long getDurationMs() { return durationMs; }
     }
     
-    public void updateAppSettings(AppSettings settings) throws Exception {
-        this.appSettings = settings;
-        SettingsManager.saveSettings(settings);
+    /**
+     * 调和总览：一致/漂移的服务数，因限速推迟的动作累计次数
+     */
+    public static class ReconcileReport {
+        private final int inSync;
+        private final int drifting;
+        private final long throttled;
+        private final List<ReconcileStatus> services;
+        
+        public ReconcileReport(int inSync, int drifting, long throttled, List<ReconcileStatus> services) {
+            this.inSync = inSync;
+            this.drifting = drifting;
+            this.throttled = throttled;
+            this.services = services;
+        }
+        
+        public int getInSync() { return inSync; }
+        public int getDrifting() { return drifting; }
+        public long getThrottled() { return throttled; }
+        public List<ReconcileStatus> getServices() { return services; }
     }
     
-    private void loadConfigs() {
-        configs = ConfigManager.loadConfigs();
+    /**
+     * 全部服务的快照
+     * epoch 标识服务端实例（重启后变化），version 在任一服务变化时递增；
+     * full 为false时 services 只包含 since 之后变化的服务，total 为当前服务总数
+     */
+    public static class StatusSnapshot {
+        private final long epoch;
+        private final long version;
+        private final boolean full;
+        private final int total;
+        private final List<SnapshotEntry> services;
+        
+        public StatusSnapshot(long epoch, long version, boolean full, int total, List<SnapshotEntry> services) {
+            this.epoch = epoch;
+            this.version = version;
+            this.full = full;
+            this.total = total;
+            this.services = services;
+        }
+        
+        public long getEpoch() { return epoch; }
+        public long getVersion() { return version; }
+        public boolean isFull() { return full; }
+        public int getTotal() { return total; }
+        public List<SnapshotEntry> getServices() { return services; }
     }
     
-    private void saveConfigs() throws Exception {
-        ConfigManager.saveConfigs(configs);
+    /**
+     * 某一版本的全部服务状态，发布后不再修改
+     */
+    private class StatusBoard {
+        private final long version;
+        private final List<SnapshotEntry> entries;
+        private final List<ServiceStatus> statuses;
+        private final Map<String, Integer> indexById;
+        private final long[] changedVersions; // 每个服务最后变化时的版本
+        private final StatusSnapshot full;     // 预先构建的全量快照
+        
+        StatusBoard(long version, List<SnapshotEntry> entries, long[] changedVersions) {
+            this.version = version;
+            this.entries = Collections.unmodifiableList(entries);
+            List<ServiceStatus> list = new ArrayList<>(entries.size());
+            Map<String, Integer> ids = new HashMap<>();
+            for (SnapshotEntry entry : entries) {
+                ids.put(entry.status.getId(), list.size());
+                list.add(entry.status);
+            }
+            this.indexById = ids;
+            this.statuses = Collections.unmodifiableList(list);
+            this.changedVersions = changedVersions;
+            this.full = new StatusSnapshot(snapshotEpoch, version, true, entries.size(), this.entries);
+        }
     }
     
-    private void startStatusUpdate(int index) {
-        ScheduledExecutorService oldService = statusUpdateServices.remove(index);
-        if (oldService != null) {
-            oldService.shutdown();
+    /**
+     * 注册表中的一个服务
+     */
+    private static class ServiceEntry {
+        private final String id;
+        // 公平锁：同一服务的启动/停止/修改按到达顺序执行
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private volatile ServiceConfig config;
+        // 实例槽位，下标即实例编号（可能有空位）；整体替换，修改时持有 lock
+        private volatile List<Replica> instances = Collections.emptyList();
+        // 滚动重启中与旧实例并存、尚未放入槽位的替换实例；整体替换，修改时持有 lock
+        private volatile List<Replica> surge = Collections.emptyList();
+        // 内置负载均衡（config.publicPort > 0 时），配置变化、启动和调和时创建/关闭，刷新状态时更新后端
+        private volatile TcpBalancer balancer;
+        private final Object balancerLock = new Object(); // 创建/关闭负载均衡时持有
+        private volatile long balancerRetryAt = 0;        // 监听失败后下次重试的时间
+        // 按需启动（config.idleTimeout > 0）
+        private final AtomicBoolean demandStarting = new AtomicBoolean(false);
+        private volatile int coldStarts = 0;
+        private volatile long lastColdStartMs = -1;
+        private volatile long totalColdStartMs = 0;
+        private volatile int idleStops = 0;
+        private volatile long lastReclaimedBytes = 0;
+        private volatile long totalReclaimedBytes = 0;
+        private volatile String balancerError;
+        private volatile boolean deleted = false;
+        private final ArrayDeque<StateTransition> transitions = new ArrayDeque<>(); // 最近的状态转换
+        private final ArrayDeque<ServiceEvent> events = new ArrayDeque<>();        // 最近的事件（如内存泄漏防护触发）
+        // 内存泄漏防护（config.rssLimitMb 或 config.heapGrowthPercent > 0 时），由检查线程采样
+        private final LeakGuard leakGuard = new LeakGuard();
+        private volatile String leakDeferredBy;     // 规则已满足但处于该禁止重启时段，未处于时为null
+        private volatile int leakRestarts = 0;
+        private volatile long lastLeakRestartAt = 0;
+        private volatile String lastLeakReason;
+        // GC日志分析（config.gcLog 时），按实例编号，由解析线程创建和读取
+        private final Map<Integer, GcLogAnalyzer> gcAnalyzers = new ConcurrentHashMap<>();
+        private volatile String gcWarning;          // GC停顿告警，没有时为null
+        // 期望状态（修改时持有 lock），实例数见 config.replicas
+        private volatile boolean desiredRunning = false;
+        // 调和进度
+        private final AtomicBoolean reconciling = new AtomicBoolean(false); // 是否有调和动作在执行
+        private volatile long driftSince = 0;      // 本次漂移开始时间，一致时为0
+        private volatile long lastConvergeMs = -1; // 上次收敛耗时
+        private volatile long nextAttemptAt = 0;   // 失败退避：此时间之前不再尝试
+        private volatile int failedAttempts = 0;
+        private volatile String lastError;
+        
+        ServiceEntry(String id, ServiceConfig config) {
+            this.id = id;
+            this.config = config;
         }
         
-        ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "StatusUpdate-" + index);
-            t.setDaemon(true);
-            return t;
-        });
-        statusUpdateServices.put(index, service);
+        synchronized void recordTransition(StateTransition transition) {
+            if (transitions.size() >= MAX_TRANSITION_HISTORY) {
+                transitions.pollFirst();
+            }
+            transitions.addLast(transition);
+        }
+        
+        synchronized List<StateTransition> getTransitions() {
+            return new ArrayList<>(transitions);
+        }
+        
+        synchronized void recordEvent(ServiceEvent event) {
+            if (events.size() >= MAX_EVENT_HISTORY) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+        
+        synchronized List<ServiceEvent> getEvents() {
+            return new ArrayList<>(events);
+        }
+        
+        Replica instance(int instance) {
+            List<Replica> list = instances;
+            return instance >= 0 && instance < list.size() ? list.get(instance) : null;
+        }
+        
+        void setInstance(Replica replica) {
+            List<Replica> list = new ArrayList<>(instances);
+            while (list.size() <= replica.instance) {
+                list.add(null);
+            }
+            list.set(replica.instance, replica);
+            instances = Collections.unmodifiableList(list);
+        }
+        
+        void addSurge(Replica replica) {
+            List<Replica> list = new ArrayList<>(surge);
+            list.add(replica);
+            surge = Collections.unmodifiableList(list);
+        }
+        
+        void removeSurge(Replica replica) {
+            List<Replica> list = new ArrayList<>(surge);
+            if (list.remove(replica)) {
+                surge = Collections.unmodifiableList(list);
+            }
+        }
+        
+        /**
+         * 槽位中的实例加上并存的替换实例
+         */
+        List<Replica> allReplicas() {
+            List<Replica> list = new ArrayList<>();
+            for (Replica replica : instances) {
+                if (replica != null) {
+                    list.add(replica);
+                }
+            }
+            list.addAll(surge);
+            return list;
+        }
+        
+        void trimInstances(int count) {
+            if (instances.size() > count) {
+                instances = Collections.unmodifiableList(new ArrayList<>(instances.subList(0, count)));
+            }
+        }
+        
+        /**
+         * 编号不小于 from 的活动实例（启动中、运行中、等待重启）
+         */
+        List<Replica> activeInstances(int from) {
+            List<Replica> list = instances;
+            List<Replica> result = new ArrayList<>();
+            for (int i = from; i < list.size(); i++) {
+                Replica replica = list.get(i);
+                if (replica != null && replica.watcher.isRunning()) {
+                    result.add(replica);
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * 编号小于 count 的实例中已就绪的个数
+         */
+        int readyCount(int count) {
+            int ready = 0;
+            for (int i = 0; i < count; i++) {
+                Replica replica = instance(i);
+                if (replica != null && replica.watcher.getState() == WatcherState.READY) {
+                    ready++;
+                }
+            }
+            return ready;
+        }
     }
     
     /**
-     * 服务状态DTO
+     * 服务的一个实例：监控器、分配给 ${port} 的端口（未使用时为-1）和日志目录（不可变）
      */
-    public static class ServiceStatus {
-        private String name;
-        private int index;
-        private String status;
-        private long pid;
+    private static class Replica {
+        private final int instance;
+        private final SimpleProcessWatcher watcher;
+        private final int port;
+        private final File logDir;
         
-        public String getName() { return name; }
-        public void setName(String name) { this.name = name; }
-        public int getIndex() { return index; }
-        public void setIndex(int index) { this.index = index; }
-        public String getStatus() { return status; }
-        public void setStatus(String status) { this.status = status; }
-        public long getPid() { return pid; }
-        public void setPid(long pid) { this.pid = pid; }
+        Replica(int instance, SimpleProcessWatcher watcher, int port, File logDir) {
+            this.instance = instance;
+            this.watcher = watcher;
+            this.port = port;
+            this.logDir = logDir;
+        }
     }
 }
-
@@ -0,0 +1,192 @@
+package com.love.test;
+
+import com.love.util.TcpBalancer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 负载均衡基准测试：本地回显服务，分别直连和经过 TcpBalancer 转发，比较吞吐量和往返延迟
+ * 用法：BalancerBenchmark [连接数=16] [消息字节数=1024] [每轮秒数=5] [后端数=2]
+ */
+public class BalancerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int messageBytes = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int backendCount = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        List<EchoServer> servers = new ArrayList<>();
+        List<TcpBalancer.Target> targets = new ArrayList<>();
+        for (int i = 0; i < backendCount; i++) {
+            EchoServer server = new EchoServer();
+            servers.add(server);
+            targets.add(new TcpBalancer.Target(i, server.port(), true));
+        }
+        int balancerPort;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            balancerPort = probe.getLocalPort();
+        }
+        TcpBalancer balancer = new TcpBalancer("benchmark", balancerPort);
+        balancer.updateBackends(targets);
+
+        System.out.println("连接数 " + connections + "，消息 " + messageBytes + " 字节，每轮 " + seconds
+            + " 秒，后端 " + backendCount + " 个");
+        // 预热一轮，让JIT编译热点代码
+        run(servers.get(0).port(), connections, messageBytes, 1);
+        run(balancerPort, connections, messageBytes, 1);
+
+        Result direct = run(servers.get(0).port(), connections, messageBytes, seconds);
+        Result proxied = run(balancerPort, connections, messageBytes, seconds);
+        direct.print("直连");
+        proxied.print("经负载均衡");
+        System.out.printf("负载均衡增加的延迟: p50 %+.1f us, p99 %+.1f us；吞吐量为直连的 %.0f%%%n",
+            (proxied.p50 - direct.p50) / 1000.0, (proxied.p99 - direct.p99) / 1000.0,
+            proxied.opsPerSecond * 100.0 / direct.opsPerSecond);
+        for (TcpBalancer.BackendStats backend : balancer.getStats().getBackends()) {
+            System.out.println("  后端 " + backend.getInstance() + " 累计连接 " + backend.getTotal());
+        }
+
+        balancer.close();
+        for (EchoServer server : servers) {
+            server.close();
+        }
+    }
+
+    /**
+     * connections 个连接并发地发送消息并等待回显，记录每次往返耗时
+     */
+    private static Result run(int port, int connections, int messageBytes, int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<long[]> samples = new ArrayList<>();
+        long[] counts = new long[connections];
+        CountDownLatch done = new CountDownLatch(connections);
+        List<Exception> errors = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            long[] latencies = new long[1 << 16];
+            samples.add(latencies);
+            int index = c;
+            Thread thread = new Thread(() -> {
+                byte[] message = new byte[messageBytes];
+                byte[] reply = new byte[messageBytes];
+                try (Socket socket = new Socket()) {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress("127.0.0.1", port));
+                    OutputStream out = socket.getOutputStream();
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    long n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        out.write(message);
+                        in.readFully(reply);
+                        latencies[(int) (n % latencies.length)] = System.nanoTime() - start;
+                        n++;
+                    }
+                    counts[index] = n;
+                } catch (IOException e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "BenchmarkClient-" + c);
+            thread.start();
+        }
+        done.await();
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+
+        long total = 0;
+        int kept = 0;
+        for (int c = 0; c < connections; c++) {
+            total += counts[c];
+            kept += (int) Math.min(counts[c], samples.get(c).length);
+        }
+        long[] all = new long[kept];
+        int offset = 0;
+        for (int c = 0; c < connections; c++) {
+            int n = (int) Math.min(counts[c], samples.get(c).length);
+            System.arraycopy(samples.get(c), 0, all, offset, n);
+            offset += n;
+        }
+        Arrays.sort(all);
+        Result result = new Result();
+        result.opsPerSecond = total / (double) seconds;
+        result.megabytesPerSecond = result.opsPerSecond * messageBytes * 2 / (1024.0 * 1024.0);
+        result.p50 = all.length > 0 ? all[all.length / 2] : 0;
+        result.p99 = all.length > 0 ? all[(int) (all.length * 0.99)] : 0;
+        return result;
+    }
+
+    private static class Result {
+        double opsPerSecond;
+        double megabytesPerSecond; // 双向合计
+        long p50;                  // 纳秒
+        long p99;
+
+        void print(String label) {
+            System.out.printf("%s: %.0f 次往返/秒，%.1f MB/s，p50 %.1f us，p99 %.1f us%n",
+                label, opsPerSecond, megabytesPerSecond, p50 / 1000.0, p99 / 1000.0);
+        }
+    }
+
+    /**
+     * 每个连接一个线程的回显服务
+     */
+    private static class EchoServer {
+        private final ServerSocket serverSocket;
+
+        EchoServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, "EchoServer-" + serverSocket.getLocalPort());
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread worker = new Thread(() -> echo(socket), "Echo");
+                    worker.setDaemon(true);
+                    worker.start();
+                }
+            } catch (IOException e) {
+                // 已关闭
+            }
+        }
+
+        private static void echo(Socket socket) {
+            byte[] buffer = new byte[64 * 1024];
+            try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            } catch (IOException e) {
+                // 客户端断开
+            }
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
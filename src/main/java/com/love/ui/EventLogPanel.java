@@ -0,0 +1,250 @@
+package com.love.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 监控事件日志面板
+ * 固定容量的环形缓冲区保存事件，任意线程写入的消息先进入待处理队列，
+ * 由Swing定时器每 FLUSH_INTERVAL_MS 合并成一次界面更新；来源和原始消息都相同的连续消息折叠为一条并计数。
+ * 时间戳由面板在入队时记录，调用方传入的消息不要带时间或来源前缀，否则重复消息无法折叠。
+ */
+public class EventLogPanel extends JPanel {
+    public enum Level {
+        INFO("信息"), WARN("警告"), ERROR("错误");
+
+        private final String label;
+
+        Level(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+
+        /**
+         * 根据消息内容推断级别
+         */
+        public static Level of(String message) {
+            if (message.contains("✗") || message.contains("失败") || message.contains("异常")
+                    || message.contains("错误")) {
+                return ERROR;
+            }
+            if (message.contains("警告") || message.contains("退出") || message.contains("强制")
+                    || message.contains("重启")) {
+                return WARN;
+            }
+            return INFO;
+        }
+    }
+
+    private static final int CAPACITY = 2000;          // 环形缓冲区容量
+    private static final int PENDING_CAPACITY = 10000; // 待刷新队列容量
+    private static final int FLUSH_INTERVAL_MS = 100;
+
+    private static final Color WARN_COLOR = new Color(230, 126, 34);
+    private static final Color ERROR_COLOR = new Color(211, 47, 47);
+
+    private final BlockingQueue<Entry> pending = new ArrayBlockingQueue<>(PENDING_CAPACITY);
+    private final Entry[] ring = new Entry[CAPACITY];
+    private int head = 0;  // 最旧条目的位置
+    private int count = 0;
+    private final AtomicLong dropped = new AtomicLong(); // 待刷新队列满时丢弃的消息（界面线程跟不上）
+    private long evicted = 0;                           // 环形缓冲区满时淘汰的最旧条目
+    private long collapsed = 0;
+    private Level minLevel = Level.INFO;
+
+    private final EventListModel listModel = new EventListModel();
+    private final JList<Entry> list = new JList<>(listModel);
+    private final JScrollPane scrollPane = new JScrollPane(list);
+    private final JComboBox<Level> levelBox = new JComboBox<>(Level.values());
+    private final JLabel counterLabel = new JLabel();
+
+    public EventLogPanel() {
+        super(new BorderLayout(5, 5));
+        setOpaque(false);
+
+        list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        list.setFixedCellHeight(18);
+        list.setVisibleRowCount(10);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                Entry entry = (Entry) value;
+                String text = entry.time + " | " + (entry.source != null ? "[" + entry.source + "] " : "")
+                    + entry.message + (entry.repeat > 1 ? "  (×" + entry.repeat + ")" : "");
+                Component c = super.getListCellRendererComponent(l, text, index, isSelected, cellHasFocus);
+                if (!isSelected) {
+                    c.setForeground(entry.level == Level.ERROR ? ERROR_COLOR
+                        : entry.level == Level.WARN ? WARN_COLOR : l.getForeground());
+                }
+                return c;
+            }
+        });
+        add(scrollPane, BorderLayout.CENTER);
+
+        JPanel filterBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        filterBar.setOpaque(false);
+        filterBar.add(new JLabel("级别:"));
+        levelBox.addActionListener(e -> {
+            minLevel = (Level) levelBox.getSelectedItem();
+            listModel.rebuild();
+        });
+        filterBar.add(levelBox);
+        filterBar.add(counterLabel);
+        add(filterBar, BorderLayout.NORTH);
+        updateCounter();
+
+        Timer flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+        flushTimer.start();
+    }
+
+    public JScrollPane getScrollPane() {
+        return scrollPane;
+    }
+
+    /**
+     * 追加一条事件（线程安全，不阻塞调用方）
+     */
+    public void append(String message) {
+        append(null, message);
+    }
+
+    /**
+     * 追加一条来自指定来源（如服务名称）的事件
+     * @param source 来源，为null时不显示
+     */
+    public void append(String source, String message) {
+        if (message == null) {
+            return;
+        }
+        append(Level.of(message), source, message);
+    }
+
+    public void append(Level level, String source, String message) {
+        if (message == null) {
+            return;
+        }
+        if (!pending.offer(new Entry(LocalDateTime.now().toString(), level, source, message))) {
+            // 界面线程跟不上时直接丢弃
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空日志（在EDT调用）
+     */
+    public void clear() {
+        pending.clear();
+        head = 0;
+        count = 0;
+        dropped.set(0);
+        evicted = 0;
+        collapsed = 0;
+        listModel.rebuild();
+        updateCounter();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Entry> batch = new ArrayList<>();
+        pending.drainTo(batch);
+        for (Entry entry : batch) {
+            Entry last = count > 0 ? ring[(head + count - 1) % CAPACITY] : null;
+            if (last != null && last.level == entry.level && Objects.equals(last.source, entry.source)
+                    && last.message.equals(entry.message)) {
+                last.repeat++;
+                last.time = entry.time;
+                collapsed++;
+                continue;
+            }
+            if (count == CAPACITY) {
+                ring[head] = entry;
+                head = (head + 1) % CAPACITY;
+                evicted++;
+            } else {
+                ring[(head + count) % CAPACITY] = entry;
+                count++;
+            }
+        }
+
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - list.getFixedCellHeight();
+        listModel.rebuild();
+        updateCounter();
+        if (atBottom && listModel.getSize() > 0) {
+            list.ensureIndexIsVisible(listModel.getSize() - 1);
+        }
+    }
+
+    private void updateCounter() {
+        counterLabel.setText("共 " + count + " 条  |  淘汰旧条目 " + evicted + " 条  |  来不及显示丢弃 " + dropped.get()
+            + " 条  |  合并重复 " + collapsed + " 条");
+    }
+
+    private static class Entry {
+        private String time;
+        private final Level level;
+        private final String source;
+        private final String message;
+        private int repeat = 1;
+
+        Entry(String time, Level level, String source, String message) {
+            this.time = time;
+            this.level = level;
+            this.source = source;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 按级别过滤后的视图，每次刷新整体替换
+     */
+    private class EventListModel extends AbstractListModel<Entry> {
+        private List<Entry> visible = new ArrayList<>();
+
+        @Override
+        public int getSize() {
+            return visible.size();
+        }
+
+        @Override
+        public Entry getElementAt(int index) {
+            return visible.get(index);
+        }
+
+        void rebuild() {
+            int oldSize = visible.size();
+            List<Entry> filtered = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = ring[(head + i) % CAPACITY];
+                if (entry.level.ordinal() >= minLevel.ordinal()) {
+                    filtered.add(entry);
+                }
+            }
+            visible = filtered;
+            int newSize = filtered.size();
+            int common = Math.min(oldSize, newSize);
+            if (common > 0) {
+                fireContentsChanged(this, 0, common - 1);
+            }
+            if (newSize > oldSize) {
+                fireIntervalAdded(this, oldSize, newSize - 1);
+            } else if (newSize < oldSize) {
+                fireIntervalRemoved(this, newSize, oldSize - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.love.ui;
+
+import com.love.util.MappedLogFile;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 服务日志查看窗口
+ * 基于内存映射文件分页读取，列表只解码可见行，打开任意大小的日志都不需要等待。
+ */
+public class LogViewerFrame extends JFrame {
+    private static final long INDEX_CHUNK_BYTES = 16L * 1024 * 1024; // 每批索引的字节数
+    private static final long FOLLOW_INTERVAL_MS = 1000;               // 跟随模式检查新内容的间隔
+    private static final int LINE_HEIGHT = 18;
+
+    private final MappedLogFile logFile;
+    private final LogListModel listModel = new LogListModel();
+    private final JList<String> lineList = new JList<>(listModel);
+    private final JCheckBox followBox = new JCheckBox("跟随最新", true);
+    private final JTextField findField = new JTextField(20);
+    private final JLabel statusLabel = new JLabel();
+    private final AtomicBoolean publishPending = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    public LogViewerFrame(String serviceName, File file) throws IOException {
+        this.logFile = new MappedLogFile(file);
+        setTitle("日志 - " + serviceName + " - " + file.getName());
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setSize(1000, 650);
+
+        initComponents();
+        setupLayout();
+
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                closed = true;
+            }
+        });
+
+        Thread indexer = new Thread(this::indexLoop, "LogViewer-" + file.getName());
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    private void initComponents() {
+        lineList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        // 固定行高和宽度，JList 不再逐行计算尺寸，只会读取可见行
+        lineList.setFixedCellHeight(LINE_HEIGHT);
+        lineList.setFixedCellWidth(4000);
+        lineList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        lineList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String text = String.format("%8d  %s", index + 1, value);
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        findField.addActionListener(e -> find(true));
+    }
+
+    private void setupLayout() {
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 5));
+        JButton topBtn = new JButton("⇤ 开头");
+        topBtn.addActionListener(e -> {
+            followBox.setSelected(false);
+            scrollToLine(0);
+        });
+        toolbar.add(topBtn);
+        JButton endBtn = new JButton("⇥ 末尾");
+        endBtn.addActionListener(e -> {
+            followBox.setSelected(true);
+            scrollToLine(listModel.getSize() - 1);
+        });
+        toolbar.add(endBtn);
+        toolbar.add(followBox);
+        toolbar.add(Box.createHorizontalStrut(20));
+        toolbar.add(new JLabel("查找:"));
+        toolbar.add(findField);
+        JButton prevBtn = new JButton("上一个");
+        prevBtn.addActionListener(e -> find(false));
+        toolbar.add(prevBtn);
+        JButton nextBtn = new JButton("下一个");
+        nextBtn.addActionListener(e -> find(true));
+        toolbar.add(nextBtn);
+
+        JScrollPane scrollPane = new JScrollPane(lineList);
+        // 用户向上滚动时自动关闭跟随
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (e.getValueIsAdjusting()) {
+                BoundedRangeModel m = scrollPane.getVerticalScrollBar().getModel();
+                followBox.setSelected(m.getValue() + m.getExtent() >= m.getMaximum() - LINE_HEIGHT);
+            }
+        });
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(3, 8, 3, 8));
+
+        getContentPane().setLayout(new BorderLayout());
+        getContentPane().add(toolbar, BorderLayout.NORTH);
+        getContentPane().add(scrollPane, BorderLayout.CENTER);
+        getContentPane().add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * 后台索引线程：先分批索引已有内容，之后定期检查文件增长
+     */
+    private void indexLoop() {
+        try {
+            while (!closed) {
+                int result = logFile.update(INDEX_CHUNK_BYTES);
+                if (result == MappedLogFile.UPDATE_TRUNCATED) {
+                    SwingUtilities.invokeLater(() -> listModel.setSize(0));
+                }
+                if (result != MappedLogFile.UPDATE_UNCHANGED) {
+                    publish();
+                }
+                if (logFile.isFullyIndexed()) {
+                    Thread.sleep(FOLLOW_INTERVAL_MS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            SwingUtilities.invokeLater(() -> statusLabel.setText("读取日志失败: " + e.getMessage()));
+        } finally {
+            try {
+                logFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 合并界面更新：上一次更新尚未执行时不再重复提交
+     */
+    private void publish() {
+        if (!publishPending.compareAndSet(false, true)) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            publishPending.set(false);
+            long lines = logFile.getLineCount();
+            listModel.setSize((int) Math.min(lines, Integer.MAX_VALUE));
+            boolean indexing;
+            try {
+                indexing = !logFile.isFullyIndexed();
+            } catch (IOException e) {
+                indexing = false;
+            }
+            statusLabel.setText(String.format("%,d 行  |  %.1f MB%s", lines,
+                logFile.getIndexedLength() / 1024.0 / 1024.0, indexing ? "  |  正在建立索引..." : ""));
+            if (followBox.isSelected()) {
+                scrollToLine(listModel.getSize() - 1);
+            }
+        });
+    }
+
+    private void scrollToLine(int line) {
+        if (line >= 0 && line < listModel.getSize()) {
+            lineList.ensureIndexIsVisible(line);
+        }
+    }
+
+    private void find(boolean forward) {
+        String text = findField.getText();
+        if (text.isEmpty()) {
+            return;
+        }
+        int selected = lineList.getSelectedIndex();
+        long from = forward ? selected + 1 : (selected >= 0 ? selected : listModel.getSize());
+        followBox.setSelected(false);
+        statusLabel.setText("正在查找...");
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() {
+                try {
+                    return logFile.find(text, from, forward);
+                } catch (InternalError e) {
+                    // 查找期间文件被截断，映射的页已不可访问
+                    return -1L;
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    long line = get();
+                    if (line < 0 || line >= listModel.getSize()) {
+                        statusLabel.setText("未找到: " + text);
+                        return;
+                    }
+                    lineList.setSelectedIndex((int) line);
+                    scrollToLine((int) line);
+                    statusLabel.setText("第 " + (line + 1) + " 行");
+                } catch (Exception | InternalError e) {
+                    statusLabel.setText("查找失败: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * 轻量列表模型：不保存行内容，按需从映射文件解码
+     */
+    private class LogListModel extends AbstractListModel<String> {
+        private int size = 0;
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return logFile.getLine(index);
+        }
+
+        void setSize(int newSize) {
+            int oldSize = size;
+            size = newSize;
+            if (newSize > oldSize) {
+                fireIntervalAdded(this, oldSize, newSize - 1);
+            } else if (newSize < oldSize) {
+                fireIntervalRemoved(this, newSize, oldSize - 1);
+            }
+            if (oldSize > 0 && newSize >= oldSize) {
+                // 最后一行可能是未写完的行，需要重绘
+                fireContentsChanged(this, oldSize - 1, oldSize - 1);
+            }
+        }
+    }
+}
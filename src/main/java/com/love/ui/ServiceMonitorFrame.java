@@ -2,48 +2,73 @@ package com.love.ui;
 
 import com.love.model.AppSettings;
 import com.love.model.ServiceConfig;
+import com.love.util.AppCdsArchive;
+import com.love.util.ConfigDiff;
 import com.love.util.ConfigManager;
+import com.love.util.DesiredStateStore;
+import com.love.util.GcLogAnalyzer;
+import com.love.util.JvmSizing;
+import com.love.util.PortAllocator;
+import com.love.util.ProcessStateStore;
 import com.love.util.SettingsManager;
 import com.love.util.SimpleProcessWatcher;
+import com.love.util.StartQueue;
+import com.love.util.WatcherState;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServiceMonitorFrame extends JFrame {
     
-    private DefaultTableModel tableModel;
+    private ServiceTableModel tableModel;
     private JTable serviceTable;
     private List<ServiceConfig> configs;
-    private Map<Integer, SimpleProcessWatcher> watchers;
-    private Map<Integer, ScheduledExecutorService> statusUpdateServices;
+    private final Map<String, SimpleProcessWatcher> watchers = new ConcurrentHashMap<>(); // 服务ID -> 监控器，行号会随增删变化
+    private Set<String> desiredRunning = new HashSet<>(); // 期望运行的服务ID（持久化到 desired-desktop.txt）
+    // 桌面端自己的期望状态和进程记录：与Web端共用文件时，整体替换会抹掉对方的记录（含多实例和滚动重启中的实例）
+    private final DesiredStateStore desiredStateStore = new DesiredStateStore(DesiredStateStore.DESKTOP_FILE);
+    private final ProcessStateStore processStateStore = new ProcessStateStore(ProcessStateStore.DESKTOP_FILE);
+    private final Map<String, Integer> ports = new HashMap<>(); // 服务ID -> 为 ${port} 分配的端口（桌面端每个服务只运行一个实例）
     
-    private JTextArea logArea;
+    private EventLogPanel eventLog;
     private ScheduledExecutorService globalStatusUpdateService;
     private AppSettings appSettings;
-    private Set<Integer> startingServices = new HashSet<>(); // 正在启动的服务索引
+    private final StartQueue startQueue; // 拉起进程前的准入排队
+    private final Set<SimpleProcessWatcher> launchedWatchers = ConcurrentHashMap.newKeySet(); // 未停止的监控器，统计启动中的数量
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false); // 是否已有待执行的表格刷新
+    private final ExecutorService serviceStopper = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ServiceStopper");
+        t.setDaemon(true);
+        return t;
+    }); // 重新加载配置时在后台停止服务，不阻塞EDT
 
     public ServiceMonitorFrame() {
         configs = new ArrayList<>();
-        watchers = new HashMap<>();
-        statusUpdateServices = new HashMap<>();
         appSettings = SettingsManager.loadSettings();
+        startQueue = new StartQueue(this::countStarting, startLimits(appSettings));
         
         initComponents();
         loadConfigs();
         setupLayout();
         setupEvents();
         startGlobalStatusUpdate();
+        watchConfigFiles();
     }
 
     // 蓝色系配色方案
@@ -56,6 +81,12 @@ public class ServiceMonitorFrame extends JFrame {
     private static final Color BORDER = new Color(187, 222, 251);         // 淡蓝色边框
     private static final Color SUCCESS = new Color(76, 175, 80);          // 绿色（运行中）
     private static final Color ERROR_COLOR = new Color(244, 67, 54);      // 红色（错误）
+    private static final Color STATUS_RUNNING_BG = new Color(200, 230, 201); // 浅绿色
+    private static final Color STATUS_RUNNING_FG = new Color(27, 94, 32);    // 深绿色
+    private static final Color STATUS_WARN_BG = new Color(255, 243, 224);    // 浅黄色
+    private static final Color STATUS_WARN_FG = new Color(230, 126, 34);     // 深黄色
+    private static final Color STATUS_ERROR_BG = new Color(255, 205, 210);   // 浅红色
+    private static final Color STATUS_ERROR_FG = new Color(198, 40, 40);     // 深红色
     
     private void initComponents() {
         setTitle("服务监控器 - ServiceMonitor");
@@ -70,15 +101,11 @@ public class ServiceMonitorFrame extends JFrame {
         setupCustomTitleBar();
         
         // 表格模型
-        String[] columnNames = {"名称", "Java路径", "工作目录修复bug", "状态", "PID***", "操作"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new ServiceTableModel();
         serviceTable = new JTable(tableModel);
         serviceTable.setRowHeight(35);
+        // 渲染器只安装一次，刷新时只通知变化的单元格
+        serviceTable.setDefaultRenderer(Object.class, new StatusCellRenderer());
         serviceTable.getColumn("操作").setCellRenderer(new ButtonCellRenderer());
         
         // 添加鼠标监听器处理按钮点击
@@ -88,9 +115,15 @@ public class ServiceMonitorFrame extends JFrame {
                 int row = serviceTable.rowAtPoint(e.getPoint());
                 int col = serviceTable.columnAtPoint(e.getPoint());
                 
+                // 双击其他列打开输出日志
+                if (row >= 0 && col != 5 && e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+                    openLogViewer((Integer) tableModel.getValueAt(row, 5), false);
+                    return;
+                }
+                
                 if (row >= 0 && col == 5) { // 操作列
                     int index = (Integer) tableModel.getValueAt(row, 5);
-                    SimpleProcessWatcher watcher = watchers.get(index);
+                    SimpleProcessWatcher watcher = watcherAt(index);
                     boolean isRunning = watcher != null && watcher.isRunning();
                     
                     // 根据点击位置判断点击的是哪个按钮
@@ -122,10 +155,65 @@ public class ServiceMonitorFrame extends JFrame {
             }
         });
         
-        // 日志区域
-        logArea = new JTextArea(10, 50);
-        logArea.setEditable(false);
-        logArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        // 右键菜单：查看日志
+        serviceTable.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mousePressed(java.awt.event.MouseEvent e) {
+                showLogPopup(e);
+            }
+            
+            @Override
+            public void mouseReleased(java.awt.event.MouseEvent e) {
+                showLogPopup(e);
+            }
+        });
+        
+        // 日志区域（有界环形缓冲，批量刷新）
+        eventLog = new EventLogPanel();
+    }
+
+    private void showLogPopup(java.awt.event.MouseEvent e) {
+        if (!e.isPopupTrigger()) {
+            return;
+        }
+        int row = serviceTable.rowAtPoint(e.getPoint());
+        if (row < 0) {
+            return;
+        }
+        serviceTable.setRowSelectionInterval(row, row);
+        int index = (Integer) tableModel.getValueAt(row, 5);
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem outItem = new JMenuItem("查看输出日志 (output.log)");
+        outItem.addActionListener(ev -> openLogViewer(index, false));
+        menu.add(outItem);
+        JMenuItem errItem = new JMenuItem("查看错误日志 (error.log)");
+        errItem.addActionListener(ev -> openLogViewer(index, true));
+        menu.add(errItem);
+        menu.show(serviceTable, e.getX(), e.getY());
+    }
+    
+    /**
+     * 打开服务日志查看窗口
+     */
+    private void openLogViewer(int index, boolean errorLog) {
+        if (index < 0 || index >= configs.size()) {
+            return;
+        }
+        ServiceConfig config = configs.get(index);
+        File logDir = new File(appSettings.getLogBasePath(), config.getName());
+        File logFile = new File(logDir, errorLog ? "error.log" : "output.log");
+        if (!logFile.isFile()) {
+            JOptionPane.showMessageDialog(this, "日志文件不存在: " + logFile.getAbsolutePath(),
+                "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        try {
+            LogViewerFrame viewer = new LogViewerFrame(config.getName(), logFile);
+            viewer.setLocationRelativeTo(this);
+            viewer.setVisible(true);
+        } catch (Exception e) {
+            appendLog("打开日志失败: " + e.getMessage());
+        }
     }
 
     private JPanel customTitleBar;
@@ -418,12 +506,7 @@ public class ServiceMonitorFrame extends JFrame {
         logPanel.setOpaque(false);
         logPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
-        logArea.setBackground(Color.WHITE);
-        logArea.setForeground(TEXT);
-        logArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
-        logArea.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
-        
-        JScrollPane logScrollPane = new JScrollPane(logArea);
+        JScrollPane logScrollPane = eventLog.getScrollPane();
         logScrollPane.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createTitledBorder(
                 BorderFactory.createEmptyBorder(),
@@ -437,12 +520,12 @@ public class ServiceMonitorFrame extends JFrame {
         ));
         logScrollPane.setOpaque(false);
         logScrollPane.getViewport().setBackground(Color.WHITE);
-        logPanel.add(logScrollPane, BorderLayout.CENTER);
+        logPanel.add(eventLog, BorderLayout.CENTER);
         
         JPanel logButtonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 5));
         logButtonPanel.setOpaque(false);
         JButton clearLogBtn = createStyledButton("🗑 清空日志", new Color(158, 158, 158));
-        clearLogBtn.addActionListener(e -> logArea.setText(""));
+        clearLogBtn.addActionListener(e -> eventLog.clear());
         logButtonPanel.add(clearLogBtn);
         logPanel.add(logButtonPanel, BorderLayout.SOUTH);
         
@@ -469,16 +552,28 @@ public class ServiceMonitorFrame extends JFrame {
                 }
                 
                 if (hasRunningService) {
-                    // 显示确认对话框
-                    int confirm = JOptionPane.showConfirmDialog(
+                    // 显示确认对话框：停止服务退出，或保留服务运行（下次打开时重新接管）
+                    Object[] options = {"停止服务并退出", "保留服务运行并退出", "取消"};
+                    int choice = JOptionPane.showOptionDialog(
                         ServiceMonitorFrame.this,
-                        "当前有 " + runningCount + " 个服务正在运行，关闭窗口将停止所有服务。\n确定要关闭吗？",
+                        "当前有 " + runningCount + " 个服务正在运行。\n" +
+                            "保留运行时，下次打开监控器会自动重新接管这些服务。",
                         "确认关闭",
-                        JOptionPane.YES_NO_OPTION,
-                        JOptionPane.WARNING_MESSAGE
+                        JOptionPane.YES_NO_CANCEL_OPTION,
+                        JOptionPane.WARNING_MESSAGE,
+                        null,
+                        options,
+                        options[0]
                     );
                     
-                    if (confirm != JOptionPane.YES_OPTION) {
+                    if (choice == 1) {
+                        // 不停止进程，只记录PID后退出
+                        saveConfigs();
+                        saveProcessState();
+                        System.exit(0);
+                        return;
+                    }
+                    if (choice != 0) {
                         // 用户取消，不关闭窗口
                         return;
                     }
@@ -503,11 +598,6 @@ public class ServiceMonitorFrame extends JFrame {
                 if (globalStatusUpdateService != null) {
                     globalStatusUpdateService.shutdown();
                 }
-                for (ScheduledExecutorService service : statusUpdateServices.values()) {
-                    if (service != null) {
-                        service.shutdown();
-                    }
-                }
                 
                 // 等待所有服务停止（最多等待5秒）
                 long startTime = System.currentTimeMillis();
@@ -530,6 +620,7 @@ public class ServiceMonitorFrame extends JFrame {
                     }
                 }
                 
+                saveProcessState();
                 appendLog("正在退出...");
                 System.exit(0);
             }
@@ -538,85 +629,219 @@ public class ServiceMonitorFrame extends JFrame {
 
     private void loadConfigs() {
         configs = ConfigManager.loadConfigs();
-        refreshTable();
+        adoptSurvivors();
+        restoreDesiredState();
+        requestRefresh();
     }
 
-    private void reloadConfigs() {
-        // 保存当前运行状态（按服务名称映射）
-        Map<String, SimpleProcessWatcher> nameToWatcher = new HashMap<>();
-        Map<String, ScheduledExecutorService> nameToService = new HashMap<>();
-        
+    /**
+     * 把服务恢复到上次的期望状态：期望运行但未被接管的服务依次启动（如主机重启后）
+     * 没有期望记录的服务以是否接管到进程为准
+     */
+    private void restoreDesiredState() {
+        Map<String, DesiredStateStore.DesiredState> states = desiredStateStore.load();
+        List<Integer> toStart = new ArrayList<>();
         for (int i = 0; i < configs.size(); i++) {
-            if (i < configs.size()) {
-                String name = configs.get(i).getName();
-                SimpleProcessWatcher watcher = watchers.get(i);
-                if (watcher != null && watcher.isRunning()) {
-                    nameToWatcher.put(name, watcher);
-                }
-                ScheduledExecutorService service = statusUpdateServices.get(i);
-                if (service != null) {
-                    nameToService.put(name, service);
+            String id = configs.get(i).getId();
+            DesiredStateStore.DesiredState state = states.get(id);
+            SimpleProcessWatcher watcher = watchers.get(id);
+            boolean running = watcher != null && watcher.isRunning();
+            if (state == null ? running : state.isRunning()) {
+                desiredRunning.add(id);
+                if (!running) {
+                    toStart.add(i);
                 }
             }
         }
-        
-        // 重新加载配置
-        List<ServiceConfig> newConfigs = ConfigManager.loadConfigs();
-        
-        // 停止所有旧的状态更新服务（稍后重新映射）
-        for (ScheduledExecutorService service : statusUpdateServices.values()) {
-            if (service != null) {
-                service.shutdown();
+        saveDesiredState();
+        if (toStart.isEmpty()) {
+            return;
+        }
+        appendLog("按期望状态恢复 " + toStart.size() + " 个服务...");
+        // 同时派发，由启动准入队列按主机负载错开实际拉起
+        SwingUtilities.invokeLater(() -> {
+            for (int index : toStart) {
+                startService(index);
+            }
+        });
+    }
+
+    private int countStarting() {
+        int starting = 0;
+        for (SimpleProcessWatcher watcher : launchedWatchers) {
+            if (watcher.getState() == WatcherState.STARTING) {
+                starting++;
             }
         }
-        
-        // 重新构建watchers和services映射
-        watchers.clear();
-        statusUpdateServices.clear();
-        
-        // 通过服务名称匹配，保留运行状态
-        for (int i = 0; i < newConfigs.size(); i++) {
-            ServiceConfig newConfig = newConfigs.get(i);
-            String name = newConfig.getName();
-            
-            // 如果该服务之前正在运行，保留运行状态
-            SimpleProcessWatcher watcher = nameToWatcher.get(name);
-            if (watcher != null && watcher.isRunning()) {
-                watchers.put(i, watcher);
-                
-                // 重新创建状态更新服务
-                ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
-                statusUpdateServices.put(i, service);
-                service.scheduleAtFixedRate(() -> {
-                    SwingUtilities.invokeLater(() -> {
-                        refreshTable();
-                    });
-                }, 0, 1, TimeUnit.SECONDS);
+        return starting;
+    }
+
+    private static StartQueue.Limits startLimits(AppSettings settings) {
+        return new StartQueue.Limits(settings.getStartMaxStarting(), settings.getStartMaxLoadPerCpu(),
+            settings.getStartMinAvailableMemoryMb(), settings.getStartMaxCpuPressure(),
+            settings.getStartMinIntervalMs(), settings.getStartMaxWaitMs());
+    }
+
+    private void setDesiredRunning(ServiceConfig config, boolean running) {
+        boolean changed = running ? desiredRunning.add(config.getId()) : desiredRunning.remove(config.getId());
+        if (changed) {
+            saveDesiredState();
+        }
+    }
+
+    private void saveDesiredState() {
+        List<DesiredStateStore.DesiredState> states = new ArrayList<>(configs.size());
+        for (ServiceConfig config : configs) {
+            states.add(new DesiredStateStore.DesiredState(config.getId(), desiredRunning.contains(config.getId())));
+        }
+        try {
+            desiredStateStore.save(states);
+        } catch (Exception e) {
+            appendLog("保存期望状态失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 接管上次关闭监控器时保留运行的服务进程，不重新拉起
+     */
+    private void adoptSurvivors() {
+        Map<String, ProcessStateStore.ProcessRecord> records = new HashMap<>();
+        for (ProcessStateStore.ProcessRecord record : processStateStore.load()) {
+            if (record.getInstance() == 0) {
+                records.put(record.getServiceId(), record);
             }
         }
-        
-        // 停止那些在新配置中找不到的服务
-        for (Map.Entry<String, SimpleProcessWatcher> entry : nameToWatcher.entrySet()) {
-            boolean found = false;
-            for (ServiceConfig config : newConfigs) {
-                if (config.getName().equals(entry.getKey())) {
-                    found = true;
-                    break;
-                }
+        for (int i = 0; i < configs.size(); i++) {
+            ServiceConfig config = configs.get(i);
+            ProcessStateStore.ProcessRecord record = records.get(config.getId());
+            if (record == null) {
+                continue;
             }
-            if (!found) {
-                // 服务已被删除，停止它
-                SimpleProcessWatcher watcher = entry.getValue();
-                if (watcher != null) {
-                    watcher.stop();
+            SimpleProcessWatcher watcher = createWatcher(config, record.getPort());
+            if (watcher.adopt(record.getPid(), record.getStartTime())) {
+                watchers.put(config.getId(), watcher);
+                if (record.getPort() > 0) {
+                    PortAllocator.reserve(record.getPort());
+                    ports.put(config.getId(), record.getPort());
                 }
+                appendLog("已接管运行中的服务 " + config.getName() + "，PID = " + record.getPid());
+            }
+        }
+        saveProcessState();
+    }
+
+    /**
+     * 记录运行中服务的PID和启动时间（内容未变化时不写文件），在EDT调用
+     */
+    private void saveProcessState() {
+        List<ProcessStateStore.ProcessRecord> records = new ArrayList<>();
+        for (ServiceConfig config : configs) {
+            String id = config.getId();
+            SimpleProcessWatcher watcher = watchers.get(id);
+            if (watcher != null && watcher.isRunning() && watcher.isProcessAlive()) {
+                records.add(new ProcessStateStore.ProcessRecord(id, watcher.getProcessId(),
+                    watcher.getProcessStartTime(), 0, ports.getOrDefault(id, -1)));
             }
         }
+        try {
+            processStateStore.save(records);
+        } catch (Exception e) {
+            System.err.println("保存进程记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从磁盘重新加载配置并逐个服务应用差异（点击"刷新配置"或配置文件被外部修改时调用，在EDT上执行）
+     * 删除的服务停止，启动参数变化的服务若正在运行则重启，其余服务保持原样；
+     * 停止可能要等几秒（写CDS归档时更久），在后台线程进行，完成后回到EDT释放端口、按新配置启动
+     */
+    private void reloadConfigs() {
+        List<ServiceConfig> newConfigs = ConfigManager.loadConfigs();
+        ConfigDiff diff = ConfigDiff.compute(configs, newConfigs);
+        if (diff.isEmpty()) {
+            appendLog("配置没有变化");
+            return;
+        }
         
-        // 更新配置列表
+        // 监控器按服务ID保存，行号变化不影响；停止完成前保留在表中，显示"停止中"
+        for (ConfigDiff.Change change : diff.getChanges()) {
+            String id = change.getId();
+            SimpleProcessWatcher watcher = watchers.get(id);
+            if (change.getType() == ConfigDiff.ChangeType.REMOVED) {
+                desiredRunning.remove(id);
+                startQueue.cancel(id);
+                appendLog("服务已从配置中删除: " + change.getName());
+                stopInBackground(id, watcher, false);
+            } else if (change.getType() == ConfigDiff.ChangeType.RESTART_REQUIRED
+                    && watcher != null && watcher.isRunning()) {
+                // 旧监控器按旧参数运行，停止后用新配置重新启动
+                appendLog("启动参数已变化，重启服务: " + change.getName());
+                stopInBackground(id, watcher, true);
+            }
+        }
         configs = newConfigs;
-        refreshTable();
-        appendLog("配置已重新加载，共 " + configs.size() + " 个服务");
+        saveDesiredState();
+        requestRefresh();
+        appendLog("配置已重新加载（" + diff.summary() + "），共 " + configs.size() + " 个服务");
+    }
+
+    /**
+     * 在后台停止服务的监控器，完成后在EDT移除监控器并释放端口
+     * @param restart 停止后是否按当前配置重新启动（服务仍在配置中时）
+     */
+    private void stopInBackground(String id, SimpleProcessWatcher watcher, boolean restart) {
+        if (watcher == null) {
+            releasePort(id);
+            return;
+        }
+        serviceStopper.submit(() -> {
+            watcher.stop();
+            SwingUtilities.invokeLater(() -> {
+                // 期间已被其他操作替换（如手动停止后再启动）时不再处理
+                if (!watchers.remove(id, watcher)) {
+                    return;
+                }
+                releasePort(id);
+                int index = indexOf(id);
+                if (restart && index >= 0) {
+                    startService(index);
+                }
+                requestRefresh();
+            });
+        });
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < configs.size(); i++) {
+            if (configs.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第 index 行服务的监控器，没有时返回null
+     */
+    private SimpleProcessWatcher watcherAt(int index) {
+        if (index < 0 || index >= configs.size()) {
+            return null;
+        }
+        return watchers.get(configs.get(index).getId());
+    }
+
+    /**
+     * 配置文件被外部修改（手工编辑、Web端保存）后自动重新加载
+     */
+    private void watchConfigFiles() {
+        try {
+            ConfigManager.watchExternalChanges(() -> SwingUtilities.invokeLater(() -> {
+                appendLog("检测到配置文件变化，正在重新加载...");
+                reloadConfigs();
+            }));
+        } catch (Exception e) {
+            appendLog("无法监视配置文件，修改后请手动刷新配置: " + e.getMessage());
+        }
     }
 
     private void saveConfigs() {
@@ -628,86 +853,63 @@ public class ServiceMonitorFrame extends JFrame {
         }
     }
 
+    /**
+     * 请求刷新表格：多个来源的请求合并为一次EDT刷新，可在任意线程调用
+     */
+    private void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                refreshPending.set(false);
+                try {
+                    refreshTable();
+                } catch (Exception e) {
+                    // 防止UI更新异常影响后续刷新
+                    System.err.println("刷新表格时出错: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 生成当前状态快照并与表格模型对比，只通知发生变化的单元格（在EDT调用）
+     */
     private void refreshTable() {
-        tableModel.setRowCount(0);
+        List<ServiceRow> snapshot = new ArrayList<>(configs.size());
         for (int i = 0; i < configs.size(); i++) {
             ServiceConfig config = configs.get(i);
-            SimpleProcessWatcher watcher = watchers.get(i);
+            SimpleProcessWatcher watcher = watchers.get(config.getId());
             
-            String status = "未启动";
+            String status;
             String pid = "-";
+            boolean running = watcher != null && watcher.isRunning();
             
-            // 检查是否正在启动
-            if (startingServices.contains(i)) {
-                status = "🟡 启动中...";
-            } else if (watcher != null) {
-                // 优先检查进程是否存活（更准确反映实际状态）
+            if (watcher != null) {
+                WatcherState state = watcher.getState();
+                status = statusIcon(state) + " " + state.getLabel();
                 if (watcher.isProcessAlive()) {
-                    status = "🟢 运行中";
                     pid = String.valueOf(watcher.getProcessId());
-                } else if (watcher.isRunning()) {
-                    // 监控在运行但进程已死（可能是被外部杀死）
-                    status = "🟡 进程已退出";
-                    pid = "-";
-                } else {
-                    status = "⚪ 已停止";
-                    pid = "-";
                 }
             } else {
                 status = "⚪ 未启动";
             }
             
-            Object[] row = {
-                config.getName(),
-                config.getJavaExe(),
-                config.getWorkDir(),
-                status,
-                pid,
-                i  // 存储索引用于操作按钮
-            };
-            tableModel.addRow(row);
-        }
-        
-        // 设置状态列的颜色渲染
-        serviceTable.setDefaultRenderer(Object.class, new javax.swing.table.DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value,
-                    boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                // 状态列特殊处理
-                if (column == 3 && value != null) {
-                    String status = value.toString();
-                    if (status.contains("运行中")) {
-                        c.setBackground(new Color(200, 230, 201)); // 浅绿色
-                        c.setForeground(new Color(27, 94, 32)); // 深绿色
-                    } else if (status.contains("启动中")) {
-                        c.setBackground(new Color(255, 243, 224)); // 浅黄色
-                        c.setForeground(new Color(230, 126, 34)); // 深黄色
-                        // 添加闪烁效果提示
-                        ((JLabel) c).setText(status + " ⏳");
-                    } else if (status.contains("已退出")) {
-                        c.setBackground(new Color(255, 243, 224)); // 浅黄色
-                        c.setForeground(new Color(230, 126, 34)); // 深黄色
-                    } else {
-                        c.setBackground(Color.WHITE);
-                        c.setForeground(TEXT);
-                    }
-                } else {
-                    if (isSelected) {
-                        c.setBackground(BLUE_LIGHT);
-                        c.setForeground(TEXT);
-                    } else {
-                        c.setBackground(row % 2 == 0 ? Color.WHITE : PANEL);
-                        c.setForeground(TEXT);
-                    }
-                }
-                
-                ((JLabel) c).setHorizontalAlignment(SwingConstants.LEFT);
-                ((JLabel) c).setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
-                return c;
-            }
-        });
+            snapshot.add(new ServiceRow(config.getName(), config.getJavaExe(), config.getWorkDir(),
+                status, pid, i, running));
+        }
+        tableModel.apply(snapshot);
+        // 状态变化都会触发刷新，顺带更新进程记录
+        saveProcessState();
+    }
+
+    private static String statusIcon(WatcherState state) {
+        switch (state) {
+            case READY: return "🟢";
+            case STARTING:
+            case BACKOFF:
+            case STOPPING: return "🟡";
+            case QUARANTINED: return "🔴";
+            default: return "⚪";
+        }
     }
 
     private void showAddDialog() {
@@ -716,9 +918,10 @@ public class ServiceMonitorFrame extends JFrame {
         if (dialog.isConfirmed()) {
             ServiceConfig config = dialog.getConfig();
             if (config != null) {
+                config.setId(ConfigManager.generateId());
                 configs.add(config);
                 saveConfigs();
-                refreshTable();
+                requestRefresh();
                 appendLog("已添加服务: " + config.getName());
             }
         }
@@ -730,91 +933,136 @@ public class ServiceMonitorFrame extends JFrame {
         }
         
         ServiceConfig config = configs.get(index);
-        if (watchers.containsKey(index) && watchers.get(index).isRunning()) {
+        SimpleProcessWatcher current = watchers.get(config.getId());
+        if (current != null && current.getState() == WatcherState.STARTING) {
+            // 如果正在启动，忽略重复点击
+            appendLog("服务 " + config.getName() + " 正在启动中，请稍候...");
+            return;
+        }
+        if (current != null && current.isRunning()) {
             appendLog("服务 " + config.getName() + " 已在运行中");
             return;
         }
-        
-        // 如果正在启动，忽略重复点击
-        if (startingServices.contains(index)) {
-            appendLog("服务 " + config.getName() + " 正在启动中，请稍候...");
+        if (startQueue.positionOf(config.getId(), 0) > 0) {
+            appendLog("服务 " + config.getName() + " 正在排队等待启动");
             return;
         }
         
-        // 标记为正在启动
-        startingServices.add(index);
-        
-        // 立即更新UI显示"启动中"状态
-        SwingUtilities.invokeLater(() -> {
-            refreshTable();
-        });
+        setDesiredRunning(config, true);
+        int port = -1;
+        if (config.usesPortTemplate()) {
+            releasePort(config.getId());
+            try {
+                port = PortAllocator.allocate(config.getBasePort());
+            } catch (IOException e) {
+                appendLog("✗ 启动服务 " + config.getName() + " 失败: " + e.getMessage());
+                return;
+            }
+            ports.put(config.getId(), port);
+        }
+        SimpleProcessWatcher watcher = createWatcher(config, port);
         
+        // 先登记监控器，启动确认期间表格显示"启动中"
+        watchers.put(config.getId(), watcher);
         appendLog("正在启动服务: " + config.getName() + "...");
         
         // 在后台线程执行启动，避免阻塞UI
         new Thread(() -> {
             try {
-                String[] args = config.getArgsArray();
-                
-                // 自动生成日志路径：logs/服务名称/
-                String logBasePath = appSettings.getLogBasePath();
-                File logDir = new File(logBasePath, config.getName());
-                logDir.mkdirs(); // 确保目录存在
-                
-                File outLog = new File(logDir, "output.log");
-                File errLog = new File(logDir, "error.log");
-                
-                SimpleProcessWatcher watcher = new SimpleProcessWatcher(
-                    config.getJavaExe(),
-                    config.getWorkDir(),
-                    args,
-                    outLog,
-                    errLog
-                );
-                
-                watcher.setLogCallback(msg -> appendLog("[" + config.getName() + "] " + msg));
-                
-                // start() 方法现在会等待5秒并确认进程真正启动成功
+                // 先经启动准入队列放行，再由 start() 等待5秒并确认进程真正启动成功
                 // 如果进程在5秒内退出（如端口占用），会抛出IOException
+                long waited = startQueue.acquire(config.getId(), config.getName(), 0);
+                if (waited >= 1000) {
+                    appendLog("服务 " + config.getName() + " 排队 " + waited + " ms 后开始启动");
+                }
                 watcher.start();
                 
-                watchers.put(index, watcher);
-                startStatusUpdate(index);
-                
                 // 只有在确认启动成功后才显示成功消息
                 appendLog("✓ 服务 " + config.getName() + " 启动成功");
             } catch (Exception e) {
                 appendLog("✗ 启动服务 " + config.getName() + " 失败: " + e.getMessage());
-            } finally {
-                // 移除启动中标记
-                startingServices.remove(index);
-                // 刷新表格
                 SwingUtilities.invokeLater(() -> {
-                    refreshTable();
+                    if (watchers.remove(config.getId(), watcher)) {
+                        releasePort(config.getId());
+                    }
+                    requestRefresh();
                 });
             }
         }, "StartService-" + config.getName()).start();
     }
 
+    /**
+     * @param port 替换参数中 ${port} 的端口，没有时为-1
+     */
+    private SimpleProcessWatcher createWatcher(ServiceConfig config, int port) {
+        String[] args = config.resolveArgs(0, port);
+        
+        // 自动生成日志路径：logs/服务名称/
+        String logBasePath = appSettings.getLogBasePath();
+        File logDir = new File(logBasePath, config.getName());
+        logDir.mkdirs(); // 确保目录存在
+        
+        SimpleProcessWatcher watcher = new SimpleProcessWatcher(
+            config.getJavaExe(),
+            config.getWorkDir(),
+            args,
+            new File(logDir, "output.log"),
+            new File(logDir, "error.log")
+        );
+        // 来源与消息分开传入，事件面板按原始消息折叠重复
+        watcher.setLogCallback(msg -> eventLog.append(config.getName(), msg));
+        watcher.setReadinessTimeoutMs(appSettings.getStartReadyTimeoutMs());
+        if (config.isAppCds()) {
+            watcher.setAppCds(new AppCdsArchive(config.getId()));
+        }
+        List<String> jvmOptions = new ArrayList<>();
+        if (config.getSizingWeight() > 0) {
+            // 桌面端每个服务只运行一个实例，按 replicas 分会让每个实例只拿到一小份
+            JvmSizing.Allocation allocation = JvmSizing.planFor(configs, config.getId(), c -> 1);
+            if (allocation != null) {
+                jvmOptions.addAll(allocation.getInjected());
+            }
+        }
+        if (config.isGcLog()) {
+            jvmOptions.addAll(GcLogAnalyzer.jvmOptions(logDir));
+        }
+        watcher.setJvmOptions(jvmOptions);
+        // 状态转换（含进程退出、就绪）触发表格刷新
+        watcher.addTransitionListener(transition -> {
+            if (transition.getTo() == WatcherState.STOPPED) {
+                launchedWatchers.remove(watcher);
+            }
+            requestRefresh();
+        });
+        launchedWatchers.add(watcher);
+        return watcher;
+    }
+
     private void stopService(int index) {
         if (index < 0 || index >= configs.size()) {
             return;
         }
         
         ServiceConfig config = configs.get(index);
-        SimpleProcessWatcher watcher = watchers.get(index);
+        SimpleProcessWatcher watcher = watchers.get(config.getId());
+        setDesiredRunning(config, false);
+        // 还在排队的启动直接取消，不再拉起进程
+        startQueue.cancel(config.getId());
         
         if (watcher != null) {
             watcher.stop();
-            watchers.remove(index);
-            
-            ScheduledExecutorService service = statusUpdateServices.remove(index);
-            if (service != null) {
-                service.shutdown();
-            }
+            watchers.remove(config.getId(), watcher);
+            releasePort(config.getId());
             
             appendLog("服务 " + config.getName() + " 已停止");
-            refreshTable();
+            requestRefresh();
+        }
+    }
+
+    private void releasePort(String serviceId) {
+        Integer port = ports.remove(serviceId);
+        if (port != null) {
+            PortAllocator.release(port);
         }
     }
 
@@ -834,7 +1082,7 @@ public class ServiceMonitorFrame extends JFrame {
             appendLog("开始一键启动所有服务，共 " + totalCount + " 个服务...");
             
             for (int i = 0; i < configs.size(); i++) {
-                SimpleProcessWatcher watcher = watchers.get(i);
+                SimpleProcessWatcher watcher = watcherAt(i);
                 
                 // 如果服务已经在运行，跳过
                 if (watcher != null && watcher.isProcessAlive()) {
@@ -846,10 +1094,9 @@ public class ServiceMonitorFrame extends JFrame {
                 // 启动服务
                 try {
                     final int index = i;
+                    // 实际拉起由启动准入队列按主机负载错开
                     SwingUtilities.invokeLater(() -> startService(index));
                     startedCount++;
-                    // 每个服务启动间隔500ms，避免同时启动过多服务
-                    Thread.sleep(500);
                 } catch (Exception e) {
                     failedCount++;
                     appendLog("启动服务 " + configs.get(i).getName() + " 失败: " + e.getMessage());
@@ -857,7 +1104,7 @@ public class ServiceMonitorFrame extends JFrame {
             }
             
             appendLog("一键启动完成：成功 " + startedCount + " 个，跳过 " + skippedCount + " 个，失败 " + failedCount + " 个");
-            SwingUtilities.invokeLater(() -> refreshTable());
+            requestRefresh();
         }, "StartAllServices").start();
     }
 
@@ -898,7 +1145,7 @@ public class ServiceMonitorFrame extends JFrame {
             // 收集所有需要停止的服务索引
             List<Integer> indicesToStop = new ArrayList<>();
             for (int i = 0; i < configs.size(); i++) {
-                SimpleProcessWatcher watcher = watchers.get(i);
+                SimpleProcessWatcher watcher = watcherAt(i);
                 if (watcher != null && watcher.isProcessAlive()) {
                     indicesToStop.add(i);
                 }
@@ -918,7 +1165,7 @@ public class ServiceMonitorFrame extends JFrame {
             }
             
             appendLog("一键停止完成：已停止 " + stoppedCount + " 个服务");
-            SwingUtilities.invokeLater(() -> refreshTable());
+            requestRefresh();
         }, "StopAllServices").start();
     }
 
@@ -948,7 +1195,7 @@ public class ServiceMonitorFrame extends JFrame {
         }
         
         ServiceConfig config = configs.get(index);
-        SimpleProcessWatcher watcher = watchers.get(index);
+        SimpleProcessWatcher watcher = watchers.get(config.getId());
         
         // 如果服务正在运行，提示先停止
         if (watcher != null && watcher.isProcessAlive()) {
@@ -981,9 +1228,10 @@ public class ServiceMonitorFrame extends JFrame {
         if (dialog.isConfirmed()) {
             ServiceConfig newConfig = dialog.getConfig();
             if (newConfig != null) {
+                newConfig.setId(config.getId()); // 编辑不改变服务ID
                 configs.set(index, newConfig);
                 saveConfigs();
-                refreshTable();
+                requestRefresh();
                 appendLog("已更新服务配置: " + newConfig.getName());
             }
         }
@@ -1008,71 +1256,17 @@ public class ServiceMonitorFrame extends JFrame {
             
             // 移除配置
             configs.remove(index);
+            desiredRunning.remove(config.getId());
+            saveDesiredState();
             
-            // 更新watchers的索引
-            Map<Integer, SimpleProcessWatcher> newWatchers = new HashMap<>();
-            for (Map.Entry<Integer, SimpleProcessWatcher> entry : watchers.entrySet()) {
-                int oldIndex = entry.getKey();
-                if (oldIndex < index) {
-                    newWatchers.put(oldIndex, entry.getValue());
-                } else if (oldIndex > index) {
-                    newWatchers.put(oldIndex - 1, entry.getValue());
-                }
-            }
-            watchers = newWatchers;
-            
-            // 更新statusUpdateServices的索引
-            Map<Integer, ScheduledExecutorService> newServices = new HashMap<>();
-            for (Map.Entry<Integer, ScheduledExecutorService> entry : statusUpdateServices.entrySet()) {
-                int oldIndex = entry.getKey();
-                if (oldIndex < index) {
-                    newServices.put(oldIndex, entry.getValue());
-                } else if (oldIndex > index) {
-                    newServices.put(oldIndex - 1, entry.getValue());
-                } else {
-                    entry.getValue().shutdown();
-                }
-            }
-            statusUpdateServices = newServices;
+            watchers.remove(config.getId());
             
             saveConfigs();
-            refreshTable();
+            requestRefresh();
             appendLog("已删除服务: " + config.getName());
         }
     }
 
-    private void startStatusUpdate(int index) {
-        // 如果已存在，先关闭旧的
-        ScheduledExecutorService oldService = statusUpdateServices.remove(index);
-        if (oldService != null) {
-            oldService.shutdown();
-        }
-        
-        ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "StatusUpdate-" + index);
-            t.setDaemon(true);
-            return t;
-        });
-        statusUpdateServices.put(index, service);
-        
-        // 提高刷新频率到1秒，确保能及时检测到外部杀死进程的情况
-        service.scheduleAtFixedRate(() -> {
-            try {
-                SwingUtilities.invokeLater(() -> {
-                    try {
-                        refreshTable();
-                    } catch (Exception e) {
-                        // 防止UI更新异常影响后台任务
-                        System.err.println("刷新表格时出错: " + e.getMessage());
-                    }
-                });
-            } catch (Exception e) {
-                // 防止任务执行异常
-                System.err.println("状态更新任务出错: " + e.getMessage());
-            }
-        }, 0, 1, TimeUnit.SECONDS);
-    }
-
     private void startGlobalStatusUpdate() {
         if (globalStatusUpdateService != null) {
             globalStatusUpdateService.shutdown();
@@ -1084,44 +1278,14 @@ public class ServiceMonitorFrame extends JFrame {
             return t;
         });
         
-        // 提高刷新频率到1秒，确保能及时检测到外部杀死进程的情况
-        globalStatusUpdateService.scheduleAtFixedRate(() -> {
-            try {
-                SwingUtilities.invokeLater(() -> {
-                    try {
-                        refreshTable();
-                    } catch (Exception e) {
-                        // 防止UI更新异常影响后台任务
-                        System.err.println("刷新表格时出错: " + e.getMessage());
-                    }
-                });
-            } catch (Exception e) {
-                // 防止任务执行异常
-                System.err.println("全局状态更新任务出错: " + e.getMessage());
-            }
-        }, 0, 1, TimeUnit.SECONDS);
+        // 状态变化主要由监控器事件触发；这里每秒兜底检查一次，及时发现被外部杀死的进程。
+        // 与事件触发的刷新合并执行，没有变化的单元格不会重绘。
+        globalStatusUpdateService.scheduleAtFixedRate(this::requestRefresh, 0, 1, TimeUnit.SECONDS);
     }
 
     private void appendLog(String message) {
-        if (message == null) {
-            return;
-        }
-        try {
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    if (logArea != null) {
-                        logArea.append(java.time.LocalDateTime.now() + " | " + message + "\n");
-                        logArea.setCaretPosition(logArea.getDocument().getLength());
-                    }
-                } catch (Exception e) {
-                    // 防止日志追加异常影响程序运行
-                    System.err.println("追加日志失败: " + e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            // 防止invokeLater异常
-            System.err.println("调度日志追加失败: " + e.getMessage());
-        }
+        // 由事件面板合并成每100ms一次的界面更新，可在任意线程调用
+        eventLog.append(message);
     }
 
     /**
@@ -1221,6 +1385,121 @@ public class ServiceMonitorFrame extends JFrame {
         return createStyledButton(text, BLUE_PRIMARY);
     }
 
+    /**
+     * 表格行快照
+     */
+    private static class ServiceRow {
+        private final Object[] values;
+        private final boolean running; // 监控是否运行，决定操作列显示哪些按钮
+
+        ServiceRow(String name, String javaExe, String workDir, String status, String pid, int index, boolean running) {
+            this.values = new Object[]{name, javaExe, workDir, status, pid, index};
+            this.running = running;
+        }
+    }
+
+    /**
+     * 服务表格模型：用新快照与旧快照逐格比较，只触发变化单元格的更新事件
+     */
+    private static class ServiceTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"名称", "Java路径", "工作目录修复bug", "状态", "PID***", "操作"};
+        private static final int ACTION_COLUMN = 5;
+        private List<ServiceRow> rows = new ArrayList<>();
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row).values[column];
+        }
+
+        void apply(List<ServiceRow> snapshot) {
+            List<ServiceRow> old = rows;
+            rows = snapshot;
+            int common = Math.min(old.size(), snapshot.size());
+            for (int r = 0; r < common; r++) {
+                ServiceRow before = old.get(r);
+                ServiceRow after = snapshot.get(r);
+                for (int c = 0; c < COLUMN_NAMES.length; c++) {
+                    if (!Objects.equals(before.values[c], after.values[c])) {
+                        fireTableCellUpdated(r, c);
+                    }
+                }
+                if (before.running != after.running && Objects.equals(
+                        before.values[ACTION_COLUMN], after.values[ACTION_COLUMN])) {
+                    fireTableCellUpdated(r, ACTION_COLUMN);
+                }
+            }
+            if (snapshot.size() > old.size()) {
+                fireTableRowsInserted(old.size(), snapshot.size() - 1);
+            } else if (snapshot.size() < old.size()) {
+                fireTableRowsDeleted(snapshot.size(), old.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * 单元格渲染器（状态列按状态着色，其他列斑马纹），颜色和边框复用常量
+     */
+    private static class StatusCellRenderer extends javax.swing.table.DefaultTableCellRenderer {
+        private static final javax.swing.border.Border CELL_BORDER = BorderFactory.createEmptyBorder(5, 10, 5, 10);
+
+        StatusCellRenderer() {
+            setHorizontalAlignment(SwingConstants.LEFT);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            
+            // 状态列特殊处理
+            if (column == 3 && value != null) {
+                String status = value.toString();
+                if (status.contains("运行中")) {
+                    setBackground(STATUS_RUNNING_BG);
+                    setForeground(STATUS_RUNNING_FG);
+                } else if (status.contains("启动中")) {
+                    setBackground(STATUS_WARN_BG);
+                    setForeground(STATUS_WARN_FG);
+                    // 添加闪烁效果提示
+                    setText(status + " ⏳");
+                } else if (status.contains("等待重启") || status.contains("停止中")) {
+                    setBackground(STATUS_WARN_BG);
+                    setForeground(STATUS_WARN_FG);
+                } else if (status.contains("已隔离")) {
+                    setBackground(STATUS_ERROR_BG);
+                    setForeground(STATUS_ERROR_FG);
+                } else {
+                    setBackground(Color.WHITE);
+                    setForeground(TEXT);
+                }
+            } else if (isSelected) {
+                setBackground(BLUE_LIGHT);
+                setForeground(TEXT);
+            } else {
+                setBackground(row % 2 == 0 ? Color.WHITE : PANEL);
+                setForeground(TEXT);
+            }
+            
+            setBorder(CELL_BORDER);
+            return this;
+        }
+    }
+
     // 按钮渲染器
     private class ButtonCellRenderer extends JPanel implements javax.swing.table.TableCellRenderer {
         private JButton startBtn;
@@ -1250,7 +1529,7 @@ public class ServiceMonitorFrame extends JFrame {
                 boolean isSelected, boolean hasFocus, int row, int column) {
             removeAll();
             int index = (Integer) value;
-            SimpleProcessWatcher watcher = watchers.get(index);
+            SimpleProcessWatcher watcher = watcherAt(index);
             boolean isRunning = watcher != null && watcher.isRunning();
             
             if (isRunning) {
@@ -1553,6 +1832,7 @@ public class ServiceMonitorFrame extends JFrame {
             AppSettings newSettings = dialog.getSettings();
             if (newSettings != null) {
                 appSettings = newSettings;
+                startQueue.setLimits(startLimits(appSettings));
                 try {
                     SettingsManager.saveSettings(appSettings);
                     appendLog("设置已保存");
@@ -1620,7 +1900,9 @@ public class ServiceMonitorFrame extends JFrame {
             okBtn.addActionListener(e -> {
                 if (validateInput()) {
                     confirmed = true;
-                    settings = new AppSettings(logBasePathField.getText().trim());
+                    // 保留启动准入等其他设置（在Web界面修改）
+                    settings = settings != null ? new AppSettings(settings) : new AppSettings();
+                    settings.setLogBasePath(logBasePathField.getText().trim());
                     dispose();
                 }
             });
@@ -0,0 +1,373 @@
+package com.love.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * 一个服务的 AppCDS 动态归档（cds/服务ID/，与 services.json 放在一起）
+ * 没有可用归档时以 -XX:ArchiveClassesAtExit 启动，进程正常退出时JVM把加载过的类写入归档；
+ * 之后以 -XX:SharedArchiveFile 启动，跳过这些类的解析和校验。
+ * 归档与指纹绑定：Java可执行文件所属JDK（release 文件和 lib/modules）以及参数中 -jar、-cp 引用的jar的校验和，
+ * 任一变化后旧归档作废并重新生成。同时记录使用和不使用归档时的启动耗时（拉起到端口就绪）。
+ * 多个实例共用同一目录，文件操作在类锁内进行。
+ */
+public class AppCdsArchive {
+    private static final String BASE_DIR = "cds";
+    private static final String META_FILE = "archive.properties";
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+    private static final String PARTIAL_SUFFIX = ".jsa.tmp";
+    // 动态归档文件头的魔数（小端），JVM写完所有区域后才写文件头，被中断的归档没有魔数
+    private static final int DYNAMIC_ARCHIVE_MAGIC = 0xf00baba8;
+
+    // jar路径 -> {长度, 修改时间, 校验和}，文件没变时不重复计算
+    private static final Map<String, long[]> checksumCache = new HashMap<>();
+
+    private final File dir;
+
+    public AppCdsArchive(String serviceId) {
+        this.dir = new File(BASE_DIR, serviceId);
+    }
+
+    /**
+     * 用户已自行指定了CDS相关参数时不再添加
+     */
+    public static boolean hasUserCdsOptions(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("-XX:SharedArchiveFile") || arg.startsWith("-XX:ArchiveClassesAtExit")
+                || arg.startsWith("-Xshare") || arg.equals("-XX:-UseSharedSpaces")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 为一次启动选择CDS参数：有与当前指纹匹配的归档时使用它，否则在退出时生成
+     * @return 计算指纹失败（如jar不存在）时返回null，按普通方式启动
+     */
+    public Launch prepare(String javaExe, String workDir, String[] args) {
+        String fingerprint;
+        try {
+            fingerprint = fingerprint(javaExe, workDir, args);
+        } catch (IOException e) {
+            System.err.println("计算CDS归档指纹失败，本次不使用归档: " + e.getMessage());
+            return null;
+        }
+        synchronized (AppCdsArchive.class) {
+            dir.mkdirs();
+            Properties meta = loadMeta();
+            if (!fingerprint.equals(meta.getProperty("fingerprint"))) {
+                // JDK或jar变化：旧归档和耗时记录作废
+                deleteArchives();
+                meta = new Properties();
+                meta.setProperty("fingerprint", fingerprint);
+                saveMeta(meta);
+            }
+            File archive = new File(dir, fingerprint + ARCHIVE_SUFFIX);
+            if (!archive.exists()) {
+                promotePartial(fingerprint, archive);
+            }
+            if (archive.exists()) {
+                return new Launch(this, false, "-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            }
+            // 每次生成用独立的临时文件，同时启动的多个实例互不覆盖
+            File partial = new File(dir, fingerprint + "-" + System.nanoTime() + PARTIAL_SUFFIX);
+            return new Launch(this, true, "-XX:ArchiveClassesAtExit=" + partial.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 统计信息；从未生成过时返回的统计各项为0
+     */
+    public Stats getStats() {
+        synchronized (AppCdsArchive.class) {
+            Properties meta = loadMeta();
+            String fingerprint = meta.getProperty("fingerprint");
+            File archive = fingerprint != null ? new File(dir, fingerprint + ARCHIVE_SUFFIX) : null;
+            boolean ready = archive != null && archive.exists();
+            return new Stats(fingerprint, ready ? archive.getAbsolutePath() : null,
+                ready ? archive.length() : 0, ready ? archive.lastModified() : 0,
+                longOf(meta, "baseline.count"), longOf(meta, "baseline.total"), longOf(meta, "baseline.last"),
+                longOf(meta, "archived.count"), longOf(meta, "archived.total"), longOf(meta, "archived.last"));
+        }
+    }
+
+    /**
+     * 删除该服务的归档目录（服务被删除时）
+     */
+    public void delete() {
+        synchronized (AppCdsArchive.class) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private void recordStartup(boolean archived, long millis) {
+        synchronized (AppCdsArchive.class) {
+            Properties meta = loadMeta();
+            String prefix = archived ? "archived." : "baseline.";
+            meta.setProperty(prefix + "count", String.valueOf(longOf(meta, prefix + "count") + 1));
+            meta.setProperty(prefix + "total", String.valueOf(longOf(meta, prefix + "total") + millis));
+            meta.setProperty(prefix + "last", String.valueOf(millis));
+            saveMeta(meta);
+        }
+    }
+
+    /**
+     * 把上次退出时写完的临时归档改名为正式归档，删除其余临时文件
+     */
+    private void promotePartial(String fingerprint, File archive) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(fingerprint + "-") && name.endsWith(PARTIAL_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!archive.exists() && isCompleteArchive(file)) {
+                try {
+                    Files.move(file.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    continue;
+                } catch (IOException e) {
+                    System.err.println("保存CDS归档失败: " + e.getMessage());
+                }
+            }
+            file.delete();
+        }
+    }
+
+    private static boolean isCompleteArchive(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(in.readInt()) == DYNAMIC_ARCHIVE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteArchives() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(ARCHIVE_SUFFIX) || name.endsWith(PARTIAL_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private Properties loadMeta() {
+        Properties meta = new Properties();
+        File file = new File(dir, META_FILE);
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                meta.load(reader);
+            } catch (IOException e) {
+                System.err.println("读取CDS归档信息失败: " + e.getMessage());
+            }
+        }
+        return meta;
+    }
+
+    private void saveMeta(Properties meta) {
+        // 先写入临时文件再原子替换
+        File tempFile = new File(dir, META_FILE + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                meta.store(writer, null);
+            }
+            Files.move(tempFile.toPath(), new File(dir, META_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("保存CDS归档信息失败: " + e.getMessage());
+        }
+    }
+
+    private static long longOf(Properties meta, String key) {
+        try {
+            return Long.parseLong(meta.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 指纹：JDK的 release 文件内容、lib/modules 的长度和修改时间，加上各jar的路径和校验和
+     */
+    static String fingerprint(String javaExe, String workDir, String[] args) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        File javaHome = new File(javaExe).getCanonicalFile().getParentFile().getParentFile();
+        File release = new File(javaHome, "release");
+        if (release.isFile()) {
+            digest.update(Files.readAllBytes(release.toPath()));
+        } else {
+            digest.update(javaHome.getPath().getBytes(StandardCharsets.UTF_8));
+        }
+        File modules = new File(javaHome, "lib/modules");
+        digest.update((modules.length() + ":" + modules.lastModified()).getBytes(StandardCharsets.UTF_8));
+        for (File jar : referencedJars(workDir, args)) {
+            if (!jar.isFile()) {
+                throw new IOException("jar不存在: " + jar.getPath());
+            }
+            digest.update((jar.getPath() + ":" + checksum(jar)).getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder hex = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 参数中 -jar 后的jar和 -cp/-classpath/--class-path 中的jar（相对路径按工作目录解析）
+     */
+    static List<File> referencedJars(String workDir, String[] args) throws IOException {
+        List<File> jars = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i++) {
+            String arg = args[i].trim();
+            if (arg.equals("-jar")) {
+                jars.add(resolve(workDir, args[i + 1].trim()));
+                break; // -jar 之后是程序参数
+            }
+            if (arg.equals("-cp") || arg.equals("-classpath") || arg.equals("--class-path")) {
+                for (String entry : args[i + 1].trim().split(File.pathSeparator)) {
+                    if (entry.endsWith(".jar")) {
+                        jars.add(resolve(workDir, entry));
+                    }
+                }
+                i++;
+            }
+        }
+        return jars;
+    }
+
+    private static File resolve(String workDir, String path) throws IOException {
+        File file = new File(path);
+        return (file.isAbsolute() ? file : new File(workDir, path)).getCanonicalFile();
+    }
+
+    private static long checksum(File jar) throws IOException {
+        String key = jar.getPath();
+        long length = jar.length();
+        long modified = jar.lastModified();
+        synchronized (checksumCache) {
+            long[] cached = checksumCache.get(key);
+            if (cached != null && cached[0] == length && cached[1] == modified) {
+                return cached[2];
+            }
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(jar)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        synchronized (checksumCache) {
+            checksumCache.put(key, new long[]{length, modified, crc.getValue()});
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 一次启动使用的CDS参数
+     */
+    public static class Launch {
+        private final AppCdsArchive archive;
+        private final boolean dumping; // true：本次运行在退出时生成归档（不使用归档）
+        private final String option;
+
+        Launch(AppCdsArchive archive, boolean dumping, String option) {
+            this.archive = archive;
+            this.dumping = dumping;
+            this.option = option;
+        }
+
+        public boolean isDumping() { return dumping; }
+        public String getOption() { return option; }
+
+        /**
+         * 记录从拉起进程到就绪的耗时
+         */
+        public void recordStartup(long millis) {
+            archive.recordStartup(!dumping, millis);
+        }
+    }
+
+    /**
+     * 归档和启动耗时统计；平均耗时没有记录时为-1
+     */
+    public static class Stats {
+        private final String fingerprint;
+        private final String archivePath;  // 尚未生成时为null
+        private final long archiveBytes;
+        private final long createdAt;
+        private final long baselineStarts;
+        private final long baselineTotalMs;
+        private final long baselineLastMs;
+        private final long archivedStarts;
+        private final long archivedTotalMs;
+        private final long archivedLastMs;
+
+        public Stats(String fingerprint, String archivePath, long archiveBytes, long createdAt,
+                     long baselineStarts, long baselineTotalMs, long baselineLastMs,
+                     long archivedStarts, long archivedTotalMs, long archivedLastMs) {
+            this.fingerprint = fingerprint;
+            this.archivePath = archivePath;
+            this.archiveBytes = archiveBytes;
+            this.createdAt = createdAt;
+            this.baselineStarts = baselineStarts;
+            this.baselineTotalMs = baselineTotalMs;
+            this.baselineLastMs = baselineLastMs;
+            this.archivedStarts = archivedStarts;
+            this.archivedTotalMs = archivedTotalMs;
+            this.archivedLastMs = archivedLastMs;
+        }
+
+        public String getFingerprint() { return fingerprint; }
+        public String getArchivePath() { return archivePath; }
+        public long getArchiveBytes() { return archiveBytes; }
+        public long getCreatedAt() { return createdAt; }
+        public long getBaselineStarts() { return baselineStarts; }
+        public long getBaselineLastMs() { return baselineLastMs; }
+        public long getArchivedStarts() { return archivedStarts; }
+        public long getArchivedLastMs() { return archivedLastMs; }
+
+        public long getBaselineAvgMs() {
+            return baselineStarts > 0 ? baselineTotalMs / baselineStarts : -1;
+        }
+
+        public long getArchivedAvgMs() {
+            return archivedStarts > 0 ? archivedTotalMs / archivedStarts : -1;
+        }
+
+        /**
+         * 使用归档后平均启动耗时减少的百分比；缺少任一方的记录时为-1
+         */
+        public double getImprovementPercent() {
+            long baseline = getBaselineAvgMs();
+            long archived = getArchivedAvgMs();
+            if (baseline <= 0 || archived < 0) {
+                return -1;
+            }
+            return Math.round((baseline - archived) * 1000.0 / baseline) / 10.0;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.love.util;
+
+import com.love.model.ServiceConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 两份服务配置之间的差异（按服务ID比较）
+ * 每个服务归入一种变化：新增、删除、启动参数变化（需要重启）、只有实例数变化（增减实例即可）、
+ * 只有名称、对外端口、空闲超时、CDS归档开关或资源分配权重变化（不影响运行中的进程，后两者在下次启动时生效）；
+ * 没有变化的服务不出现在结果中。
+ */
+public class ConfigDiff {
+
+    public enum ChangeType {
+        ADDED("新增"),
+        REMOVED("删除"),
+        RESTART_REQUIRED("需重启"),
+        SCALED("实例数变化"),
+        COSMETIC("无需重启");
+
+        private final String label;
+
+        ChangeType(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final List<Change> changes;
+    private final boolean orderChanged;
+
+    private ConfigDiff(List<Change> changes, boolean orderChanged) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.orderChanged = orderChanged;
+    }
+
+    /**
+     * 计算从 oldConfigs 到 newConfigs 的差异，O(n)
+     */
+    public static ConfigDiff compute(List<ServiceConfig> oldConfigs, List<ServiceConfig> newConfigs) {
+        Map<String, ServiceConfig> oldById = new HashMap<>();
+        for (ServiceConfig config : oldConfigs) {
+            oldById.put(config.getId(), config);
+        }
+        List<Change> changes = new ArrayList<>();
+        List<String> keptOrder = new ArrayList<>();
+        for (ServiceConfig config : newConfigs) {
+            ServiceConfig old = oldById.remove(config.getId());
+            if (old == null) {
+                changes.add(new Change(ChangeType.ADDED, config.getId(), null, config, Collections.emptyList()));
+                continue;
+            }
+            keptOrder.add(config.getId());
+            List<String> fields = new ArrayList<>();
+            if (!Objects.equals(old.getJavaExe(), config.getJavaExe())) {
+                fields.add("javaExe");
+            }
+            if (!Objects.equals(old.getWorkDir(), config.getWorkDir())) {
+                fields.add("workDir");
+            }
+            if (!Objects.equals(old.getArgs(), config.getArgs())) {
+                fields.add("args");
+            }
+            if (old.getBasePort() != config.getBasePort()) {
+                fields.add("basePort");
+            }
+            boolean restart = !fields.isEmpty();
+            boolean scaled = old.getReplicas() != config.getReplicas();
+            if (scaled) {
+                fields.add("replicas");
+            }
+            if (!Objects.equals(old.getName(), config.getName())) {
+                fields.add("name");
+            }
+            if (old.getPublicPort() != config.getPublicPort()) {
+                fields.add("publicPort");
+            }
+            if (old.getIdleTimeout() != config.getIdleTimeout()) {
+                fields.add("idleTimeout");
+            }
+            if (old.isAppCds() != config.isAppCds()) {
+                fields.add("appCds");
+            }
+            if (old.getSizingWeight() != config.getSizingWeight()) {
+                fields.add("sizingWeight");
+            }
+            if (old.getRssLimitMb() != config.getRssLimitMb()) {
+                fields.add("rssLimitMb");
+            }
+            if (old.getRssLimitMinutes() != config.getRssLimitMinutes()) {
+                fields.add("rssLimitMinutes");
+            }
+            if (old.getHeapGrowthPercent() != config.getHeapGrowthPercent()) {
+                fields.add("heapGrowthPercent");
+            }
+            if (!Objects.equals(old.getRestartBlackout(), config.getRestartBlackout())) {
+                fields.add("restartBlackout");
+            }
+            if (old.isGcLog() != config.isGcLog()) {
+                fields.add("gcLog");
+            }
+            if (old.getGcPauseWarnMs() != config.getGcPauseWarnMs()) {
+                fields.add("gcPauseWarnMs");
+            }
+            if (!fields.isEmpty()) {
+                ChangeType type = restart ? ChangeType.RESTART_REQUIRED
+                    : scaled ? ChangeType.SCALED : ChangeType.COSMETIC;
+                changes.add(new Change(type, config.getId(), old, config, fields));
+            }
+        }
+        for (ServiceConfig old : oldConfigs) {
+            if (oldById.containsKey(old.getId())) {
+                changes.add(new Change(ChangeType.REMOVED, old.getId(), old, null, Collections.emptyList()));
+            }
+        }
+
+        // 两边都有的服务相对顺序是否变化（新增、删除本身不算）
+        List<String> oldOrder = new ArrayList<>();
+        for (ServiceConfig old : oldConfigs) {
+            if (!oldById.containsKey(old.getId())) {
+                oldOrder.add(old.getId());
+            }
+        }
+        return new ConfigDiff(changes, !oldOrder.equals(keptOrder));
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isOrderChanged() {
+        return orderChanged;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty() && !orderChanged;
+    }
+
+    public int count(ChangeType type) {
+        int count = 0;
+        for (Change change : changes) {
+            if (change.getType() == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 例如 "新增 1，删除 0，需重启 2，实例数变化 0，无需重启 0"
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (ChangeType type : ChangeType.values()) {
+            if (sb.length() > 0) {
+                sb.append("，");
+            }
+            sb.append(type.getLabel()).append(' ').append(count(type));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一个服务的变化
+     */
+    public static class Change {
+        private final ChangeType type;
+        private final String id;
+        private final ServiceConfig oldConfig; // 新增时为null
+        private final ServiceConfig newConfig; // 删除时为null
+        private final List<String> fields;     // 变化的字段
+
+        Change(ChangeType type, String id, ServiceConfig oldConfig, ServiceConfig newConfig, List<String> fields) {
+            this.type = type;
+            this.id = id;
+            this.oldConfig = oldConfig;
+            this.newConfig = newConfig;
+            this.fields = fields;
+        }
+
+        public ChangeType getType() { return type; }
+        public String getId() { return id; }
+        public ServiceConfig getOldConfig() { return oldConfig; }
+        public ServiceConfig getNewConfig() { return newConfig; }
+        public List<String> getFields() { return fields; }
+
+        public String getName() {
+            return newConfig != null ? newConfig.getName() : oldConfig.getName();
+        }
+    }
+}
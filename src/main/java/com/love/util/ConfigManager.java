@@ -1,58 +1,570 @@
 package com.love.util;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.love.model.ServiceConfig;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
+/**
+ * 服务配置存储：快照 + 追加式变更日志
+ *
+ * services.json    快照 {"schema":2,"seq":N,"services":[...]}（replicas/basePort 缺省为 1/0，旧快照无需迁移），临时文件写入并fsync后原子替换
+ * services.journal 每行一条变更 {"seq":N,"op":"put","service":{...}}、{"seq":N,"op":"delete","id":"..."}
+ *                  或 {"seq":N,"op":"batch","services":[...]}（批量导入，整行生效或整行丢弃），
+ *                  每次追加后fsync，保存的开销与变更量成正比
+ * 启动时读取快照并重放 seq 更大的日志；末尾写了一半的行（崩溃）会被截掉。日志条数达到阈值时压缩为新快照。
+ * 旧版本的 services.txt 在首次启动时导入一次，原文件改名为 services.txt.imported 保留。
+ * 桌面端和Web端可能同时写这两个文件：每次写入都先对日志文件加 FileChannel 锁，文件被其他进程改过时先重新读取并重放，
+ * 新日志的 seq 接在文件中最新的之后（否则会小于对方压缩出的快照 seq，重放时被跳过），压缩也基于最新内容。
+ * 锁只对遵守同样约定的进程有效；手工编辑不加锁，修改后可通过 watchExternalChanges 感知。
+ */
 public class ConfigManager {
-    private static final String CONFIG_FILE = "services.txt";
+    private static final String SNAPSHOT_FILE = "services.json";
+    private static final String JOURNAL_FILE = "services.journal";
+    private static final String LEGACY_FILE = "services.txt";
+    private static final int SCHEMA_VERSION = 2; // 1 为旧版 services.txt
+    private static final int COMPACT_THRESHOLD = 64; // 日志条数达到后压缩
     private static final String SEPARATOR = "|||";
+    private static final String ID_PREFIX = "svc-";
 
-    public static void saveConfigs(List<ServiceConfig> configs) throws IOException {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // 已持久化的配置（副本，按显示顺序），用于计算变更
+    private static Map<String, ServiceConfig> current = new LinkedHashMap<>();
+    private static long seq = 0;
+    private static int journalEntries = 0;
+    private static FileChannel journal;
+    private static String readOnlyReason; // 快照版本高于当前程序时拒绝写入
+    private static String fingerprint;    // 最近一次读写后两个文件的大小、修改时间和文件标识，用于识别外部修改
+    private static boolean reloadedForWrite; // 写入前重放了其他进程的修改，调用方尚未重新加载
+
+    /**
+     * 生成新的服务ID（带前缀，不会与数字索引混淆）
+     */
+    public static String generateId() {
+        return ID_PREFIX + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+
+    private static void requireId(ServiceConfig config) {
+        if (config.getId() == null || config.getId().isEmpty()) {
+            throw new IllegalArgumentException("服务 " + config.getName() + " 缺少ID，新增服务时须先用 generateId() 分配");
+        }
+    }
+
+    public static boolean isServiceId(String key) {
+        return key != null && key.startsWith(ID_PREFIX);
+    }
+
+    /**
+     * 从磁盘加载全部配置（快照 + 日志重放），返回的是副本
+     */
+    public static synchronized List<ServiceConfig> loadConfigs() {
+        // 重新打开日志：文件可能已被替换（手工编辑后另存）
+        closeJournal();
+        reloadedForWrite = false;
+        try (FileLock lock = journal().lock()) {
+            reload();
+            if (journalEntries >= COMPACT_THRESHOLD && readOnlyReason == null) {
+                compact();
+            }
+        } catch (IOException e) {
+            // 文件损坏（如手工编辑出错）：保留内存中的配置，修复前拒绝写入，避免压缩时覆盖原文件
+            readOnlyReason = "配置文件无法读取，修复前拒绝写入: " + e.getMessage();
+            System.err.println("加载配置失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return copies();
+    }
+
+    /**
+     * 保存完整的配置列表：与本进程上次读写后的内容比较，只把变化写入日志
+     * 其他进程在此之后的修改（写入前重放）会保留，新增的服务排在最后
+     * 顺序发生变化（非追加/删除导致）时直接写新快照
+     * 不修改传入的配置：新服务须在新增时用 generateId() 分配ID
+     */
+    public static synchronized void saveConfigs(List<ServiceConfig> configs) throws IOException {
         if (configs == null) {
             throw new IllegalArgumentException("配置列表不能为null");
         }
-        
-        // 先写入临时文件，然后重命名，确保原子性
-        File tempFile = new File(CONFIG_FILE + ".tmp");
-        File configFile = new File(CONFIG_FILE);
-        
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
-            for (ServiceConfig config : configs) {
+        for (ServiceConfig config : configs) {
+            if (config != null) {
+                requireId(config);
+            }
+        }
+        Map<String, ServiceConfig> base = new LinkedHashMap<>(current);
+        try (FileLock lock = lockForWrite()) {
+            saveLocked(configs, base);
+        }
+    }
+
+    private static void saveLocked(List<ServiceConfig> configs, Map<String, ServiceConfig> base) throws IOException {
+        Set<String> ids = new HashSet<>();
+        for (ServiceConfig config : configs) {
+            if (config == null) {
+                continue; // 跳过null配置
+            }
+            ids.add(config.getId());
+            if (!sameContent(base.get(config.getId()), config)) {
+                putLocked(config);
+            }
+        }
+        for (String id : base.keySet()) {
+            if (!ids.contains(id)) {
+                removeLocked(id);
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (ServiceConfig config : configs) {
+            if (config != null && current.containsKey(config.getId())) {
+                expected.add(config.getId());
+            }
+        }
+        for (String id : current.keySet()) {
+            if (!ids.contains(id)) {
+                expected.add(id); // 其他进程新增的服务
+            }
+        }
+        if (!expected.equals(new ArrayList<>(current.keySet()))) {
+            Map<String, ServiceConfig> reordered = new LinkedHashMap<>();
+            for (String id : expected) {
+                reordered.put(id, current.get(id));
+            }
+            current = reordered;
+            compact();
+        }
+    }
+
+    /**
+     * 新增或修改一个服务（新服务排在最后），追加一条日志
+     */
+    public static synchronized void putConfig(ServiceConfig config) throws IOException {
+        requireId(config);
+        try (FileLock lock = lockForWrite()) {
+            putLocked(config);
+        }
+    }
+
+    private static void putLocked(ServiceConfig config) throws IOException {
+        ObjectNode entry = MAPPER.createObjectNode();
+        entry.put("op", "put");
+        entry.set("service", ServiceConfigCodec.toJson(config));
+        append(entry, 1);
+        current.put(config.getId(), copy(config));
+        compactIfNeeded();
+    }
+
+    /**
+     * 批量新增或修改服务（新服务按顺序排在最后），写入一条日志：要么全部生效，要么全部不生效
+     */
+    public static synchronized void putConfigs(List<ServiceConfig> configs) throws IOException {
+        if (configs.isEmpty()) {
+            return;
+        }
+        for (ServiceConfig config : configs) {
+            requireId(config);
+        }
+        try (FileLock lock = lockForWrite()) {
+            putAllLocked(configs);
+        }
+    }
+
+    private static void putAllLocked(List<ServiceConfig> configs) throws IOException {
+        ObjectNode entry = MAPPER.createObjectNode();
+        entry.put("op", "batch");
+        ArrayNode list = entry.putArray("services");
+        for (ServiceConfig config : configs) {
+            list.add(ServiceConfigCodec.toJson(config));
+        }
+        append(entry, configs.size());
+        for (ServiceConfig config : configs) {
+            current.put(config.getId(), copy(config));
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * 删除一个服务，追加一条日志
+     */
+    public static synchronized void removeConfig(String id) throws IOException {
+        try (FileLock lock = lockForWrite()) {
+            removeLocked(id);
+        }
+    }
+
+    private static void removeLocked(String id) throws IOException {
+        if (!current.containsKey(id)) {
+            return;
+        }
+        ObjectNode entry = MAPPER.createObjectNode();
+        entry.put("op", "delete");
+        entry.put("id", id);
+        append(entry, 1);
+        current.remove(id);
+        compactIfNeeded();
+    }
+
+    /**
+     * 配置文件是否被本进程以外的写入修改过（与最近一次读写后的状态不同）
+     */
+    public static synchronized boolean hasExternalChanges() {
+        return reloadedForWrite || !currentFingerprint().equals(fingerprint);
+    }
+
+    /**
+     * 监视配置文件，被外部修改时（防抖后）回调；本进程自己的写入不会触发
+     */
+    public static ConfigWatcher watchExternalChanges(Runnable listener) throws IOException {
+        Path dir = Paths.get(SNAPSHOT_FILE).toAbsolutePath().getParent();
+        return new ConfigWatcher(dir, Set.of(SNAPSHOT_FILE, JOURNAL_FILE), () -> {
+            if (hasExternalChanges()) {
+                listener.run();
+            }
+        });
+    }
+
+    private static String currentFingerprint() {
+        return fingerprintOf(Paths.get(SNAPSHOT_FILE)) + "/" + fingerprintOf(Paths.get(JOURNAL_FILE));
+    }
+
+    /**
+     * 大小、修改时间和文件标识；快照是原子替换的，文件标识（inode）变化能识别修改时间相同的替换，Windows 上为null
+     */
+    private static String fingerprintOf(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.size() + ":" + attrs.lastModifiedTime() + ":" + attrs.fileKey();
+        } catch (IOException e) {
+            return "-";
+        }
+    }
+
+    // ==================== 快照与日志 ====================
+
+    /**
+     * 加写锁；文件在本进程上次读写之后被其他进程改过时先重新读取，保证 seq 和压缩都基于最新内容
+     * 锁加在日志文件上，期间不能用其他通道打开日志（关闭任何一个通道都会释放本进程在该文件上的锁）
+     */
+    private static FileLock lockForWrite() throws IOException {
+        if (readOnlyReason != null) {
+            throw new IOException(readOnlyReason);
+        }
+        FileLock lock = journal().lock();
+        try {
+            if (!currentFingerprint().equals(fingerprint)) {
+                reload();
+                reloadedForWrite = true; // 让 watchExternalChanges 的回调仍然触发，调用方据此刷新内存中的列表
+            }
+            if (readOnlyReason != null) {
+                throw new IOException(readOnlyReason);
+            }
+        } catch (IOException e) {
+            lock.release();
+            throw e;
+        }
+        return lock;
+    }
+
+    /**
+     * 读取快照并重放日志，替换内存中的配置；调用方须持有日志锁
+     */
+    private static void reload() throws IOException {
+        Map<String, ServiceConfig> loaded = new LinkedHashMap<>();
+        long snapshotSeq = 0;
+        readOnlyReason = null;
+        Path snapshot = Paths.get(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            snapshotSeq = readSnapshot(snapshot, loaded);
+        } else if (new File(LEGACY_FILE).exists()) {
+            importLegacy(loaded);
+        }
+        current = loaded;
+        seq = snapshotSeq;
+        replayJournal(snapshotSeq);
+        fingerprint = currentFingerprint();
+    }
+
+    private static long readSnapshot(Path snapshot, Map<String, ServiceConfig> into) throws IOException {
+        JsonNode root = MAPPER.readTree(snapshot.toFile());
+        int schema = root.path("schema").asInt(0);
+        if (schema > SCHEMA_VERSION) {
+            readOnlyReason = "配置文件版本 " + schema + " 高于当前程序支持的版本 " + SCHEMA_VERSION + "，拒绝写入";
+            System.err.println(readOnlyReason);
+        }
+        for (JsonNode node : root.path("services")) {
+            ServiceConfig config = fromJson(node);
+            if (config != null) {
+                into.put(config.getId(), config);
+            }
+        }
+        return root.path("seq").asLong(0);
+    }
+
+    /**
+     * 重放日志中 seq 大于快照的变更；遇到无法解析的行（崩溃时写了一半）截断日志
+     */
+    private static void replayJournal(long snapshotSeq) throws IOException {
+        journalEntries = 0;
+        FileChannel channel = journal();
+        byte[] data = new byte[(int) channel.size()];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        }
+        int offset = 0;
+        int lineNumber = 0;
+        while (offset < data.length) {
+            int end = offset;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            lineNumber++;
+            if (end == data.length || !applyJournalLine(new String(data, offset, end - offset, StandardCharsets.UTF_8), snapshotSeq)) {
+                // 没有换行结尾或内容损坏：之后的内容都不可信
+                System.err.println("警告: 配置日志第 " + lineNumber + " 行不完整，已截断");
+                if (readOnlyReason == null) {
+                    channel.truncate(offset);
+                    channel.force(true);
+                }
+                break;
+            }
+            journalEntries++;
+            offset = end + 1;
+        }
+    }
+
+    private static boolean applyJournalLine(String line, long snapshotSeq) {
+        JsonNode entry;
+        try {
+            entry = MAPPER.readTree(line);
+        } catch (IOException e) {
+            return false;
+        }
+        if (entry == null || !entry.has("seq") || !entry.has("op")) {
+            return false;
+        }
+        long entrySeq = entry.get("seq").asLong();
+        seq = Math.max(seq, entrySeq);
+        if (entrySeq <= snapshotSeq) {
+            return true; // 已包含在快照中（压缩后截断日志前崩溃）
+        }
+        String op = entry.get("op").asText();
+        if ("put".equals(op)) {
+            ServiceConfig config = fromJson(entry.path("service"));
+            if (config == null) {
+                return false;
+            }
+            current.put(config.getId(), config);
+        } else if ("delete".equals(op)) {
+            current.remove(entry.path("id").asText());
+        } else if ("batch".equals(op)) {
+            List<ServiceConfig> batch = new ArrayList<>();
+            for (JsonNode node : entry.path("services")) {
+                ServiceConfig config = fromJson(node);
                 if (config == null) {
-                    continue; // 跳过null配置
+                    return false;
                 }
-                // 保存格式：name|||javaExe|||workDir|||args
-                // 不再保存日志路径，日志路径由设置统一管理
-                writer.write(escape(config.getName()) + SEPARATOR);
-                writer.write(escape(config.getJavaExe()) + SEPARATOR);
-                writer.write(escape(config.getWorkDir()) + SEPARATOR);
-                writer.write(escape(config.getArgs()));
-                writer.newLine();
+                batch.add(config);
             }
-            writer.flush();
+            for (ServiceConfig config : batch) {
+                current.put(config.getId(), config);
+            }
+        } else {
+            return false;
         }
-        
-        // 原子性替换：先删除旧文件，再重命名临时文件
-        if (configFile.exists() && !configFile.delete()) {
-            throw new IOException("无法删除旧配置文件");
+        return true;
+    }
+
+    /**
+     * @param weight 本条日志包含的变更数，用于决定何时压缩
+     */
+    private static void append(ObjectNode change, int weight) throws IOException {
+        if (readOnlyReason != null) {
+            throw new IOException(readOnlyReason);
+        }
+        ObjectNode entry = MAPPER.createObjectNode();
+        entry.put("seq", seq + 1);
+        entry.setAll(change);
+        byte[] line = (MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        FileChannel channel = journal();
+        long sizeBefore = channel.size();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, sizeBefore + buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // 尽量撤销写了一半的行，避免后续追加的变更在重放时被截掉
+            try {
+                channel.truncate(sizeBefore);
+            } catch (IOException ignored) {
+            }
+            throw e;
         }
-        if (!tempFile.renameTo(configFile)) {
-            throw new IOException("无法重命名临时配置文件");
+        seq++;
+        journalEntries += weight;
+        fingerprint = currentFingerprint();
+    }
+
+    /**
+     * 日志条数达到阈值时压缩；必须在变更应用到 current 之后调用，否则快照会漏掉最后一条变更
+     */
+    private static void compactIfNeeded() {
+        if (journalEntries >= COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // 变更已经落盘，压缩失败不影响本次保存
+                System.err.println("压缩配置日志失败: " + e.getMessage());
+            }
         }
     }
 
-    public static List<ServiceConfig> loadConfigs() {
-        List<ServiceConfig> configs = new ArrayList<>();
-        File file = new File(CONFIG_FILE);
-        if (!file.exists()) {
-            return configs;
+    /**
+     * 把当前配置写成新快照并清空日志
+     * 顺序：快照落盘并原子替换 -> 截断日志；两步之间崩溃时，重放会跳过快照已包含的 seq
+     */
+    private static void compact() throws IOException {
+        if (readOnlyReason != null) {
+            throw new IOException(readOnlyReason);
+        }
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("schema", SCHEMA_VERSION);
+        root.put("seq", seq);
+        ArrayNode list = root.putArray("services");
+        for (ServiceConfig config : current.values()) {
+            list.add(ServiceConfigCodec.toJson(config));
         }
+        writeAtomically(Paths.get(SNAPSHOT_FILE), MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(root));
+
+        FileChannel channel = journal();
+        channel.truncate(0);
+        channel.force(true);
+        journalEntries = 0;
+        fingerprint = currentFingerprint();
+    }
 
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Paths.get(target + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // 目录项也要落盘，否则掉电后可能看不到改名
+        Path dir = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Windows 不支持打开目录，忽略
+        }
+    }
+
+    /**
+     * 日志通道：读取、追加和加锁都通过它（追加时写在文件末尾，持锁期间末尾不会变化）
+     */
+    private static FileChannel journal() throws IOException {
+        if (journal == null || !journal.isOpen()) {
+            journal = FileChannel.open(Paths.get(JOURNAL_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return journal;
+    }
+
+    private static void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+            }
+            journal = null;
+        }
+    }
+
+    private static ServiceConfig fromJson(JsonNode node) {
+        ServiceConfig config = ServiceConfigCodec.fromJson(node);
+        if (config == null || !isServiceId(config.getId()) || config.getName().trim().isEmpty()) {
+            return null;
+        }
+        return config;
+    }
+
+    private static boolean sameContent(ServiceConfig a, ServiceConfig b) {
+        return a != null && b != null
+            && Objects.equals(a.getName(), b.getName())
+            && Objects.equals(a.getJavaExe(), b.getJavaExe())
+            && Objects.equals(a.getWorkDir(), b.getWorkDir())
+            && Objects.equals(a.getArgs(), b.getArgs())
+            && a.getReplicas() == b.getReplicas()
+            && a.getBasePort() == b.getBasePort()
+            && a.getPublicPort() == b.getPublicPort()
+            && a.getIdleTimeout() == b.getIdleTimeout()
+            && a.isAppCds() == b.isAppCds()
+            && a.getSizingWeight() == b.getSizingWeight()
+            && a.getRssLimitMb() == b.getRssLimitMb()
+            && a.getRssLimitMinutes() == b.getRssLimitMinutes()
+            && a.getHeapGrowthPercent() == b.getHeapGrowthPercent()
+            && Objects.equals(a.getRestartBlackout(), b.getRestartBlackout())
+            && a.isGcLog() == b.isGcLog()
+            && a.getGcPauseWarnMs() == b.getGcPauseWarnMs();
+    }
+
+    private static ServiceConfig copy(ServiceConfig config) {
+        return new ServiceConfig(config);
+    }
+
+    private static List<ServiceConfig> copies() {
+        List<ServiceConfig> list = new ArrayList<>(current.size());
+        for (ServiceConfig config : current.values()) {
+            list.add(copy(config));
+        }
+        return list;
+    }
+
+    // ==================== 旧版 services.txt 导入 ====================
+
+    /**
+     * 导入旧版配置：写入新快照后把原文件改名保留，之后不再读取
+     */
+    private static void importLegacy(Map<String, ServiceConfig> into) throws IOException {
+        for (ServiceConfig config : loadLegacyConfigs(new File(LEGACY_FILE))) {
+            into.put(config.getId(), config);
+        }
+        current = into;
+        seq = 0;
+        journal().truncate(0);
+        compact();
+        Files.move(Paths.get(LEGACY_FILE), Paths.get(LEGACY_FILE + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("已从 " + LEGACY_FILE + " 导入 " + into.size() + " 个服务配置");
+    }
+
+    private static List<ServiceConfig> loadLegacyConfigs(File file) {
+        List<ServiceConfig> configs = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
         try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
             String line;
@@ -64,25 +576,28 @@ public class ConfigManager {
                 }
                 try {
                     String[] parts = line.split("\\|\\|\\|", -1);
-                    // 格式：name|||javaExe|||workDir|||args（4个字段）
-                    if (parts.length == 4) {
+                    // 格式：name|||javaExe|||workDir|||args|||id（更早的版本没有id，共4个字段）
+                    if (parts.length == 4 || parts.length == 5) {
                         ServiceConfig config = new ServiceConfig();
                         config.setName(unescape(parts[0]));
                         config.setJavaExe(unescape(parts[1]));
                         config.setWorkDir(unescape(parts[2]));
                         config.setArgs(unescape(parts[3]));
-                        
+                        String id = parts.length == 5 ? unescape(parts[4]) : "";
+                        // 没有ID或ID重复时分配新ID
+                        config.setId(isServiceId(id) && ids.add(id) ? id : generateId());
+
                         // 验证配置有效性
                         String name = config.getName();
                         if (name == null || name.trim().isEmpty()) {
                             System.err.println("警告: 第 " + lineNumber + " 行配置的服务名称为空，已跳过");
                             continue;
                         }
-                        
+
                         configs.add(config);
                     } else {
-                        System.err.println("警告: 第 " + lineNumber + " 行配置格式不正确（需要4个字段，用|||分隔），已跳过。");
-                        System.err.println("      正确格式: 服务名称|||Java路径|||工作目录|||启动参数");
+                        System.err.println("警告: 第 " + lineNumber + " 行配置格式不正确（需要4或5个字段，用|||分隔），已跳过。");
+                        System.err.println("      正确格式: 服务名称|||Java路径|||工作目录|||启动参数|||服务ID");
                         System.err.println("      当前字段数: " + parts.length);
                         if (parts.length > 0) {
                             System.err.println("      服务名称: " + (parts[0].length() > 50 ? parts[0].substring(0, 50) + "..." : parts[0]));
@@ -96,23 +611,10 @@ public class ConfigManager {
         } catch (IOException e) {
             System.err.println("加载配置失败: " + e.getMessage());
             e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("加载配置时发生未知错误: " + e.getMessage());
-            e.printStackTrace();
         }
         return configs;
     }
 
-    private static String escape(String str) {
-        if (str == null) {
-            return "";
-        }
-        return str.replace("\\", "\\\\")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace(SEPARATOR, "\\|\\|\\|");
-    }
-
     private static String unescape(String str) {
         if (str == null || str.isEmpty()) {
             return "";
@@ -123,4 +625,3 @@ public class ConfigManager {
                   .replace("\\\\", "\\");
     }
 }
-
@@ -0,0 +1,84 @@
+package com.love.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视目录中的几个文件，变化平息后（防抖）回调一次
+ * 编辑器保存、日志追加+压缩等往往产生一连串事件，只在最后一个事件之后 DEBOUNCE_MS 内无新事件时才触发。
+ */
+public class ConfigWatcher implements Closeable {
+    private static final long DEBOUNCE_MS = 500;
+
+    private final Set<String> fileNames;
+    private final Runnable listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public ConfigWatcher(Path dir, Set<String> fileNames, Runnable listener) throws IOException {
+        this.fileNames = fileNames;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        // 原子替换（改名）产生 CREATE，直接编辑产生 MODIFY
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        thread = new Thread(this::watchLoop, "ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                // 等第一个相关事件，然后一直等到安静下来
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    System.err.println("处理配置文件变化失败: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 取出事件并重置监视键
+     * @return 是否包含被监视的文件
+     */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true; // 事件丢失，无法判断是哪个文件
+            } else if (fileNames.contains(((Path) event.context()).getFileName().toString())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,86 @@
+package com.love.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 服务期望状态的持久化（与 services.json 放在一起）
+ * 记录每个服务应当运行还是停止；监控器启动后据此把服务恢复到期望状态。实例数属于服务配置（replicas），不在这里记录。
+ * Web端（desired.txt）和桌面端（desired-desktop.txt）各自管理自己拉起的进程，期望状态也各写各的文件。
+ */
+public class DesiredStateStore {
+    public static final String SERVICE_MANAGER_FILE = "desired.txt";
+    public static final String DESKTOP_FILE = "desired-desktop.txt";
+    private static final String SEPARATOR = "|||";
+    public static final String RUNNING = "RUNNING";
+    public static final String STOPPED = "STOPPED";
+
+    private final String desiredFile;
+
+    public DesiredStateStore(String desiredFile) {
+        this.desiredFile = desiredFile;
+    }
+
+    public synchronized void save(Collection<DesiredState> states) throws IOException {
+        // 先写入临时文件再原子替换
+        File tempFile = new File(desiredFile + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (DesiredState state : states) {
+                // 格式：服务ID|||RUNNING或STOPPED
+                writer.write(state.getServiceId() + SEPARATOR + (state.isRunning() ? RUNNING : STOPPED));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile.toPath(), new File(desiredFile).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return 服务ID -> 期望状态；文件不存在时为空（所有服务视为期望停止）
+     */
+    public synchronized Map<String, DesiredState> load() {
+        Map<String, DesiredState> states = new LinkedHashMap<>();
+        File file = new File(desiredFile);
+        if (!file.exists()) {
+            return states;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\|\\|\\|");
+                // 旧版本还有第3个字段（实例数），已移到服务配置中，忽略
+                if (parts.length != 2 && parts.length != 3) {
+                    System.err.println("警告: 忽略无效的期望状态记录: " + line);
+                    continue;
+                }
+                states.put(parts[0], new DesiredState(parts[0], RUNNING.equals(parts[1])));
+            }
+        } catch (IOException e) {
+            System.err.println("加载期望状态失败: " + e.getMessage());
+        }
+        return states;
+    }
+
+    /**
+     * 一个服务的期望状态（不可变）
+     */
+    public static class DesiredState {
+        private final String serviceId;
+        private final boolean running;
+
+        public DesiredState(String serviceId, boolean running) {
+            this.serviceId = serviceId;
+            this.running = running;
+        }
+
+        public String getServiceId() { return serviceId; }
+        public boolean isRunning() { return running; }
+    }
+}
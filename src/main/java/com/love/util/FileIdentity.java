@@ -0,0 +1,73 @@
+package com.love.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 文件身份：判断同一路径下的文件是否已被替换（日志轮转、删除后重建），而不只是变大或变小
+ * 有文件标识（inode，fileKey）的平台只比较标识；Windows 上 fileKey 为null，改为比较创建时间和文件开头的字节
+ * （NTFS 会让短时间内重建的同名文件沿用旧文件的创建时间，只比较创建时间不够）。
+ * 改名不改变身份，可用来在轮转出的文件中找到原来的文件。
+ */
+public final class FileIdentity {
+    private static final int HEAD_BYTES = 256;
+
+    private final Object fileKey;
+    private final FileTime creationTime;
+    private final byte[] head;
+
+    private FileIdentity(Object fileKey, FileTime creationTime, byte[] head) {
+        this.fileKey = fileKey;
+        this.creationTime = creationTime;
+        this.head = head;
+    }
+
+    /**
+     * 读取文件当前的身份
+     */
+    public static FileIdentity of(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attrs.fileKey() != null) {
+            return new FileIdentity(attrs.fileKey(), null, new byte[0]);
+        }
+        return new FileIdentity(null, attrs.creationTime(), readHead(path, HEAD_BYTES));
+    }
+
+    /**
+     * path 处的文件是否仍是记录身份时的文件
+     */
+    public boolean isSameFile(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (fileKey != null || attrs.fileKey() != null) {
+            return Objects.equals(fileKey, attrs.fileKey());
+        }
+        // 日志只追加写入，同一个文件的开头不会变；新文件的开头（时间戳）几乎总是不同
+        return Objects.equals(creationTime, attrs.creationTime())
+            && Arrays.equals(head, readHead(path, head.length));
+    }
+
+    /**
+     * 记录时文件太短、开头字节不足时为false，调用方可在文件变长后重新记录，使比较更可靠
+     */
+    public boolean isComplete() {
+        return fileKey != null || head.length == HEAD_BYTES;
+    }
+
+    private static byte[] readHead(Path path, int max) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(max, channel.size()));
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // 读满
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.love.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 子JVM的GC日志采集与停顿分析（一个实例一个）
+ * 启用后实例以 -Xlog:gc* 把GC日志写到实例日志目录下的 gc.log，由JVM自行按大小轮转；
+ * 监控器定期从上次读到的位置继续读取新增的行，解析每次停顿：
+ * 停顿时间直方图和最长停顿为累计值，分位数按最近 RECENT_PAUSES 次停顿计算，
+ * 分配速率和晋升速率按JVM运行时间最近 RATE_WINDOW_MS 内的GC计算。
+ * 分配量 = 本次停顿前的堆占用 - 上次停顿后的堆占用；晋升量 = 年轻代GC前后老年代占用的增量（G1为 Region 数 × Region 大小）。
+ * 支持 Serial、Parallel、G1 的日志格式，ZGC、Shenandoah 只统计停顿时间。
+ * 轮转按文件身份（FileIdentity）识别：有 inode 的平台比较 fileKey；Windows 上 fileKey 为null，比较创建时间和文件开头，
+ * 新的 gc.log 开头的时间戳与被轮转的文件不同。
+ */
+public class GcLogAnalyzer {
+    public static final String LOG_NAME = "gc.log";
+    private static final int LOG_FILE_COUNT = 5;
+    private static final String LOG_FILE_SIZE = "10m";
+    // 直方图各桶的上限（毫秒），最后一桶为超过最大上限的停顿
+    private static final long[] BUCKET_UPPER_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+    private static final int RECENT_PAUSES = 1000;
+    private static final long RATE_WINDOW_MS = 300_000;
+    private static final int MAX_READ_BYTES = 4 * 1024 * 1024; // 每次最多读取的字节数，积压的日志分多次读完
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    // [2026-10-19T12:08:17.897+0000][1.578s][info][gc          ] GC(5) Pause Young (Normal) (G1 Evacuation Pause) 33M->6M(64M) 4.453ms
+    private static final Pattern TIME = Pattern.compile("^\\[([^\\]]+)\\]");
+    private static final Pattern UPTIME = Pattern.compile("\\[(\\d+(?:\\.\\d+)?)s\\]");
+    private static final Pattern PAUSE = Pattern.compile(
+        "GC\\((\\d+)\\) (Pause .*?)(?: (\\d+)([KMGT])->(\\d+)([KMGT])\\(\\d+[KMGT]\\))? (\\d+(?:\\.\\d+)?)ms$");
+    private static final Pattern REGION_SIZE = Pattern.compile("Heap Region Size: (\\d+)([KMGT])");
+    private static final Pattern OLD_REGIONS = Pattern.compile("GC\\((\\d+)\\) Old regions: (\\d+)->(\\d+)");
+    private static final Pattern OLD_GEN = Pattern.compile(
+        "GC\\((\\d+)\\) (?:Tenured|ParOldGen|PSOldGen): (\\d+)K(?:\\(\\d+K\\))?->(\\d+)K");
+
+    private final File file;
+    // 读取位置
+    private FileIdentity identity; // 正在读取的文件，轮转改名后不变，用来找到被轮转的文件；未读取时为null
+    private long offset = 0;
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream(); // 未读到换行的半行
+    // 解析状态
+    private long regionBytes = 0;
+    private long oldDeltaGc = -1;     // 老年代增量对应的GC编号
+    private long oldDeltaBytes = 0;
+    private double lastUptime = -1;
+    private long lastAfterBytes = -1;
+    // 统计
+    private final long[] histogram = new long[BUCKET_UPPER_MS.length + 1];
+    private long pauses = 0;
+    private double totalPauseMs = 0;
+    private double maxPauseMs = 0;
+    private String maxPause;          // 最长停顿的名称和时间
+    private final double[] recent = new double[RECENT_PAUSES];
+    private int recentCount = 0;
+    private int recentNext = 0;
+    private long allocatedBytes = 0;
+    private long promotedBytes = 0;
+    private final ArrayDeque<long[]> rateSamples = new ArrayDeque<>(); // {JVM运行毫秒, 累计分配, 累计晋升}
+
+    public GcLogAnalyzer(File logDir) {
+        this.file = new File(logDir, LOG_NAME);
+    }
+
+    public File getLogDir() {
+        return file.getParentFile();
+    }
+
+    /**
+     * 注入的JVM选项：GC日志写到 logDir/gc.log，保留 LOG_FILE_COUNT 个轮转文件
+     */
+    public static List<String> jvmOptions(File logDir) {
+        String path = new File(logDir, LOG_NAME).getAbsolutePath();
+        // 路径用引号括起，Windows盘符中的冒号不会被当作选项分隔符
+        return List.of("-Xlog:gc*:file=\"" + path + "\":time,uptime,level,tags:filecount=" + LOG_FILE_COUNT
+            + ",filesize=" + LOG_FILE_SIZE);
+    }
+
+    /**
+     * 读取并解析上次之后新增的日志；日志已轮转时先读完被轮转文件的剩余部分
+     */
+    public synchronized void poll() {
+        try {
+            long size = Files.size(file.toPath());
+            if (offset > 0 && (size < offset || !identity.isSameFile(file.toPath()))) {
+                File rotated = findRotated();
+                if (rotated != null) {
+                    // 被轮转的文件不会再增长，分批读到末尾再切换，否则超过单次上限的部分会丢失
+                    while (read(rotated) > 0) {
+                        // 继续读取
+                    }
+                }
+                offset = 0;
+                partial.reset();
+                identity = null;
+            }
+            if (identity == null || !identity.isComplete()) {
+                identity = FileIdentity.of(file.toPath());
+            }
+        } catch (IOException e) {
+            return; // 尚未生成，或正在轮转
+        }
+        read(file);
+    }
+
+    private File findRotated() {
+        File[] candidates = file.getParentFile().listFiles((dir, name) -> name.startsWith(LOG_NAME + "."));
+        if (candidates == null) {
+            return null;
+        }
+        for (File candidate : candidates) {
+            try {
+                if (identity.isSameFile(candidate.toPath())) {
+                    return candidate;
+                }
+            } catch (IOException e) {
+                // 可能刚被删除
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从 offset 起最多读取 MAX_READ_BYTES 字节并解析其中的完整行
+     * @return 读取的字节数，已到末尾或读取失败时为0
+     */
+    private int read(File source) {
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r")) {
+            long length = raf.length();
+            if (length <= offset) {
+                return 0;
+            }
+            byte[] buffer = new byte[(int) Math.min(MAX_READ_BYTES, length - offset)];
+            raf.seek(offset);
+            raf.readFully(buffer);
+            offset += buffer.length;
+            int start = 0;
+            for (int i = 0; i < buffer.length; i++) {
+                if (buffer[i] == '\n') {
+                    partial.write(buffer, start, i - start);
+                    parseLine(partial.toString(StandardCharsets.UTF_8).trim());
+                    partial.reset();
+                    start = i + 1;
+                }
+            }
+            if (partial.size() + buffer.length - start <= MAX_LINE_BYTES) {
+                partial.write(buffer, start, buffer.length - start);
+            } else {
+                partial.reset(); // 异常的超长行，丢弃
+            }
+            return buffer.length;
+        } catch (IOException e) {
+            // 文件可能刚被轮转，下次再读
+            return 0;
+        }
+    }
+
+    void parseLine(String line) {
+        Matcher m = PAUSE.matcher(line);
+        if (m.find()) {
+            double uptime = -1;
+            Matcher u = UPTIME.matcher(line);
+            if (u.find()) {
+                uptime = Double.parseDouble(u.group(1));
+            }
+            Matcher t = TIME.matcher(line);
+            long before = m.group(3) != null ? toBytes(m.group(3), m.group(4)) : -1;
+            long after = m.group(5) != null ? toBytes(m.group(5), m.group(6)) : -1;
+            onPause(Long.parseLong(m.group(1)), m.group(2), before, after, Double.parseDouble(m.group(7)), uptime,
+                t.find() ? t.group(1) : null);
+            return;
+        }
+        m = OLD_REGIONS.matcher(line);
+        if (m.find()) {
+            oldDeltaGc = Long.parseLong(m.group(1));
+            oldDeltaBytes = (Long.parseLong(m.group(3)) - Long.parseLong(m.group(2))) * regionBytes;
+            return;
+        }
+        m = OLD_GEN.matcher(line);
+        if (m.find()) {
+            oldDeltaGc = Long.parseLong(m.group(1));
+            oldDeltaBytes = (Long.parseLong(m.group(3)) - Long.parseLong(m.group(2))) * 1024;
+            return;
+        }
+        m = REGION_SIZE.matcher(line);
+        if (m.find()) {
+            regionBytes = toBytes(m.group(1), m.group(2));
+        }
+    }
+
+    private void onPause(long gc, String name, long before, long after, double pauseMs, double uptime, String time) {
+        if (uptime >= 0 && uptime < lastUptime) {
+            // 运行时间倒退：JVM已重启，分配和晋升从新进程重新计算
+            lastAfterBytes = -1;
+            rateSamples.clear();
+        }
+        if (uptime >= 0) {
+            lastUptime = uptime;
+        }
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_MS.length && pauseMs > BUCKET_UPPER_MS[bucket]) {
+            bucket++;
+        }
+        histogram[bucket]++;
+        pauses++;
+        totalPauseMs += pauseMs;
+        if (pauseMs > maxPauseMs) {
+            maxPauseMs = pauseMs;
+            maxPause = name + (time != null ? "，" + time : "");
+        }
+        recent[recentNext] = pauseMs;
+        recentNext = (recentNext + 1) % RECENT_PAUSES;
+        recentCount = Math.min(recentCount + 1, RECENT_PAUSES);
+
+        if (before >= 0) {
+            if (lastAfterBytes >= 0 && before >= lastAfterBytes) {
+                allocatedBytes += before - lastAfterBytes;
+            }
+            lastAfterBytes = after;
+        }
+        // 混合回收同时回收老年代，增量不代表晋升
+        if (oldDeltaGc == gc && name.startsWith("Pause Young") && !name.contains("Mixed") && oldDeltaBytes > 0) {
+            promotedBytes += oldDeltaBytes;
+        }
+        oldDeltaGc = -1;
+        if (uptime >= 0) {
+            long uptimeMs = (long) (uptime * 1000);
+            rateSamples.addLast(new long[]{uptimeMs, allocatedBytes, promotedBytes});
+            while (rateSamples.size() > 2 && uptimeMs - rateSamples.peekFirst()[0] > RATE_WINDOW_MS) {
+                rateSamples.pollFirst();
+            }
+        }
+    }
+
+    private static long toBytes(String value, String unit) {
+        long number = Long.parseLong(value);
+        switch (unit) {
+            case "K": return number << 10;
+            case "M": return number << 20;
+            case "G": return number << 30;
+            default: return number << 40;
+        }
+    }
+
+    /**
+     * 汇总一个服务各实例的统计；warnMs > 0 且最近停顿的 p99 达到该值时给出告警
+     */
+    public static Summary summarize(List<GcLogAnalyzer> analyzers, int warnMs) {
+        long[] histogram = new long[BUCKET_UPPER_MS.length + 1];
+        long pauses = 0;
+        double totalPauseMs = 0;
+        double maxPauseMs = 0;
+        String maxPause = null;
+        double allocationRate = 0;
+        double promotionRate = 0;
+        boolean hasRate = false;
+        List<Double> recent = new ArrayList<>();
+        for (GcLogAnalyzer analyzer : analyzers) {
+            synchronized (analyzer) {
+                for (int i = 0; i < histogram.length; i++) {
+                    histogram[i] += analyzer.histogram[i];
+                }
+                pauses += analyzer.pauses;
+                totalPauseMs += analyzer.totalPauseMs;
+                if (analyzer.maxPauseMs > maxPauseMs) {
+                    maxPauseMs = analyzer.maxPauseMs;
+                    maxPause = analyzer.maxPause;
+                }
+                for (int i = 0; i < analyzer.recentCount; i++) {
+                    recent.add(analyzer.recent[i]);
+                }
+                if (analyzer.rateSamples.size() >= 2) {
+                    long[] first = analyzer.rateSamples.peekFirst();
+                    long[] last = analyzer.rateSamples.peekLast();
+                    if (last[0] > first[0]) {
+                        double seconds = (last[0] - first[0]) / 1000.0;
+                        allocationRate += (last[1] - first[1]) / seconds;
+                        promotionRate += (last[2] - first[2]) / seconds;
+                        hasRate = true;
+                    }
+                }
+            }
+        }
+        double[] sorted = recent.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        Double p50 = percentile(sorted, 50);
+        Double p99 = percentile(sorted, 99);
+        List<Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < histogram.length; i++) {
+            buckets.add(new Bucket(i < BUCKET_UPPER_MS.length ? BUCKET_UPPER_MS[i] : null, histogram[i]));
+        }
+        String warning = null;
+        if (warnMs > 0 && p99 != null && p99 >= warnMs) {
+            warning = "GC停顿 p99 " + String.format("%.1f", p99) + " ms，超过 " + warnMs + " ms";
+        }
+        double mb = 1024.0 * 1024;
+        return new Summary(pauses, totalPauseMs, maxPauseMs, maxPause, sorted.length, p50, p99, buckets,
+            hasRate ? allocationRate / mb : null, hasRate ? promotionRate / mb : null, warning);
+    }
+
+    /**
+     * 最近邻秩分位数，没有数据时为null
+     */
+    private static Double percentile(double[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * 直方图的一个桶：停顿时间不超过 upToMs 毫秒（且超过上一个桶的上限）的次数，upToMs 为null表示超过最大上限
+     */
+    public static class Bucket {
+        private final Long upToMs;
+        private final long count;
+
+        public Bucket(Long upToMs, long count) {
+            this.upToMs = upToMs;
+            this.count = count;
+        }
+
+        public Long getUpToMs() { return upToMs; }
+        public long getCount() { return count; }
+    }
+
+    /**
+     * 一个服务的GC统计；分位数按最近的 recentPauses 次停顿计算，速率单位为 MB/s，数据不足时为null
+     */
+    public static class Summary {
+        private final long pauses;
+        private final double totalPauseMs;
+        private final double maxPauseMs;
+        private final String maxPause;
+        private final int recentPauses;
+        private final Double p50PauseMs;
+        private final Double p99PauseMs;
+        private final List<Bucket> histogram;
+        private final Double allocationRateMbPerSec;
+        private final Double promotionRateMbPerSec;
+        private final String warning;
+
+        public Summary(long pauses, double totalPauseMs, double maxPauseMs, String maxPause, int recentPauses,
+                       Double p50PauseMs, Double p99PauseMs, List<Bucket> histogram,
+                       Double allocationRateMbPerSec, Double promotionRateMbPerSec, String warning) {
+            this.pauses = pauses;
+            this.totalPauseMs = totalPauseMs;
+            this.maxPauseMs = maxPauseMs;
+            this.maxPause = maxPause;
+            this.recentPauses = recentPauses;
+            this.p50PauseMs = p50PauseMs;
+            this.p99PauseMs = p99PauseMs;
+            this.histogram = histogram;
+            this.allocationRateMbPerSec = allocationRateMbPerSec;
+            this.promotionRateMbPerSec = promotionRateMbPerSec;
+            this.warning = warning;
+        }
+
+        public long getPauses() { return pauses; }
+        public double getTotalPauseMs() { return totalPauseMs; }
+        public double getMaxPauseMs() { return maxPauseMs; }
+        public String getMaxPause() { return maxPause; }
+        public int getRecentPauses() { return recentPauses; }
+        public Double getP50PauseMs() { return p50PauseMs; }
+        public Double getP99PauseMs() { return p99PauseMs; }
+        public List<Bucket> getHistogram() { return histogram; }
+        public Double getAllocationRateMbPerSec() { return allocationRateMbPerSec; }
+        public Double getPromotionRateMbPerSec() { return promotionRateMbPerSec; }
+        public String getWarning() { return warning; }
+    }
+}
@@ -0,0 +1,219 @@
+package com.love.util;
+
+import com.love.model.ServiceConfig;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按权重把主机内存和CPU分给各服务的JVM
+ * 参数中没有 -Xmx 等选项时，每个子JVM都按整台主机估算堆大小和GC线程数，服务多了就会超额分配。
+ * 启用了自动分配（sizingWeight > 0）的服务，每个实例按权重分得一份：
+ * 内存 = (主机内存 - 预留) × 权重 / 所有启用服务的 权重×实例数 之和，其中 75% 作为最大堆（实例数默认取 replicas）；
+ * CPU 按同样比例计算后乘以 CPU_OVERCOMMIT（服务大多不会同时繁忙），取 1..核数。
+ * 主机内存和核数取监控器JVM看到的值（在容器中为容器的限制）。
+ * 参数中已有的同类选项（如 -Xmx、-XX:MaxRAMPercentage）一律保留，不再注入对应的选项。
+ */
+public class JvmSizing {
+    private static final double HEAP_FRACTION = 0.75;     // 实例内存中作为最大堆的比例，其余留给元空间、线程栈、直接内存等
+    private static final double RESERVED_FRACTION = 0.1;  // 为操作系统和监控器预留的内存比例
+    private static final long MIN_RESERVED_MB = 512;
+    private static final long MIN_HEAP_MB = 64;
+    private static final int CPU_OVERCOMMIT = 4;
+
+    // 用户已设置时不注入最大堆：包括初始堆（-Xms 大于注入的 -Xmx 时JVM拒绝启动）
+    private static final String[] HEAP_OPTIONS = {"-Xmx", "-XX:MaxHeapSize=", "-Xms", "-XX:InitialHeapSize=",
+        "-XX:MaxRAM=", "-XX:MaxRAMPercentage=", "-XX:MaxRAMFraction=", "-XX:InitialRAMPercentage=",
+        "-XX:MinRAMPercentage="};
+
+    /**
+     * 计算所有启用了自动分配的服务的分配结果
+     */
+    public static Plan plan(List<ServiceConfig> configs) {
+        return plan(configs, hostMemoryMb(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 计算一个服务的分配结果，未启用自动分配时返回null
+     */
+    public static Allocation planFor(List<ServiceConfig> configs, String serviceId) {
+        return planFor(configs, serviceId, ServiceConfig::getReplicas);
+    }
+
+    /**
+     * 按实际运行的实例数计算一个服务的分配结果（桌面端每个服务只运行一个实例，不按 replicas 分）
+     */
+    public static Allocation planFor(List<ServiceConfig> configs, String serviceId,
+                                     ToIntFunction<ServiceConfig> instances) {
+        Plan plan = plan(configs, hostMemoryMb(), Runtime.getRuntime().availableProcessors(), instances);
+        for (Allocation allocation : plan.getServices()) {
+            if (allocation.getServiceId().equals(serviceId)) {
+                return allocation;
+            }
+        }
+        return null;
+    }
+
+    static Plan plan(List<ServiceConfig> configs, long hostMemoryMb, int cpus) {
+        return plan(configs, hostMemoryMb, cpus, ServiceConfig::getReplicas);
+    }
+
+    static Plan plan(List<ServiceConfig> configs, long hostMemoryMb, int cpus, ToIntFunction<ServiceConfig> instances) {
+        long units = 0;
+        for (ServiceConfig config : configs) {
+            if (config.getSizingWeight() > 0) {
+                units += (long) config.getSizingWeight() * Math.max(0, instances.applyAsInt(config));
+            }
+        }
+        List<Allocation> allocations = new ArrayList<>();
+        long reserved = Math.max(MIN_RESERVED_MB, (long) (hostMemoryMb * RESERVED_FRACTION));
+        if (units == 0) {
+            return new Plan(hostMemoryMb, cpus, reserved, allocations);
+        }
+        long pool = hostMemoryMb - reserved;
+        for (ServiceConfig config : configs) {
+            int weight = config.getSizingWeight();
+            if (weight <= 0) {
+                continue;
+            }
+            double share = (double) weight / units;
+            long memoryMb = Math.max(0, (long) (pool * share));
+            long heapMb = Math.max(MIN_HEAP_MB, (long) (memoryMb * HEAP_FRACTION));
+            int processors = (int) Math.max(1, Math.min(cpus, Math.round(cpus * share * CPU_OVERCOMMIT)));
+            String[] args = config.getArgsArray();
+            // 与JVM的默认计算一致：并行GC线程数等于核数（8核以内），并发GC线程数约为其1/4；
+            // G1 要求并发GC线程数不超过并行GC线程数，用户设置了其中一个时另一个据此推算
+            int userGcThreads = intOption(args, "-XX:ParallelGCThreads=");
+            int userConcGcThreads = intOption(args, "-XX:ConcGCThreads=");
+            int gcThreads = userGcThreads > 0 ? userGcThreads : Math.max(processors, userConcGcThreads);
+            int concGcThreads = Math.max(1, (gcThreads + 3) / 4);
+
+            List<String> injected = new ArrayList<>();
+            List<String> kept = new ArrayList<>();
+            String userHeap = findOption(args, HEAP_OPTIONS);
+            if (userHeap != null) {
+                kept.add(userHeap);
+            } else {
+                injected.add("-Xmx" + heapMb + "m");
+            }
+            addUnlessSet(args, "-XX:ActiveProcessorCount=", String.valueOf(processors), injected, kept);
+            addUnlessSet(args, "-XX:ParallelGCThreads=", String.valueOf(gcThreads), injected, kept);
+            addUnlessSet(args, "-XX:ConcGCThreads=", String.valueOf(concGcThreads), injected, kept);
+            allocations.add(new Allocation(config.getId(), config.getName(), weight, instances.applyAsInt(config),
+                memoryMb, heapMb, processors, injected, kept));
+        }
+        return new Plan(hostMemoryMb, cpus, reserved, allocations);
+    }
+
+    private static void addUnlessSet(String[] args, String option, String value, List<String> injected, List<String> kept) {
+        String user = findOption(args, option);
+        if (user != null) {
+            kept.add(user);
+        } else {
+            injected.add(option + value);
+        }
+    }
+
+    /**
+     * 参数中整数选项的值，没有或无法解析时返回-1
+     */
+    private static int intOption(String[] args, String prefix) {
+        String option = findOption(args, prefix);
+        if (option == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(option.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 参数中第一个以任一前缀开头的参数，没有时返回null
+     */
+    private static String findOption(String[] args, String... prefixes) {
+        for (String arg : args) {
+            String trimmed = arg.trim();
+            for (String prefix : prefixes) {
+                if (trimmed.startsWith(prefix)) {
+                    return trimmed;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 监控器JVM看到的物理内存（MB），在容器中为容器的内存限制
+     */
+    static long hostMemoryMb() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize() / (1024 * 1024);
+        }
+        return Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    }
+
+    /**
+     * 分配总览：主机内存、核数、预留内存和各服务的分配结果
+     */
+    public static class Plan {
+        private final long hostMemoryMb;
+        private final int cpus;
+        private final long reservedMb;
+        private final List<Allocation> services;
+
+        public Plan(long hostMemoryMb, int cpus, long reservedMb, List<Allocation> services) {
+            this.hostMemoryMb = hostMemoryMb;
+            this.cpus = cpus;
+            this.reservedMb = reservedMb;
+            this.services = services;
+        }
+
+        public long getHostMemoryMb() { return hostMemoryMb; }
+        public int getCpus() { return cpus; }
+        public long getReservedMb() { return reservedMb; }
+        public List<Allocation> getServices() { return services; }
+    }
+
+    /**
+     * 一个服务每个实例的分配结果；injected 为启动时注入的选项，kept 为参数中已有而未覆盖的同类选项
+     */
+    public static class Allocation {
+        private final String serviceId;
+        private final String name;
+        private final int weight;
+        private final int replicas;
+        private final long memoryMb;
+        private final long heapMb;
+        private final int processors;
+        private final List<String> injected;
+        private final List<String> kept;
+
+        public Allocation(String serviceId, String name, int weight, int replicas, long memoryMb, long heapMb,
+                          int processors, List<String> injected, List<String> kept) {
+            this.serviceId = serviceId;
+            this.name = name;
+            this.weight = weight;
+            this.replicas = replicas;
+            this.memoryMb = memoryMb;
+            this.heapMb = heapMb;
+            this.processors = processors;
+            this.injected = injected;
+            this.kept = kept;
+        }
+
+        public String getServiceId() { return serviceId; }
+        public String getName() { return name; }
+        public int getWeight() { return weight; }
+        public int getReplicas() { return replicas; }
+        public long getMemoryMb() { return memoryMb; }
+        public long getHeapMb() { return heapMb; }
+        public int getProcessors() { return processors; }
+        public List<String> getInjected() { return injected; }
+        public List<String> getKept() { return kept; }
+    }
+}
@@ -0,0 +1,354 @@
+package com.love.util;
+
+import com.love.model.ServiceConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存泄漏防护：按服务配置的规则判断是否需要重启
+ * RSS规则：某个实例的常驻内存连续 rssLimitMinutes 分钟超过 rssLimitMb；
+ * 堆规则：每分钟用 jstat 采样一次已用堆，取每5分钟内的最小值（近似GC后的存活数据量）做线性回归，
+ * 覆盖至少30分钟后，按最近1小时计算的每小时增长率达到 heapGrowthPercent% 即触发。
+ * jstat、jcmd 取自 javaExe 所在目录，只有JRE时堆规则和堆直方图不可用。
+ * 由检查线程采样；重置和读取状态可在其他线程进行。
+ */
+public class LeakGuard {
+    private static final long HEAP_SAMPLE_INTERVAL_MS = 60_000;
+    private static final long HEAP_BUCKET_MS = 300_000;
+    private static final int HEAP_WINDOW_BUCKETS = 12;  // 回归窗口：1小时
+    private static final int HEAP_MIN_BUCKETS = 6;      // 至少覆盖30分钟才判断
+    private static final long TOOL_TIMEOUT_MS = 30_000;
+    private static final long HISTOGRAM_TIMEOUT_MS = 120_000;
+
+    private final Map<Long, Long> rssOverSince = new HashMap<>(); // pid -> 开始持续超过限制的时刻
+    private final Map<Long, HeapTrend> heapTrends = new HashMap<>();
+    private long maxRssBytes = -1;
+    private String heapError;
+
+    /**
+     * 一次规则判断：采样各实例并返回满足规则的实例
+     * @param pids 实例编号 -> PID（只包括运行中的实例）
+     */
+    public synchronized List<Trigger> check(ServiceConfig config, Map<Integer, Long> pids, long now) {
+        rssOverSince.keySet().retainAll(pids.values());
+        heapTrends.keySet().retainAll(pids.values());
+        maxRssBytes = -1;
+        List<Trigger> triggers = new ArrayList<>();
+        for (Map.Entry<Integer, Long> instance : pids.entrySet()) {
+            long pid = instance.getValue();
+            String prefix = "实例 " + instance.getKey() + "（PID " + pid + "）";
+            if (config.getRssLimitMb() > 0) {
+                long rss = ProcessMetrics.readRss(pid);
+                maxRssBytes = Math.max(maxRssBytes, rss);
+                if (rss > config.getRssLimitMb() * 1024L * 1024) {
+                    long since = rssOverSince.computeIfAbsent(pid, p -> now);
+                    if (now - since >= config.getRssLimitMinutes() * 60_000L) {
+                        triggers.add(new Trigger(instance.getKey(), pid, prefix + "常驻内存 " + rss / (1024 * 1024)
+                            + " MB，超过 " + config.getRssLimitMb() + " MB 已持续 " + (now - since) / 60_000 + " 分钟"));
+                        continue;
+                    }
+                } else {
+                    rssOverSince.remove(pid);
+                }
+            }
+            if (config.getHeapGrowthPercent() > 0) {
+                HeapTrend trend = heapTrends.computeIfAbsent(pid, p -> new HeapTrend());
+                if (now - trend.lastSampleAt >= HEAP_SAMPLE_INTERVAL_MS) {
+                    trend.lastSampleAt = now;
+                    try {
+                        trend.add(now, readHeapUsed(config.getJavaExe(), pid));
+                        heapError = null;
+                    } catch (IOException e) {
+                        heapError = e.getMessage();
+                    }
+                }
+                double growth = trend.growthPerHour();
+                if (!Double.isNaN(growth) && growth >= config.getHeapGrowthPercent()) {
+                    triggers.add(new Trigger(instance.getKey(), pid, prefix + "GC后堆占用近 " + trend.minutes()
+                        + " 分钟按每小时 " + String.format("%.1f", growth) + "% 增长，达到 "
+                        + config.getHeapGrowthPercent() + "%"));
+                }
+            }
+        }
+        if (config.getHeapGrowthPercent() <= 0) {
+            heapTrends.clear();
+            heapError = null;
+        }
+        return triggers;
+    }
+
+    /**
+     * 清除所有采样（重启后或规则关闭时），新进程从头开始计算
+     */
+    public synchronized void reset() {
+        rssOverSince.clear();
+        heapTrends.clear();
+        maxRssBytes = -1;
+        heapError = null;
+    }
+
+    /**
+     * 当前采样情况：各实例中最大的RSS、持续超限最久的时长、增长最快的实例的堆增长率
+     */
+    public synchronized Snapshot getSnapshot(long now) {
+        long overLimitMs = 0;
+        for (long since : rssOverSince.values()) {
+            overLimitMs = Math.max(overLimitMs, now - since);
+        }
+        double growth = Double.NaN;
+        int minutes = 0;
+        for (HeapTrend trend : heapTrends.values()) {
+            minutes = Math.max(minutes, trend.minutes());
+            double value = trend.growthPerHour();
+            if (!Double.isNaN(value) && (Double.isNaN(growth) || value > growth)) {
+                growth = value;
+            }
+        }
+        return new Snapshot(maxRssBytes, overLimitMs, Double.isNaN(growth) ? null : growth, minutes, heapError);
+    }
+
+    /**
+     * 校验禁止重启时段：逗号分隔的 HH:mm-HH:mm，结束早于开始表示跨午夜；空表示没有
+     */
+    public static void validateBlackout(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return;
+        }
+        for (String window : spec.split(",")) {
+            parseWindow(window);
+        }
+    }
+
+    /**
+     * 当前时刻所在的禁止重启时段，不在任何时段内时返回null
+     */
+    public static String activeBlackout(String spec, LocalTime time) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+        for (String window : spec.split(",")) {
+            LocalTime[] range = parseWindow(window);
+            boolean inside = range[0].isAfter(range[1])
+                ? !time.isBefore(range[0]) || time.isBefore(range[1])
+                : !time.isBefore(range[0]) && time.isBefore(range[1]);
+            if (inside) {
+                return window.trim();
+            }
+        }
+        return null;
+    }
+
+    private static LocalTime[] parseWindow(String window) {
+        String[] parts = window.trim().split("-");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("禁止重启时段格式应为 HH:mm-HH:mm: " + window.trim());
+        }
+        try {
+            return new LocalTime[]{LocalTime.parse(parts[0].trim()), LocalTime.parse(parts[1].trim())};
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("禁止重启时段格式应为 HH:mm-HH:mm: " + window.trim());
+        }
+    }
+
+    /**
+     * 用 jstat -gc 读取已用堆（Survivor、Eden 和老年代之和）
+     */
+    static long readHeapUsed(String javaExe, long pid) throws IOException {
+        String output = runTool(jdkTool(javaExe, "jstat"), "-gc", String.valueOf(pid));
+        String[] lines = output.trim().split("\\R");
+        if (lines.length < 2) {
+            throw new IOException("jstat 没有输出: " + output.trim());
+        }
+        String[] names = lines[0].trim().split("\\s+");
+        String[] values = lines[lines.length - 1].trim().split("\\s+");
+        double usedKb = 0;
+        int found = 0;
+        for (int i = 0; i < names.length && i < values.length; i++) {
+            if (names[i].equals("S0U") || names[i].equals("S1U") || names[i].equals("EU") || names[i].equals("OU")) {
+                try {
+                    usedKb += Double.parseDouble(values[i].replace(',', '.'));
+                    found++;
+                } catch (NumberFormatException e) {
+                    // 部分收集器没有 Survivor 区，显示为 -
+                }
+            }
+        }
+        if (found == 0) {
+            throw new IOException("无法解析 jstat 输出: " + lines[0].trim());
+        }
+        return (long) (usedKb * 1024);
+    }
+
+    /**
+     * 用 jcmd GC.class_histogram 生成堆直方图（会先执行一次 Full GC），保存到 dir 下
+     * @return 直方图文件
+     */
+    public static File heapHistogram(String javaExe, long pid, File dir) throws IOException {
+        File jcmd = jdkTool(javaExe, "jcmd");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File file = new File(dir, "heap-histogram-" + stamp + "-" + pid + ".txt");
+        Process process = new ProcessBuilder(jcmd.getPath(), String.valueOf(pid), "GC.class_histogram")
+            .redirectErrorStream(true)
+            .redirectOutput(file)
+            .start();
+        try {
+            if (!process.waitFor(HISTOGRAM_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("jcmd 未在 " + HISTOGRAM_TIMEOUT_MS / 1000 + " 秒内完成");
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 jcmd 被中断");
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("jcmd 退出码 " + process.exitValue() + "，输出见 " + file.getPath());
+        }
+        return file;
+    }
+
+    /**
+     * javaExe 所在目录中的JDK工具
+     */
+    private static File jdkTool(String javaExe, String name) throws IOException {
+        File bin = new File(javaExe).getAbsoluteFile().getParentFile();
+        boolean windows = System.getProperty("os.name").toLowerCase().contains("win");
+        File tool = new File(bin, windows ? name + ".exe" : name);
+        if (!tool.canExecute()) {
+            throw new IOException("找不到 " + tool.getPath() + "（需要JDK）");
+        }
+        return tool;
+    }
+
+    private static String runTool(File tool, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(tool.getPath());
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (InputStream in = process.getInputStream()) {
+            // 输出只有几行，读完再等待退出
+            String output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(TOOL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException(tool.getName() + " 未在 " + TOOL_TIMEOUT_MS / 1000 + " 秒内完成");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException(tool.getName() + " 退出码 " + process.exitValue() + ": " + output.trim());
+            }
+            return output;
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 " + tool.getName() + " 被中断");
+        }
+    }
+
+    /**
+     * 一个实例的堆占用趋势：每个时间桶保留最小值 {桶开始时刻, 最小已用堆}
+     */
+    private static class HeapTrend {
+        private final ArrayDeque<long[]> buckets = new ArrayDeque<>();
+        private long lastSampleAt = 0;
+
+        void add(long now, long used) {
+            long bucket = now - now % HEAP_BUCKET_MS;
+            long[] last = buckets.peekLast();
+            if (last != null && last[0] == bucket) {
+                last[1] = Math.min(last[1], used);
+                return;
+            }
+            buckets.addLast(new long[]{bucket, used});
+            while (buckets.size() > HEAP_WINDOW_BUCKETS) {
+                buckets.pollFirst();
+            }
+        }
+
+        int minutes() {
+            return buckets.isEmpty() ? 0
+                : (int) ((buckets.peekLast()[0] - buckets.peekFirst()[0] + HEAP_BUCKET_MS) / 60_000);
+        }
+
+        /**
+         * 最小二乘拟合的每小时增长量相对窗口起点拟合值的百分比，数据不足时为NaN
+         */
+        double growthPerHour() {
+            int n = buckets.size();
+            if (n < HEAP_MIN_BUCKETS) {
+                return Double.NaN;
+            }
+            long origin = buckets.peekFirst()[0];
+            double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+            for (long[] bucket : buckets) {
+                double x = (bucket[0] - origin) / 3_600_000.0;
+                sumX += x;
+                sumY += bucket[1];
+                sumXX += x * x;
+                sumXY += x * bucket[1];
+            }
+            double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+            double start = (sumY - slope * sumX) / n;
+            return start > 0 ? slope / start * 100 : Double.NaN;
+        }
+    }
+
+    /**
+     * 满足规则的实例及原因
+     */
+    public static class Trigger {
+        private final int instance;
+        private final long pid;
+        private final String reason;
+
+        public Trigger(int instance, long pid, String reason) {
+            this.instance = instance;
+            this.pid = pid;
+            this.reason = reason;
+        }
+
+        public int getInstance() { return instance; }
+        public long getPid() { return pid; }
+        public String getReason() { return reason; }
+    }
+
+    /**
+     * 采样情况；heapGrowthPercent 为增长最快的实例的每小时增长率，数据不足时为null
+     */
+    public static class Snapshot {
+        private final long maxRssBytes;
+        private final long rssOverLimitMs;
+        private final Double heapGrowthPercent;
+        private final int heapWindowMinutes;
+        private final String heapError;
+
+        public Snapshot(long maxRssBytes, long rssOverLimitMs, Double heapGrowthPercent, int heapWindowMinutes,
+                        String heapError) {
+            this.maxRssBytes = maxRssBytes;
+            this.rssOverLimitMs = rssOverLimitMs;
+            this.heapGrowthPercent = heapGrowthPercent;
+            this.heapWindowMinutes = heapWindowMinutes;
+            this.heapError = heapError;
+        }
+
+        public long getMaxRssBytes() { return maxRssBytes; }
+        public long getRssOverLimitMs() { return rssOverLimitMs; }
+        public Double getHeapGrowthPercent() { return heapGrowthPercent; }
+        public int getHeapWindowMinutes() { return heapWindowMinutes; }
+        public String getHeapError() { return heapError; }
+    }
+}
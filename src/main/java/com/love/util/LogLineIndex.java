@@ -0,0 +1,262 @@
+package com.love.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 日志文件稀疏行偏移索引
+ * 每 CHECKPOINT_INTERVAL 行记录一次起始偏移，定位任意行只需跳到最近的检查点再向后扫描。
+ * 文件增长时只扫描新增部分；文件变小（被截断）或被替换（轮转后新文件可能已长过旧文件）时重建索引。
+ */
+public class LogLineIndex {
+    public static final int CHECKPOINT_INTERVAL = 4096;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 8192; // 超长行截断显示（截在字符边界）
+
+    private final File file;
+    private long[] checkpoints = new long[16]; // checkpoints[k] = 第 k*CHECKPOINT_INTERVAL 行的起始偏移
+    private int checkpointCount = 1;
+    private long indexedLength = 0;  // 已扫描的字节数
+    private long completeLines = 0;  // 以换行符结尾的行数
+    private long lastLineStart = 0;  // 最后一个换行符之后的偏移
+    private FileIdentity identity;   // 已索引内容所属的文件，未索引时为null
+
+    public LogLineIndex(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 读取从 from 开始的 count 行
+     */
+    public synchronized Page readLines(long from, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            update(channel);
+            long total = totalLines();
+            long start = Math.max(0, Math.min(from, total));
+            int n = (int) Math.max(0, Math.min(count, total - start));
+            return new Page(start, total, n > 0 ? read(channel, start, n) : new ArrayList<>());
+        }
+    }
+
+    /**
+     * 读取最后 count 行
+     */
+    public synchronized Page tail(int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            update(channel);
+            long total = totalLines();
+            long start = Math.max(0, total - count);
+            return new Page(start, total, read(channel, start, (int) (total - start)));
+        }
+    }
+
+    /**
+     * 同步索引到文件当前大小，返回总行数
+     */
+    public synchronized long refresh() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            update(channel);
+            return totalLines();
+        }
+    }
+
+    private long totalLines() {
+        // 末尾没有换行符的部分也算一行（服务可能正在写入）
+        return completeLines + (indexedLength > lastLineStart ? 1 : 0);
+    }
+
+    private void update(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < indexedLength || (identity != null && !identity.isSameFile(file.toPath()))) {
+            reset();
+        }
+        if (identity == null || !identity.isComplete()) {
+            identity = FileIdentity.of(file.toPath());
+        }
+        if (size == indexedLength) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+        long pos = indexedLength;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    completeLines++;
+                    lastLineStart = pos + i + 1;
+                    if (completeLines % CHECKPOINT_INTERVAL == 0) {
+                        addCheckpoint(lastLineStart);
+                    }
+                }
+            }
+            pos += read;
+        }
+        indexedLength = pos;
+    }
+
+    private void reset() {
+        checkpoints = new long[16];
+        checkpointCount = 1;
+        indexedLength = 0;
+        completeLines = 0;
+        lastLineStart = 0;
+        identity = null;
+    }
+
+    private void addCheckpoint(long offset) {
+        if (checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    /**
+     * 定位到第 line 行的起始偏移：跳到检查点后最多扫描 CHECKPOINT_INTERVAL-1 行
+     */
+    private long seek(FileChannel channel, long line) throws IOException {
+        int k = (int) Math.min(line / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        long pos = checkpoints[k];
+        long toSkip = line - (long) k * CHECKPOINT_INTERVAL;
+        if (toSkip == 0) {
+            return pos;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+        while (pos < indexedLength) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n' && --toSkip == 0) {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return indexedLength;
+    }
+
+    private List<String> read(FileChannel channel, long start, int count) throws IOException {
+        List<String> lines = new ArrayList<>(count);
+        long pos = seek(channel, start);
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        LineBuilder current = new LineBuilder();
+        while (lines.size() < count && pos < indexedLength) {
+            buffer.clear();
+            long remaining = indexedLength - pos;
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read && lines.size() < count; i++) {
+                if (bytes[i] == '\n') {
+                    current.append(bytes, lineStart, i - lineStart);
+                    lines.add(current.build());
+                    current = new LineBuilder();
+                    lineStart = i + 1;
+                }
+            }
+            if (lines.size() < count) {
+                current.append(bytes, lineStart, read - lineStart);
+            }
+            pos += read;
+        }
+        if (lines.size() < count && current.size() > 0) {
+            lines.add(current.build());
+        }
+        return lines;
+    }
+
+    /**
+     * 截断到 len 字节时不拆开多字节的UTF-8字符：末尾不完整的字符整个去掉
+     * @return 不超过 len 的字符边界
+     */
+    static int utf8Boundary(byte[] data, int len) {
+        int start = len - 1;
+        while (start > 0 && start > len - 4 && (data[start] & 0xC0) == 0x80) {
+            start--; // 跳过后续字节，找到最后一个字符的首字节
+        }
+        if (start < 0) {
+            return len;
+        }
+        int lead = data[start] & 0xFF;
+        int charLength = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start + charLength > len ? start : len;
+    }
+
+    /**
+     * 行内容缓冲，超长行只保留前 MAX_LINE_BYTES 个字节
+     */
+    private static class LineBuilder {
+        private byte[] data = new byte[256];
+        private int size = 0;
+        private boolean truncated = false;
+
+        void append(byte[] src, int off, int len) {
+            int room = MAX_LINE_BYTES - size;
+            if (len > room) {
+                truncated = true;
+                len = Math.max(0, room);
+            }
+            if (size + len > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + len));
+            }
+            System.arraycopy(src, off, data, size, len);
+            size += len;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String build() {
+            int len = truncated ? utf8Boundary(data, size) : size;
+            if (len > 0 && data[len - 1] == '\r') {
+                len--;
+            }
+            String line = new String(data, 0, len, StandardCharsets.UTF_8);
+            return truncated ? line + " …" : line;
+        }
+    }
+
+    /**
+     * 一页日志行
+     */
+    public static class Page {
+        private final long from;
+        private final long totalLines;
+        private final List<String> lines;
+
+        public Page(long from, long totalLines, List<String> lines) {
+            this.from = from;
+            this.totalLines = totalLines;
+            this.lines = lines;
+        }
+
+        public long getFrom() { return from; }
+        public long getTotalLines() { return totalLines; }
+        public List<String> getLines() { return lines; }
+    }
+}
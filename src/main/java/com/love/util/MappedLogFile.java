@@ -0,0 +1,364 @@
+package com.love.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存映射的日志文件，供桌面端日志查看器分页读取
+ * 文件按段映射（单段最大256MB），行偏移使用稀疏检查点索引，
+ * 只有被请求的行才会被解码成字符串。
+ */
+public class MappedLogFile implements Closeable {
+    public static final int UPDATE_UNCHANGED = 0;
+    public static final int UPDATE_GREW = 1;
+    public static final int UPDATE_TRUNCATED = 2;
+
+    private static final int CHECKPOINT_INTERVAL = LogLineIndex.CHECKPOINT_INTERVAL;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int PAGE_LINES = 256;      // 行偏移缓存的页大小
+    private static final int MAX_CACHED_PAGES = 64;
+    private static final int MAX_LINE_BYTES = 8192; // 超长行截断显示（截在字符边界）
+    private static final long FIND_CHECK_INTERVAL = 1L << 20; // 查找时每扫描这么多字节检查一次文件是否被截断
+
+    private final File file;
+    private final FileChannel channel;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private long[] checkpoints = new long[16]; // checkpoints[k] = 第 k*CHECKPOINT_INTERVAL 行的起始偏移
+    private int checkpointCount = 1;
+    private long indexedLength = 0;
+    private long completeLines = 0;
+    private long lastLineStart = 0;
+    private volatile long generation = 0; // 每次截断重置后加1，供锁外查找判断偏移是否仍然有效
+
+    // 页号 -> 该页每行的起始偏移（最后一个元素为页结束偏移）
+    private final Map<Long, long[]> pageCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public MappedLogFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 映射并索引新增内容，每次最多扫描 maxBytes 字节，便于界面分批展示进度
+     * @return UPDATE_UNCHANGED / UPDATE_GREW / UPDATE_TRUNCATED
+     */
+    public synchronized int update(long maxBytes) throws IOException {
+        long size = channel.size();
+        int result = UPDATE_UNCHANGED;
+        if (size < indexedLength) {
+            reset();
+            result = UPDATE_TRUNCATED;
+        }
+        if (size == indexedLength) {
+            return result;
+        }
+        long end = Math.min(size, indexedLength + maxBytes);
+        ensureMapped(end);
+        // 原来的最后一页可能因为新增内容而变化
+        pageCache.remove(lastPageNo());
+        long pos = indexedLength;
+        while (pos < end) {
+            MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+            int from = (int) (pos & (SEGMENT_SIZE - 1));
+            int to = (int) Math.min(segment.capacity(), from + (end - pos));
+            long base = pos - from;
+            for (int i = from; i < to; i++) {
+                if (segment.get(i) == '\n') {
+                    completeLines++;
+                    lastLineStart = base + i + 1;
+                    if (completeLines % CHECKPOINT_INTERVAL == 0) {
+                        addCheckpoint(lastLineStart);
+                    }
+                }
+            }
+            pos = base + to;
+        }
+        indexedLength = end;
+        return result == UPDATE_TRUNCATED ? result : UPDATE_GREW;
+    }
+
+    public synchronized boolean isFullyIndexed() throws IOException {
+        return indexedLength >= channel.size();
+    }
+
+    public synchronized long getIndexedLength() {
+        return indexedLength;
+    }
+
+    public synchronized long getLineCount() {
+        return completeLines + (indexedLength > lastLineStart ? 1 : 0);
+    }
+
+    /**
+     * 解码第 line 行（不含换行符）
+     * 文件在两次 update() 之间被截断时返回空串：映射在新文件末尾之后的页已不可访问（访问会触发 SIGBUS，
+     * JVM 以 InternalError 抛出），下次 update() 会重建索引
+     */
+    public synchronized String getLine(long line) {
+        if (line < 0 || line >= getLineCount()) {
+            return "";
+        }
+        try {
+            if (channel.size() < indexedLength) {
+                return "";
+            }
+            long[] offsets = page(line / PAGE_LINES);
+            int i = (int) (line % PAGE_LINES);
+            long start = offsets[i];
+            long end = offsets[i + 1];
+            if (end > start && byteAt(end - 1) == '\n') {
+                end--;
+            }
+            if (end > start && byteAt(end - 1) == '\r') {
+                end--;
+            }
+            int len = (int) Math.min(end - start, MAX_LINE_BYTES);
+            byte[] bytes = new byte[len];
+            read(start, bytes);
+            if (end - start > MAX_LINE_BYTES) {
+                return new String(bytes, 0, LogLineIndex.utf8Boundary(bytes, len), StandardCharsets.UTF_8) + " …";
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException | InternalError e) {
+            return "";
+        }
+    }
+
+    /**
+     * 从 fromLine 开始查找包含 text 的行
+     * 只在确定扫描范围和换算行号时持有对象锁，逐字节扫描在锁外对映射段的快照进行，
+     * 大文件查找期间界面线程的 getLine() 不会被阻塞
+     * 扫描中每隔 1MB 检查文件是否被截断或重置，截断后立即放弃：映射在新文件末尾之后的页不可访问，
+     * 检查与访问之间仍被截断时访问抛出 InternalError，同样按截断处理
+     * @param forward true向后查找（从fromLine开始），false向前查找（从fromLine之前开始）
+     * @return 行号，找不到或查找期间文件被截断返回-1
+     */
+    public long find(String text, long fromLine, boolean forward) {
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        MappedByteBuffer[] snapshot;
+        long start;
+        long limit;
+        long generation;
+        synchronized (this) {
+            if (pattern.length == 0 || getLineCount() == 0) {
+                return -1;
+            }
+            generation = this.generation;
+            if (!stillMapped(generation, indexedLength)) {
+                return -1; // 已被截断，等下次 update() 重建索引
+            }
+            // 段数组在重新映射时会被原地替换元素，复制一份；已映射的段在被回收前一直有效
+            snapshot = segments.clone();
+            limit = indexedLength - pattern.length;
+            try {
+                start = offsetOf(Math.max(0, Math.min(fromLine, getLineCount())));
+            } catch (InternalError e) {
+                return -1;
+            }
+        }
+        long mapped = limit + pattern.length;
+        long found = -1;
+        try {
+            if (forward) {
+                for (long pos = start; pos <= limit; pos++) {
+                    if ((pos & (FIND_CHECK_INTERVAL - 1)) == 0 && !stillMapped(generation, mapped)) {
+                        return -1;
+                    }
+                    if (matches(snapshot, pos, pattern)) {
+                        found = pos;
+                        break;
+                    }
+                }
+            } else {
+                for (long pos = Math.min(start - 1, limit); pos >= 0; pos--) {
+                    if ((pos & (FIND_CHECK_INTERVAL - 1)) == 0 && !stillMapped(generation, mapped)) {
+                        return -1;
+                    }
+                    if (matches(snapshot, pos, pattern)) {
+                        found = pos;
+                        break;
+                    }
+                }
+            }
+        } catch (InternalError e) {
+            return -1;
+        }
+        if (found < 0) {
+            return -1;
+        }
+        synchronized (this) {
+            // 截断后偏移已失效；只是新增内容时快照范围内的检查点不变
+            if (!stillMapped(generation, mapped)) {
+                return -1;
+            }
+            try {
+                return lineOf(found);
+            } catch (InternalError e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 查找开始后文件没有被重置，且仍不短于扫描范围
+     */
+    private boolean stillMapped(long generation, long length) {
+        try {
+            return generation == this.generation && channel.size() >= length;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // MappedByteBuffer 由GC回收后解除映射
+        segments = new MappedByteBuffer[0];
+        pageCache.clear();
+        channel.close();
+    }
+
+    private void reset() {
+        segments = new MappedByteBuffer[0];
+        checkpoints = new long[16];
+        checkpointCount = 1;
+        indexedLength = 0;
+        completeLines = 0;
+        lastLineStart = 0;
+        pageCache.clear();
+        generation++;
+    }
+
+    private void ensureMapped(long size) throws IOException {
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        if (segments.length < count) {
+            segments = Arrays.copyOf(segments, count);
+        }
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            long length = Math.min(SEGMENT_SIZE, size - start);
+            if (segments[i] == null || segments[i].capacity() < length) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+        }
+    }
+
+    private void addCheckpoint(long offset) {
+        if (checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    private long lastPageNo() {
+        return Math.max(0, getLineCount() - 1) / PAGE_LINES;
+    }
+
+    private byte byteAt(long pos) {
+        return byteAt(segments, pos);
+    }
+
+    private static byte byteAt(MappedByteBuffer[] segments, long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & (SEGMENT_SIZE - 1)));
+    }
+
+    private void read(long pos, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            MappedByteBuffer segment = segments[(int) ((pos + done) >>> SEGMENT_SHIFT)];
+            int index = (int) ((pos + done) & (SEGMENT_SIZE - 1));
+            int n = Math.min(dst.length - done, segment.capacity() - index);
+            segment.get(index, dst, done, n);
+            done += n;
+        }
+    }
+
+    private static boolean matches(MappedByteBuffer[] segments, long pos, byte[] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (byteAt(segments, pos + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 第 line 行的起始偏移：跳到最近的检查点后向后扫描
+     */
+    private long offsetOf(long line) {
+        if (line >= getLineCount()) {
+            return indexedLength;
+        }
+        int k = (int) Math.min(line / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        long pos = checkpoints[k];
+        long toSkip = line - (long) k * CHECKPOINT_INTERVAL;
+        while (toSkip > 0 && pos < indexedLength) {
+            if (byteAt(pos++) == '\n') {
+                toSkip--;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 偏移所在的行号：二分查找检查点后向后计数
+     */
+    private long lineOf(long offset) {
+        int lo = 0;
+        int hi = checkpointCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (checkpoints[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long line = (long) lo * CHECKPOINT_INTERVAL;
+        for (long pos = checkpoints[lo]; pos < offset; pos++) {
+            if (byteAt(pos) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private long[] page(long pageNo) {
+        long[] cached = pageCache.get(pageNo);
+        if (cached != null) {
+            return cached;
+        }
+        long firstLine = pageNo * PAGE_LINES;
+        int lines = (int) Math.min(PAGE_LINES, getLineCount() - firstLine);
+        long[] offsets = new long[lines + 1];
+        long pos = offsetOf(firstLine);
+        offsets[0] = pos;
+        for (int i = 1; i <= lines; i++) {
+            while (pos < indexedLength && byteAt(pos++) != '\n') {
+                // 扫描到行尾
+            }
+            offsets[i] = pos;
+        }
+        pageCache.put(pageNo, offsets);
+        return offsets;
+    }
+}
@@ -0,0 +1,91 @@
+package com.love.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 为服务实例分配端口（${port}）
+ * 分配前实际绑定一次确认端口空闲，并在本进程内登记直到释放，避免同时启动的实例拿到同一个端口。
+ * 检查与子进程真正绑定之间仍有很短的窗口，被其他程序抢占时实例会启动失败并按常规流程重试。
+ */
+public class PortAllocator {
+    private static final int SCAN_LIMIT = 200; // 首选端口被占用时向后查找的范围
+
+    private static final Set<Integer> reserved = new HashSet<>();
+
+    /**
+     * 分配并登记一个空闲端口
+     * @param preferred 首选端口，被占用时向后查找；小于等于0时由系统分配
+     */
+    public static synchronized int allocate(int preferred) throws IOException {
+        int port = findFree(preferred);
+        reserved.add(port);
+        return port;
+    }
+
+    /**
+     * 查找空闲端口但不登记（同一端口可能被再次返回）
+     */
+    public static synchronized int findFree(int preferred) throws IOException {
+        if (preferred > 0) {
+            for (int port = preferred; port < preferred + SCAN_LIMIT && port <= 65535; port++) {
+                if (!reserved.contains(port) && isFree(port)) {
+                    return port;
+                }
+            }
+            throw new IOException("端口 " + preferred + " 起的 " + SCAN_LIMIT + " 个端口都已被占用");
+        }
+        for (int attempt = 0; attempt < SCAN_LIMIT; attempt++) {
+            try (ServerSocket socket = new ServerSocket()) {
+                socket.setReuseAddress(false);
+                socket.bind(new InetSocketAddress(0));
+                int port = socket.getLocalPort();
+                if (!reserved.contains(port)) {
+                    return port;
+                }
+            }
+        }
+        throw new IOException("无法分配空闲端口");
+    }
+
+    /**
+     * 登记一个已被本监控器的进程占用的端口（接管已有进程时）
+     */
+    public static synchronized void reserve(int port) {
+        if (port > 0) {
+            reserved.add(port);
+        }
+    }
+
+    public static synchronized void release(int port) {
+        reserved.remove(port);
+    }
+
+    /**
+     * 等待端口可以重新绑定：进程刚退出时监听端口可能还没被回收
+     * @return 在时限内空闲返回true
+     */
+    public static boolean awaitFree(int port, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!isFree(port)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    private static boolean isFree(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(false);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
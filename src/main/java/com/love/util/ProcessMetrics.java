@@ -0,0 +1,69 @@
+package com.love.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 进程资源采样
+ * CPU占用由两次采样之间的CPU时间差计算；常驻内存读取 /proc/[pid]/status 的 VmRSS（仅Linux）。
+ * 非线程安全，由单个采样线程使用。
+ */
+public class ProcessMetrics {
+    private final Map<Long, long[]> lastCpu = new HashMap<>(); // pid -> {CPU纳秒, 采样时刻纳秒}
+
+    /**
+     * 采样指定进程
+     * @return {CPU百分比, 常驻内存字节}，无法获取的项为-1
+     */
+    public double[] sample(long pid) {
+        double cpu = -1;
+        Optional<ProcessHandle> handle = ProcessHandle.of(pid);
+        if (handle.isPresent()) {
+            Optional<Duration> total = handle.get().info().totalCpuDuration();
+            if (total.isPresent()) {
+                long now = System.nanoTime();
+                long cpuNanos = total.get().toNanos();
+                long[] last = lastCpu.put(pid, new long[]{cpuNanos, now});
+                if (last != null && now > last[1]) {
+                    cpu = Math.max(0, (cpuNanos - last[0]) * 100.0 / (now - last[1]));
+                }
+            }
+        }
+        return new double[]{cpu, readRss(pid)};
+    }
+
+    /**
+     * 清除已不再采样的进程记录
+     */
+    public void retain(Collection<Long> pids) {
+        lastCpu.keySet().retainAll(pids);
+    }
+
+    public static long readRss(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    // 格式: VmRSS:    123456 kB
+                    String value = line.substring("VmRSS:".length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space > 0 ? value.substring(0, space) : value) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 进程可能刚好退出
+        }
+        return -1;
+    }
+}
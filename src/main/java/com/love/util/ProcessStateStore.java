@@ -0,0 +1,115 @@
+package com.love.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 运行中服务进程的持久化记录
+ * 每次拉起/停止进程后写入服务ID、实例编号、PID、进程启动时间和分配的端口；监控器重启后据此接管仍在运行的进程，
+ * 启动时间用于识别PID复用。
+ * Web端（processes.txt）和桌面端（processes-desktop.txt）各写各的文件：每次保存都整体替换，
+ * 共用一个文件会互相抹掉对方的记录。
+ */
+public class ProcessStateStore {
+    public static final String SERVICE_MANAGER_FILE = "processes.txt";
+    public static final String DESKTOP_FILE = "processes-desktop.txt";
+    private static final String SEPARATOR = "|||";
+
+    private final String stateFile;
+    private String lastContent; // 上次写入的内容，未变化时不重复写文件
+
+    public ProcessStateStore(String stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * 保存全部运行中进程的记录（整体替换）
+     */
+    public synchronized void save(List<ProcessRecord> records) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (ProcessRecord record : records) {
+            // 格式：服务ID|||PID|||进程启动时间（毫秒）|||实例编号|||端口（未分配为-1）
+            content.append(record.getServiceId()).append(SEPARATOR)
+                   .append(record.getPid()).append(SEPARATOR)
+                   .append(record.getStartTime()).append(SEPARATOR)
+                   .append(record.getInstance()).append(SEPARATOR)
+                   .append(record.getPort()).append(System.lineSeparator());
+        }
+        String text = content.toString();
+        if (text.equals(lastContent)) {
+            return;
+        }
+
+        // 先写入临时文件再原子替换，中途崩溃也不会留下半个文件或丢失旧文件
+        File tempFile = new File(stateFile + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+        Files.move(tempFile.toPath(), new File(stateFile).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastContent = text;
+    }
+
+    /**
+     * 读取上次保存的记录
+     * @return 全部记录（同一服务的多个实例各一条）；文件不存在时为空
+     */
+    public synchronized List<ProcessRecord> load() {
+        List<ProcessRecord> records = new ArrayList<>();
+        File file = new File(stateFile);
+        if (!file.exists()) {
+            return records;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\|\\|\\|");
+                // 旧版本只有前3个字段（单实例，未分配端口）
+                if (parts.length != 3 && parts.length != 5) {
+                    continue;
+                }
+                try {
+                    int instance = parts.length == 5 ? Integer.parseInt(parts[3]) : 0;
+                    int port = parts.length == 5 ? Integer.parseInt(parts[4]) : -1;
+                    records.add(new ProcessRecord(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        instance, port));
+                } catch (NumberFormatException e) {
+                    System.err.println("警告: 忽略无效的进程记录: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("加载进程记录失败: " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * 一个运行中的服务实例进程
+     */
+    public static class ProcessRecord {
+        private final String serviceId;
+        private final long pid;
+        private final long startTime;
+        private final int instance;
+        private final int port;
+
+        public ProcessRecord(String serviceId, long pid, long startTime, int instance, int port) {
+            this.serviceId = serviceId;
+            this.pid = pid;
+            this.startTime = startTime;
+            this.instance = instance;
+            this.port = port;
+        }
+
+        public String getServiceId() { return serviceId; }
+        public long getPid() { return pid; }
+        public long getStartTime() { return startTime; }
+        public int getInstance() { return instance; }
+        public int getPort() { return port; }
+    }
+}
@@ -0,0 +1,122 @@
+package com.love.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.love.model.ServiceConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 服务配置的JSON表示：{"id","name","javaExe","workDir","args","replicas","basePort","publicPort","idleTimeout","appCds","sizingWeight",
+ *  "rssLimitMb","rssLimitMinutes","heapGrowthPercent","restartBlackout","gcLog","gcPauseWarnMs"}
+ * 配置文件和批量导入/导出共用。导入导出逐条流式处理，支持JSON数组和NDJSON（每行一个对象）。
+ */
+public class ServiceConfigCodec {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static ObjectNode toJson(ServiceConfig config) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("id", config.getId());
+        node.put("name", config.getName());
+        node.put("javaExe", config.getJavaExe());
+        node.put("workDir", config.getWorkDir());
+        node.put("args", config.getArgs());
+        node.put("replicas", config.getReplicas());
+        node.put("basePort", config.getBasePort());
+        node.put("publicPort", config.getPublicPort());
+        node.put("idleTimeout", config.getIdleTimeout());
+        node.put("appCds", config.isAppCds());
+        node.put("sizingWeight", config.getSizingWeight());
+        node.put("rssLimitMb", config.getRssLimitMb());
+        node.put("rssLimitMinutes", config.getRssLimitMinutes());
+        node.put("heapGrowthPercent", config.getHeapGrowthPercent());
+        node.put("restartBlackout", config.getRestartBlackout());
+        node.put("gcLog", config.isGcLog());
+        node.put("gcPauseWarnMs", config.getGcPauseWarnMs());
+        return node;
+    }
+
+    /**
+     * @return 不是JSON对象时返回null；缺少的字段为空字符串（id 为null），实例数默认1，端口和空闲超时默认0，RSS持续时间默认10分钟，GC停顿告警默认200毫秒
+     */
+    public static ServiceConfig fromJson(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+        ServiceConfig config = new ServiceConfig();
+        config.setId(node.path("id").asText(null));
+        config.setName(node.path("name").asText(""));
+        config.setJavaExe(node.path("javaExe").asText(""));
+        config.setWorkDir(node.path("workDir").asText(""));
+        config.setArgs(node.path("args").asText(""));
+        config.setReplicas(node.path("replicas").asInt(1));
+        config.setBasePort(node.path("basePort").asInt(0));
+        config.setPublicPort(node.path("publicPort").asInt(0));
+        config.setIdleTimeout(node.path("idleTimeout").asInt(0));
+        config.setAppCds(node.path("appCds").asBoolean(false));
+        config.setSizingWeight(node.path("sizingWeight").asInt(0));
+        config.setRssLimitMb(node.path("rssLimitMb").asInt(0));
+        config.setRssLimitMinutes(node.path("rssLimitMinutes").asInt(10));
+        config.setHeapGrowthPercent(node.path("heapGrowthPercent").asInt(0));
+        config.setRestartBlackout(node.path("restartBlackout").asText(""));
+        config.setGcLog(node.path("gcLog").asBoolean(false));
+        config.setGcPauseWarnMs(node.path("gcPauseWarnMs").asInt(200));
+        return config;
+    }
+
+    /**
+     * 逐条读取导入数据：JSON数组 [{...},{...}] 或 NDJSON（空白分隔的多个对象）
+     * @return 每个条目一项，不是对象的条目为null
+     * @throws IOException JSON语法错误或条目数超过 maxEntries
+     */
+    public static List<ServiceConfig> readAll(InputStream in, int maxEntries) throws IOException {
+        List<ServiceConfig> configs = new ArrayList<>();
+        JsonParser parser = MAPPER.getFactory().createParser(in);
+        // 顶层数组会被自动展开，逐个元素解析，不构建整棵树
+        try (MappingIterator<JsonNode> it = MAPPER.readerFor(JsonNode.class).readValues(parser)) {
+            while (it.hasNextValue()) {
+                if (configs.size() >= maxEntries) {
+                    throw new IOException("条目数超过上限 " + maxEntries);
+                }
+                configs.add(fromJson(it.nextValue()));
+            }
+        } catch (RuntimeException e) {
+            // MappingIterator 把解析错误包装为运行时异常
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getMessage(), e);
+        }
+        return configs;
+    }
+
+    /**
+     * 逐条写出配置
+     * @param ndjson true 时每行一个对象，否则输出JSON数组
+     */
+    public static void writeAll(OutputStream out, List<ServiceConfig> configs, boolean ndjson) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+            for (ServiceConfig config : configs) {
+                MAPPER.writeTree(generator, toJson(config));
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
@@ -22,6 +22,12 @@ public class SettingsManager {
                 new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
             writer.write(escape(settings.getLogBasePath()));
             writer.newLine();
+            // 第2行：启动准入条件
+            writer.write(settings.getStartMaxStarting() + SEPARATOR + settings.getStartMaxLoadPerCpu()
+                + SEPARATOR + settings.getStartMinAvailableMemoryMb() + SEPARATOR + settings.getStartMaxCpuPressure()
+                + SEPARATOR + settings.getStartMinIntervalMs() + SEPARATOR + settings.getStartMaxWaitMs()
+                + SEPARATOR + settings.getStartReadyTimeoutMs());
+            writer.newLine();
             writer.flush();
         }
         
@@ -46,7 +52,13 @@ public class SettingsManager {
             String line = reader.readLine();
             if (line != null && !line.trim().isEmpty()) {
                 String logBasePath = unescape(line.trim());
-                return new AppSettings(logBasePath);
+                AppSettings settings = new AppSettings(logBasePath);
+                // 旧版本没有第2行，使用默认准入条件
+                String limits = reader.readLine();
+                if (limits != null && !limits.trim().isEmpty()) {
+                    parseStartLimits(settings, limits.trim());
+                }
+                return settings;
             }
         } catch (IOException e) {
             System.err.println("加载设置失败: " + e.getMessage());
@@ -56,6 +68,28 @@ public class SettingsManager {
         return new AppSettings();
     }
 
+    private static void parseStartLimits(AppSettings settings, String line) {
+        String[] parts = line.split("\\|\\|\\|");
+        // 第7项（就绪超时）是后来加的，旧文件只有6项
+        if (parts.length != 6 && parts.length != 7) {
+            System.err.println("警告: 忽略无效的启动准入设置: " + line);
+            return;
+        }
+        try {
+            settings.setStartMaxStarting(Integer.parseInt(parts[0]));
+            settings.setStartMaxLoadPerCpu(Double.parseDouble(parts[1]));
+            settings.setStartMinAvailableMemoryMb(Long.parseLong(parts[2]));
+            settings.setStartMaxCpuPressure(Double.parseDouble(parts[3]));
+            settings.setStartMinIntervalMs(Long.parseLong(parts[4]));
+            settings.setStartMaxWaitMs(Long.parseLong(parts[5]));
+            if (parts.length > 6) {
+                settings.setStartReadyTimeoutMs(Long.parseLong(parts[6]));
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("警告: 忽略无效的启动准入设置: " + line);
+        }
+    }
+
     private static String escape(String str) {
         if (str == null) {
             return "";
@@ -2,9 +2,30 @@ package com.love.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
+/**
+ * 进程监控器：拉起子进程，退出后按退避策略自动重启
+ * 生命周期由 WatcherState 描述，所有状态转换都是对 state 的CAS，不使用锁；
+ * 每次成功的转换都带上时间和原因通知转换监听器。
+ * 子进程的输出重定向到文件，监控器所在JVM退出后子进程继续运行，重启后可通过 adopt() 重新接管。
+ */
 public class SimpleProcessWatcher {
 
     private String javaExe;
@@ -12,53 +33,105 @@ public class SimpleProcessWatcher {
     private String[] args;
     private File outLog;
     private File errLog;
-    
-    private volatile Process process; // 使用volatile确保可见性
+    private final int readinessPort; // 参数中的 server.port，>0 时端口可连接才算就绪
+
+    private final AtomicReference<StateTransition> state =
+        new AtomicReference<>(new StateTransition(null, WatcherState.STOPPED, "已创建"));
+    private final AtomicReference<Child> process = new AtomicReference<>();
+    private final List<Consumer<StateTransition>> transitionListeners = new CopyOnWriteArrayList<>();
     private volatile Consumer<String> logCallback;
-    private volatile boolean running = false; // 使用volatile确保可见性
-    private Thread monitorThread;
+    private volatile AppCdsArchive appCds; // 不为null时每次启动添加CDS归档参数
+    private volatile List<String> jvmOptions = List.of(); // 启动时加在用户参数之前的JVM选项（如自动分配的堆大小）
+    private volatile Thread monitorThread;
     private volatile long lastStartTime = 0; // 上次启动时间
     private volatile int consecutiveFailures = 0; // 连续失败次数
+    private volatile long errLogStart = 0; // 本次拉起时错误日志的长度，启动失败时只看之后写入的内容
+    private volatile long readinessTimeoutMs = 0; // STARTING 超过该时长未就绪则判定启动失败，0 表示不限
+    private volatile boolean readinessTimedOut = false; // 上一次启动因就绪超时被终止
     private static final long MIN_RESTART_INTERVAL = 10000; // 最小重启间隔10秒
     private static final int MAX_CONSECUTIVE_FAILURES = 5; // 最大连续失败次数
-    private final Object processLock = new Object(); // 进程操作的锁
+    private static final long START_CONFIRM_MS = 5000;    // 手动启动的确认时间
+    private static final long RESTART_CONFIRM_MS = 2000;  // 自动重启后存活多久才算就绪
+    private static final long CHECK_INTERVAL_MS = 5000;   // READY 状态下的兜底检查间隔
+    private static final long PROBE_INTERVAL_MS = 500;    // STARTING 状态下的就绪检查间隔
+    private static final int PROBE_TIMEOUT_MS = 300;
+    private static final long STOP_GRACE_MS = 3000;        // 正常关闭的等待时间
+    private static final long DUMP_STOP_GRACE_MS = 30000;  // 退出时要写CDS归档的进程多等一会
+    private static final long STARTUP_MEASURE_INTERVAL_MS = 50;
+    private static final long STARTUP_MEASURE_LIMIT_MS = 300000;
 
-    public SimpleProcessWatcher(String javaExe, String workDir, String[] args, 
+    public SimpleProcessWatcher(String javaExe, String workDir, String[] args,
                                 File outLog, File errLog) {
         this.javaExe = javaExe;
         this.workDir = workDir;
         this.args = args;
         this.outLog = outLog;
         this.errLog = errLog;
+        this.readinessPort = parseServerPort(args);
     }
 
+    /**
+     * 设置日志回调，收到的是不带时间戳的原始消息，时间和来源由调用方按需添加
+     */
     public void setLogCallback(Consumer<String> logCallback) {
         this.logCallback = logCallback;
     }
 
+    /**
+     * 设置额外的JVM选项，从下次拉起进程起生效；调用方负责不与用户参数冲突
+     */
+    public void setJvmOptions(List<String> jvmOptions) {
+        this.jvmOptions = List.copyOf(jvmOptions);
+    }
+
+    /**
+     * 设置就绪超时：进程拉起后超过该时长仍未就绪时终止进程并按启动失败处理（退避重启，连续失败后隔离），
+     * 0 表示一直等待；从下一次就绪检查起生效
+     */
+    public void setReadinessTimeoutMs(long readinessTimeoutMs) {
+        this.readinessTimeoutMs = Math.max(0, readinessTimeoutMs);
+    }
+
+    /**
+     * 启用 AppCDS 归档（参数中已有CDS相关选项时忽略）
+     */
+    public void setAppCds(AppCdsArchive appCds) {
+        this.appCds = appCds != null && !AppCdsArchive.hasUserCdsOptions(args) ? appCds : null;
+    }
+
+    /**
+     * 注册状态转换监听器
+     * 监听器在完成转换的线程上同步调用；不同线程触发的回调可能乱序到达，需要当前状态时以 getState() 为准
+     */
+    public void addTransitionListener(Consumer<StateTransition> listener) {
+        transitionListeners.add(listener);
+    }
+
+    public void removeTransitionListener(Consumer<StateTransition> listener) {
+        transitionListeners.remove(listener);
+    }
+
     public void start() throws IOException {
-        synchronized (processLock) {
-            if (running) {
-                log("监控已在运行中");
-                return;
-            }
-            running = true;
+        if (!transition(EnumSet.of(WatcherState.STOPPED, WatcherState.QUARANTINED), WatcherState.STARTING, "手动启动")) {
+            log("监控已在运行中");
+            return;
         }
-        
+        monitorThread = null;
+        consecutiveFailures = 0;
+
         try {
-            startProcess();
-            long pid = process.pid();
-            
+            Child started = startProcess();
+            long pid = started.handle.pid();
+            // 进程已拉起：通知监听器记录PID（状态不变）
+            transition(WatcherState.STARTING, WatcherState.STARTING, "进程已拉起，PID = " + pid);
+
             // 等待并确认进程真的启动成功了
-            // 等待5秒，然后进行多重检查
-            Thread.sleep(5000);
-            
-            // 检查1：使用Process.isAlive()检查
-            if (!isAlive()) {
+            // 最多等待5秒，期间进程退出则立即判定失败，然后进行多重检查
+            boolean exited = waitForExit(started.handle, START_CONFIRM_MS);
+
+            // 检查1：进程是否存活
+            if (exited || !started.handle.isAlive()) {
                 String errorInfo = readRecentErrorLog();
-                synchronized (processLock) {
-                    running = false;
-                }
                 String errorMsg = "进程启动后退出，可能原因：端口被占用、配置错误或程序异常。";
                 if (!errorInfo.isEmpty()) {
                     errorMsg += "\n错误信息: " + errorInfo;
@@ -66,13 +139,10 @@ public class SimpleProcessWatcher {
                 errorMsg += "\n请检查日志文件: " + (errLog != null ? errLog.getAbsolutePath() : "未知");
                 throw new IOException(errorMsg);
             }
-            
+
             // 检查2：使用系统命令验证PID是否真实存在
             if (!verifyProcessExists(pid)) {
                 String errorInfo = readRecentErrorLog();
-                synchronized (processLock) {
-                    running = false;
-                }
                 String errorMsg = "进程PID " + pid + " 不存在，启动失败。可能原因：进程已退出或被终止。";
                 if (!errorInfo.isEmpty()) {
                     errorMsg += "\n错误信息: " + errorInfo;
@@ -80,149 +150,126 @@ public class SimpleProcessWatcher {
                 errorMsg += "\n请检查日志文件: " + (errLog != null ? errLog.getAbsolutePath() : "未知");
                 throw new IOException(errorMsg);
             }
-            
+
             // 检查3：检查错误日志，看是否有端口占用等严重错误
             String errorInfo = readRecentErrorLog();
-            if (!errorInfo.isEmpty() && (errorInfo.contains("端口") || errorInfo.contains("port") || 
+            if (!errorInfo.isEmpty() && (errorInfo.contains("端口") || errorInfo.contains("port") ||
                 errorInfo.contains("Address already in use") || errorInfo.contains("BindException") ||
                 errorInfo.contains("bind") || errorInfo.contains("BindException"))) {
                 // 发现端口占用等严重错误，即使进程还在运行也认为启动失败
-                synchronized (processLock) {
-                    running = false;
-                    if (process != null && process.isAlive()) {
-                        process.destroy();
-                    }
-                }
                 throw new IOException("检测到端口被占用或绑定失败: " + errorInfo);
             }
-            
+
+            if (getState() != WatcherState.STARTING) {
+                throw new IOException("启动过程中服务已被停止");
+            }
             log("进程启动成功并运行正常，PID = " + pid + "（已通过系统验证）");
         } catch (IOException e) {
-            // 启动失败，重置状态
-            synchronized (processLock) {
-                running = false;
+            // 启动失败：STARTING -> STOPPED 并清理进程；转换失败说明期间已被stop()接管
+            if (!failStart(e.getMessage())) {
+                throw new IOException("启动过程中服务已被停止", e);
             }
             throw e;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            synchronized (processLock) {
-                running = false;
-            }
+            failStart("启动确认过程被中断");
             throw new IOException("启动确认过程被中断", e);
         }
-        
-        monitorThread = new Thread(() -> {
-            while (running) {
-                try {
-                    Thread.sleep(5000);
-                    if (!running) {
-                        break;
-                    }
-                    if (!isAlive()) {
-                        long currentTime = System.currentTimeMillis();
-                        long timeSinceLastStart = currentTime - lastStartTime;
-                        
-                        // 如果进程启动后很快退出（小于10秒），说明可能有问题
-                        if (timeSinceLastStart < MIN_RESTART_INTERVAL && lastStartTime > 0) {
-                            consecutiveFailures++;
-                            log("进程启动后快速退出（" + timeSinceLastStart + "ms），连续失败次数: " + consecutiveFailures);
-                            
-                            // 如果连续失败次数过多，停止自动重启
-                            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
-                                log("连续失败次数过多（" + consecutiveFailures + "次），停止自动重启。请检查服务配置。");
-                                running = false; // 停止监控
-                                break;
-                            }
-                            
-                            // 增加重启延迟，避免频繁重启
-                            long delay = Math.min(MIN_RESTART_INTERVAL - timeSinceLastStart, MIN_RESTART_INTERVAL);
-                            log("等待 " + (delay / 1000) + " 秒后重启...");
-                            Thread.sleep(delay);
-                        } else {
-                            // 正常退出，重置失败计数
-                            consecutiveFailures = 0;
-                            log("进程已退出，准备重启...");
-                        }
-                        
-                        if (running) {
-                            try {
-                                startProcess();
-                                // 启动后等待2秒，确认进程真的运行起来了
-                                Thread.sleep(2000);
-                                if (!isAlive()) {
-                                    consecutiveFailures++;
-                                    log("进程启动后立即退出，可能配置有误");
-                                } else {
-                                    // 进程正常运行，重置失败计数
-                                    if (consecutiveFailures > 0) {
-                                        consecutiveFailures = 0;
-                                        log("进程已正常运行");
-                                    }
-                                }
-                            } catch (IOException e) {
-                                consecutiveFailures++;
-                                log("重启失败: " + e.getMessage());
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        }
-                    } else {
-                        // 进程正常运行，重置失败计数
-                        if (consecutiveFailures > 0) {
-                            consecutiveFailures = 0;
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        });
-        monitorThread.setDaemon(true);
-        monitorThread.start();
+
+        startMonitor("启动确认通过");
+    }
+
+    /**
+     * 接管上一个监控器进程留下的子进程（监控器重启后调用）
+     * 按PID找到进程后核对启动时间，防止PID已被其他进程复用
+     * @param startTime 拉起时记录的进程启动时间（毫秒）
+     * @return 进程不存在、启动时间不符或监控器已在运行时返回false
+     */
+    public boolean adopt(long pid, long startTime) {
+        Optional<ProcessHandle> found = ProcessHandle.of(pid);
+        if (found.isEmpty() || !found.get().isAlive()) {
+            return false;
+        }
+        ProcessHandle handle = found.get();
+        long actualStartTime = startTimeOf(handle);
+        if (startTime <= 0 || actualStartTime != startTime) {
+            log("PID " + pid + " 的启动时间与记录不符，可能已被其他进程复用，放弃接管");
+            return false;
+        }
+        if (!transition(WatcherState.STOPPED, WatcherState.STARTING, "接管已有进程，PID = " + pid)) {
+            return false;
+        }
+        monitorThread = null;
+        consecutiveFailures = 0;
+        lastStartTime = startTime;
+        process.set(new Child(handle, null, startTime));
+        handle.onExit().thenAccept(h -> onProcessExit(h, "进程已退出"));
+        log("已接管运行中的进程，PID = " + pid);
+        startMonitor("已接管运行中的进程");
+        return true;
+    }
+
+    private void startMonitor(String readyCause) {
+        Thread thread = new Thread(this::monitorLoop, "ProcessMonitor-" + getProcessId());
+        thread.setDaemon(true);
+        monitorThread = thread;
+        if (readinessPort <= 0) {
+            transition(WatcherState.STARTING, WatcherState.READY, readyCause);
+        } else {
+            log("等待端口 " + readinessPort + " 就绪...");
+        }
+        thread.start();
     }
 
     public void stop() {
-        synchronized (processLock) {
-            running = false;
-            consecutiveFailures = 0; // 重置失败计数
+        if (transition(EnumSet.of(WatcherState.QUARANTINED), WatcherState.STOPPED, "手动停止")) {
+            // 已隔离的服务进程早已退出，只需结束状态
+            process.set(null);
+            return;
         }
-        
-        if (monitorThread != null) {
-            monitorThread.interrupt();
-            // 等待监控线程结束（最多等待2秒）
+        if (!transition(EnumSet.of(WatcherState.STARTING, WatcherState.READY, WatcherState.BACKOFF),
+                WatcherState.STOPPING, "手动停止")) {
+            return; // 已停止或正在被其他线程停止
+        }
+        consecutiveFailures = 0; // 重置失败计数
+
+        Thread thread = monitorThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            // 打断退避等待，监控线程看到 STOPPING 后自行退出（最多等待2秒）
+            thread.interrupt();
             try {
-                monitorThread.join(2000);
+                thread.join(2000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
-        
-        Process processToStop;
-        synchronized (processLock) {
-            processToStop = process;
-            process = null; // 清空引用，避免重复停止
-        }
-        
+
+        // 取出进程引用，避免重复停止；接管的进程不是本JVM的子进程，统一通过 ProcessHandle 终止
+        Child childToStop = process.getAndSet(null);
+        ProcessHandle processToStop = childToStop != null ? childToStop.handle : null;
+
         if (processToStop != null && processToStop.isAlive()) {
             long pid = processToStop.pid();
             try {
                 // 先尝试正常关闭
                 processToStop.destroy();
                 log("正在停止进程 PID=" + pid);
-                
-                // 等待进程退出，最多等待3秒
-                boolean terminated = processToStop.waitFor(3, java.util.concurrent.TimeUnit.SECONDS);
-                
+
+                // 等待进程退出，最多等待3秒；正在生成CDS归档的进程最多30秒
+                boolean dumping = childToStop.cds != null && childToStop.cds.isDumping();
+                if (dumping) {
+                    log("等待进程写入CDS归档...");
+                }
+                boolean terminated = waitForExit(processToStop, dumping ? DUMP_STOP_GRACE_MS : STOP_GRACE_MS);
+
                 if (!terminated) {
                     // 如果还没退出，强制终止
                     log("进程未正常退出，强制终止 PID=" + pid);
                     processToStop.destroyForcibly();
-                    
+
                     // 再等待1秒
-                    terminated = processToStop.waitFor(1, java.util.concurrent.TimeUnit.SECONDS);
-                    
+                    terminated = waitForExit(processToStop, 1000);
+
                     if (!terminated) {
                         // 如果还是没退出，尝试使用系统命令强制终止（Windows）
                         if (System.getProperty("os.name").toLowerCase().contains("windows")) {
@@ -230,7 +277,7 @@ public class SimpleProcessWatcher {
                                 Process killProcess = new ProcessBuilder(
                                     "taskkill", "/F", "/T", "/PID", String.valueOf(pid)
                                 ).start();
-                                killProcess.waitFor(2, java.util.concurrent.TimeUnit.SECONDS);
+                                killProcess.waitFor(2, TimeUnit.SECONDS);
                                 // 清理kill进程的资源
                                 try {
                                     killProcess.destroyForcibly();
@@ -243,7 +290,7 @@ public class SimpleProcessWatcher {
                         }
                     }
                 }
-                
+
                 log("进程已停止 PID=" + pid);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -260,38 +307,303 @@ public class SimpleProcessWatcher {
             } finally {
                 // 确保资源清理
                 try {
-                    if (processToStop != null) {
-                        processToStop.destroyForcibly();
-                    }
+                    processToStop.destroyForcibly();
                 } catch (Exception ignored) {
                 }
             }
         }
+        transition(WatcherState.STOPPING, WatcherState.STOPPED, "进程已终止");
     }
 
+    /**
+     * 是否在监控中（STARTING/READY/BACKOFF）
+     */
     public boolean isRunning() {
-        return running;
+        return getState().isActive();
+    }
+
+    public WatcherState getState() {
+        return state.get().getTo();
+    }
+
+    /**
+     * 最近一次状态转换（包含进入当前状态的时间和原因）
+     */
+    public StateTransition getLastTransition() {
+        return state.get();
+    }
+
+    public int getReadinessPort() {
+        return readinessPort;
     }
 
     public boolean isProcessAlive() {
         // 使用 isAlive() 方法检查进程是否存活
         // 这个方法会实时检查进程状态，即使进程被外部杀死也能检测到
-        Process currentProcess;
-        synchronized (processLock) {
-            currentProcess = process;
-        }
-        return currentProcess != null && currentProcess.isAlive();
+        return isAlive();
     }
 
     public long getProcessId() {
-        Process currentProcess;
-        synchronized (processLock) {
-            currentProcess = process;
+        Child current = process.get();
+        return current != null ? current.handle.pid() : -1;
+    }
+
+    /**
+     * 当前进程的启动时间（毫秒），与PID一起持久化，用于重启后接管；未知时返回-1
+     */
+    public long getProcessStartTime() {
+        Child current = process.get();
+        return current != null ? current.startTime : -1;
+    }
+
+    /**
+     * 当前状态属于 from 时原子地转换为 to，成功后通知监听器
+     * @return 当前状态不在 from 中（已被其他线程转换）时返回false
+     */
+    private boolean transition(Set<WatcherState> from, WatcherState to, String cause) {
+        while (true) {
+            StateTransition current = state.get();
+            if (!from.contains(current.getTo())) {
+                return false;
+            }
+            StateTransition next = new StateTransition(current.getTo(), to, cause);
+            if (state.compareAndSet(current, next)) {
+                fireTransition(next);
+                return true;
+            }
+        }
+    }
+
+    private boolean transition(WatcherState from, WatcherState to, String cause) {
+        return transition(EnumSet.of(from), to, cause);
+    }
+
+    private boolean failStart(String cause) {
+        if (!transition(WatcherState.STARTING, WatcherState.STOPPED, "启动失败: " + cause)) {
+            return false;
+        }
+        Child failed = process.getAndSet(null);
+        if (failed != null && failed.handle.isAlive()) {
+            failed.handle.destroyForcibly();
+        }
+        return true;
+    }
+
+    /**
+     * 监控循环：STARTING 时检查就绪，READY 时兜底检查存活，BACKOFF 时退避后重启；
+     * 进入其他状态即结束
+     */
+    private void monitorLoop() {
+        while (true) {
+            WatcherState current = getState();
+            if (current == WatcherState.STARTING) {
+                checkReadiness();
+                pause(PROBE_INTERVAL_MS);
+            } else if (current == WatcherState.READY) {
+                // 进程退出通常已由 onExit 回调转换，这里只是兜底
+                if (!isAlive()) {
+                    transition(WatcherState.READY, WatcherState.BACKOFF, exitCause(process.get()));
+                } else {
+                    pause(CHECK_INTERVAL_MS);
+                }
+            } else if (current == WatcherState.BACKOFF) {
+                backoffAndRestart();
+            } else {
+                return;
+            }
         }
-        return currentProcess != null ? currentProcess.pid() : -1;
     }
 
-    private void startProcess() throws IOException {
+    private void checkReadiness() {
+        Child current = process.get();
+        if (current == null || !current.handle.isAlive()) {
+            transition(WatcherState.STARTING, WatcherState.BACKOFF, exitCause(current));
+            return;
+        }
+        long elapsed = System.currentTimeMillis() - lastStartTime;
+        if (elapsed < RESTART_CONFIRM_MS) {
+            return;
+        }
+        if (readinessPort > 0 && !isPortOpen(readinessPort)) {
+            long timeout = readinessTimeoutMs;
+            if (timeout > 0 && elapsed >= timeout) {
+                failReadiness(current, "端口 " + readinessPort + " 在 " + timeout / 1000 + " 秒内未就绪");
+            }
+            return;
+        }
+        String cause = readinessPort > 0 ? "端口 " + readinessPort + " 已就绪" : "重启确认通过";
+        if (transition(WatcherState.STARTING, WatcherState.READY, cause)) {
+            log("进程已就绪，PID = " + current.handle.pid());
+        }
+    }
+
+    /**
+     * 就绪超时：STARTING -> BACKOFF 并终止进程，由退避流程计为一次启动失败
+     */
+    private void failReadiness(Child child, String cause) {
+        readinessTimedOut = true;
+        if (!transition(WatcherState.STARTING, WatcherState.BACKOFF, "就绪超时: " + cause)) {
+            readinessTimedOut = false;
+            return;
+        }
+        log("就绪超时（" + cause + "），终止进程 PID = " + child.handle.pid());
+        child.handle.destroy();
+        try {
+            if (!waitForExit(child.handle, STOP_GRACE_MS)) {
+                child.handle.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            // stop() 打断：直接强制终止，状态由 stop() 处理
+            child.handle.destroyForcibly();
+        }
+    }
+
+    private void backoffAndRestart() {
+        long timeSinceLastStart = System.currentTimeMillis() - lastStartTime;
+        boolean timedOut = readinessTimedOut;
+        readinessTimedOut = false;
+
+        // 如果进程启动后很快退出（小于10秒）或迟迟不就绪，说明可能有问题
+        if (timedOut || timeSinceLastStart < MIN_RESTART_INTERVAL) {
+            consecutiveFailures++;
+            log((timedOut ? "进程未能在就绪超时内就绪" : "进程启动后快速退出（" + timeSinceLastStart + "ms）")
+                + "，连续失败次数: " + consecutiveFailures);
+
+            // 如果连续失败次数过多，停止自动重启
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                if (transition(WatcherState.BACKOFF, WatcherState.QUARANTINED,
+                        "连续失败" + consecutiveFailures + "次，已停止自动重启")) {
+                    log("连续失败次数过多（" + consecutiveFailures + "次），停止自动重启。请检查服务配置。");
+                }
+                return;
+            }
+
+            // 增加重启延迟，避免频繁重启
+            long delay = Math.max(MIN_RESTART_INTERVAL - timeSinceLastStart, 0);
+            if (delay > 0) {
+                log("等待 " + (delay / 1000) + " 秒后重启...");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return; // stop() 打断退避，由循环检查状态
+                }
+            }
+        } else {
+            // 正常运行一段时间后退出，重置失败计数
+            consecutiveFailures = 0;
+            log("进程已退出，准备重启...");
+        }
+
+        if (getState() != WatcherState.BACKOFF) {
+            return;
+        }
+        Child restarted;
+        try {
+            restarted = startProcess();
+        } catch (IOException e) {
+            // 记为一次快速失败，下一轮继续退避
+            lastStartTime = System.currentTimeMillis();
+            log("重启失败: " + e.getMessage());
+            return;
+        }
+        if (!transition(WatcherState.BACKOFF, WatcherState.STARTING, "自动重启，PID = " + restarted.handle.pid())) {
+            // 重启期间被停止，由本线程清理刚拉起的进程
+            if (process.compareAndSet(restarted, null)) {
+                restarted.handle.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * 进程退出回调：当前进程退出时立即转入 BACKOFF 并唤醒监控线程
+     * 手动启动的确认阶段（监控线程尚未创建）由 start() 自己判定
+     */
+    private void onProcessExit(ProcessHandle exited, String cause) {
+        Thread thread = monitorThread;
+        Child current = process.get();
+        if (thread == null || current == null || current.handle.pid() != exited.pid()) {
+            return;
+        }
+        if (transition(EnumSet.of(WatcherState.STARTING, WatcherState.READY), WatcherState.BACKOFF, cause)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void pause(long millis) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(millis));
+        // 清除中断标记，否则之后的 park 会立即返回；是否退出由状态决定
+        Thread.interrupted();
+    }
+
+    private static boolean waitForExit(ProcessHandle p, long millis) throws InterruptedException {
+        try {
+            p.onExit().get(millis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return !p.isAlive();
+        }
+    }
+
+    private static String exitCause(Child child) {
+        if (child == null) {
+            return "进程不存在";
+        }
+        if (child.process == null) {
+            // 接管的进程不是本JVM的子进程，拿不到退出码
+            return "进程已退出";
+        }
+        return exitCause(child.process);
+    }
+
+    private static String exitCause(Process p) {
+        try {
+            return "进程退出，退出码 " + p.exitValue();
+        } catch (IllegalThreadStateException e) {
+            return "进程无响应";
+        }
+    }
+
+    private static long startTimeOf(ProcessHandle handle) {
+        return handle.info().startInstant().map(Instant::toEpochMilli).orElse(-1L);
+    }
+
+    private static boolean isPortOpen(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), PROBE_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 从启动参数中解析 --server.port=xxx 或 -Dserver.port=xxx
+     */
+    private static int parseServerPort(String[] args) {
+        int port = 0;
+        if (args == null) {
+            return port;
+        }
+        for (String arg : args) {
+            String value = null;
+            if (arg.startsWith("--server.port=")) {
+                value = arg.substring("--server.port=".length());
+            } else if (arg.startsWith("-Dserver.port=")) {
+                value = arg.substring("-Dserver.port=".length());
+            }
+            if (value != null) {
+                try {
+                    port = Integer.parseInt(value.trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return port > 0 && port <= 65535 ? port : 0;
+    }
+
+    private Child startProcess() throws IOException {
         // 验证配置
         if (javaExe == null || javaExe.trim().isEmpty()) {
             throw new IOException("Java路径不能为空");
@@ -300,12 +612,12 @@ public class SimpleProcessWatcher {
         if (!javaFile.exists() || !javaFile.isFile()) {
             throw new IOException("Java可执行文件不存在: " + javaExe);
         }
-        
+
         File workDirFile = new File(workDir);
         if (!workDirFile.exists() || !workDirFile.isDirectory()) {
             throw new IOException("工作目录不存在: " + workDir);
         }
-        
+
         // 确保日志文件目录存在
         if (outLog != null && outLog.getParentFile() != null) {
             outLog.getParentFile().mkdirs();
@@ -313,12 +625,15 @@ public class SimpleProcessWatcher {
         if (errLog != null && errLog.getParentFile() != null) {
             errLog.getParentFile().mkdirs();
         }
-        
+
+        AppCdsArchive cdsArchive = appCds;
+        AppCdsArchive.Launch cds = cdsArchive != null ? cdsArchive.prepare(javaExe, workDir, args) : null;
         ProcessBuilder pb = new ProcessBuilder();
-        pb.command(buildCommand());
+        pb.command(buildCommand(cds));
         pb.directory(workDirFile);
         pb.redirectOutput(ProcessBuilder.Redirect.appendTo(outLog));
         pb.redirectError(ProcessBuilder.Redirect.appendTo(errLog));
+        errLogStart = errLog != null ? errLog.length() : 0;
 
         Process newProcess;
         try {
@@ -327,54 +642,99 @@ public class SimpleProcessWatcher {
             log("启动进程失败: " + e.getMessage());
             throw e;
         }
-        
-        synchronized (processLock) {
-            // 如果之前有进程，先清理
-            if (process != null && process.isAlive()) {
-                try {
-                    process.destroyForcibly();
-                } catch (Exception e) {
-                    // 忽略清理异常
-                }
+
+        lastStartTime = System.currentTimeMillis();
+        Child child = new Child(newProcess.toHandle(), newProcess, startTimeOf(newProcess.toHandle()), cds);
+        Child old = process.getAndSet(child);
+        // 如果之前有进程，先清理
+        if (old != null && old.handle.isAlive()) {
+            try {
+                old.handle.destroyForcibly();
+            } catch (Exception e) {
+                // 忽略清理异常
             }
-            process = newProcess;
-            lastStartTime = System.currentTimeMillis();
         }
-        
+        // 进程退出时立即转换状态，不必等到下一次检查
+        newProcess.onExit().thenAccept(p -> onProcessExit(p.toHandle(), exitCause(p)));
+        if (cds != null && readinessPort > 0) {
+            measureStartup(child);
+        }
+
         log("启动成功，PID = " + newProcess.pid());
+        return child;
+    }
+
+    /**
+     * 测量启动耗时（拉起到端口可连接），记入CDS归档统计
+     * 就绪状态转换受启动确认和检查间隔影响，这里单独以较短间隔探测
+     */
+    private void measureStartup(Child child) {
+        long started = child.startTime > 0 ? child.startTime : System.currentTimeMillis();
+        Thread thread = new Thread(() -> {
+            long deadline = started + STARTUP_MEASURE_LIMIT_MS;
+            while (child.handle.isAlive() && process.get() == child && System.currentTimeMillis() < deadline) {
+                if (isPortOpen(readinessPort)) {
+                    long millis = System.currentTimeMillis() - started;
+                    child.cds.recordStartup(millis);
+                    log("启动耗时 " + millis + " ms（" + (child.cds.isDumping() ? "未使用CDS归档" : "使用CDS归档") + "）");
+                    return;
+                }
+                try {
+                    Thread.sleep(STARTUP_MEASURE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "StartupProbe-" + child.handle.pid());
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private boolean isAlive() {
-        Process currentProcess;
-        synchronized (processLock) {
-            currentProcess = process;
-        }
+        Child current = process.get();
         try {
-            return currentProcess != null && currentProcess.isAlive();
+            return current != null && current.handle.isAlive();
         } catch (Exception e) {
             // 检查进程状态时可能抛出异常，返回false
             return false;
         }
     }
 
-    private String[] buildCommand() {
-        String[] cmd = new String[args.length + 1];
-        cmd[0] = javaExe;
-        System.arraycopy(args, 0, cmd, 1, args.length);
+    /**
+     * java 可执行文件 + 额外的JVM选项和CDS参数（放在所有参数之前，不影响 -jar 或主类之后的程序参数）+ 用户参数
+     */
+    private List<String> buildCommand(AppCdsArchive.Launch cds) {
+        List<String> cmd = new ArrayList<>(args.length + jvmOptions.size() + 2);
+        cmd.add(javaExe);
+        cmd.addAll(jvmOptions);
+        if (cds != null) {
+            cmd.add(cds.getOption());
+        }
+        cmd.addAll(Arrays.asList(args));
         return cmd;
     }
 
+    private void fireTransition(StateTransition transition) {
+        for (Consumer<StateTransition> listener : transitionListeners) {
+            try {
+                listener.accept(transition);
+            } catch (Exception e) {
+                // 防止回调异常影响主流程
+                System.err.println("状态回调异常: " + e.getMessage());
+            }
+        }
+    }
+
     private void log(String msg) {
         if (msg == null) {
             return;
         }
         try {
-            String logMsg = LocalDateTime.now() + " | " + msg;
-            System.out.println(logMsg);
+            System.out.println(LocalDateTime.now() + " | " + msg);
             Consumer<String> callback = logCallback;
             if (callback != null) {
                 try {
-                    callback.accept(logMsg);
+                    callback.accept(msg);
                 } catch (Exception e) {
                     // 防止回调异常影响主流程
                     System.err.println("日志回调异常: " + e.getMessage());
@@ -385,7 +745,28 @@ public class SimpleProcessWatcher {
             System.err.println("记录日志失败: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * 被监控的进程：自己拉起的带有 Process（可取退出码），接管的只有 ProcessHandle
+     */
+    private static class Child {
+        private final ProcessHandle handle;
+        private final Process process;   // 接管的进程为null
+        private final long startTime;    // 进程启动时间（毫秒），未知为-1
+        private final AppCdsArchive.Launch cds; // 本次启动的CDS参数，未启用或接管的进程为null
+
+        Child(ProcessHandle handle, Process process, long startTime) {
+            this(handle, process, startTime, null);
+        }
+
+        Child(ProcessHandle handle, Process process, long startTime, AppCdsArchive.Launch cds) {
+            this.handle = handle;
+            this.process = process;
+            this.startTime = startTime;
+            this.cds = cds;
+        }
+    }
+
     /**
      * 读取最近的错误日志（最后几行），用于判断启动是否成功
      */
@@ -395,9 +776,10 @@ public class SimpleProcessWatcher {
         }
         
         try {
-            // 读取文件的最后2KB内容
+            // 读取本次拉起后写入的最后2KB内容，之前的进程留下的错误不算
             long fileLength = errLog.length();
-            long readLength = Math.min(2048, fileLength);
+            long from = fileLength >= errLogStart ? errLogStart : 0; // 变短说明文件被截断或替换
+            long readLength = Math.min(2048, fileLength - from);
             
             if (readLength <= 0) {
                 return "";
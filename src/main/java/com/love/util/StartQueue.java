@@ -0,0 +1,401 @@
+package com.love.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntSupplier;
+
+/**
+ * 进程启动的准入队列
+ * 同时拉起很多JVM时它们在JIT预热期间争抢CPU，总耗时反而比错开启动更长。
+ * 每次拉起进程前先排队，队首根据主机的实时状况决定能否放行：
+ * 启动中的实例数、每核1分钟负载、可用内存（/proc/meminfo 的 MemAvailable）、
+ * CPU压力（/proc/pressure/cpu 的 some avg10），以及与上一次放行的最小间隔。
+ * 读不到的指标（非Linux、内核未启用PSI）不参与判断；排队超过 maxWaitMs 后无条件放行，避免饿死。
+ * 按先来先服务放行，线程安全。
+ */
+public class StartQueue {
+    private static final long POLL_MS = 250; // 条件不满足时重新检查的间隔
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private final IntSupplier startingCount; // 当前处于启动中的实例数
+    private final LinkedList<Waiter> waiters = new LinkedList<>();
+    private volatile Limits limits;
+    private volatile Runnable changeListener;
+    private long lastAdmitAt = 0;
+    private long admitted = 0;
+    private long forced = 0;
+    private long totalWaitMs = 0;
+    private long maxWaitMsSeen = 0;
+    private long lastWaitMs = 0;
+
+    public StartQueue(IntSupplier startingCount, Limits limits) {
+        this.startingCount = startingCount;
+        this.limits = limits;
+    }
+
+    public void setLimits(Limits limits) {
+        this.limits = limits;
+        synchronized (waiters) {
+            waiters.notifyAll();
+        }
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    /**
+     * 排队状况变化（入队、放行）时调用，在排队线程上执行
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * 排队等待放行，返回后调用方立即拉起进程
+     * @return 等待的毫秒数
+     * @throws CancellationException 排队期间该服务的启动被 cancel() 取消
+     */
+    public long acquire(String serviceId, String name, int instance) throws InterruptedException {
+        Waiter waiter = new Waiter(serviceId, name, instance);
+        synchronized (waiters) {
+            waiters.add(waiter);
+        }
+        fireChange();
+        boolean admittedNow = false;
+        try {
+            while (true) {
+                synchronized (waiters) {
+                    if (waiter.cancelled) {
+                        throw new CancellationException("启动已取消（服务被停止或删除）");
+                    }
+                    if (waiters.getFirst() == waiter) {
+                        long now = System.currentTimeMillis();
+                        Limits current = limits;
+                        String blockedBy = blockedBy(current, now);
+                        boolean timedOut = current.maxWaitMs > 0 && now - waiter.since >= current.maxWaitMs;
+                        if (blockedBy == null || timedOut) {
+                            waiters.removeFirst();
+                            lastAdmitAt = now;
+                            long waited = now - waiter.since;
+                            admitted++;
+                            if (blockedBy != null) {
+                                forced++;
+                                System.out.println("[" + name + "] 排队 " + waited / 1000 + " 秒超时，不再等待（" + blockedBy + "）");
+                            }
+                            totalWaitMs += waited;
+                            lastWaitMs = waited;
+                            maxWaitMsSeen = Math.max(maxWaitMsSeen, waited);
+                            waiters.notifyAll();
+                            admittedNow = true;
+                            return waited;
+                        }
+                        waiter.blockedBy = blockedBy;
+                    }
+                    waiters.wait(POLL_MS);
+                }
+            }
+        } finally {
+            if (!admittedNow) {
+                synchronized (waiters) {
+                    waiters.remove(waiter);
+                    waiters.notifyAll();
+                }
+            }
+            fireChange();
+        }
+    }
+
+    /**
+     * 取消服务所有实例的排队，排队线程的 acquire() 抛出 CancellationException
+     * @return 取消的排队数
+     */
+    public int cancel(String serviceId) {
+        int cancelled = 0;
+        synchronized (waiters) {
+            for (Waiter waiter : waiters) {
+                if (waiter.serviceId.equals(serviceId) && !waiter.cancelled) {
+                    waiter.cancelled = true;
+                    cancelled++;
+                }
+            }
+            if (cancelled > 0) {
+                waiters.notifyAll();
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * 服务实例的排队位置（从1开始），不在队列中返回0
+     */
+    public int positionOf(String serviceId, int instance) {
+        synchronized (waiters) {
+            int position = 1;
+            for (Waiter waiter : waiters) {
+                if (waiter.serviceId.equals(serviceId) && waiter.instance == instance) {
+                    return position;
+                }
+                position++;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 服务实例开始排队的时间，不在队列中返回0
+     */
+    public long queuedSince(String serviceId, int instance) {
+        synchronized (waiters) {
+            for (Waiter waiter : waiters) {
+                if (waiter.serviceId.equals(serviceId) && waiter.instance == instance) {
+                    return waiter.since;
+                }
+            }
+        }
+        return 0;
+    }
+
+    public Report getReport() {
+        long now = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        synchronized (waiters) {
+            int position = 1;
+            for (Waiter waiter : waiters) {
+                entries.add(new Entry(position++, waiter.serviceId, waiter.name, waiter.instance,
+                    now - waiter.since, waiter.blockedBy));
+            }
+            return new Report(limits, sampleHost(), entries, admitted, forced,
+                admitted > 0 ? totalWaitMs / admitted : 0, lastWaitMs, maxWaitMsSeen);
+        }
+    }
+
+    private void fireChange() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                System.err.println("排队状态回调异常: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 当前不能放行的原因，可以放行时返回null
+     */
+    private String blockedBy(Limits current, long now) {
+        if (current.minIntervalMs > 0 && now - lastAdmitAt < current.minIntervalMs) {
+            return "距上次放行不足 " + current.minIntervalMs + " ms";
+        }
+        HostStatus host = sampleHost();
+        if (current.maxStarting > 0 && host.starting >= current.maxStarting) {
+            return "启动中的实例 " + host.starting + " 个，上限 " + current.maxStarting;
+        }
+        if (current.maxLoadPerCpu > 0 && host.loadPerCpu >= current.maxLoadPerCpu) {
+            return String.format("每核负载 %.2f，上限 %.2f", host.loadPerCpu, current.maxLoadPerCpu);
+        }
+        if (current.minAvailableMemoryMb > 0 && host.availableMemoryMb >= 0
+                && host.availableMemoryMb < current.minAvailableMemoryMb) {
+            return "可用内存 " + host.availableMemoryMb + " MB，下限 " + current.minAvailableMemoryMb + " MB";
+        }
+        if (current.maxCpuPressure > 0 && host.cpuPressure >= current.maxCpuPressure) {
+            return String.format("CPU压力 %.1f%%，上限 %.1f%%", host.cpuPressure, current.maxCpuPressure);
+        }
+        return null;
+    }
+
+    private HostStatus sampleHost() {
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        return new HostStatus(startingCount.getAsInt(), CPUS,
+            load >= 0 ? load / CPUS : -1, readAvailableMemoryMb(), readCpuPressure());
+    }
+
+    /**
+     * /proc/meminfo 的 MemAvailable（MB），读不到时返回-1
+     */
+    static long readAvailableMemoryMb() {
+        Path meminfo = Paths.get("/proc/meminfo");
+        if (!Files.isReadable(meminfo)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(meminfo, StandardCharsets.UTF_8)) {
+                if (line.startsWith("MemAvailable:")) {
+                    // 格式: MemAvailable:   12345678 kB
+                    String value = line.substring("MemAvailable:".length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space > 0 ? value.substring(0, space) : value) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 忽略，视为读不到
+        }
+        return -1;
+    }
+
+    /**
+     * /proc/pressure/cpu 中 some 行的 avg10（最近10秒有任务因等待CPU而停顿的时间占比，%），读不到时返回-1
+     */
+    static double readCpuPressure() {
+        Path pressure = Paths.get("/proc/pressure/cpu");
+        if (!Files.isReadable(pressure)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(pressure, StandardCharsets.UTF_8)) {
+                // 格式: some avg10=1.23 avg60=0.50 avg300=0.10 total=123456
+                if (line.startsWith("some ")) {
+                    for (String field : line.split(" ")) {
+                        if (field.startsWith("avg10=")) {
+                            return Double.parseDouble(field.substring("avg10=".length()));
+                        }
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 未启用PSI时读取会失败
+        }
+        return -1;
+    }
+
+    private static class Waiter {
+        private final String serviceId;
+        private final String name;
+        private final int instance;
+        private final long since = System.currentTimeMillis();
+        private volatile String blockedBy; // 最近一次未能放行的原因（只有队首会检查）
+        private boolean cancelled; // 由 cancel() 设置，在 waiters 锁内读写
+
+        Waiter(String serviceId, String name, int instance) {
+            this.serviceId = serviceId;
+            this.name = name;
+            this.instance = instance;
+        }
+    }
+
+    /**
+     * 放行条件；各项为0时不检查该项
+     */
+    public static class Limits {
+        private final int maxStarting;            // 同时处于启动中的实例数上限
+        private final double maxLoadPerCpu;       // 每核1分钟负载上限
+        private final long minAvailableMemoryMb;  // 可用内存下限
+        private final double maxCpuPressure;      // CPU压力（some avg10，%）上限
+        private final long minIntervalMs;         // 两次放行的最小间隔
+        private final long maxWaitMs;             // 排队超过该时间后无条件放行
+
+        public Limits(int maxStarting, double maxLoadPerCpu, long minAvailableMemoryMb,
+                      double maxCpuPressure, long minIntervalMs, long maxWaitMs) {
+            this.maxStarting = maxStarting;
+            this.maxLoadPerCpu = maxLoadPerCpu;
+            this.minAvailableMemoryMb = minAvailableMemoryMb;
+            this.maxCpuPressure = maxCpuPressure;
+            this.minIntervalMs = minIntervalMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        public int getMaxStarting() { return maxStarting; }
+        public double getMaxLoadPerCpu() { return maxLoadPerCpu; }
+        public long getMinAvailableMemoryMb() { return minAvailableMemoryMb; }
+        public double getMaxCpuPressure() { return maxCpuPressure; }
+        public long getMinIntervalMs() { return minIntervalMs; }
+        public long getMaxWaitMs() { return maxWaitMs; }
+    }
+
+    /**
+     * 主机状况采样；读不到的项为-1
+     */
+    public static class HostStatus {
+        private final int starting;
+        private final int cpus;
+        private final double loadPerCpu;
+        private final long availableMemoryMb;
+        private final double cpuPressure;
+
+        public HostStatus(int starting, int cpus, double loadPerCpu, long availableMemoryMb, double cpuPressure) {
+            this.starting = starting;
+            this.cpus = cpus;
+            this.loadPerCpu = loadPerCpu;
+            this.availableMemoryMb = availableMemoryMb;
+            this.cpuPressure = cpuPressure;
+        }
+
+        public int getStarting() { return starting; }
+        public int getCpus() { return cpus; }
+        public double getLoadPerCpu() { return loadPerCpu; }
+        public long getAvailableMemoryMb() { return availableMemoryMb; }
+        public double getCpuPressure() { return cpuPressure; }
+    }
+
+    /**
+     * 一个排队中的实例；blockedBy 为队首未能放行的原因，其余条目为null
+     */
+    public static class Entry {
+        private final int position;
+        private final String serviceId;
+        private final String name;
+        private final int instance;
+        private final long waitedMs;
+        private final String blockedBy;
+
+        public Entry(int position, String serviceId, String name, int instance, long waitedMs, String blockedBy) {
+            this.position = position;
+            this.serviceId = serviceId;
+            this.name = name;
+            this.instance = instance;
+            this.waitedMs = waitedMs;
+            this.blockedBy = blockedBy;
+        }
+
+        public int getPosition() { return position; }
+        public String getServiceId() { return serviceId; }
+        public String getName() { return name; }
+        public int getInstance() { return instance; }
+        public long getWaitedMs() { return waitedMs; }
+        public String getBlockedBy() { return blockedBy; }
+    }
+
+    /**
+     * 队列总览：放行条件、主机状况、排队中的实例，以及累计放行数、超时放行数和等待时间统计
+     */
+    public static class Report {
+        private final Limits limits;
+        private final HostStatus host;
+        private final List<Entry> waiting;
+        private final long admitted;
+        private final long forced;
+        private final long avgWaitMs;
+        private final long lastWaitMs;
+        private final long maxWaitMs;
+
+        public Report(Limits limits, HostStatus host, List<Entry> waiting, long admitted, long forced,
+                      long avgWaitMs, long lastWaitMs, long maxWaitMs) {
+            this.limits = limits;
+            this.host = host;
+            this.waiting = waiting;
+            this.admitted = admitted;
+            this.forced = forced;
+            this.avgWaitMs = avgWaitMs;
+            this.lastWaitMs = lastWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        public Limits getLimits() { return limits; }
+        public HostStatus getHost() { return host; }
+        public List<Entry> getWaiting() { return waiting; }
+        public long getAdmitted() { return admitted; }
+        public long getForced() { return forced; }
+        public long getAvgWaitMs() { return avgWaitMs; }
+        public long getLastWaitMs() { return lastWaitMs; }
+        public long getMaxWaitMs() { return maxWaitMs; }
+    }
+}
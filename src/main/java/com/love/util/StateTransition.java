@@ -0,0 +1,28 @@
+package com.love.util;
+
+/**
+ * 一次状态转换（不可变）：从哪个状态到哪个状态、发生时间和原因
+ */
+public class StateTransition {
+    private final WatcherState from;   // 初始状态时为null
+    private final WatcherState to;
+    private final long time;
+    private final String cause;
+
+    public StateTransition(WatcherState from, WatcherState to, String cause) {
+        this.from = from;
+        this.to = to;
+        this.time = System.currentTimeMillis();
+        this.cause = cause;
+    }
+
+    public WatcherState getFrom() { return from; }
+    public WatcherState getTo() { return to; }
+    public long getTime() { return time; }
+    public String getCause() { return cause; }
+
+    @Override
+    public String toString() {
+        return (from != null ? from.name() : "-") + " -> " + to.name() + "（" + cause + "）";
+    }
+}
@@ -0,0 +1,636 @@
+package com.love.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一组实例前的TCP负载均衡（非阻塞，单个选择器线程）
+ * 新连接转发给当前连接数最少的健康实例；每个方向一个直接缓冲区，从一端读入后原样写到另一端，不做额外复制。
+ * 对端写不完时暂停读取来源端，由TCP窗口向上游施加背压。
+ * 后端按端口区分（滚动重启时同一实例编号的新旧进程同时存在），健康状态由调用方（就绪探测）通过 updateBackends 设置；
+ * drain 停止向后端派发新连接并等待已有连接结束。
+ * 设置了按需启动回调时，没有可用实例的新连接不关闭而是排队（客户端数据留在内核缓冲区），
+ * 并通知调用方启动服务，实例就绪后再转发。
+ */
+public class TcpBalancer implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256; // 缓冲区池上限，超出的交给GC
+    private static final long PENDING_TIMEOUT_MS = 120_000; // 排队连接等待实例就绪的最长时间
+    private static final long PENDING_CHECK_MS = 500;
+
+    private final String name;
+    private final int port;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    // 端口 -> 后端；整体替换，选择器线程直接读取
+    private volatile Map<Integer, Backend> backends = Collections.emptyMap();
+    private int nextStart = 0; // 连接数相同时轮流选择的起点（只由选择器线程访问）
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>(); // 只由选择器线程访问
+    private final ArrayDeque<Pipe> pending = new ArrayDeque<>();          // 等待实例就绪的连接（只由选择器线程访问）
+    private volatile Runnable demandListener;                            // 有连接排队时调用（在选择器线程上，不能阻塞）
+    private volatile boolean rejectPendingRequested = false;
+    private volatile long lastActivity = System.currentTimeMillis();     // 最近一次接受或关闭连接的时间
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();       // 没有可用实例而关闭的连接
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();        // 客户端 -> 实例
+    private final AtomicLong bytesOut = new AtomicLong();       // 实例 -> 客户端
+    private final AtomicInteger activeConnections = new AtomicInteger(); // 含排队中的连接
+    private final AtomicInteger pendingConnections = new AtomicInteger();
+    private final AtomicLong queued = new AtomicLong();                  // 累计排队过的连接
+
+    /**
+     * 绑定对外端口并启动选择器线程
+     */
+    public TcpBalancer(String name, int port) throws IOException {
+        this.name = name;
+        this.port = port;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(port), 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw new IOException("负载均衡无法监听端口 " + port + ": " + e.getMessage(), e);
+        }
+        thread = new Thread(this::selectLoop, "TcpBalancer-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 用最新的实例列表替换后端：已存在的后端（同一端口）保留连接计数和排空标记
+     */
+    public synchronized void updateBackends(List<Target> targets) {
+        Map<Integer, Backend> old = backends;
+        Map<Integer, Backend> updated = new HashMap<>();
+        for (Target target : targets) {
+            Backend backend = old.get(target.port);
+            if (backend == null || backend.instance != target.instance) {
+                backend = new Backend(target.instance, target.port);
+            }
+            backend.healthy = target.healthy;
+            updated.put(target.port, backend);
+        }
+        backends = Collections.unmodifiableMap(updated);
+        if (pendingConnections.get() > 0) {
+            selector.wakeup(); // 排队的连接可能有实例可用了
+        }
+    }
+
+    /**
+     * 设置按需启动回调，null 表示没有可用实例时直接关闭新连接
+     */
+    public void setDemandListener(Runnable listener) {
+        this.demandListener = listener;
+    }
+
+    /**
+     * 关闭所有排队中的连接（按需启动失败时）
+     */
+    public void rejectPending() {
+        rejectPendingRequested = true;
+        selector.wakeup();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getPendingConnections() {
+        return pendingConnections.get();
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * 排空后端：不再派发新连接，等待已有连接全部结束
+     * 排空标记一直保留到后端被移除（实例停止后调用 removeBackend）
+     * @return 超时后仍未结束的连接数
+     */
+    public int drain(int port, long timeoutMs) throws InterruptedException {
+        Backend backend = backends.get(port);
+        if (backend == null) {
+            return 0;
+        }
+        backend.draining = true;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (backend) {
+            while (backend.active.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                backend.wait(remaining);
+            }
+        }
+        return backend.active.get();
+    }
+
+    public synchronized void removeBackend(int port) {
+        if (backends.containsKey(port)) {
+            Map<Integer, Backend> updated = new HashMap<>(backends);
+            updated.remove(port);
+            backends = Collections.unmodifiableMap(updated);
+        }
+    }
+
+    public Stats getStats() {
+        List<BackendStats> list = new ArrayList<>();
+        for (Backend backend : backends.values()) {
+            list.add(new BackendStats(backend.instance, backend.port, backend.healthy, backend.draining,
+                backend.active.get(), backend.total.get()));
+        }
+        list.sort((a, b) -> a.getInstance() != b.getInstance() ? Integer.compare(a.getInstance(), b.getInstance())
+            : Integer.compare(a.getPort(), b.getPort()));
+        return new Stats(port, accepted.get(), rejected.get(), connectFailures.get(), activeConnections.get(),
+            pendingConnections.get(), queued.get(), bytesIn.get(), bytesOut.get(), list);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== 选择器线程 ====================
+
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select(pending.isEmpty() ? 0 : PENDING_CHECK_MS);
+                if (!pending.isEmpty() || rejectPendingRequested) {
+                    servePending();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handle(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("负载均衡 " + name + " 异常退出: " + e.getMessage());
+            }
+        } finally {
+            rejectPendingRequested = true;
+            servePending();
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                if (key.attachment() instanceof Pipe) {
+                    ((Pipe) key.attachment()).close();
+                }
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client;
+        while ((client = server.accept()) != null) {
+            accepted.incrementAndGet();
+            lastActivity = System.currentTimeMillis();
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            activeConnections.incrementAndGet();
+            connect(new Pipe(client));
+        }
+    }
+
+    /**
+     * 为连接选择实例并发起非阻塞连接；没有可用实例时排队（按需启动）或关闭客户端连接
+     */
+    private void connect(Pipe pipe) {
+        while (true) {
+            Backend backend = choose(pipe.tried);
+            if (backend == null) {
+                Runnable listener = demandListener;
+                if (listener != null && !rejectPendingRequested) {
+                    if (pipe.pendingSince == 0) {
+                        pipe.pendingSince = System.currentTimeMillis();
+                        queued.incrementAndGet();
+                    }
+                    pending.addLast(pipe);
+                    pendingConnections.incrementAndGet();
+                    listener.run();
+                } else {
+                    rejected.incrementAndGet();
+                    pipe.close();
+                }
+                return;
+            }
+            pipe.tried.add(backend.port);
+            pipe.attach(backend);
+            try {
+                SocketChannel channel = SocketChannel.open();
+                pipe.server = channel;
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                if (channel.connect(new InetSocketAddress("127.0.0.1", backend.port))) {
+                    pipe.connected();
+                } else {
+                    pipe.serverKey = channel.register(selector, SelectionKey.OP_CONNECT, pipe);
+                }
+                return;
+            } catch (IOException e) {
+                connectFailures.incrementAndGet();
+                pipe.detach();
+            }
+        }
+    }
+
+    /**
+     * 有实例可用时转发排队的连接；超时或被要求拒绝的连接关闭
+     */
+    private void servePending() {
+        boolean reject = rejectPendingRequested;
+        rejectPendingRequested = false;
+        boolean available = !reject && choose(Collections.emptySet()) != null;
+        long now = System.currentTimeMillis();
+        for (int n = pending.size(); n > 0; n--) {
+            Pipe pipe = pending.pollFirst();
+            pendingConnections.decrementAndGet();
+            if (available) {
+                pipe.tried.clear();
+                connect(pipe);
+            } else if (reject || now - pipe.pendingSince >= PENDING_TIMEOUT_MS) {
+                rejected.incrementAndGet();
+                pipe.close();
+            } else {
+                pending.addLast(pipe);
+                pendingConnections.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 最少连接：健康且未在排空的实例中连接数最少的一个，相同时轮流
+     */
+    private Backend choose(Set<Integer> exclude) {
+        List<Backend> list = new ArrayList<>(backends.values());
+        if (list.isEmpty()) {
+            return null;
+        }
+        Backend best = null;
+        int start = nextStart++ & Integer.MAX_VALUE;
+        for (int k = 0; k < list.size(); k++) {
+            Backend backend = list.get((start + k) % list.size());
+            if (!backend.healthy || backend.draining || exclude.contains(backend.port)) {
+                continue;
+            }
+            if (best == null || backend.active.get() < best.active.get()) {
+                best = backend;
+            }
+        }
+        return best;
+    }
+
+    private void handle(SelectionKey key) {
+        Pipe pipe = (Pipe) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                if (((SocketChannel) key.channel()).finishConnect()) {
+                    pipe.connected();
+                }
+                return;
+            }
+            boolean fromClient = key == pipe.clientKey;
+            if (key.isWritable()) {
+                pipe.flush(fromClient ? pipe.down : pipe.up, !fromClient);
+            }
+            if (key.isValid() && key.isReadable()) {
+                pipe.read(fromClient);
+            }
+        } catch (IOException e) {
+            if (!pipe.established) {
+                // 连接实例失败：换一个实例重试
+                connectFailures.incrementAndGet();
+                pipe.detach();
+                connect(pipe);
+            } else {
+                pipe.close();
+            }
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = bufferPool.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        if (buffer != null && bufferPool.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.addFirst(buffer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 一条被转发的连接：客户端 <-> 实例
+     * up 保存客户端发来、尚未写给实例的数据，down 相反；缓冲区为空时处于读模式，有待写数据时处于写模式
+     */
+    private class Pipe {
+        private final SocketChannel client;
+        private SocketChannel server;
+        private SelectionKey clientKey;
+        private SelectionKey serverKey;
+        private Backend backend;
+        private final Set<Integer> tried = new HashSet<>(); // 已尝试连接的后端端口
+        private boolean established = false;
+        private long pendingSince = 0; // 开始排队的时间，未排队过为0
+        private ByteBuffer up;
+        private ByteBuffer down;
+        private boolean clientEof = false; // 客户端已关闭写方向
+        private boolean serverEof = false;
+        private boolean closed = false;
+
+        Pipe(SocketChannel client) {
+            this.client = client;
+        }
+
+        void attach(Backend backend) {
+            this.backend = backend;
+            backend.active.incrementAndGet();
+            backend.total.incrementAndGet();
+        }
+
+        /**
+         * 放弃当前实例（连接失败），计数归还
+         */
+        void detach() {
+            if (serverKey != null) {
+                serverKey.cancel();
+                serverKey = null;
+            }
+            closeQuietly(server);
+            server = null;
+            release();
+        }
+
+        private void release() {
+            if (backend != null) {
+                Backend b = backend;
+                backend = null;
+                if (b.active.decrementAndGet() == 0 && b.draining) {
+                    synchronized (b) {
+                        b.notifyAll();
+                    }
+                }
+            }
+        }
+
+        void connected() throws IOException {
+            established = true;
+            up = takeBuffer();
+            down = takeBuffer();
+            clientKey = client.register(selector, SelectionKey.OP_READ, this);
+            if (serverKey == null) {
+                serverKey = server.register(selector, SelectionKey.OP_READ, this);
+            } else {
+                serverKey.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * 从一端读入对应方向的缓冲区并立即尝试写到另一端
+         */
+        void read(boolean fromClient) throws IOException {
+            SocketChannel source = fromClient ? client : server;
+            ByteBuffer buffer = fromClient ? up : down;
+            int n = source.read(buffer);
+            if (n < 0) {
+                if (fromClient) {
+                    clientEof = true;
+                } else {
+                    serverEof = true;
+                }
+                setInterest(fromClient ? clientKey : serverKey, SelectionKey.OP_READ, false);
+            } else if (n > 0) {
+                (fromClient ? bytesIn : bytesOut).addAndGet(n);
+            }
+            buffer.flip();
+            flush(buffer, fromClient);
+        }
+
+        /**
+         * 把缓冲区中的数据写到目标端：写完后恢复读取来源端，写不完时暂停读取来源端并等待可写
+         * @param toServer true 表示 up 方向（写给实例）
+         */
+        void flush(ByteBuffer buffer, boolean toServer) throws IOException {
+            SocketChannel target = toServer ? server : client;
+            SelectionKey targetKey = toServer ? serverKey : clientKey;
+            SelectionKey sourceKey = toServer ? clientKey : serverKey;
+            boolean sourceEof = toServer ? clientEof : serverEof;
+            if (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            if (buffer.hasRemaining()) {
+                setInterest(targetKey, SelectionKey.OP_WRITE, true);
+                setInterest(sourceKey, SelectionKey.OP_READ, false);
+                return;
+            }
+            buffer.clear();
+            setInterest(targetKey, SelectionKey.OP_WRITE, false);
+            if (sourceEof) {
+                // 来源端已关闭且数据已全部转发：半关闭目标端的写方向
+                if (!target.socket().isOutputShutdown()) {
+                    target.shutdownOutput();
+                }
+                if (clientEof && serverEof) {
+                    close();
+                }
+            } else {
+                setInterest(sourceKey, SelectionKey.OP_READ, true);
+            }
+        }
+
+        private void setInterest(SelectionKey key, int op, boolean on) {
+            if (key != null && key.isValid()) {
+                int ops = key.interestOps();
+                int updated = on ? ops | op : ops & ~op;
+                if (updated != ops) {
+                    key.interestOps(updated);
+                }
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (clientKey != null) {
+                clientKey.cancel();
+            }
+            if (serverKey != null) {
+                serverKey.cancel();
+            }
+            closeQuietly(client);
+            closeQuietly(server);
+            returnBuffer(up);
+            returnBuffer(down);
+            up = null;
+            down = null;
+            release();
+            activeConnections.decrementAndGet();
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 一个实例（后端）；healthy/draining 由其他线程修改，连接计数由选择器线程维护
+     */
+    private static class Backend {
+        private final int instance;
+        private final int port;
+        private volatile boolean healthy = false;
+        private volatile boolean draining = false;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong total = new AtomicLong();
+
+        Backend(int instance, int port) {
+            this.instance = instance;
+            this.port = port;
+        }
+    }
+
+    /**
+     * 一个实例的登记信息：实例编号、端口、是否健康（已就绪）
+     */
+    public static class Target {
+        private final int instance;
+        private final int port;
+        private final boolean healthy;
+
+        public Target(int instance, int port, boolean healthy) {
+            this.instance = instance;
+            this.port = port;
+            this.healthy = healthy;
+        }
+    }
+
+    /**
+     * 负载均衡统计（累计值从启动时算起）
+     */
+    public static class Stats {
+        private final int port;
+        private final long accepted;
+        private final long rejected;
+        private final long connectFailures;
+        private final int activeConnections;
+        private final int pendingConnections;
+        private final long queued;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final List<BackendStats> backends;
+
+        public Stats(int port, long accepted, long rejected, long connectFailures, int activeConnections,
+                     int pendingConnections, long queued, long bytesIn, long bytesOut, List<BackendStats> backends) {
+            this.port = port;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.connectFailures = connectFailures;
+            this.activeConnections = activeConnections;
+            this.pendingConnections = pendingConnections;
+            this.queued = queued;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.backends = backends;
+        }
+
+        public int getPort() { return port; }
+        public long getAccepted() { return accepted; }
+        public long getRejected() { return rejected; }
+        public long getConnectFailures() { return connectFailures; }
+        public int getActiveConnections() { return activeConnections; }
+        public int getPendingConnections() { return pendingConnections; }
+        public long getQueued() { return queued; }
+        public long getBytesIn() { return bytesIn; }
+        public long getBytesOut() { return bytesOut; }
+        public List<BackendStats> getBackends() { return backends; }
+    }
+
+    public static class BackendStats {
+        private final int instance;
+        private final int port;
+        private final boolean healthy;
+        private final boolean draining;
+        private final int active;
+        private final long total;
+
+        public BackendStats(int instance, int port, boolean healthy, boolean draining, int active, long total) {
+            this.instance = instance;
+            this.port = port;
+            this.healthy = healthy;
+            this.draining = draining;
+            this.active = active;
+            this.total = total;
+        }
+
+        public int getInstance() { return instance; }
+        public int getPort() { return port; }
+        public boolean isHealthy() { return healthy; }
+        public boolean isDraining() { return draining; }
+        public int getActive() { return active; }
+        public long getTotal() { return total; }
+    }
+}
@@ -0,0 +1,33 @@
+package com.love.util;
+
+/**
+ * 进程监控器的生命周期状态
+ *
+ * STOPPED → STARTING → READY ⇄ BACKOFF → STARTING ...
+ * 任一活动状态 → STOPPING → STOPPED；BACKOFF 连续失败过多 → QUARANTINED
+ */
+public enum WatcherState {
+    STOPPED("已停止"),          // 未监控（初始状态、手动停止或启动失败）
+    STARTING("启动中"),         // 进程已拉起，等待启动确认/端口就绪
+    READY("运行中"),            // 启动确认通过，进程存活
+    BACKOFF("等待重启"),        // 进程退出，等待退避后自动重启
+    STOPPING("停止中"),         // 正在终止进程
+    QUARANTINED("已隔离");      // 连续快速失败，已放弃自动重启
+
+    private final String label;
+
+    WatcherState(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 是否处于监控中（进程在运行或即将被重启）
+     */
+    public boolean isActive() {
+        return this == STARTING || this == READY || this == BACKOFF;
+    }
+}
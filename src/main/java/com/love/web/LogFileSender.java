@@ -0,0 +1,164 @@
+package com.love.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 日志文件下载 - 支持 Range 断点续传和 gzip 压缩传输
+ * 未压缩传输按固定大小的缓冲区分块复制到响应流，不会把整个文件读进内存；
+ * 目标是 Servlet 输出流而不是 SocketChannel，transferTo 无法使用 sendfile，内容仍会经过用户态缓冲区
+ */
+public class LogFileSender {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    public static void send(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // 以打开时的大小为准，服务仍在写入的部分留给下一次请求
+            long length = channel.size();
+            boolean alreadyGzipped = file.getName().endsWith(".gz");
+
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("Vary", "Accept-Encoding");
+            response.setDateHeader("Last-Modified", file.lastModified());
+            response.setContentType(alreadyGzipped ? "application/gzip" : "text/plain;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + file.getName() + "\"");
+
+            String rangeHeader = request.getHeader("Range");
+            if (rangeHeader != null) {
+                long[] range = parseRange(rangeHeader, length);
+                if (range == null) {
+                    // 多段Range不支持，按完整文件返回
+                    sendWhole(channel, length, alreadyGzipped, request, response);
+                    return;
+                }
+                if (range.length == 0) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                long start = range[0];
+                long end = range[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+                response.setContentLengthLong(end - start + 1);
+                if (!"HEAD".equals(request.getMethod())) {
+                    transfer(channel, start, end - start + 1, response.getOutputStream());
+                }
+                return;
+            }
+
+            sendWhole(channel, length, alreadyGzipped, request, response);
+        }
+    }
+
+    private static void sendWhole(FileChannel channel, long length, boolean alreadyGzipped,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (!alreadyGzipped && acceptsGzip(request)) {
+            // 压缩后长度未知，使用分块传输
+            response.setHeader("Content-Encoding", "gzip");
+            if (!"HEAD".equals(request.getMethod())) {
+                gzip(channel, length, response.getOutputStream());
+            }
+            return;
+        }
+        response.setContentLengthLong(length);
+        if (!"HEAD".equals(request.getMethod())) {
+            transfer(channel, 0, length, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 解析单段Range头
+     * @return {start, end}；null表示多段或无法识别（忽略Range）；空数组表示范围不可满足
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String startPart = spec.substring(0, dash).trim();
+            String endPart = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (startPart.isEmpty()) {
+                // bytes=-N：最后N个字节
+                long suffix = Long.parseLong(endPart);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(startPart);
+                end = endPart.isEmpty() ? length - 1 : Math.min(Long.parseLong(endPart), length - 1);
+            }
+            if (start < 0 || start >= length || end < start) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        // 包装后的通道不是 FileChannel/SocketChannel，JDK 在这里退化为小块的读写复制（不是零拷贝）
+        WritableByteChannel target = Channels.newChannel(out);
+        long remaining = count;
+        long pos = position;
+        while (remaining > 0) {
+            long sent = channel.transferTo(pos, remaining, target);
+            if (sent <= 0) {
+                // 文件被截断（如日志轮转），提前结束
+                break;
+            }
+            pos += sent;
+            remaining -= sent;
+        }
+        out.flush();
+    }
+
+    private static void gzip(FileChannel channel, long length, OutputStream out) throws IOException {
+        GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(GZIP_BUFFER_SIZE);
+        long pos = 0;
+        while (pos < length) {
+            buffer.clear();
+            if (length - pos < buffer.capacity()) {
+                buffer.limit((int) (length - pos));
+            }
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            gzipOut.write(buffer.array(), 0, read);
+            pos += read;
+        }
+        gzipOut.finish();
+        gzipOut.flush();
+    }
+}
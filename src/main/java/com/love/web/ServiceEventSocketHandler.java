@@ -0,0 +1,179 @@
+package com.love.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.love.service.ServiceEvent;
+import com.love.service.ServiceManager;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 服务事件 WebSocket 推送（/ws/events）
+ * 从事件总线订阅一次，每个事件只序列化一次再扇出给所有连接。
+ * 每个连接有独立的有界发送队列：资源采样帧每个服务只保留最新一帧，
+ * 队列满时先丢弃采样帧；状态帧仍然积压时清空队列并通知客户端重新获取快照（RESYNC）。
+ */
+public class ServiceEventSocketHandler extends TextWebSocketHandler {
+    private static final int MAX_PENDING_FRAMES = 256; // 每个连接最多积压的帧数
+    private static final String RESYNC_FRAME = "{\"type\":\"RESYNC\"}";
+
+    private final ServiceManager serviceManager = ServiceManager.getInstance();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ClientChannel> channels = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ServiceEventSender");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Consumer<ServiceEvent> subscriber = this::broadcast;
+    private boolean subscribed = false;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        channels.put(session.getId(), new ClientChannel(session));
+        synchronized (this) {
+            if (!subscribed) {
+                serviceManager.subscribeEvents(subscriber);
+                subscribed = true;
+            }
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        channels.remove(session.getId());
+        synchronized (this) {
+            if (subscribed && channels.isEmpty()) {
+                serviceManager.unsubscribeEvents(subscriber);
+                subscribed = false;
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws IOException {
+        session.close(CloseStatus.SERVER_ERROR);
+    }
+
+    private void broadcast(ServiceEvent event) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        String frame;
+        try {
+            frame = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            System.err.println("序列化服务事件失败: " + e.getMessage());
+            return;
+        }
+        for (ClientChannel channel : channels.values()) {
+            channel.enqueue(event, frame);
+        }
+    }
+
+    /**
+     * 单个连接的发送队列，同一时刻最多一个发送任务
+     */
+    private class ClientChannel {
+        private final WebSocketSession session;
+        private final ArrayDeque<String> events = new ArrayDeque<>();
+        private final LinkedHashMap<Integer, String> metrics = new LinkedHashMap<>(); // 服务索引 -> 最新采样帧
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private boolean resync = false;
+
+        ClientChannel(WebSocketSession session) {
+            this.session = session;
+        }
+
+        void enqueue(ServiceEvent event, String frame) {
+            synchronized (this) {
+                if (ServiceEvent.TYPE_METRIC.equals(event.getType())) {
+                    // 同一服务未发出的旧采样直接被新采样替换
+                    metrics.remove(event.getIndex());
+                    if (events.size() + metrics.size() >= MAX_PENDING_FRAMES) {
+                        return;
+                    }
+                    metrics.put(event.getIndex(), frame);
+                } else {
+                    if (events.size() + metrics.size() >= MAX_PENDING_FRAMES) {
+                        // 先丢弃最旧的采样帧
+                        Iterator<String> it = metrics.values().iterator();
+                        while (it.hasNext() && events.size() + metrics.size() >= MAX_PENDING_FRAMES) {
+                            it.next();
+                            it.remove();
+                        }
+                    }
+                    if (events.size() >= MAX_PENDING_FRAMES) {
+                        // 客户端严重落后，状态帧已无意义，改为通知重新获取快照
+                        events.clear();
+                        resync = true;
+                    }
+                    events.add(frame);
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private synchronized String next() {
+            if (resync) {
+                resync = false;
+                return RESYNC_FRAME;
+            }
+            String frame = events.poll();
+            if (frame == null && !metrics.isEmpty()) {
+                Iterator<String> it = metrics.values().iterator();
+                frame = it.next();
+                it.remove();
+            }
+            return frame;
+        }
+
+        private synchronized boolean hasPending() {
+            return resync || !events.isEmpty() || !metrics.isEmpty();
+        }
+
+        private void drain() {
+            while (true) {
+                String frame = next();
+                if (frame == null) {
+                    draining.set(false);
+                    // 释放标记后可能又有新帧入队
+                    if (hasPending() && draining.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    return;
+                }
+                if (!session.isOpen()) {
+                    draining.set(false);
+                    return;
+                }
+                try {
+                    // 发送阻塞期间新帧在队列中合并/丢弃，不影响其他连接
+                    session.sendMessage(new TextMessage(frame));
+                } catch (IOException | IllegalStateException e) {
+                    draining.set(false);
+                    try {
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (IOException ignored) {
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -3,22 +3,45 @@ package com.love.web;
 import com.love.model.AppSettings;
 import com.love.model.ServiceConfig;
 import com.love.service.ServiceManager;
+import com.love.util.AppCdsArchive;
+import com.love.util.ConfigDiff;
+import com.love.util.JvmSizing;
+import com.love.util.LogLineIndex;
+import com.love.util.ServiceConfigCodec;
+import com.love.util.StartQueue;
+import com.love.util.TcpBalancer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * REST API 控制器
+ * 路径中的 {id} 可以是服务ID（svc-开头），也可以是列表索引（兼容旧接口）
  */
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class ServiceMonitorController {
     
+    private static final int MAX_LOG_LINES_PER_PAGE = 2000;
+    
+    private static final long MAX_AWAIT_TIMEOUT_MS = 10 * 60 * 1000; // 长轮询最长等待10分钟
+    
     private final ServiceManager serviceManager = ServiceManager.getInstance();
+    private final StatusWaiters statusWaiters = new StatusWaiters(serviceManager);
     
     /**
      * 获取所有服务状态
@@ -28,17 +51,35 @@ public class ServiceMonitorController {
         return ResponseEntity.ok(serviceManager.getAllServiceStatus());
     }
     
+    /**
+     * 获取所有服务的配置和状态（一次请求代替列表+逐个详情）
+     * 支持 If-None-Match 返回304；since=版本号 时只返回之后变化的服务，epoch 与服务端不一致时返回全量
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<?> getSnapshot(@RequestParam(required = false) Long since,
+                                         @RequestParam(required = false) Long epoch,
+                                         @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ServiceManager.StatusSnapshot snapshot = serviceManager.getSnapshot(since, epoch);
+        // ETag 标识服务端状态版本，客户端已持有该版本时返回304
+        String etag = "\"" + snapshot.getEpoch() + "-" + snapshot.getVersion() + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(snapshot);
+    }
+    
     /**
      * 获取服务详情
      */
-    @GetMapping("/services/{index}")
-    public ResponseEntity<?> getService(@PathVariable int index) {
-        ServiceConfig config = serviceManager.getConfig(index);
+    @GetMapping("/services/{id}")
+    public ResponseEntity<?> getService(@PathVariable("id") String key) {
+        String id = serviceManager.resolveServiceId(key);
+        ServiceConfig config = id != null ? serviceManager.getConfig(id) : null;
         if (config == null) {
             return ResponseEntity.notFound().build();
         }
         
-        ServiceManager.ServiceStatus status = serviceManager.getServiceStatus(index);
+        ServiceManager.ServiceStatus status = serviceManager.getServiceStatus(id);
         Map<String, Object> result = new HashMap<>();
         result.put("config", config);
         result.put("status", status);
@@ -46,14 +87,118 @@ public class ServiceMonitorController {
         return ResponseEntity.ok(result);
     }
     
+    /**
+     * 等待服务进入指定状态（长轮询，供部署脚本使用）
+     * state: STARTING/READY/BACKOFF/STOPPING/STOPPED/QUARANTINED/NOT_STARTED，或组合状态 RUNNING/EXITED；
+     * ready=true 时还要求服务已就绪；timeout 如 60s、500ms、2m
+     * 已满足时立即返回200，超时返回408，等待期间服务被删除返回409
+     */
+    @GetMapping("/services/{id}/await")
+    public DeferredResult<ResponseEntity<?>> awaitService(@PathVariable("id") String key,
+                                                          @RequestParam(defaultValue = "RUNNING") String state,
+                                                          @RequestParam(defaultValue = "false") boolean ready,
+                                                          @RequestParam(defaultValue = "30s") String timeout) {
+        DeferredResult<ResponseEntity<?>> error = new DeferredResult<>();
+        String id = serviceManager.resolveServiceId(key);
+        if (id == null) {
+            error.setResult(ResponseEntity.notFound().build());
+            return error;
+        }
+        List<String> states = StatusWaiters.toStates(state);
+        long timeoutMs = StatusWaiters.parseTimeout(timeout);
+        if (states == null || timeoutMs <= 0 || timeoutMs > MAX_AWAIT_TIMEOUT_MS) {
+            error.setResult(ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", "无效的参数: state=" + state + ", timeout=" + timeout)));
+            return error;
+        }
+        return statusWaiters.await(id, states, ready, timeoutMs);
+    }
+    
+    /**
+     * 获取服务最近的状态转换记录（状态、时间、原因）
+     */
+    @GetMapping("/services/{id}/transitions")
+    public ResponseEntity<?> getTransitions(@PathVariable("id") String key) {
+        String id = serviceManager.resolveServiceId(key);
+        if (id == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(serviceManager.getTransitions(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * 获取服务最近的事件记录（如内存泄漏防护的触发、推迟和重启结果）
+     */
+    @GetMapping("/services/{id}/events")
+    public ResponseEntity<?> getEvents(@PathVariable("id") String key) {
+        String id = serviceManager.resolveServiceId(key);
+        if (id == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(serviceManager.getEvents(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * 下载服务日志原始文件（支持Range和gzip）
+     * stream: stdout 或 stderr；file: 可选，轮转后的文件名；instance: 实例编号，默认0
+     */
+    @RequestMapping(value = "/services/{id}/logs/{stream}/raw", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void downloadLog(@PathVariable("id") String key, @PathVariable String stream,
+                            @RequestParam(required = false) String file,
+                            @RequestParam(defaultValue = "0") int instance,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String id = serviceManager.resolveServiceId(key);
+        File logFile = id != null ? serviceManager.getLogFile(id, instance, stream, file) : null;
+        if (logFile == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "日志文件不存在");
+            return;
+        }
+        LogFileSender.send(logFile, request, response);
+    }
+    
+    /**
+     * 分页读取服务日志行
+     * from+count：读取第from行起的count行；tail：读取最后tail行；instance: 实例编号，默认0
+     */
+    @GetMapping("/services/{id}/logs/{stream}/lines")
+    public ResponseEntity<?> getLogLines(@PathVariable("id") String key, @PathVariable String stream,
+                                         @RequestParam(required = false) String file,
+                                         @RequestParam(defaultValue = "0") int instance,
+                                         @RequestParam(defaultValue = "0") long from,
+                                         @RequestParam(defaultValue = "500") int count,
+                                         @RequestParam(required = false) Integer tail) {
+        String id = serviceManager.resolveServiceId(key);
+        File logFile = id != null ? serviceManager.getLogFile(id, instance, stream, file) : null;
+        if (logFile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        int limit = Math.max(0, Math.min(tail != null ? tail : count, MAX_LOG_LINES_PER_PAGE));
+        try {
+            LogLineIndex logIndex = serviceManager.getLogIndex(logFile);
+            LogLineIndex.Page page = tail != null ? logIndex.tail(limit) : logIndex.readLines(from, limit);
+            return ResponseEntity.ok(page);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
     /**
      * 添加服务
      */
     @PostMapping("/services")
     public ResponseEntity<?> addService(@RequestBody ServiceConfig config) {
         try {
-            serviceManager.addConfig(config);
-            return ResponseEntity.ok(Map.of("success", true, "message", "服务已添加"));
+            String id = serviceManager.addConfig(config);
+            return ResponseEntity.ok(Map.of("success", true, "message", "服务已添加", "id", id));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(Map.of("success", false, "message", e.getMessage()));
@@ -63,10 +208,10 @@ public class ServiceMonitorController {
     /**
      * 更新服务配置
      */
-    @PutMapping("/services/{index}")
-    public ResponseEntity<?> updateService(@PathVariable int index, @RequestBody ServiceConfig config) {
+    @PutMapping("/services/{id}")
+    public ResponseEntity<?> updateService(@PathVariable("id") String key, @RequestBody ServiceConfig config) {
         try {
-            serviceManager.updateConfig(index, config);
+            serviceManager.updateConfig(requireServiceId(key), config);
             return ResponseEntity.ok(Map.of("success", true, "message", "服务配置已更新"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -77,10 +222,10 @@ public class ServiceMonitorController {
     /**
      * 删除服务
      */
-    @DeleteMapping("/services/{index}")
-    public ResponseEntity<?> deleteService(@PathVariable int index) {
+    @DeleteMapping("/services/{id}")
+    public ResponseEntity<?> deleteService(@PathVariable("id") String key) {
         try {
-            serviceManager.deleteConfig(index);
+            serviceManager.deleteConfig(requireServiceId(key));
             return ResponseEntity.ok(Map.of("success", true, "message", "服务已删除"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -91,10 +236,10 @@ public class ServiceMonitorController {
     /**
      * 启动服务
      */
-    @PostMapping("/services/{index}/start")
-    public ResponseEntity<?> startService(@PathVariable int index) {
+    @PostMapping("/services/{id}/start")
+    public ResponseEntity<?> startService(@PathVariable("id") String key) {
         try {
-            serviceManager.startService(index);
+            serviceManager.startService(requireServiceId(key));
             return ResponseEntity.ok(Map.of("success", true, "message", "服务已启动"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -105,10 +250,10 @@ public class ServiceMonitorController {
     /**
      * 停止服务
      */
-    @PostMapping("/services/{index}/stop")
-    public ResponseEntity<?> stopService(@PathVariable int index) {
+    @PostMapping("/services/{id}/stop")
+    public ResponseEntity<?> stopService(@PathVariable("id") String key) {
         try {
-            serviceManager.stopService(index);
+            serviceManager.stopService(requireServiceId(key));
             return ResponseEntity.ok(Map.of("success", true, "message", "服务已停止"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -119,10 +264,10 @@ public class ServiceMonitorController {
     /**
      * 重启服务
      */
-    @PostMapping("/services/{index}/restart")
-    public ResponseEntity<?> restartService(@PathVariable int index) {
+    @PostMapping("/services/{id}/restart")
+    public ResponseEntity<?> restartService(@PathVariable("id") String key) {
         try {
-            serviceManager.restartService(index);
+            serviceManager.restartService(requireServiceId(key));
             return ResponseEntity.ok(Map.of("success", true, "message", "服务已重启"));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -130,25 +275,177 @@ public class ServiceMonitorController {
         }
     }
     
+    /**
+     * 调整服务实例数，只启动新增的实例或停止多出的实例
+     * 请求体：{"replicas": 实例数}
+     */
+    @PutMapping("/services/{id}/replicas")
+    public ResponseEntity<?> scaleService(@PathVariable("id") String key, @RequestBody Map<String, Object> body) {
+        try {
+            Object replicas = body.get("replicas");
+            if (!(replicas instanceof Integer)) {
+                throw new IllegalArgumentException("replicas 必须是整数");
+            }
+            serviceManager.scaleService(requireServiceId(key), (Integer) replicas);
+            return ResponseEntity.ok(Map.of("success", true, "message", "实例数已调整为 " + replicas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 内置负载均衡的统计：接受/拒绝的连接数、转发字节数、各实例的健康状态和连接数
+     */
+    @GetMapping("/services/{id}/balancer")
+    public ResponseEntity<?> getBalancerStats(@PathVariable("id") String key) {
+        try {
+            TcpBalancer.Stats stats = serviceManager.getBalancerStats(requireServiceId(key));
+            if (stats == null) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "该服务未启用负载均衡"));
+            }
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * 按权重分配的内存、CPU和各服务注入的JVM选项
+     */
+    @GetMapping("/sizing")
+    public JvmSizing.Plan getSizingPlan() {
+        return serviceManager.getSizingPlan();
+    }
+
+    /**
+     * AppCDS 归档信息和启动耗时（使用/不使用归档）对比
+     */
+    @GetMapping("/services/{id}/cds")
+    public ResponseEntity<?> getAppCdsStats(@PathVariable("id") String key) {
+        try {
+            AppCdsArchive.Stats stats = serviceManager.getAppCdsStats(requireServiceId(key));
+            if (stats == null) {
+                return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "该服务未启用CDS归档"));
+            }
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * 启动准入队列：放行条件、主机状况（负载、可用内存、CPU压力、启动中的实例数）、排队位置和等待时间
+     */
+    @GetMapping("/start-queue")
+    public StartQueue.Report getStartQueue() {
+        return serviceManager.getStartQueueReport();
+    }
+
+    /**
+     * 按需启动服务的统计：冷启动次数和耗时、空闲停止次数、回收的内存
+     */
+    @GetMapping("/on-demand")
+    public ServiceManager.OnDemandReport getOnDemandReport() {
+        return serviceManager.getOnDemandReport();
+    }
+
+    /**
+     * GC日志分析：启用了GC日志的服务的停顿直方图、分位数、最长停顿、分配和晋升速率及告警
+     */
+    @GetMapping("/gc")
+    public List<ServiceManager.GcStatus> getGcReport() {
+        return serviceManager.getGcReport();
+    }
+
+    /**
+     * 一个服务的GC统计
+     */
+    @GetMapping("/services/{id}/gc")
+    public ResponseEntity<?> getGcStatus(@PathVariable("id") String key) {
+        String id = serviceManager.resolveServiceId(key);
+        if (id == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ServiceManager.GcStatus status = serviceManager.getGcStatus(id);
+        if (status == null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "服务未启用GC日志"));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 内存泄漏防护：各服务的规则、当前RSS和堆增长率、是否处于禁止重启时段、已触发的重启
+     */
+    @GetMapping("/leak-guard")
+    public List<ServiceManager.LeakGuardStatus> getLeakGuardReport() {
+        return serviceManager.getLeakGuardReport();
+    }
+
+    /**
+     * 滚动重启：逐批替换实例，新实例就绪后再停止旧实例；新实例未就绪时中止
+     * maxUnavailable: 同时允许停止的旧实例数；maxSurge: 同时允许多出的替换实例数
+     */
+    @PostMapping("/services/{id}/rolling-restart")
+    public ResponseEntity<?> rollingRestart(@PathVariable("id") String key,
+                                            @RequestParam(defaultValue = "0") int maxUnavailable,
+                                            @RequestParam(defaultValue = "1") int maxSurge) {
+        try {
+            ServiceManager.RolloutReport report =
+                serviceManager.rollingRestart(requireServiceId(key), maxUnavailable, maxSurge);
+            return report.isSuccess() ? ResponseEntity.ok(report) : ResponseEntity.status(HttpStatus.CONFLICT).body(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 设置服务的期望状态，由后台调和循环收敛，立即返回
+     * 请求体：{"state": "RUNNING" 或 "STOPPED", "replicas": 实例数（可选）}
+     */
+    @PutMapping("/services/{id}/desired")
+    public ResponseEntity<?> setDesiredState(@PathVariable("id") String key, @RequestBody Map<String, Object> body) {
+        try {
+            Object state = body.get("state");
+            if (!"RUNNING".equals(state) && !"STOPPED".equals(state)) {
+                throw new IllegalArgumentException("state 必须是 RUNNING 或 STOPPED");
+            }
+            Object replicas = body.get("replicas");
+            if (replicas != null && !(replicas instanceof Integer)) {
+                throw new IllegalArgumentException("replicas 必须是整数");
+            }
+            serviceManager.setDesiredState(requireServiceId(key), "RUNNING".equals(state), (Integer) replicas);
+            return ResponseEntity.ok(Map.of("success", true, "message", "期望状态已保存"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 期望状态与实际状态的对比：漂移的服务、漂移持续时间和上次收敛耗时
+     */
+    @GetMapping("/reconcile")
+    public ResponseEntity<ServiceManager.ReconcileReport> getReconcileReport() {
+        return ResponseEntity.ok(serviceManager.getReconcileReport());
+    }
+    
     /**
      * 一键启动所有服务
      */
     @PostMapping("/services/start-all")
     public ResponseEntity<?> startAllServices() {
         try {
-            List<ServiceConfig> configs = serviceManager.getConfigs();
-            int successCount = 0;
-            int failCount = 0;
-            
-            for (int i = 0; i < configs.size(); i++) {
-                try {
-                    serviceManager.startService(i);
-                    successCount++;
-                    Thread.sleep(200); // 间隔200ms
-                } catch (Exception e) {
-                    failCount++;
-                }
-            }
+            // 并行提交，实际拉起由启动准入队列按主机负载错开
+            int total = serviceManager.getConfigs().size();
+            Map<String, String> failures = serviceManager.startAll();
+            int failCount = failures.size();
+            int successCount = total - failCount;
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -166,9 +463,8 @@ public class ServiceMonitorController {
     @PostMapping("/services/stop-all")
     public ResponseEntity<?> stopAllServices() {
         try {
-            List<ServiceConfig> configs = serviceManager.getConfigs();
-            for (int i = 0; i < configs.size(); i++) {
-                serviceManager.stopService(i);
+            for (ServiceConfig config : serviceManager.getConfigs()) {
+                serviceManager.stopService(config.getId());
             }
             return ResponseEntity.ok(Map.of("success", true, "message", "所有服务已停止"));
         } catch (Exception e) {
@@ -177,6 +473,87 @@ public class ServiceMonitorController {
         }
     }
     
+    /**
+     * 批量导入服务配置：请求体为JSON数组或NDJSON，逐条流式解析
+     * 带已有服务ID的条目修改该服务，其余条目新增；默认只要有一条无效就全部不导入（partial=true 时导入有效的条目），
+     * dryRun=true 只检查不保存。返回每个条目的处理结果。
+     */
+    @PostMapping(value = "/services/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<?> importServices(HttpServletRequest request,
+                                            @RequestParam(defaultValue = "false") boolean partial,
+                                            @RequestParam(defaultValue = "false") boolean dryRun) {
+        List<ServiceConfig> entries;
+        try {
+            entries = ServiceConfigCodec.readAll(request.getInputStream(), ServiceManager.MAX_IMPORT_ENTRIES);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", "导入数据格式错误: " + e.getMessage()));
+        }
+        try {
+            ServiceManager.ImportReport report = serviceManager.importConfigs(entries, partial, dryRun);
+            if (!report.isApplied() && !report.isDryRun()) {
+                return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "有 " + report.getInvalid() + " 个条目无效，未导入任何服务",
+                    "report", report
+                ));
+            }
+            String message = dryRun
+                ? "检查完成：" + report.getInvalid() + " 个条目无效"
+                : "已导入：新增 " + report.getAdded() + "，修改 " + report.getUpdated()
+                    + "，无变化 " + report.getUnchanged() + "，无效 " + report.getInvalid();
+            return ResponseEntity.ok(Map.of("success", true, "message", message, "report", report));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 导出全部服务配置，format=json（数组，默认）或 ndjson（每行一个），可直接用于导入
+     */
+    @GetMapping("/services/export")
+    public ResponseEntity<StreamingResponseBody> exportServices(@RequestParam(defaultValue = "json") String format) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<ServiceConfig> configs = serviceManager.getConfigs();
+        StreamingResponseBody body = out -> ServiceConfigCodec.writeAll(out, configs, ndjson);
+        return ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"services." + (ndjson ? "ndjson" : "json") + "\"")
+            .body(body);
+    }
+    
+    /**
+     * 从磁盘重新加载配置（文件被修改后通常会自动加载），只重启启动参数变化的服务
+     */
+    @PostMapping("/services/reload")
+    public ResponseEntity<?> reloadConfigs() {
+        try {
+            ConfigDiff diff = serviceManager.reloadConfigs();
+            List<Map<String, Object>> changes = new ArrayList<>();
+            for (ConfigDiff.Change change : diff.getChanges()) {
+                changes.add(Map.of(
+                    "id", change.getId(),
+                    "name", change.getName(),
+                    "type", change.getType().name(),
+                    "fields", change.getFields()
+                ));
+            }
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", diff.isEmpty() ? "配置没有变化" : "配置已重新加载：" + diff.summary(),
+                "changes", changes
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+    
     /**
      * 获取应用设置
      */
@@ -198,5 +575,12 @@ public class ServiceMonitorController {
                 .body(Map.of("success", false, "message", e.getMessage()));
         }
     }
+    
+    private String requireServiceId(String key) {
+        String id = serviceManager.resolveServiceId(key);
+        if (id == null) {
+            throw new IllegalArgumentException("服务不存在: " + key);
+        }
+        return id;
+    }
 }
-
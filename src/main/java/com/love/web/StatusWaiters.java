@@ -0,0 +1,180 @@
+package com.love.web;
+
+import com.love.service.ServiceEvent;
+import com.love.service.ServiceManager;
+import com.love.util.WatcherState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 等待服务进入指定状态的长轮询请求
+ * 请求以 DeferredResult 挂起，不占用线程；由服务事件（状态/PID/配置变化）触发检查，
+ * 条件满足时立即完成，超时返回408。
+ */
+public class StatusWaiters {
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_EXITED = "EXITED";
+
+    private final ServiceManager serviceManager;
+    private final Map<String, List<Waiter>> waiters = new HashMap<>(); // 服务ID -> 等待者
+    private final Consumer<ServiceEvent> subscriber = this::onEvent;
+    private int waiterCount = 0;
+
+    public StatusWaiters(ServiceManager serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * 把状态参数（不区分大小写）转换为可匹配的 WatcherState 名称
+     * 除各 WatcherState 和 NOT_STARTED 外，兼容两个组合状态：
+     * RUNNING 为进程在运行（STARTING/READY），EXITED 为进程已退出未被停止（BACKOFF/QUARANTINED）；
+     * STOPPED 同时匹配从未启动过的服务
+     * @return 无法识别时返回null
+     */
+    public static List<String> toStates(String state) {
+        String name = state.toUpperCase();
+        switch (name) {
+            case STATE_RUNNING: return List.of(WatcherState.STARTING.name(), WatcherState.READY.name());
+            case STATE_EXITED: return List.of(WatcherState.BACKOFF.name(), WatcherState.QUARANTINED.name());
+            case ServiceManager.ServiceStatus.NOT_STARTED: return List.of(name);
+            default:
+                break;
+        }
+        try {
+            WatcherState watcherState = WatcherState.valueOf(name);
+            if (watcherState == WatcherState.STOPPED) {
+                return List.of(name, ServiceManager.ServiceStatus.NOT_STARTED);
+            }
+            return List.of(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析超时参数：60s、500ms、2m，或纯数字（秒）
+     * 超时必须大于0：0 作为 Servlet 异步超时表示永不超时，请求会一直挂起
+     * @return 毫秒；格式错误或不大于0返回-1
+     */
+    public static long parseTimeout(String timeout) {
+        String value = timeout.trim().toLowerCase();
+        long unit = 1000;
+        if (value.endsWith("ms")) {
+            unit = 1;
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = 60_000;
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            long n = Long.parseLong(value.trim());
+            return n <= 0 ? -1 : n * unit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 挂起请求直到服务进入 states 中的任一状态（ready=true 时还要求服务已就绪）
+     */
+    public DeferredResult<ResponseEntity<?>> await(String id, List<String> states, boolean ready, long timeoutMs) {
+        Waiter waiter = new Waiter(id, states, ready, timeoutMs);
+        ServiceManager.ServiceStatus current = serviceManager.getServiceStatus(id);
+        if (waiter.check(current)) {
+            return waiter.result;
+        }
+
+        synchronized (this) {
+            waiters.computeIfAbsent(id, k -> new ArrayList<>()).add(waiter);
+            if (waiterCount++ == 0) {
+                serviceManager.subscribeEvents(subscriber);
+            }
+        }
+        waiter.result.onTimeout(() -> waiter.result.setResult(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT)
+            .body(waiter.body(false, "等待超时", serviceManager.getServiceStatus(waiter.id)))));
+        waiter.result.onCompletion(() -> remove(waiter));
+        // 注册前状态可能已经变化，注册后再检查一次
+        waiter.check(serviceManager.getServiceStatus(id));
+        return waiter.result;
+    }
+
+    private synchronized void remove(Waiter waiter) {
+        List<Waiter> list = waiters.get(waiter.id);
+        if (list != null && list.remove(waiter)) {
+            if (list.isEmpty()) {
+                waiters.remove(waiter.id);
+            }
+            if (--waiterCount == 0) {
+                serviceManager.unsubscribeEvents(subscriber);
+            }
+        }
+    }
+
+    private void onEvent(ServiceEvent event) {
+        if (ServiceEvent.TYPE_METRIC.equals(event.getType())) {
+            return;
+        }
+        List<Waiter> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(waiters.getOrDefault(event.getId(), List.of()));
+        }
+        for (Waiter waiter : targets) {
+            waiter.check(serviceManager.getServiceStatus(waiter.id));
+        }
+    }
+
+    private class Waiter {
+        private final String id;
+        private final List<String> states;
+        private final boolean ready;
+        private final long startTime = System.currentTimeMillis();
+        private final DeferredResult<ResponseEntity<?>> result;
+
+        Waiter(String id, List<String> states, boolean ready, long timeoutMs) {
+            this.id = id;
+            this.states = states;
+            this.ready = ready;
+            this.result = new DeferredResult<>(timeoutMs);
+        }
+
+        /**
+         * 检查当前状态，满足条件或服务已被删除时完成请求
+         */
+        boolean check(ServiceManager.ServiceStatus status) {
+            if (result.isSetOrExpired()) {
+                return true;
+            }
+            if (status == null) {
+                return result.setResult(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(body(false, "服务已被删除", null)));
+            }
+            if (!states.contains(status.getState())) {
+                return false;
+            }
+            if (ready && !serviceManager.isServiceReady(id)) {
+                return false;
+            }
+            return result.setResult(ResponseEntity.ok(body(true, "服务已进入目标状态", status)));
+        }
+
+        Map<String, Object> body(boolean success, String message, ServiceManager.ServiceStatus status) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("success", success);
+            body.put("message", message);
+            body.put("waitedMs", System.currentTimeMillis() - startTime);
+            if (status != null) {
+                body.put("status", status);
+            }
+            return body;
+        }
+    }
+}
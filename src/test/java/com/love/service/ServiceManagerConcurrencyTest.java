@@ -0,0 +1,137 @@
+package com.love.service;
+
+import com.love.model.ServiceConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 状态快照在并发增删改服务时保持一致：读取方看到的每个快照中索引连续，配置与状态属于同一个服务
+ * 测试在 target/test-work 下运行（见 pom.xml），ServiceManager 的配置文件写在该目录
+ */
+class ServiceManagerConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 30;
+
+    @BeforeAll
+    static void cleanWorkDir() {
+        // ServiceManager 是单例，创建前清掉上次运行留下的配置
+        for (String name : new String[]{"services.json", "services.journal", "services.txt", "desired.txt",
+                "processes.txt", "settings.txt"}) {
+            new File(name).delete();
+        }
+    }
+
+    @Test
+    void snapshotsStayConsistentUnderConcurrentMutation() throws Exception {
+        ServiceManager manager = ServiceManager.getInstance();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            futures.add(pool.submit(() -> {
+                try {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        String name = "w" + writer + "-" + round;
+                        String id = manager.addConfig(config(name));
+                        ServiceConfig renamed = config(name + "-renamed");
+                        manager.updateConfig(id, renamed);
+                        if (round % 3 != 0) {
+                            manager.deleteConfig(id);
+                        }
+                    }
+                } finally {
+                    writersDone.countDown();
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            futures.add(pool.submit(() -> {
+                while (writing.get()) {
+                    checkSnapshot(manager.getSnapshot(null, null), failures);
+                    checkStatuses(manager.getAllServiceStatus(), failures);
+                    reads.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        assertTrue(writersDone.await(120, TimeUnit.SECONDS), "写入线程未在时限内完成");
+        writing.set(false);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(failures.isEmpty(), "快照不一致: " + failures.peek() + "（共 " + failures.size() + " 次）");
+        assertTrue(reads.get() > 0);
+
+        // 写入结束后快照与配置列表一致：每个写入线程保留了 round % 3 == 0 的服务
+        List<ServiceConfig> configs = manager.getConfigs();
+        ServiceManager.StatusSnapshot snapshot = manager.getSnapshot(null, null);
+        assertEquals(WRITERS * ((ROUNDS + 2) / 3), configs.size());
+        assertEquals(configs.size(), snapshot.getTotal());
+        for (int i = 0; i < configs.size(); i++) {
+            ServiceManager.SnapshotEntry entry = snapshot.getServices().get(i);
+            assertEquals(configs.get(i).getId(), entry.getId());
+            assertEquals(configs.get(i).getName(), entry.getStatus().getName());
+            assertTrue(entry.getStatus().getName().endsWith("-renamed"));
+        }
+    }
+
+    private static void checkSnapshot(ServiceManager.StatusSnapshot snapshot, Queue<String> failures) {
+        List<ServiceManager.SnapshotEntry> entries = snapshot.getServices();
+        if (entries.size() != snapshot.getTotal()) {
+            failures.add("total=" + snapshot.getTotal() + "，条目数=" + entries.size());
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            ServiceManager.SnapshotEntry entry = entries.get(i);
+            if (entry.getIndex() != i) {
+                failures.add("第 " + i + " 个条目的索引为 " + entry.getIndex());
+            }
+            if (!entry.getConfig().getId().equals(entry.getStatus().getId())
+                    || !entry.getConfig().getName().equals(entry.getStatus().getName())) {
+                failures.add("条目 " + i + " 的配置 " + entry.getConfig().getId() + "/" + entry.getConfig().getName()
+                    + " 与状态 " + entry.getStatus().getId() + "/" + entry.getStatus().getName() + " 不一致");
+            }
+        }
+    }
+
+    private static void checkStatuses(List<ServiceManager.ServiceStatus> statuses, Queue<String> failures) {
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i).getIndex() != i) {
+                failures.add("状态列表第 " + i + " 项的索引为 " + statuses.get(i).getIndex());
+            }
+        }
+    }
+
+    private static ServiceConfig config(String name) {
+        ServiceConfig config = new ServiceConfig();
+        config.setName(name);
+        config.setJavaExe(new File(System.getProperty("java.home"), "bin/java").getPath());
+        config.setWorkDir(".");
+        config.setArgs("-version");
+        return config;
+    }
+}
@@ -0,0 +1,86 @@
+package com.love.util;
+
+import com.love.model.ServiceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按服务ID归类变化：新增、删除、需重启、实例数变化、无需重启，以及顺序变化
+ */
+class ConfigDiffTest {
+
+    @Test
+    void identicalConfigsHaveNoChanges() {
+        List<ServiceConfig> configs = List.of(service("a", "--x"), service("b", "--y"));
+        ConfigDiff diff = ConfigDiff.compute(configs, copy(configs));
+        assertTrue(diff.isEmpty());
+        assertEquals("新增 0，删除 0，需重启 0，实例数变化 0，无需重启 0", diff.summary());
+    }
+
+    @Test
+    void classifiesEachServiceOnce() {
+        List<ServiceConfig> before = List.of(
+            service("args", "--x"), service("scale", ""), service("rename", ""), service("gone", ""));
+        List<ServiceConfig> after = copy(before.subList(0, 3));
+        after.get(0).setArgs("--y");
+        after.get(0).setReplicas(2); // 同时改了参数：按需重启处理
+        after.get(1).setReplicas(3);
+        after.get(2).setName("renamed");
+        after.get(2).setSizingWeight(2);
+        after.add(service("new", ""));
+
+        ConfigDiff diff = ConfigDiff.compute(before, after);
+        List<ConfigDiff.Change> changes = diff.getChanges();
+        assertEquals(5, changes.size());
+        assertChange(changes.get(0), ConfigDiff.ChangeType.RESTART_REQUIRED, "args", List.of("args", "replicas"));
+        assertChange(changes.get(1), ConfigDiff.ChangeType.SCALED, "scale", List.of("replicas"));
+        assertChange(changes.get(2), ConfigDiff.ChangeType.COSMETIC, "rename", List.of("name", "sizingWeight"));
+        assertChange(changes.get(3), ConfigDiff.ChangeType.ADDED, "new", List.of());
+        assertNull(changes.get(3).getOldConfig());
+        assertChange(changes.get(4), ConfigDiff.ChangeType.REMOVED, "gone", List.of());
+        assertNull(changes.get(4).getNewConfig());
+        assertEquals("gone", changes.get(4).getName());
+        assertFalse(diff.isOrderChanged());
+        assertEquals("新增 1，删除 1，需重启 1，实例数变化 1，无需重启 1", diff.summary());
+    }
+
+    @Test
+    void detectsReorderingOfKeptServices() {
+        List<ServiceConfig> before = List.of(service("a", ""), service("b", ""), service("c", ""));
+        ConfigDiff swapped = ConfigDiff.compute(before, copy(List.of(before.get(1), before.get(0), before.get(2))));
+        assertTrue(swapped.getChanges().isEmpty());
+        assertTrue(swapped.isOrderChanged());
+        assertFalse(swapped.isEmpty());
+
+        // 删除和新增本身不算顺序变化
+        ConfigDiff removed = ConfigDiff.compute(before, copy(List.of(service("x", ""), before.get(0), before.get(2))));
+        assertFalse(removed.isOrderChanged());
+    }
+
+    private static void assertChange(ConfigDiff.Change change, ConfigDiff.ChangeType type, String id,
+                                     List<String> fields) {
+        assertEquals(type, change.getType());
+        assertEquals(id, change.getId());
+        assertEquals(fields, change.getFields());
+    }
+
+    private static ServiceConfig service(String id, String args) {
+        ServiceConfig config = new ServiceConfig(id, "java", ".", args, null, null);
+        config.setId(id);
+        return config;
+    }
+
+    private static List<ServiceConfig> copy(List<ServiceConfig> configs) {
+        List<ServiceConfig> copies = new java.util.ArrayList<>();
+        for (ServiceConfig config : configs) {
+            copies.add(new ServiceConfig(config));
+        }
+        return copies;
+    }
+}
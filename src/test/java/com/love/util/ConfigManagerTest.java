@@ -0,0 +1,219 @@
+package com.love.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.love.model.ServiceConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快照 + 日志的重放、截断和压缩顺序，以及两个进程同时写入时不丢变更
+ * 测试在 target/test-work 下运行（见 pom.xml），直接读写该目录下的 services.json / services.journal
+ */
+class ConfigManagerTest {
+    private static final Path SNAPSHOT = Paths.get("services.json");
+    private static final Path JOURNAL = Paths.get("services.journal");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @BeforeEach
+    void reset() throws IOException {
+        Files.deleteIfExists(SNAPSHOT);
+        Files.deleteIfExists(JOURNAL);
+        Files.deleteIfExists(Paths.get("services.txt"));
+        ConfigManager.loadConfigs();
+    }
+
+    @Test
+    void replaysJournalOnLoad() throws Exception {
+        ServiceConfig a = config("a");
+        ServiceConfig b = config("b");
+        ConfigManager.putConfig(a);
+        ConfigManager.putConfig(b);
+        ConfigManager.removeConfig(a.getId());
+        b.setArgs("-version\n-Xmx64m");
+        ConfigManager.putConfig(b);
+
+        assertEquals(4, Files.readAllLines(JOURNAL).size());
+        List<ServiceConfig> loaded = ConfigManager.loadConfigs();
+        assertEquals(List.of("b"), names(loaded));
+        assertEquals("-version\n-Xmx64m", loaded.get(0).getArgs());
+    }
+
+    @Test
+    void truncatesTornTail() throws Exception {
+        ConfigManager.putConfig(config("a"));
+        long intact = Files.size(JOURNAL);
+        // 崩溃时写了一半的行：没有换行结尾
+        Files.write(JOURNAL, "{\"seq\":2,\"op\":\"put\",\"serv".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(List.of("a"), names(ConfigManager.loadConfigs()));
+        assertEquals(intact, Files.size(JOURNAL));
+
+        ConfigManager.putConfig(config("b"));
+        assertEquals(List.of("a", "b"), names(ConfigManager.loadConfigs()));
+    }
+
+    @Test
+    void skipsJournalEntriesAlreadyInSnapshot() throws Exception {
+        // 压缩写完快照（seq=2）后、截断日志前崩溃：日志中 seq<=2 的行已包含在快照中
+        ServiceConfig a = config("a");
+        ServiceConfig b = config("b-old");
+        ServiceConfig c = config("c");
+        ServiceConfig bSnapshot = new ServiceConfig(b);
+        bSnapshot.setName("b-snapshot");
+        writeSnapshot(2, a, bSnapshot);
+        appendJournal(1, a);
+        appendJournal(2, b);
+        appendJournal(3, c);
+
+        assertEquals(List.of("a", "b-snapshot", "c"), names(ConfigManager.loadConfigs()));
+    }
+
+    @Test
+    void compactsWhenJournalReachesThreshold() throws Exception {
+        for (int i = 0; i < 70; i++) {
+            ConfigManager.putConfig(config("s" + i));
+        }
+        assertTrue(Files.exists(SNAPSHOT));
+        assertTrue(Files.readAllLines(JOURNAL).size() < 64);
+        assertEquals(70, ConfigManager.loadConfigs().size());
+    }
+
+    @Test
+    void appendsAfterAnotherProcessCompacted() throws Exception {
+        ServiceConfig a = config("a");
+        ConfigManager.putConfig(a); // 本进程 seq=1
+        // 另一个进程压缩到 seq=64 并截断日志
+        writeSnapshot(64, a, config("other"));
+        Files.write(JOURNAL, new byte[0]);
+
+        ConfigManager.putConfig(config("b"));
+        assertEquals(65, MAPPER.readTree(Files.readAllLines(JOURNAL).get(0)).get("seq").asLong());
+        assertEquals(List.of("a", "other", "b"), names(ConfigManager.loadConfigs()));
+    }
+
+    @Test
+    void compactionKeepsAnotherProcessesJournalEntries() throws Exception {
+        ConfigManager.putConfig(config("a"));
+        appendJournal(2, config("other"));
+        for (int i = 0; i < 70; i++) {
+            ConfigManager.putConfig(config("s" + i));
+        }
+        List<String> names = names(ConfigManager.loadConfigs());
+        assertEquals(72, names.size());
+        assertTrue(names.contains("other"));
+    }
+
+    @Test
+    void saveConfigsKeepsAnotherProcessesChanges() throws Exception {
+        ServiceConfig a = config("a");
+        ConfigManager.putConfig(a);
+        List<ServiceConfig> local = ConfigManager.loadConfigs();
+        appendJournal(2, config("other"));
+
+        local.get(0).setName("a-renamed");
+        local.add(config("b"));
+        ConfigManager.saveConfigs(local);
+        assertTrue(ConfigManager.hasExternalChanges());
+        assertEquals(List.of("a-renamed", "b", "other"), names(ConfigManager.loadConfigs()));
+    }
+
+    @Test
+    void concurrentProcessesDoNotLoseWrites() throws Exception {
+        int count = 100;
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                OtherProcess.class.getName(), String.valueOf(count))
+            .directory(new File(".").getAbsoluteFile())
+            .redirectErrorStream(true)
+            .start();
+        // 等子进程加载完成后再同时写入
+        BufferedReader childOutput = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals(OtherProcess.READY, childOutput.readLine());
+        for (int i = 0; i < count; i++) {
+            ConfigManager.putConfig(config("parent-" + i));
+        }
+        childOutput.transferTo(Writer.nullWriter());
+        assertTrue(child.waitFor(60, TimeUnit.SECONDS), "子进程未在时限内完成");
+        assertEquals(0, child.exitValue());
+
+        List<String> names = names(ConfigManager.loadConfigs());
+        assertEquals(2 * count, names.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(names.contains("parent-" + i), "丢失 parent-" + i);
+            assertTrue(names.contains("child-" + i), "丢失 child-" + i);
+        }
+    }
+
+    /**
+     * 模拟另一个监控进程（如Web端）写同一份配置
+     */
+    public static class OtherProcess {
+        static final String READY = "ready";
+
+        public static void main(String[] args) throws Exception {
+            ConfigManager.loadConfigs();
+            System.out.println(READY);
+            System.out.flush();
+            for (int i = 0; i < Integer.parseInt(args[0]); i++) {
+                ConfigManager.putConfig(config("child-" + i));
+            }
+        }
+    }
+
+    private static ServiceConfig config(String name) {
+        ServiceConfig config = new ServiceConfig();
+        config.setId(ConfigManager.generateId());
+        config.setName(name);
+        config.setJavaExe("java");
+        config.setWorkDir(".");
+        config.setArgs("-version");
+        return config;
+    }
+
+    private static List<String> names(List<ServiceConfig> configs) {
+        List<String> names = new ArrayList<>();
+        for (ServiceConfig config : configs) {
+            names.add(config.getName());
+        }
+        return names;
+    }
+
+    private static void writeSnapshot(long seq, ServiceConfig... configs) throws IOException {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("schema", 2);
+        root.put("seq", seq);
+        ArrayNode list = root.putArray("services");
+        for (ServiceConfig config : configs) {
+            list.add(ServiceConfigCodec.toJson(config));
+        }
+        Files.write(SNAPSHOT, MAPPER.writeValueAsBytes(root));
+    }
+
+    private static void appendJournal(long seq, ServiceConfig config) throws IOException {
+        ObjectNode entry = MAPPER.createObjectNode();
+        entry.put("seq", seq);
+        entry.put("op", "put");
+        entry.set("service", ServiceConfigCodec.toJson(config));
+        Files.write(JOURNAL, (MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
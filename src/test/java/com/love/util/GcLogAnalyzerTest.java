@@ -0,0 +1,162 @@
+package com.love.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按 -Xlog:gc*（time,uptime,level,tags）格式的样例行解析 Serial、Parallel、G1、ZGC 的停顿、分配和晋升，
+ * 以及日志轮转时先读完被轮转的文件
+ */
+class GcLogAnalyzerTest {
+    private static final double DELTA = 1e-9;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesSerialLog() {
+        GcLogAnalyzer analyzer = parse(
+            line(0.995, "gc,start", "GC(0) Pause Young (Allocation Failure)"),
+            line(1.0, "gc,heap", "GC(0) DefNew: 17472K(19648K)->2176K(19648K) Eden: 17472K(17472K)->0K(17472K) From: 0K(2176K)->2176K(2176K)"),
+            line(1.0, "gc,heap", "GC(0) Tenured: 0K(43712K)->1024K(43712K)"),
+            line(1.0, "gc", "GC(0) Pause Young (Allocation Failure) 17M->3M(61M) 5.123ms"),
+            line(2.0, "gc,heap", "GC(1) Tenured: 1024K(43712K)->3072K(43712K)"),
+            line(2.0, "gc", "GC(1) Pause Young (Allocation Failure) 20M->5M(61M) 2.500ms"),
+            line(3.0, "gc,heap", "GC(2) Tenured: 3072K(43712K)->9216K(43712K)"),
+            line(3.0, "gc", "GC(2) Pause Full (Allocation Failure) 30M->10M(61M) 50.000ms"));
+
+        GcLogAnalyzer.Summary summary = summarize(analyzer);
+        assertEquals(3, summary.getPauses());
+        assertEquals(57.623, summary.getTotalPauseMs(), DELTA);
+        assertEquals(50.0, summary.getMaxPauseMs(), DELTA);
+        assertTrue(summary.getMaxPause().startsWith("Pause Full (Allocation Failure)，2026-10-19T"), summary.getMaxPause());
+        // 分配：(20-3) + (30-5) MB；晋升只算年轻代GC：GC(1) 的 2MB（Full GC 的老年代增量不算）
+        assertEquals(42 / 2.0, summary.getAllocationRateMbPerSec(), DELTA);
+        assertEquals(2 / 2.0, summary.getPromotionRateMbPerSec(), DELTA);
+    }
+
+    @Test
+    void parsesParallelLog() {
+        GcLogAnalyzer analyzer = parse(
+            line(1.0, "gc,heap", "GC(0) PSYoungGen: 15360K(17920K)->2544K(17920K) Eden: 15360K(15360K)->0K(15360K) From: 0K(2560K)->2544K(2560K)"),
+            line(1.0, "gc,heap", "GC(0) ParOldGen: 0K(40960K)->2048K(40960K)"),
+            line(1.0, "gc", "GC(0) Pause Young (Allocation Failure) 15M->4M(57M) 3.456ms"),
+            line(1.5, "gc,heap", "GC(1) ParOldGen: 2048K(40960K)->6144K(40960K)"),
+            line(1.5, "gc", "GC(1) Pause Young (Allocation Failure) 19M->8M(57M) 4.000ms"));
+
+        GcLogAnalyzer.Summary summary = summarize(analyzer);
+        assertEquals(2, summary.getPauses());
+        assertEquals(4.0, summary.getMaxPauseMs(), DELTA);
+        assertEquals(15 / 0.5, summary.getAllocationRateMbPerSec(), DELTA);
+        assertEquals(4 / 0.5, summary.getPromotionRateMbPerSec(), DELTA);
+    }
+
+    @Test
+    void parsesG1Log() {
+        GcLogAnalyzer analyzer = parse(
+            line(0.010, "gc,init", "Heap Region Size: 1M"),
+            line(1.0, "gc,heap", "GC(0) Old regions: 0->2"),
+            line(1.0, "gc", "GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(64M) 3.000ms"),
+            line(2.0, "gc,heap", "GC(1) Old regions: 2->5"),
+            line(2.0, "gc", "GC(1) Pause Young (Normal) (G1 Evacuation Pause) 30M->6M(64M) 6.000ms"),
+            line(3.0, "gc,heap", "GC(2) Old regions: 5->9"),
+            line(3.0, "gc", "GC(2) Pause Young (Mixed) (G1 Evacuation Pause) 16M->7M(64M) 2.000ms"),
+            line(3.5, "gc", "GC(3) Pause Remark 9M->9M(64M) 1.000ms"));
+
+        GcLogAnalyzer.Summary summary = summarize(analyzer);
+        assertEquals(4, summary.getPauses());
+        assertEquals(2.0, summary.getP50PauseMs(), DELTA);
+        assertEquals(6.0, summary.getP99PauseMs(), DELTA);
+        // 分配：(30-4) + (16-6) + (9-7) MB；晋升：GC(1) 的 3 个 Region（混合回收不算）
+        assertEquals(38 / 2.5, summary.getAllocationRateMbPerSec(), DELTA);
+        assertEquals(3 / 2.5, summary.getPromotionRateMbPerSec(), DELTA);
+    }
+
+    @Test
+    void parsesPausesWithoutHeapSizes() {
+        GcLogAnalyzer analyzer = parse(
+            line(1.0, "gc,phases", "GC(0) Pause Mark Start 0.012ms"),
+            line(1.1, "gc,phases", "GC(0) Pause Mark End 0.020ms"),
+            line(1.2, "gc,phases", "GC(0) Pause Relocate Start 0.008ms"));
+
+        GcLogAnalyzer.Summary summary = summarize(analyzer);
+        assertEquals(3, summary.getPauses());
+        assertEquals(0.040, summary.getTotalPauseMs(), DELTA);
+        assertEquals(3, summary.getHistogram().get(0).getCount()); // 都不超过 1ms
+        assertEquals(0.0, summary.getAllocationRateMbPerSec(), DELTA);
+    }
+
+    @Test
+    void warnsWhenP99ReachesThreshold() {
+        GcLogAnalyzer analyzer = parse(line(1.0, "gc", "GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(64M) 250.000ms"));
+        assertNull(GcLogAnalyzer.summarize(List.of(analyzer), 0).getWarning());
+        assertNull(GcLogAnalyzer.summarize(List.of(analyzer), 300).getWarning());
+        assertEquals("GC停顿 p99 250.0 ms，超过 200 ms", GcLogAnalyzer.summarize(List.of(analyzer), 200).getWarning());
+    }
+
+    @Test
+    void readsRotatedFileToTheEndBeforeSwitching() throws IOException {
+        Path log = dir.resolve(GcLogAnalyzer.LOG_NAME);
+        GcLogAnalyzer analyzer = new GcLogAnalyzer(dir.toFile());
+        analyzer.poll(); // 尚未生成
+        assertEquals(0, summarize(analyzer).getPauses());
+
+        write(log, pauses(0, 3), StandardOpenOption.CREATE_NEW);
+        analyzer.poll();
+        assertEquals(3, summarize(analyzer).getPauses());
+
+        // JVM 在两次读取之间写完旧文件、改名，并在新文件中写了更多内容（比旧文件已读的部分更长）
+        write(log, pauses(3, 5), StandardOpenOption.APPEND);
+        Files.move(log, dir.resolve(GcLogAnalyzer.LOG_NAME + ".0"), StandardCopyOption.ATOMIC_MOVE);
+        write(log, pauses(5, 20), StandardOpenOption.CREATE_NEW);
+        analyzer.poll();
+        assertEquals(20, summarize(analyzer).getPauses());
+
+        write(log, pauses(20, 21), StandardOpenOption.APPEND);
+        analyzer.poll();
+        assertEquals(21, summarize(analyzer).getPauses());
+    }
+
+    private static GcLogAnalyzer parse(String... lines) {
+        GcLogAnalyzer analyzer = new GcLogAnalyzer(new File("."));
+        for (String line : lines) {
+            analyzer.parseLine(line);
+        }
+        return analyzer;
+    }
+
+    private static GcLogAnalyzer.Summary summarize(GcLogAnalyzer analyzer) {
+        return GcLogAnalyzer.summarize(List.of(analyzer), 0);
+    }
+
+    private static String line(double uptime, String tags, String message) {
+        return String.format(Locale.ROOT, "[2026-10-19T12:00:%06.3f+0000][%.3fs][info][%-12s] %s", uptime, uptime, tags, message);
+    }
+
+    private static String pauses(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int gc = from; gc < to; gc++) {
+            text.append(line(gc + 1, "gc", "GC(" + gc + ") Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(64M) 1.500ms"))
+                .append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void write(Path path, String text, StandardOpenOption option) throws IOException {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8), option);
+    }
+}
@@ -0,0 +1,89 @@
+package com.love.util;
+
+import com.love.model.ServiceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按权重×实例数分配内存和CPU：预留内存、最小堆、保留用户已设置的选项，以及按实际运行的实例数分配
+ */
+class JvmSizingTest {
+
+    @Test
+    void reservesMemoryAndSplitsByWeightTimesReplicas() {
+        List<ServiceConfig> configs = List.of(
+            service("a", 1, 3, ""),
+            service("b", 1, 1, ""),
+            service("manual", 0, 2, ""));
+        JvmSizing.Plan plan = JvmSizing.plan(configs, 8192, 8);
+
+        // 预留 10%，至少 512MB
+        assertEquals(819, plan.getReservedMb());
+        assertEquals(2, plan.getServices().size()); // 未启用自动分配的服务不参与
+        JvmSizing.Allocation a = plan.getServices().get(0);
+        assertEquals(3, a.getReplicas());
+        assertEquals((8192 - 819) / 4, a.getMemoryMb());
+        assertEquals((long) (a.getMemoryMb() * 0.75), a.getHeapMb());
+        assertEquals(List.of("-Xmx" + a.getHeapMb() + "m", "-XX:ActiveProcessorCount=8",
+            "-XX:ParallelGCThreads=8", "-XX:ConcGCThreads=2"), a.getInjected());
+
+        assertEquals(512, JvmSizing.plan(configs, 2048, 8).getReservedMb());
+    }
+
+    @Test
+    void heapNeverGoesBelowMinimum() {
+        List<ServiceConfig> configs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            configs.add(service("s" + i, 1, 1, ""));
+        }
+        JvmSizing.Plan plan = JvmSizing.plan(configs, 1024, 2);
+        JvmSizing.Allocation allocation = plan.getServices().get(0);
+        assertEquals((1024 - 512) / 20, allocation.getMemoryMb());
+        assertEquals(64, allocation.getHeapMb());
+        assertEquals(1, allocation.getProcessors());
+        assertTrue(allocation.getInjected().contains("-Xmx64m"));
+    }
+
+    @Test
+    void keepsUserOptions() {
+        List<ServiceConfig> configs = List.of(
+            service("a", 1, 1, "-Xms2g\n-XX:ParallelGCThreads=2\n-jar\napp.jar"),
+            service("b", 1, 1, "-XX:MaxRAMPercentage=50\n-XX:ConcGCThreads=3"));
+        JvmSizing.Plan plan = JvmSizing.plan(configs, 8192, 8);
+
+        // 用户设置了初始堆时不注入 -Xmx；并发GC线程数按用户的并行GC线程数推算
+        JvmSizing.Allocation a = plan.getServices().get(0);
+        assertEquals(List.of("-Xms2g", "-XX:ParallelGCThreads=2"), a.getKept());
+        assertEquals(List.of("-XX:ActiveProcessorCount=8", "-XX:ConcGCThreads=1"), a.getInjected());
+
+        // 并行GC线程数不少于用户设置的并发GC线程数
+        JvmSizing.Allocation b = plan.getServices().get(1);
+        assertEquals(List.of("-XX:MaxRAMPercentage=50", "-XX:ConcGCThreads=3"), b.getKept());
+        assertEquals(List.of("-XX:ActiveProcessorCount=8", "-XX:ParallelGCThreads=8"), b.getInjected());
+    }
+
+    @Test
+    void splitsByInstancesActuallyRunning() {
+        List<ServiceConfig> configs = List.of(service("a", 1, 3, ""), service("b", 1, 1, ""));
+        JvmSizing.Allocation byReplicas = JvmSizing.plan(configs, 8192, 8).getServices().get(0);
+        // 桌面端每个服务只运行一个实例
+        JvmSizing.Allocation single = JvmSizing.plan(configs, 8192, 8, c -> 1).getServices().get(0);
+
+        assertEquals(1, single.getReplicas());
+        assertEquals((8192 - 819) / 2, single.getMemoryMb());
+        assertTrue(single.getMemoryMb() > byReplicas.getMemoryMb());
+    }
+
+    private static ServiceConfig service(String id, int weight, int replicas, String args) {
+        ServiceConfig config = new ServiceConfig(id, "java", ".", args, null, null);
+        config.setId(id);
+        config.setSizingWeight(weight);
+        config.setReplicas(replicas);
+        return config;
+    }
+}
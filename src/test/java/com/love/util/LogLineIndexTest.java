@@ -0,0 +1,115 @@
+package com.love.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 稀疏行索引：分页读取、追加、截断和轮转后重建，以及超长行按字符边界截断
+ */
+class LogLineIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsPagesAcrossCheckpoints() throws IOException {
+        Path log = dir.resolve("app.log");
+        write(log, lines("a", 0, 10_000));
+        LogLineIndex index = new LogLineIndex(log.toFile());
+
+        LogLineIndex.Page page = index.readLines(8190, 5);
+        assertEquals(10_000, page.getTotalLines());
+        assertEquals(List.of("a8190", "a8191", "a8192", "a8193", "a8194"), page.getLines());
+        assertEquals(List.of("a9998", "a9999"), index.tail(2).getLines());
+
+        append(log, lines("a", 10_000, 10_005) + "partial");
+        LogLineIndex.Page tail = index.tail(2);
+        assertEquals(10_006, tail.getTotalLines());
+        assertEquals(List.of("a10004", "partial"), tail.getLines());
+    }
+
+    @Test
+    void rebuildsAfterTruncation() throws IOException {
+        Path log = dir.resolve("app.log");
+        write(log, lines("old", 0, 1000));
+        LogLineIndex index = new LogLineIndex(log.toFile());
+        assertEquals(1000, index.refresh());
+
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        append(log, lines("new", 0, 3));
+        assertEquals(List.of("new0", "new1", "new2"), index.readLines(0, 10).getLines());
+    }
+
+    @Test
+    void rebuildsWhenRotatedFileGrowsPastOldLength() throws IOException {
+        Path log = dir.resolve("app.log");
+        write(log, lines("old", 0, 1000));
+        LogLineIndex index = new LogLineIndex(log.toFile());
+        assertEquals(1000, index.refresh());
+
+        // 轮转：旧文件改名，新文件在下次读取前已长过旧文件
+        Files.move(log, dir.resolve("app.log.1"), StandardCopyOption.ATOMIC_MOVE);
+        write(log, lines("rotated-", 0, 2000));
+        LogLineIndex.Page page = index.readLines(0, 3);
+        assertEquals(2000, page.getTotalLines());
+        assertEquals(List.of("rotated-0", "rotated-1", "rotated-2"), page.getLines());
+        assertEquals(List.of("rotated-1999"), index.tail(1).getLines());
+    }
+
+    @Test
+    void truncatesLongLinesOnCharacterBoundary() throws IOException {
+        Path log = dir.resolve("app.log");
+        // 每个汉字3字节，8192 字节处落在字符中间
+        write(log, "中".repeat(5000) + "\nnext\n");
+        List<String> lines = new LogLineIndex(log.toFile()).readLines(0, 2).getLines();
+
+        String first = lines.get(0);
+        assertTrue(first.endsWith(" …"));
+        String kept = first.substring(0, first.length() - 2);
+        assertEquals("中".repeat(8192 / 3), kept);
+        assertFalse(first.contains("�"));
+        assertEquals("next", lines.get(1));
+    }
+
+    @Test
+    void utf8BoundaryKeepsCompleteCharacters() {
+        byte[] text = "a中😀".getBytes(StandardCharsets.UTF_8); // 1 + 3 + 4 字节
+        assertEquals(8, LogLineIndex.utf8Boundary(text, 8));
+        assertEquals(4, LogLineIndex.utf8Boundary(text, 7));
+        assertEquals(4, LogLineIndex.utf8Boundary(text, 5));
+        assertEquals(4, LogLineIndex.utf8Boundary(text, 4));
+        assertEquals(1, LogLineIndex.utf8Boundary(text, 3));
+        assertEquals(1, LogLineIndex.utf8Boundary(text, 1));
+        assertEquals(0, LogLineIndex.utf8Boundary(text, 0));
+    }
+
+    private static String lines(String prefix, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append(prefix).append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void write(Path path, String text) throws IOException {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void append(Path path, String text) throws IOException {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,81 @@
+package com.love.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分页读取与查找、超长行按字符边界截断，以及文件在两次 update() 之间被截断时不访问失效的映射页
+ */
+class MappedLogFileTest {
+    private static final int LINES = 200_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsLinesForwardAndBackward() throws IOException {
+        File file = writeLog();
+        try (MappedLogFile log = new MappedLogFile(file)) {
+            log.update(Long.MAX_VALUE);
+            assertEquals(LINES, log.getLineCount());
+            assertEquals("line 123456", log.getLine(123456));
+            assertEquals(150000, log.find("line 150000", 0, true));
+            assertEquals(150000, log.find("line 150000", LINES, false));
+            assertEquals(-1, log.find("line 150000", 150001, true));
+            assertEquals(-1, log.find("no such text", 0, true));
+        }
+    }
+
+    @Test
+    void truncationBeforeUpdateDoesNotTouchUnmappedPages() throws IOException {
+        File file = writeLog();
+        try (MappedLogFile log = new MappedLogFile(file)) {
+            log.update(Long.MAX_VALUE);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            // 索引仍是旧的：读取和查找都放弃，而不是访问新文件末尾之后的页
+            assertEquals("", log.getLine(LINES - 1));
+            assertEquals(-1, log.find("line 199999", 0, true));
+            assertEquals(-1, log.find("line 1", LINES, false));
+
+            Files.write(file.toPath(), "after rotation\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(MappedLogFile.UPDATE_TRUNCATED, log.update(Long.MAX_VALUE));
+            assertEquals(1, log.getLineCount());
+            assertEquals("after rotation", log.getLine(0));
+            assertEquals(0, log.find("rotation", 0, true));
+        }
+    }
+
+    @Test
+    void truncatesLongLinesOnCharacterBoundary() throws IOException {
+        File file = dir.resolve("long.log").toFile();
+        // 每个汉字3字节，8192 字节处落在字符中间
+        Files.write(file.toPath(), ("中".repeat(5000) + "\nnext\n").getBytes(StandardCharsets.UTF_8));
+        try (MappedLogFile log = new MappedLogFile(file)) {
+            log.update(Long.MAX_VALUE);
+            assertEquals("中".repeat(8192 / 3) + " …", log.getLine(0));
+            assertEquals("next", log.getLine(1));
+        }
+    }
+
+    private File writeLog() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        File file = dir.resolve("app.log").toFile();
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
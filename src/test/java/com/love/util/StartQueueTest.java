@@ -0,0 +1,118 @@
+package com.love.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 准入队列：按启动中实例数放行、先来先服务、最小间隔、排队超时强制放行，以及取消排队
+ * 只设置与主机无关的条件（负载、内存、CPU压力为0不检查），结果不受运行测试的机器影响
+ */
+class StartQueueTest {
+    private final AtomicInteger starting = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void admitsInArrivalOrderOnceStartingDropsBelowLimit() throws Exception {
+        StartQueue queue = new StartQueue(starting::get, limits(1, 0, 0));
+        queue.acquire("idle", "idle", 0); // 未达上限时直接放行
+
+        starting.set(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Future<?> first = executor.submit(() -> acquire(queue, "a", order));
+        waitUntil(() -> queue.positionOf("a", 0) == 1);
+        Future<?> second = executor.submit(() -> acquire(queue, "b", order));
+        waitUntil(() -> queue.positionOf("b", 0) == 2);
+
+        waitUntil(() -> queue.getReport().getWaiting().get(0).getBlockedBy() != null);
+        StartQueue.Entry head = queue.getReport().getWaiting().get(0);
+        assertTrue(head.getBlockedBy().contains("启动中的实例 1 个"), head.getBlockedBy());
+
+        starting.set(0);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("a", "b"), order);
+        assertEquals(0, queue.positionOf("a", 0));
+        assertEquals(3, queue.getReport().getAdmitted());
+        assertEquals(0, queue.getReport().getForced());
+    }
+
+    @Test
+    void keepsMinimumIntervalBetweenAdmissions() throws Exception {
+        StartQueue queue = new StartQueue(starting::get, limits(0, 400, 0));
+        queue.acquire("a", "a", 0);
+        long waited = queue.acquire("b", "b", 0);
+        assertTrue(waited >= 300, "waited " + waited);
+    }
+
+    @Test
+    void admitsAfterMaxWaitEvenWhenStillBlocked() throws Exception {
+        starting.set(5);
+        StartQueue queue = new StartQueue(starting::get, limits(1, 0, 300));
+        long waited = queue.acquire("a", "a", 0);
+        assertTrue(waited >= 300, "waited " + waited);
+        assertEquals(1, queue.getReport().getForced());
+    }
+
+    @Test
+    void cancelRemovesOnlyThatServicesWaiters() throws Exception {
+        starting.set(1);
+        StartQueue queue = new StartQueue(starting::get, limits(1, 0, 0));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Future<?> a0 = executor.submit(() -> acquire(queue, "a", order));
+        waitUntil(() -> queue.positionOf("a", 0) == 1);
+        Future<?> b = executor.submit(() -> acquire(queue, "b", order));
+        waitUntil(() -> queue.positionOf("b", 0) == 2);
+
+        assertEquals(1, queue.cancel("a"));
+        assertEquals(0, queue.cancel("missing"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> a0.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, failure.getCause());
+        waitUntil(() -> queue.positionOf("b", 0) == 1);
+        assertEquals(0, queue.positionOf("a", 0));
+
+        starting.set(0);
+        b.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("b"), order);
+        assertEquals(1, queue.getReport().getAdmitted());
+    }
+
+    private static StartQueue.Limits limits(int maxStarting, long minIntervalMs, long maxWaitMs) {
+        return new StartQueue.Limits(maxStarting, 0, 0, 0, minIntervalMs, maxWaitMs);
+    }
+
+    private static Void acquire(StartQueue queue, String serviceId, List<String> order) throws InterruptedException {
+        queue.acquire(serviceId, serviceId, 0);
+        order.add(serviceId);
+        return null;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.love.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 负载均衡：最少连接、不健康实例不派发、排空、半关闭后仍转发对端数据，以及按需启动时排队的连接
+ * 后端是本机的回显服务：接受连接后先写一个字节的实例标识，再原样回显，读到EOF后关闭
+ */
+class TcpBalancerTest {
+    private final List<Closeable> resources = new ArrayList<>();
+    private TcpBalancer balancer;
+
+    @BeforeEach
+    void start() throws IOException {
+        balancer = new TcpBalancer("test", freePort());
+        resources.add(balancer);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        for (Closeable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void sendsNewConnectionsToLeastLoadedHealthyBackend() throws Exception {
+        EchoBackend a = backend('A');
+        EchoBackend b = backend('B');
+        EchoBackend sick = backend('C');
+        balancer.updateBackends(List.of(a.target(0, true), b.target(1, true), sick.target(2, false)));
+
+        Socket first = connect();
+        Socket second = connect();
+        // 第一条连接占着一个实例，第二条必须去另一个
+        assertEquals('A' + 'B', first.getInputStream().read() + second.getInputStream().read());
+        for (int i = 0; i < 4; i++) {
+            connect().getInputStream().read();
+        }
+        waitUntil(() -> a.open.get() == 3 && b.open.get() == 3);
+        assertEquals(0, sick.accepted.get());
+        assertEquals(6, balancer.getStats().getAccepted());
+        assertEquals(6, balancer.getActiveConnections());
+    }
+
+    @Test
+    void drainStopsNewConnectionsAndWaitsForExistingOnes() throws Exception {
+        EchoBackend a = backend('A');
+        EchoBackend b = backend('B');
+        balancer.updateBackends(List.of(a.target(0, true)));
+        Socket onA = connect();
+        assertEquals('A', onA.getInputStream().read());
+        balancer.updateBackends(List.of(a.target(0, true), b.target(1, true)));
+
+        assertEquals(1, balancer.drain(a.port(), 100)); // 超时后仍有1条连接
+        for (int i = 0; i < 3; i++) {
+            assertEquals('B', connect().getInputStream().read());
+        }
+        CompletableFuture<Integer> drained = CompletableFuture.supplyAsync(() -> {
+            try {
+                return balancer.drain(a.port(), 5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(drained.isDone());
+        onA.close();
+        assertEquals(0, drained.get(5, TimeUnit.SECONDS));
+        assertTrue(balancer.getStats().getBackends().get(0).isDraining());
+    }
+
+    @Test
+    void forwardsResponseAfterClientHalfCloses() throws Exception {
+        EchoBackend a = backend('A');
+        balancer.updateBackends(List.of(a.target(0, true)));
+        byte[] request = "x".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+        try (Socket client = connect()) {
+            CompletableFuture<byte[]> response = CompletableFuture.supplyAsync(() -> readAll(client));
+            OutputStream out = client.getOutputStream();
+            out.write(request);
+            client.shutdownOutput(); // 实例读到EOF后才写完回显并关闭
+            byte[] received = response.get(5, TimeUnit.SECONDS);
+            assertEquals(1 + request.length, received.length);
+            assertEquals('A', received[0]);
+        }
+        waitUntil(() -> balancer.getActiveConnections() == 0);
+        assertEquals(request.length, balancer.getStats().getBytesIn());
+    }
+
+    @Test
+    void queuesConnectionsUntilOnDemandBackendIsReady() throws Exception {
+        EchoBackend a = backend('A');
+        AtomicInteger demands = new AtomicInteger();
+        balancer.setDemandListener(demands::incrementAndGet);
+
+        Socket client = connect();
+        client.getOutputStream().write("early".getBytes(StandardCharsets.UTF_8));
+        waitUntil(() -> balancer.getPendingConnections() == 1);
+        assertTrue(demands.get() >= 1);
+
+        balancer.updateBackends(List.of(a.target(0, true)));
+        InputStream in = client.getInputStream();
+        assertEquals('A', in.read());
+        assertEquals("early", new String(in.readNBytes(5), StandardCharsets.UTF_8));
+        assertEquals(0, balancer.getPendingConnections());
+        assertEquals(1, balancer.getStats().getQueued());
+
+        // 按需启动失败：排队的连接被关闭
+        balancer.removeBackend(a.port());
+        Socket rejected = connect();
+        waitUntil(() -> balancer.getPendingConnections() == 1);
+        balancer.rejectPending();
+        assertEquals(-1, rejected.getInputStream().read());
+        assertEquals(1, balancer.getStats().getRejected());
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", balancer.getPort());
+        socket.setSoTimeout(5000);
+        resources.add(socket);
+        return socket;
+    }
+
+    private EchoBackend backend(char id) throws IOException {
+        EchoBackend backend = new EchoBackend((byte) id);
+        resources.add(backend);
+        return backend;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static byte[] readAll(Socket socket) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            socket.getInputStream().transferTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 回显服务，每条连接一个线程
+     */
+    private static class EchoBackend implements Closeable {
+        private final ServerSocket server = new ServerSocket(0);
+        private final byte id;
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger open = new AtomicInteger();
+
+        EchoBackend(byte id) throws IOException {
+            this.id = id;
+            Thread thread = new Thread(this::acceptLoop, "echo-" + (char) id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        TcpBalancer.Target target(int instance, boolean healthy) {
+            return new TcpBalancer.Target(instance, port(), healthy);
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    accepted.incrementAndGet();
+                    open.incrementAndGet();
+                    Thread handler = new Thread(() -> echo(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException e) {
+                // 已关闭
+            }
+        }
+
+        private void echo(Socket socket) {
+            try (Socket s = socket) {
+                OutputStream out = s.getOutputStream();
+                out.write(id);
+                s.getInputStream().transferTo(out);
+            } catch (IOException e) {
+                // 对端已关闭
+            } finally {
+                open.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}